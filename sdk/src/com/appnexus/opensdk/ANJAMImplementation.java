@@ -52,19 +52,19 @@ class ANJAMImplementation {
             if (webView.getUserInteraction()) {
                 callDeepLink(webView, uri);
             } else {
-                Clog.w(Clog.jsLogTag, Clog.getString(R.string.no_user_interaction, url));
+                Clog.w(Clog.jsLogTag, R.string.no_user_interaction, url);
             }
         } else if (CALL_EXTERNALBROWSER.equals(call)) {
             if (webView.getUserInteraction()) {
                 callExternalBrowser(webView, uri);
             } else {
-                Clog.w(Clog.jsLogTag, Clog.getString(R.string.no_user_interaction, url));
+                Clog.w(Clog.jsLogTag, R.string.no_user_interaction, url);
             }
         } else if (CALL_INTERNALBROWSER.equals(call)) {
             if (webView.getUserInteraction()) {
                 callInternalBrowser(webView, uri);
             } else {
-                Clog.w(Clog.jsLogTag, Clog.getString(R.string.no_user_interaction, url));
+                Clog.w(Clog.jsLogTag, R.string.no_user_interaction, url);
             }
         } else if (CALL_RECORDEVENT.equals(call)) {
             callRecordEvent(webView, uri);
@@ -177,7 +177,7 @@ class ANJAMImplementation {
             Toast.makeText(webView.getContext(),
                     R.string.action_cant_be_completed,
                     Toast.LENGTH_SHORT).show();
-            Clog.w(Clog.baseLogTag, Clog.getString(R.string.adactivity_missing,activity_clz.getName()));
+            Clog.w(Clog.baseLogTag, R.string.adactivity_missing,activity_clz.getName());
             BrowserAdActivity.BROWSER_QUEUE.remove();
         }
     }
@@ -26,6 +26,7 @@ import android.os.Looper;
 import android.view.View;
 import android.webkit.WebView;
 
+import com.appnexus.opensdk.utils.BitmapPool;
 import com.appnexus.opensdk.utils.Clog;
 import com.appnexus.opensdk.utils.JsonUtil;
 import com.appnexus.opensdk.utils.Settings;
@@ -86,15 +87,13 @@ public class ANNativeAdResponse implements NativeAdResponse {
             }
             impressionTrackers = null;
             listener = null;
-            // free assets
-            if (icon != null) {
-                icon.recycle();
-                icon = null;
-            }
-            if (image != null) {
-                image.recycle();
-                image = null;
-            }
+            // free assets. images decoded by the sdk may also be held by the image cache or other ads,
+            // they go back to the pool once the last holder releases them. nothing is recycled here,
+            // bitmaps the sdk did not decode are left to the garbage collector
+            BitmapPool.getInstance().release(icon);
+            icon = null;
+            BitmapPool.getInstance().release(image);
+            image = null;
         }
     };
 
@@ -187,6 +186,9 @@ public class ANNativeAdResponse implements NativeAdResponse {
 
     @Override
     public void setImage(Bitmap bitmap) {
+        if (image != bitmap) {
+            BitmapPool.getInstance().release(image);
+        }
         this.image = bitmap;
     }
 
@@ -202,6 +204,9 @@ public class ANNativeAdResponse implements NativeAdResponse {
 
     @Override
     public void setIcon(Bitmap bitmap) {
+        if (icon != bitmap) {
+            BitmapPool.getInstance().release(icon);
+        }
         this.icon = bitmap;
     }
 
@@ -322,7 +327,7 @@ public class ANNativeAdResponse implements NativeAdResponse {
         // if install, open store
         if (clickUrl.contains("://play.google.com") || clickUrl.contains("market://")) {
             Clog.d(Clog.nativeLogTag,
-                    Clog.getString(R.string.opening_app_store));
+                    R.string.opening_app_store);
             return openNativeIntent(clickUrl, context);
         }
         // open browser
@@ -352,7 +357,7 @@ public class ANNativeAdResponse implements NativeAdResponse {
                 context.startActivity(intent);
                 return true;
             } catch (ActivityNotFoundException e) {
-                Clog.w(Clog.baseLogTag, Clog.getString(R.string.adactivity_missing, activity_clz.getName()));
+                Clog.w(Clog.baseLogTag, R.string.adactivity_missing, activity_clz.getName());
                 BrowserAdActivity.BROWSER_QUEUE.remove();
             }
             return false;
@@ -367,7 +372,7 @@ public class ANNativeAdResponse implements NativeAdResponse {
             return true;
         } catch (ActivityNotFoundException e) {
             Clog.w(Clog.baseLogTag,
-                    Clog.getString(R.string.opening_url_failed, url));
+                    R.string.opening_url_failed, url);
             return false;
         }
     }
@@ -31,7 +31,6 @@ import android.webkit.WebView;
 import com.appnexus.opensdk.utils.Clog;
 import com.appnexus.opensdk.utils.Settings;
 import com.appnexus.opensdk.utils.StringUtil;
-import com.appnexus.opensdk.utils.WebviewUtil;
 
 import java.util.Locale;
 
@@ -77,7 +76,7 @@ public class AdActivity extends Activity {
         String activityType = getIntent().
                 getStringExtra(INTENT_KEY_ACTIVITY_TYPE);
         if (StringUtil.isEmpty(activityType)) {
-            Clog.e(Clog.baseLogTag, Clog.getString(R.string.adactivity_no_type));
+            Clog.e(Clog.baseLogTag, R.string.adactivity_no_type);
             finish();
         } else if (ACTIVITY_TYPE_INTERSTITIAL.equals(activityType)) {
             implementation = new InterstitialAdActivity(this);
@@ -98,7 +97,7 @@ public class AdActivity extends Activity {
     @Override
     protected void onPause() {
         if (implementation != null) {
-            WebviewUtil.onPause(implementation.getWebView());
+            AdWebView.pauseWebView(implementation.getWebView());
         }
         CookieSyncManager csm = CookieSyncManager.getInstance();
         if (csm != null) csm.stopSync();
@@ -108,7 +107,7 @@ public class AdActivity extends Activity {
     @Override
     protected void onResume() {
         if (implementation != null) {
-            WebviewUtil.onResume(implementation.getWebView());
+            AdWebView.resumeWebView(implementation.getWebView());
         }
         CookieSyncManager csm = CookieSyncManager.getInstance();
         if (csm != null) csm.startSync();
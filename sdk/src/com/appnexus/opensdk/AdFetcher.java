@@ -21,18 +21,22 @@ import android.os.Handler;
 import android.os.Message;
 
 import com.appnexus.opensdk.utils.Clog;
-import com.appnexus.opensdk.utils.Settings;
+import com.appnexus.opensdk.utils.SDKScheduler;
 
 import java.lang.ref.WeakReference;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ScheduledFuture;
 
 /**
  * AdFetcher class that schedules requests based on auto refresh settings
  */
 class AdFetcher {
-    private ScheduledExecutorService tasker;
+    private static final int MSG_REFRESH = 0;
+    private static final int MSG_PREFETCH = 1;
+    private static final int MSG_REQUEST = 2;
+
+    private ScheduledFuture<?> tasker;
+    private ScheduledFuture<?> prefetchTasker;
+    private BannerPrefetcher prefetcher;
     private int period = -1;
     private final RequestHandler handler;
     private long lastFetchTime = -1;
@@ -65,32 +69,53 @@ class AdFetcher {
         }
     }
 
+    /**
+     * Sets the prefetcher used in auto refresh mode, null turns prefetching off.
+     */
+    void setPrefetcher(BannerPrefetcher prefetcher) {
+        boolean prefetcherChanged = this.prefetcher != prefetcher;
+        // setting the same prefetcher again keeps the ad it holds
+        if (prefetcherChanged && this.prefetcher != null) {
+            this.prefetcher.clear();
+        }
+        this.prefetcher = prefetcher;
+        if (prefetcherChanged && !state.equals(STATE.STOPPED)) {
+            Clog.d(Clog.baseLogTag, "Resetting AdFetcher");
+            stop();
+            start();
+        }
+    }
+
     void stop() {
         if (requestManager != null) {
             requestManager.cancel();
             requestManager = null;
         }
+        if (prefetcher != null) {
+            prefetcher.clear();
+        }
 
         clearTasker();
+        handler.removeCallbacksAndMessages(null);
 
-        Clog.d(Clog.baseLogTag, Clog.getString(R.string.stop));
+        Clog.d(Clog.baseLogTag, R.string.stop);
         timePausedAt = System.currentTimeMillis();
         state = STATE.STOPPED;
     }
 
     void start() {
-        Clog.d(Clog.baseLogTag, Clog.getString(R.string.start));
-        createTasker();
+        Clog.d(Clog.baseLogTag, R.string.start);
         switch (state) {
             case STOPPED:
                 if (this.period <= 0) {
                     Clog.v(Clog.baseLogTag,
-                            Clog.getString(R.string.fetcher_start_single));
+                            R.string.fetcher_start_single);
                     // Request an ad once
-                    tasker.schedule(new MessageRunnable(), 0, TimeUnit.SECONDS);
+                    clearTasker();
+                    tasker = SDKScheduler.schedule(new MessageRunnable(MSG_REFRESH), 0);
                     state = STATE.SINGLE_REQUEST;
                 } else {
-                    Clog.v(Clog.baseLogTag, Clog.getString(R.string.fetcher_start_auto));
+                    Clog.v(Clog.baseLogTag, R.string.fetcher_start_auto);
                     // Start recurring ad requests
                     final int msPeriod = period; // refresh period
                     final long stall; // delay millis for the initial request
@@ -102,19 +127,30 @@ class AdFetcher {
                         stall = 0;
                     }
 
-                    Clog.v(Clog.baseLogTag, Clog.getString(
-                            R.string.request_delayed_by_x_ms, stall));
-                    tasker.scheduleAtFixedRate(new MessageRunnable(), stall,
-                            msPeriod, TimeUnit.MILLISECONDS);
+                    Clog.v(Clog.baseLogTag,
+                            R.string.request_delayed_by_x_ms, stall);
+                    clearTasker();
+                    tasker = SDKScheduler.scheduleAtFixedRate(new MessageRunnable(MSG_REFRESH), stall,
+                            msPeriod);
+                    if (prefetcher != null) {
+                        // request the next ad a lead time before each tick after the first
+                        long lead = prefetcher.getLeadTime(msPeriod);
+                        if (lead > 0) {
+                            long prefetchStall = stall >= lead ? stall - lead : stall + msPeriod - lead;
+                            prefetchTasker = SDKScheduler.scheduleAtFixedRate(new MessageRunnable(MSG_PREFETCH),
+                                    prefetchStall, msPeriod);
+                        }
+                    }
 
                     state = STATE.AUTO_REFRESH;
                 }
                 break;
             case SINGLE_REQUEST:
                 Clog.v(Clog.baseLogTag,
-                        Clog.getString(R.string.fetcher_start_single));
+                        R.string.fetcher_start_single);
                 // Request an ad once
-                tasker.schedule(new MessageRunnable(), 0, TimeUnit.SECONDS);
+                clearTasker();
+                tasker = SDKScheduler.schedule(new MessageRunnable(MSG_REFRESH), 0);
                 break;
             case AUTO_REFRESH:
                 // if auto refresh has already started
@@ -123,26 +159,17 @@ class AdFetcher {
         }
     }
 
-    private void createTasker() {
-        if (tasker == null) {
-            // Start a Scheduler to execute recurring tasks
-            tasker = Executors
-                    .newScheduledThreadPool(Settings.FETCH_THREAD_COUNT);
-        }
-    }
-
     private void clearTasker() {
-        if (tasker == null)
-            return;
-        tasker.shutdownNow();
-        try {
-            tasker.awaitTermination(period, TimeUnit.MILLISECONDS);
-        } catch (InterruptedException e) {
-            // ignored
-        } finally {
-            tasker = null;
-        }
+        // Cancel without waiting, a tick that is already running only posts to the handler
+        SDKScheduler.cancel(tasker);
+        tasker = null;
+        SDKScheduler.cancel(prefetchTasker);
+        prefetchTasker = null;
+    }
 
+    // requests an ad right away, skipping the prefetcher
+    void requestNow() {
+        handler.sendEmptyMessage(MSG_REQUEST);
     }
 
     void clearDurations() {
@@ -151,12 +178,17 @@ class AdFetcher {
     }
 
     private class MessageRunnable implements Runnable {
+        private final int what;
+
+        MessageRunnable(int what) {
+            this.what = what;
+        }
 
         @Override
         public void run() {
             Clog.v(Clog.baseLogTag,
-                    Clog.getString(R.string.handler_message_pass));
-            handler.sendEmptyMessage(0);
+                    R.string.handler_message_pass);
+            handler.sendEmptyMessage(what);
 
         }
 
@@ -183,16 +215,31 @@ class AdFetcher {
                     || !fetcher.owner.isReadyToStart())
                 return;
 
+            if (msg.what == MSG_PREFETCH) {
+                if (fetcher.prefetcher != null) {
+                    fetcher.prefetcher.prefetch();
+                }
+                return;
+            }
+
             // Update last fetch time once
             // For sane logging, don't report negative times
             if (fetcher.lastFetchTime != -1) {
-                Clog.d(Clog.baseLogTag,
-                        Clog.getString(
-                                R.string.new_ad_since,
-                                Math.max(0, (int) (System.currentTimeMillis() - fetcher.lastFetchTime))));
+                Clog.d(Clog.baseLogTag, R.string.new_ad_since,
+                        Math.max(0, (int) (System.currentTimeMillis() - fetcher.lastFetchTime)));
             }
             fetcher.lastFetchTime = System.currentTimeMillis();
 
+            // Swap in the prefetched ad if there is one
+            if (msg.what == MSG_REFRESH && fetcher.prefetcher != null
+                    && fetcher.state == STATE.AUTO_REFRESH) {
+                RequestManager prefetched = fetcher.prefetcher.showPrefetched();
+                if (prefetched != null) {
+                    fetcher.requestManager = prefetched;
+                    return;
+                }
+            }
+
             // Spawn an AdRequest
             switch (fetcher.owner.getMediaType()) {
                 case BANNER:
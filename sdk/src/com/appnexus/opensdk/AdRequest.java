@@ -22,19 +22,21 @@ import android.os.Build;
 
 import com.appnexus.opensdk.utils.AdvertistingIDUtil;
 import com.appnexus.opensdk.utils.Clog;
+import com.appnexus.opensdk.utils.HTTPTransport;
+import com.appnexus.opensdk.utils.RequestHistory;
 import com.appnexus.opensdk.utils.Settings;
 import com.appnexus.opensdk.utils.WebviewUtil;
 
+import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
 import org.apache.http.StatusLine;
 import org.apache.http.client.ClientProtocolException;
+import org.apache.http.client.CookieStore;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.conn.ConnectTimeoutException;
 import org.apache.http.conn.HttpHostConnectException;
-import org.apache.http.impl.client.DefaultHttpClient;
-import org.apache.http.params.BasicHttpParams;
-import org.apache.http.params.HttpConnectionParams;
-import org.apache.http.params.HttpParams;
+import org.apache.http.impl.client.BasicCookieStore;
+import org.apache.http.protocol.HTTP;
 import org.apache.http.util.EntityUtils;
 
 import java.io.IOException;
@@ -43,12 +45,14 @@ import java.lang.ref.WeakReference;
 class AdRequest extends AsyncTask<Void, Integer, ServerResponse> {
 
     private WeakReference<AdRequester> requester; // The instance of AdRequester which is filing this request.
+    private final AdRequestTimeline timeline;
 
     private static final ServerResponse HTTP_ERROR
             = new ServerResponse(true);
 
     public AdRequest(AdRequester adRequester) {
         this.requester = new WeakReference<AdRequester>(adRequester);
+        this.timeline = adRequester.getTimeline();
         RequestParameters params = adRequester.getRequestParams();
         if (params != null) {
             AdvertistingIDUtil.retrieveAndSetAAID(params.getContext());
@@ -70,7 +74,6 @@ class AdRequest extends AsyncTask<Void, Integer, ServerResponse> {
         if (requester != null) {
             requester.failed(code);
         }
-        Clog.clearLastResponse();
     }
 
 
@@ -83,58 +86,75 @@ class AdRequest extends AsyncTask<Void, Integer, ServerResponse> {
             if (parameters != null) {
                 try {
                     String query_string = parameters.getRequestUrl();
+                    mark(AdRequestTimeline.Phase.URL_BUILT);
 
-                    Clog.setLastRequest(query_string);
+                    RequestHistory.Entry history = RequestHistory.recordRequest(query_string);
 
                     Clog.d(Clog.httpReqLogTag,
-                            Clog.getString(R.string.fetch_url, query_string));
-
-                    HttpParams p = new BasicHttpParams();
-                    HttpConnectionParams.setConnectionTimeout(p,
-                            Settings.HTTP_CONNECTION_TIMEOUT);
-                    HttpConnectionParams.setSoTimeout(p,
-                            Settings.HTTP_SOCKET_TIMEOUT);
-                    HttpConnectionParams.setSocketBufferSize(p, 8192);
-                    DefaultHttpClient h = new DefaultHttpClient(p);
+                            R.string.fetch_url, query_string);
 
                     HttpGet req = new HttpGet(query_string);
                     req.setHeader("User-Agent", Settings.getSettings().ua);
-                    HttpResponse r = h.execute(req);
+                    CookieStore cookieStore = new BasicCookieStore();
+                    HttpResponse r = HTTPTransport.execute(req, cookieStore);
+                    mark(AdRequestTimeline.Phase.RESPONSE_HEADERS_RECEIVED);
                     if (!httpShouldContinue(r.getStatusLine())) {
+                        HTTPTransport.release(r);
                         return AdRequest.HTTP_ERROR;
                     }
-                    String out = EntityUtils.toString(r.getEntity());
-                    WebviewUtil.cookieSync(h.getCookieStore().getCookies());
-                    if (out.equals("")) {
+                    WebviewUtil.cookieSync(cookieStore.getCookies());
+                    HttpEntity entity = r.getEntity();
+                    if (entity == null) {
                         // just log and return a valid AdResponse object so that it is
                         // marked as UNABLE_TO_FILL
-                        Clog.e(Clog.httpRespLogTag, Clog.getString(R.string.response_blank));
+                        Clog.e(Clog.httpRespLogTag, R.string.response_blank);
+                        return new ServerResponse("", r.getAllHeaders(), parameters.getMediaType(), history);
+                    }
+                    String charset = EntityUtils.getContentCharSet(entity);
+                    ServerResponse response;
+                    try {
+                        // parse while reading instead of buffering the body as a String
+                        response = new ServerResponse(entity.getContent(),
+                                charset != null ? charset : HTTP.DEFAULT_CONTENT_CHARSET,
+                                r.getAllHeaders(), parameters.getMediaType(), history);
+                    } finally {
+                        // drains whatever the parser did not read and returns the connection
+                        HTTPTransport.release(r);
                     }
-                    return new ServerResponse(out, r.getAllHeaders(), parameters.getMediaType());
+                    mark(AdRequestTimeline.Phase.RESPONSE_PARSED);
+                    response.assembleDocument(parameters.getContext());
+                    mark(AdRequestTimeline.Phase.CREATIVE_ASSEMBLED);
+                    return response;
                 } catch (ClientProtocolException e) {
-                    Clog.e(Clog.httpReqLogTag, Clog.getString(R.string.http_unknown));
+                    Clog.e(Clog.httpReqLogTag, R.string.http_unknown);
                 } catch (ConnectTimeoutException e) {
-                    Clog.e(Clog.httpReqLogTag, Clog.getString(R.string.http_timeout));
+                    Clog.e(Clog.httpReqLogTag, R.string.http_timeout);
                 } catch (HttpHostConnectException he) {
-                    Clog.e(Clog.httpReqLogTag, Clog.getString(
+                    Clog.e(Clog.httpReqLogTag,
                             R.string.http_unreachable, he.getHost().getHostName(), he
-                                    .getHost().getPort()));
+                                    .getHost().getPort());
                 } catch (IOException e) {
-                    Clog.e(Clog.httpReqLogTag, Clog.getString(R.string.http_io));
+                    Clog.e(Clog.httpReqLogTag, R.string.http_io);
                 } catch (SecurityException se) {
                     Clog.e(Clog.httpReqLogTag,
-                            Clog.getString(R.string.permissions_internet));
+                            R.string.permissions_internet);
                 } catch (IllegalArgumentException ie) {
-                    Clog.e(Clog.httpReqLogTag, Clog.getString(R.string.http_unknown));
+                    Clog.e(Clog.httpReqLogTag, R.string.http_unknown);
                 } catch (Exception e) {
                     e.printStackTrace();
-                    Clog.e(Clog.httpReqLogTag, Clog.getString(R.string.unknown_exception));
+                    Clog.e(Clog.httpReqLogTag, R.string.unknown_exception);
                 }
             }
         }
         return null;
     }
 
+    private void mark(AdRequestTimeline.Phase phase) {
+        if (timeline != null) {
+            timeline.mark(phase);
+        }
+    }
+
     private boolean httpShouldContinue(StatusLine statusLine) {
         if (statusLine == null)
             return false;
@@ -143,7 +163,7 @@ class AdRequest extends AsyncTask<Void, Integer, ServerResponse> {
         switch (http_error_code) {
             default:
                 Clog.d(Clog.httpRespLogTag,
-                        Clog.getString(R.string.http_bad_status, http_error_code));
+                        R.string.http_bad_status, http_error_code);
                 return false;
             case 200:
                 return true;
@@ -153,9 +173,10 @@ class AdRequest extends AsyncTask<Void, Integer, ServerResponse> {
 
     @Override
     protected void onPostExecute(ServerResponse result) {
+        mark(AdRequestTimeline.Phase.RESPONSE_DELIVERED);
         // check for invalid responses
         if (result == null) {
-            Clog.v(Clog.httpRespLogTag, Clog.getString(R.string.no_response));
+            Clog.v(Clog.httpRespLogTag, R.string.no_response);
             fail(ResultCode.NETWORK_ERROR);
             return; // http request failed
         }
@@ -170,6 +191,7 @@ class AdRequest extends AsyncTask<Void, Integer, ServerResponse> {
             if (requester.getRequestParams() != null) {
                 result.addToExtras(ServerResponse.EXTRAS_KEY_ORIENTATION, requester.getRequestParams().getOrientation());
             }
+            result.setTimeline(timeline);
             requester.onReceiveServerResponse(result);
         }
     }
@@ -178,6 +200,6 @@ class AdRequest extends AsyncTask<Void, Integer, ServerResponse> {
     @Override
     protected void onCancelled(ServerResponse serverResponse) {
         super.onCancelled(serverResponse);
-        Clog.w(Clog.httpRespLogTag, Clog.getString(R.string.cancel_request));
+        Clog.w(Clog.httpRespLogTag, R.string.cancel_request);
     }
 }
@@ -0,0 +1,186 @@
+/*
+ *    Copyright 2015 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk;
+
+import com.appnexus.opensdk.utils.Clog;
+import com.appnexus.opensdk.utils.ClogListener;
+import com.appnexus.opensdk.utils.SDKMetrics;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * When one ad request reached each of its phases, from the call to the
+ * ad server to the creative's page finishing to load. Times come from a
+ * monotonic clock and are reported in milliseconds since the request
+ * started. Phases that are reached more than once, for instance the
+ * adapter of each mediated network in the waterfall, keep the latest time.
+ */
+public class AdRequestTimeline {
+    /**
+     * The phases of an ad request, in the order they are normally reached.
+     */
+    public enum Phase {
+        /**
+         * The request url, with all targeting parameters, was built.
+         */
+        URL_BUILT("t_url"),
+        /**
+         * The ad server's response headers arrived. Includes looking up the
+         * host, connecting if no pooled connection was available, and the
+         * server's time to the first byte.
+         */
+        RESPONSE_HEADERS_RECEIVED("t_headers"),
+        /**
+         * The response body was downloaded and parsed. The body is parsed
+         * while it is read, so the two are one phase.
+         */
+        RESPONSE_PARSED("t_parsed"),
+        /**
+         * The creative was wrapped into the document the webview loads.
+         */
+        CREATIVE_ASSEMBLED("t_assembled"),
+        /**
+         * The response reached the main thread.
+         */
+        RESPONSE_DELIVERED("t_delivered"),
+        /**
+         * The adapter of a mediated network was instantiated.
+         */
+        MEDIATED_ADAPTER_INSTANTIATED("t_adapter"),
+        /**
+         * A mediated network loaded its ad.
+         */
+        MEDIATED_AD_LOADED("t_mediated"),
+        /**
+         * The creative started loading in the ad webview.
+         */
+        RENDER_STARTED("t_render"),
+        /**
+         * The creative's page finished loading.
+         */
+        PAGE_FINISHED("t_page");
+
+        private final String param;
+
+        Phase(String param) {
+            this.param = param;
+        }
+    }
+
+    private static final long NOT_REACHED = -1;
+
+    static AdRequestTimelineListener listener;
+    static boolean reportToServer = false;
+
+    private final MediaType mediaType;
+    private final long start = System.nanoTime();
+    private final AtomicLongArray marks = new AtomicLongArray(Phase.values().length);
+    private final AtomicBoolean finished = new AtomicBoolean(false);
+    private volatile ResultCode result = null;
+
+    AdRequestTimeline(MediaType mediaType) {
+        this.mediaType = mediaType;
+        for (int i = 0; i < marks.length(); i++) {
+            marks.set(i, NOT_REACHED);
+        }
+    }
+
+    /**
+     * @return the type of ad requested, may be null
+     */
+    public MediaType getMediaType() {
+        return mediaType;
+    }
+
+    /**
+     * @return how the request ended, or null if it has not yet
+     */
+    public ResultCode getResult() {
+        return result;
+    }
+
+    /**
+     * @return the milliseconds from the start of the request to the phase,
+     * or -1 if the phase was not reached
+     */
+    public long getElapsedMillis(Phase phase) {
+        long mark = marks.get(phase.ordinal());
+        return mark == NOT_REACHED ? NOT_REACHED : (mark - start) / 1000000;
+    }
+
+    void mark(Phase phase) {
+        marks.set(phase.ordinal(), System.nanoTime());
+    }
+
+    /**
+     * Ends the timeline and hands it to the listener, once.
+     */
+    void finish(ResultCode result) {
+        if (!finished.compareAndSet(false, true)) {
+            return;
+        }
+        this.result = result;
+        record();
+        if (Clog.isLoggable(Clog.baseLogTag, ClogListener.LOG_LEVEL.D)) {
+            Clog.d(Clog.baseLogTag, toString());
+        }
+        if (listener != null) {
+            listener.onAdRequestCompleted(this);
+        }
+    }
+
+    private void record() {
+        SDKMetrics.AD_REQUEST_LATENCY.record((System.nanoTime() - start) / 1000000);
+        // -1 if the response never arrived, which the histogram ignores
+        SDKMetrics.AD_RESPONSE_LATENCY.record(getElapsedMillis(Phase.RESPONSE_DELIVERED));
+        long renderStarted = getElapsedMillis(Phase.RENDER_STARTED);
+        long pageFinished = getElapsedMillis(Phase.PAGE_FINISHED);
+        if (renderStarted != NOT_REACHED && pageFinished != NOT_REACHED) {
+            SDKMetrics.RENDER_LATENCY.record(pageFinished - renderStarted);
+        }
+    }
+
+    /**
+     * Adds the phases reached so far to a result_cb url, if enabled with
+     * {@link SDKSettings#setReportAdRequestTimeline(boolean)}.
+     */
+    void appendQueryParameters(StringBuilder url) {
+        if (!reportToServer) {
+            return;
+        }
+        for (Phase phase : Phase.values()) {
+            long elapsed = getElapsedMillis(phase);
+            if (elapsed != NOT_REACHED) {
+                url.append('&').append(phase.param).append('=').append(elapsed);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("Ad request timeline (")
+                .append(mediaType).append(", ").append(result).append("):");
+        for (Phase phase : Phase.values()) {
+            long elapsed = getElapsedMillis(phase);
+            if (elapsed != NOT_REACHED) {
+                sb.append(' ').append(phase).append('=').append(elapsed).append("ms");
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ *    Copyright 2015 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk;
+
+/**
+ * Receives the timeline of each ad request once it completes, to find out
+ * which phase makes slow fills slow. Register an implementation with
+ * {@link SDKSettings#setAdRequestTimelineListener(AdRequestTimelineListener)}.
+ * Callbacks are made on the main thread.
+ */
+public interface AdRequestTimelineListener {
+    /**
+     * Called when an ad request failed, when a mediated ad loaded, or when
+     * a standard ad finished rendering.
+     *
+     * @param timeline when the request reached each phase
+     */
+    public void onAdRequestCompleted(AdRequestTimeline timeline);
+}
@@ -46,6 +46,11 @@ interface AdRequester {
      */
     public long getLatency(long now);
 
+    /**
+     * @return the timeline of the request being made, may be null
+     */
+    public AdRequestTimeline getTimeline();
+
     /**
      * Cancels the request, both to AppNexus server and to mediated networks
      */
@@ -34,13 +34,14 @@ import android.util.Pair;
 import android.view.Gravity;
 import android.view.View;
 import android.view.ViewGroup;
-import android.webkit.WebView;
 import android.widget.FrameLayout;
 import android.widget.ImageButton;
 
 import com.appnexus.opensdk.utils.AdvertistingIDUtil;
 import com.appnexus.opensdk.utils.Clog;
+import com.appnexus.opensdk.utils.SDKMetrics;
 import com.appnexus.opensdk.utils.Settings;
+import com.appnexus.opensdk.utils.UserAgentUtil;
 import com.appnexus.opensdk.utils.ViewUtil;
 
 import java.util.ArrayList;
@@ -97,36 +98,36 @@ public abstract class AdView extends FrameLayout implements Ad {
         // Store self.context in the settings for errors
         Clog.setErrorContext(this.getContext());
 
-        Clog.d(Clog.publicFunctionsLogTag, Clog.getString(R.string.new_adview));
+        Clog.d(Clog.publicFunctionsLogTag, R.string.new_adview);
 
         SharedPreferences prefs = PreferenceManager
                 .getDefaultSharedPreferences(context);
         if (prefs.getBoolean("opensdk_first_launch", true)) {
             // This is the first launch, store a value to remember
             Clog.v(Clog.baseLogTag,
-                    Clog.getString(R.string.first_opensdk_launch));
+                    R.string.first_opensdk_launch);
             Settings.getSettings().first_launch = true;
             prefs.edit().putBoolean("opensdk_first_launch", false).commit();
         } else {
             // Found the stored value, this is NOT the first launch
             Clog.v(Clog.baseLogTag,
-                    Clog.getString(R.string.not_first_opensdk_launch));
+                    R.string.not_first_opensdk_launch);
             Settings.getSettings().first_launch = false;
         }
 
-        // Store the UA in the settings
-        Settings.getSettings().ua = new WebView(context).getSettings()
-                .getUserAgentString();
-        Clog.v(Clog.baseLogTag,
-                Clog.getString(R.string.ua, Settings.getSettings().ua));
+        // Store the UA in the settings, computed once per process
+        UserAgentUtil.retrieveAndSetUserAgent(context);
+
+        // Create webviews for the ads while the app is idle
+        AdWebViewPool.warmUp(context);
 
         // Store the AppID in the settings
         Settings.getSettings().app_id = context.getApplicationContext()
                 .getPackageName();
         Clog.v(Clog.baseLogTag,
-                Clog.getString(R.string.appid, Settings.getSettings().app_id));
+                R.string.appid, Settings.getSettings().app_id);
 
-        Clog.v(Clog.baseLogTag, Clog.getString(R.string.making_adman));
+        Clog.v(Clog.baseLogTag, R.string.making_adman);
 
         // Some AdMob creatives won't load unless we set their parent's viewgroup's padding to 0-0-0-0
         setPadding(0, 0, 0, 0);
@@ -156,7 +157,7 @@ public abstract class AdView extends FrameLayout implements Ad {
     @Override
     public boolean isReadyToStart() {
         if (isMRAIDExpanded()) {
-            Clog.e(Clog.baseLogTag, Clog.getString(R.string.already_expanded));
+            Clog.e(Clog.baseLogTag, R.string.already_expanded);
             return false;
         }
         return requestParameters.isReadyForRequest();
@@ -209,7 +210,7 @@ public abstract class AdView extends FrameLayout implements Ad {
     protected void loadAdFromHtml(String html, int width, int height) {
         // load an ad directly from html
         loadedOffscreen = true;
-        AdWebView output = new AdWebView(this);
+        AdWebView output = AdWebViewPool.obtain(this);
         ServerResponse response = new ServerResponse(html, width, height);
         output.loadAd(response);
         display(output);
@@ -224,6 +225,10 @@ public abstract class AdView extends FrameLayout implements Ad {
 
     protected abstract void display(Displayable d);
 
+    // called on the main thread before the AdListener is told that a request failed
+    void adRequestFailed(ResultCode code) {
+    }
+
     protected abstract void displayMediated(MediatedDisplayable d);
 
     void unhide() {
@@ -244,7 +249,7 @@ public abstract class AdView extends FrameLayout implements Ad {
      */
     public String getPlacementID() {
         Clog.d(Clog.publicFunctionsLogTag,
-                Clog.getString(R.string.get_placement_id, requestParameters.getPlacementID()));
+                R.string.get_placement_id, requestParameters.getPlacementID());
         return requestParameters.getPlacementID();
     }
 
@@ -258,7 +263,7 @@ public abstract class AdView extends FrameLayout implements Ad {
      */
     public void setPlacementID(String placementID) {
         Clog.d(Clog.publicFunctionsLogTag,
-                Clog.getString(R.string.set_placement_id, placementID));
+                R.string.set_placement_id, placementID);
         requestParameters.setPlacementID(placementID);
     }
 
@@ -409,7 +414,7 @@ public abstract class AdView extends FrameLayout implements Ad {
                     AdActivity.ACTIVITY_TYPE_MRAID);
             getContext().startActivity(i);
         } catch (ActivityNotFoundException e) {
-            Clog.e(Clog.baseLogTag, Clog.getString(R.string.adactivity_missing, activity_clz.getName()));
+            Clog.e(Clog.baseLogTag, R.string.adactivity_missing, activity_clz.getName());
             mraidFullscreenContainer = null;
             mraidFullscreenImplementation = null;
             mraidFullscreenListener = null;
@@ -481,7 +486,7 @@ public abstract class AdView extends FrameLayout implements Ad {
                 Activity a = null;
                 boolean useScreenSizeForAddedAccuracy = true;
                 try {
-                    a = (Activity) caller.owner.getContext();
+                    a = (Activity) caller.owner.getActivityContext();
                 } catch (ClassCastException e) {
                     useScreenSizeForAddedAccuracy = false;
                 }
@@ -605,7 +610,7 @@ public abstract class AdView extends FrameLayout implements Ad {
      */
     public void setAdListener(AdListener listener) {
         Clog.d(Clog.publicFunctionsLogTag,
-                Clog.getString(R.string.set_ad_listener));
+                R.string.set_ad_listener);
         adListener = listener;
     }
 
@@ -616,7 +621,7 @@ public abstract class AdView extends FrameLayout implements Ad {
      */
     public AdListener getAdListener() {
         Clog.d(Clog.publicFunctionsLogTag,
-                Clog.getString(R.string.get_ad_listener));
+                R.string.get_ad_listener);
         return adListener;
     }
 
@@ -648,8 +653,8 @@ public abstract class AdView extends FrameLayout implements Ad {
      * @return true if the device's native browser will be used; false otherwise.
      */
     public boolean getOpensNativeBrowser() {
-        Clog.d(Clog.publicFunctionsLogTag, Clog.getString(
-                R.string.get_opens_native_browser, requestParameters.getOpensNativeBrowser()));
+        Clog.d(Clog.publicFunctionsLogTag,
+                R.string.get_opens_native_browser, requestParameters.getOpensNativeBrowser());
         return requestParameters.getOpensNativeBrowser();
     }
 
@@ -665,8 +670,8 @@ public abstract class AdView extends FrameLayout implements Ad {
      *                           landing pages.
      */
     public void setOpensNativeBrowser(boolean opensNativeBrowser) {
-        Clog.d(Clog.publicFunctionsLogTag, Clog.getString(
-                R.string.set_opens_native_browser, opensNativeBrowser));
+        Clog.d(Clog.publicFunctionsLogTag,
+                R.string.set_opens_native_browser, opensNativeBrowser);
         requestParameters.setOpensNativeBrowser(opensNativeBrowser);
     }
 
@@ -934,6 +939,7 @@ public abstract class AdView extends FrameLayout implements Ad {
         @Override
         public void onAdLoaded(final AdResponse ad) {
             if (ad.getMediaType().equals(MediaType.BANNER) || ad.getMediaType().equals(MediaType.INTERSTITIAL)) {
+                SDKMetrics.getResultCounter(ResultCode.SUCCESS).increment();
                 handler.post(new Runnable() {
                     @Override
                     public void run() {
@@ -960,9 +966,11 @@ public abstract class AdView extends FrameLayout implements Ad {
 
         @Override
         public void onAdFailed(final ResultCode code) {
+            SDKMetrics.getResultCounter(code).increment();
             handler.post(new Runnable() {
                 @Override
                 public void run() {
+                    adRequestFailed(code);
                     if (adListener != null)
                         adListener.onAdRequestFailed(AdView.this, code);
                 }
@@ -25,12 +25,19 @@ import java.lang.ref.WeakReference;
 class AdViewRequestManager extends RequestManager {
     private final WeakReference<AdView> owner;
     private MediatedAdViewController controller;
+    private BannerPrefetcher prefetcher;
 
     AdViewRequestManager(AdView owner) {
         super();
         this.owner = new WeakReference<AdView>(owner);
     }
 
+    // the response is handed to the prefetcher instead of being displayed
+    AdViewRequestManager(BannerAdView owner, BannerPrefetcher prefetcher) {
+        this(owner);
+        this.prefetcher = prefetcher;
+    }
+
     @Override
     public void cancel() {
         if (adRequest != null) {
@@ -58,6 +65,12 @@ class AdViewRequestManager extends RequestManager {
     @Override
     public void failed(ResultCode code) {
         printMediatedClasses();
+        finishTimeline(code);
+        if (prefetcher != null) {
+            // the refresh tick decides what to do, the listener is not told about prefetch failures
+            prefetcher.onPrefetchFailed(this);
+            return;
+        }
         AdView owner = this.owner.get();
         if (owner != null) {
             owner.getAdDispatcher().onAdFailed(code);
@@ -72,101 +85,136 @@ class AdViewRequestManager extends RequestManager {
                     new Runnable() {
                         @Override
                         public void run() {
-                            boolean responseHasAds = (response != null) && response.containsAds();
-                            boolean ownerHasAds = (getMediatedAds() != null) && !getMediatedAds().isEmpty();
-
-                            // no ads in the response and no old ads means no fill
-                            if (!responseHasAds && !ownerHasAds) {
-                                Clog.w(Clog.httpRespLogTag, Clog.getString(R.string.response_no_ads));
-                                owner.getAdDispatcher().onAdFailed(ResultCode.UNABLE_TO_FILL);
+                            if (prefetcher != null) {
+                                prefetcher.onPrefetchResponse(AdViewRequestManager.this, response);
                                 return;
                             }
-
-                            // If we're about to dispatch a creative to a banner
-                            // that has been resized by ad stretching, reset its size
-                            if (owner.getMediaType().equals(MediaType.BANNER)) {
-                                BannerAdView bav = (BannerAdView) owner;
-                                bav.resetContainerIfNeeded();
-                            }
-
-                            if (responseHasAds) {
-                                // if non-mediated ad is overriding the list,
-                                // this will be null and skip the loop for mediation
-                                setMediatedAds(response.getMediatedAds());
-                            }
-
-                            // create output - either mediated or AdWebView
-
-                            // check if most recent `mediatedAds` is non-empty
-                            if ((getMediatedAds() != null) && !getMediatedAds().isEmpty()) {
-                                MediatedAd mediatedAd = popMediatedAd();
-                                if ((mediatedAd != null) && (response != null)) {
-                                    mediatedAd.setExtras(response.getExtras());
-                                }
-                                // mediated
-                                if (owner.getMediaType().equals(MediaType.BANNER)) {
-                                    controller = MediatedBannerAdViewController.create(
-                                            (Activity) owner.getContext(),
-                                            AdViewRequestManager.this,
-                                            mediatedAd,
-                                            owner.getAdDispatcher());
-                                } else if (owner.getMediaType().equals(MediaType.INTERSTITIAL)) {
-                                    controller = MediatedInterstitialAdViewController.create(
-                                            (Activity) owner.getContext(),
-                                            AdViewRequestManager.this,
-                                            mediatedAd,
-                                            owner.getAdDispatcher());
-                                } else {
-                                    Clog.e(Clog.baseLogTag, "Request type can not be identified.");
-                                    owner.getAdDispatcher().onAdFailed(ResultCode.INVALID_REQUEST);
-                                }
-                            } else if (response != null) { // null-check response in case
-                                // standard ads
-                                final AdWebView output = new AdWebView(owner);
-                                output.loadAd(response);
-
-                                if (owner.getMediaType().equals(MediaType.BANNER)) {
-                                    BannerAdView bav = (BannerAdView) owner;
-                                    if (bav.getExpandsToFitScreenWidth()) {
-                                        bav.expandToFitScreenWidth(response.getWidth(), response.getHeight(), output);
-                                    }
-                                }
-                                onReceiveAd(new AdResponse() {
-                                    @Override
-                                    public MediaType getMediaType() {
-                                        return owner.getMediaType();
-                                    }
-
-                                    @Override
-                                    public boolean isMediated() {
-                                        return false;
-                                    }
-
-                                    @Override
-                                    public Displayable getDisplayable() {
-                                        return output;
-                                    }
-
-                                    @Override
-                                    public NativeAdResponse getNativeAdResponse() {
-                                        return null;
-                                    }
-
-                                    @Override
-                                    public void destroy() {
-                                        output.destroy();
-                                    }
-                                });
-                            }
+                            handleServerResponse(owner, response, null);
                         }
                     }
             );
         }
     }
 
+    /**
+     * Displays a response that was prefetched earlier.
+     *
+     * @param prerendered the AdWebView the response was already loaded in, null for mediated responses
+     */
+    void showPrefetched(ServerResponse response, AdWebView prerendered) {
+        prefetcher = null;
+        AdView owner = this.owner.get();
+        if (owner == null) {
+            if (prerendered != null) {
+                prerendered.destroy();
+            }
+            return;
+        }
+        handleServerResponse(owner, response, prerendered);
+    }
+
+    private void handleServerResponse(final AdView owner, final ServerResponse response, AdWebView prerendered) {
+        boolean responseHasAds = (response != null) && response.containsAds();
+        boolean ownerHasAds = (getMediatedAds() != null) && !getMediatedAds().isEmpty();
+
+        // no ads in the response and no old ads means no fill
+        if (!responseHasAds && !ownerHasAds) {
+            Clog.w(Clog.httpRespLogTag, R.string.response_no_ads);
+            finishTimeline(ResultCode.UNABLE_TO_FILL);
+            owner.getAdDispatcher().onAdFailed(ResultCode.UNABLE_TO_FILL);
+            return;
+        }
+
+        // If we're about to dispatch a creative to a banner
+        // that has been resized by ad stretching, reset its size
+        if (owner.getMediaType().equals(MediaType.BANNER)) {
+            BannerAdView bav = (BannerAdView) owner;
+            bav.resetContainerIfNeeded();
+        }
+
+        if (responseHasAds) {
+            // if non-mediated ad is overriding the list,
+            // this will be null and skip the loop for mediation
+            setMediatedAds(response.getMediatedAds());
+        }
+
+        // create output - either mediated or AdWebView
+
+        // check if most recent `mediatedAds` is non-empty
+        if ((getMediatedAds() != null) && !getMediatedAds().isEmpty()) {
+            MediatedAd mediatedAd = popMediatedAd();
+            if ((mediatedAd != null) && (response != null)) {
+                mediatedAd.setExtras(response.getExtras());
+            }
+            // mediated
+            if (owner.getMediaType().equals(MediaType.BANNER)) {
+                controller = MediatedBannerAdViewController.create(
+                        (Activity) owner.getContext(),
+                        AdViewRequestManager.this,
+                        mediatedAd,
+                        owner.getAdDispatcher());
+            } else if (owner.getMediaType().equals(MediaType.INTERSTITIAL)) {
+                controller = MediatedInterstitialAdViewController.create(
+                        (Activity) owner.getContext(),
+                        AdViewRequestManager.this,
+                        mediatedAd,
+                        owner.getAdDispatcher());
+            } else {
+                Clog.e(Clog.baseLogTag, "Request type can not be identified.");
+                owner.getAdDispatcher().onAdFailed(ResultCode.INVALID_REQUEST);
+            }
+        } else if (response != null) { // null-check response in case
+            // standard ads
+            final AdWebView output;
+            if (prerendered != null) {
+                output = prerendered;
+            } else {
+                output = AdWebViewPool.obtain(owner);
+                output.loadAd(response);
+            }
+
+            if (owner.getMediaType().equals(MediaType.BANNER)) {
+                BannerAdView bav = (BannerAdView) owner;
+                if (bav.getExpandsToFitScreenWidth()) {
+                    bav.expandToFitScreenWidth(response.getWidth(), response.getHeight(), output);
+                }
+            }
+            onReceiveAd(new AdResponse() {
+                @Override
+                public MediaType getMediaType() {
+                    return owner.getMediaType();
+                }
+
+                @Override
+                public boolean isMediated() {
+                    return false;
+                }
+
+                @Override
+                public Displayable getDisplayable() {
+                    return output;
+                }
+
+                @Override
+                public NativeAdResponse getNativeAdResponse() {
+                    return null;
+                }
+
+                @Override
+                public void destroy() {
+                    output.destroy();
+                }
+            });
+        }
+    }
+
     @Override
     public void onReceiveAd(AdResponse ad) {
         printMediatedClasses();
+        if (ad.isMediated()) {
+            // standard ads finish the timeline when their page finishes loading
+            finishTimeline(ResultCode.SUCCESS);
+        }
         if (controller != null) {
             // do not hold a reference of current mediated ad controller after ad is loaded
             controller = null;
@@ -17,27 +17,31 @@
 package com.appnexus.opensdk;
 
 import android.annotation.SuppressLint;
+import android.annotation.TargetApi;
 import android.app.Activity;
 import android.app.ProgressDialog;
 import android.content.ActivityNotFoundException;
 import android.content.Context;
 import android.content.DialogInterface;
 import android.content.Intent;
+import android.content.MutableContextWrapper;
 import android.content.res.Configuration;
-import android.content.res.Resources;
 import android.graphics.Color;
 import android.net.Uri;
 import android.net.http.SslError;
 import android.os.Build;
 import android.os.Handler;
+import android.os.SystemClock;
 import android.util.DisplayMetrics;
 import android.util.Pair;
 import android.view.Gravity;
 import android.view.MotionEvent;
 import android.view.View;
 import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
 import android.view.WindowManager;
 import android.webkit.SslErrorHandler;
+import android.webkit.WebResourceResponse;
 import android.webkit.WebView;
 import android.webkit.WebViewClient;
 import android.widget.FrameLayout;
@@ -47,6 +51,8 @@ import com.appnexus.opensdk.AdView.BrowserStyle;
 import com.appnexus.opensdk.utils.Clog;
 import com.appnexus.opensdk.utils.HTTPGet;
 import com.appnexus.opensdk.utils.HTTPResponse;
+import com.appnexus.opensdk.utils.MetricGauge;
+import com.appnexus.opensdk.utils.SDKMetrics;
 import com.appnexus.opensdk.utils.Settings;
 import com.appnexus.opensdk.utils.StringUtil;
 import com.appnexus.opensdk.utils.ViewUtil;
@@ -55,6 +61,7 @@ import com.appnexus.opensdk.utils.WebviewUtil;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @SuppressLint("ViewConstructor")
 class AdWebView extends WebView implements Displayable {
@@ -74,16 +81,47 @@ class AdWebView extends WebView implements Displayable {
     private boolean isOnscreen = false;
     private boolean isVisible = false;
     private Handler handler = new Handler();
-    private boolean viewableCheckPaused = false;
+    private boolean trackingGeometry = false;
+    private boolean geometryCheckScheduled = false;
+    private long lastGeometryCheck = -Settings.WEBVIEW_POSITION_CHECK_INTERVAL;
+    // left, top, width and height on screen, and orientation, last sent to MRAID
+    private final int[] geometry = new int[5];
+    // paused by the SDK while out of sight
+    private boolean pausedOutOfSight = false;
+    // paused because the app or the window showing the ad went away
+    private boolean pausedByHost = false;
+    private boolean pauseScheduled = false;
+    private long pausedAt;
+    static AdWebViewPauseListener pauseListener;
+    private static long totalPausedTime = 0;
+    // ad webviews created and not yet destroyed
+    private static final AtomicInteger liveWebViews = new AtomicInteger();
+
+    static {
+        SDKMetrics.LIVE_AD_WEBVIEWS.setSource(new MetricGauge.Source() {
+            @Override
+            public long get() {
+                return liveWebViews.get();
+            }
+        });
+    }
     private int orientation;
     private ProgressDialog progressDialog;
     protected String initialMraidStateString;
 
     // touch detection
     private boolean userInteracted = false;
+    // for the page finished latency in the debug log
+    private long loadStartTime = -1;
+    // the timeline of the request that brought the creative, finished with the page
+    private AdRequestTimeline timeline;
+    private boolean destroyed = false;
+    // the SDK scripts injected into the creative
+    private int injectedScripts = SDKScriptCache.ALL;
 
     public AdWebView(AdView adView) {
         super(adView.getContext());
+        liveWebViews.incrementAndGet();
         this.adView = adView;
         this.initialMraidStateString = MRAIDImplementation.MRAID_INIT_STATE_STRINGS[
                 MRAIDImplementation.MRAID_INIT_STATE.STARTING_DEFAULT.ordinal()];
@@ -91,10 +129,42 @@ class AdWebView extends WebView implements Displayable {
         setup();
     }
 
+    /**
+     * Creates a webview for {@link AdWebViewPool}, configured but not yet
+     * tied to an ad view. {@link #attach(AdView)} must be called before an
+     * ad is loaded into it.
+     */
+    AdWebView(MutableContextWrapper context) {
+        super(context);
+        liveWebViews.incrementAndGet();
+        this.initialMraidStateString = MRAIDImplementation.MRAID_INIT_STATE_STRINGS[
+                MRAIDImplementation.MRAID_INIT_STATE.STARTING_DEFAULT.ordinal()];
+        setupSettings();
+    }
+
+    /**
+     * Hands a pooled webview to an ad view, switching it to the ad view's context.
+     */
+    void attach(AdView adView) {
+        this.adView = adView;
+        ((MutableContextWrapper) getContext()).setBaseContext(adView.getContext());
+        setup();
+    }
+
+    /**
+     * @return the context of the ad view, which pooled webviews only hold through a wrapper
+     */
+    Context getActivityContext() {
+        Context context = getContext();
+        if (context instanceof MutableContextWrapper) {
+            return ((MutableContextWrapper) context).getBaseContext();
+        }
+        return context;
+    }
+
     @SuppressWarnings("deprecation")
     @SuppressLint("SetJavaScriptEnabled")
     protected void setupSettings() {
-        Settings.getSettings().ua = this.getSettings().getUserAgentString();
         this.getSettings().setJavaScriptEnabled(true);
         this.getSettings().setJavaScriptCanOpenWindowsAutomatically(true);
         this.getSettings().setBuiltInZoomControls(false);
@@ -127,6 +197,7 @@ class AdWebView extends WebView implements Displayable {
         if(ad==null){
             return;
         }
+        long start = SystemClock.uptimeMillis();
         String html = ad.getContent();
         // set creative size
         setCreativeHeight(ad.getHeight());
@@ -137,12 +208,17 @@ class AdWebView extends WebView implements Displayable {
             return;
         }
 
-        Clog.v(Clog.baseLogTag, Clog.getString(R.string.webview_loading, html));
+        Clog.v(Clog.baseLogTag, R.string.webview_loading, html);
 
         parseAdResponseExtras(ad.getExtras());
 
-        html = preLoadContent(html);
-        html = prependRawResources(html);
+        // normally assembled on the request's background thread
+        CreativeDocument document = ad.getDocument();
+        if (document == null) {
+            document = CreativeDocument.assemble(getResources(), html,
+                    SDKScriptCache.planScripts(html, isMRAIDEnabled));
+        }
+        injectedScripts = document.getScripts();
 
         final float scale = adView.getContext().getResources()
                 .getDisplayMetrics().density;
@@ -152,39 +228,15 @@ class AdWebView extends WebView implements Displayable {
                 Gravity.CENTER);
         this.setLayoutParams(resize);
 
-        this.loadDataWithBaseURL(Settings.BASE_URL, html, "text/html", "UTF-8", null);
-    }
-
-    // The webview about to load the ad, and the html ad content
-    private String preLoadContent(String html) {
-        // Check to ensure <html> tags are present
-        if (!html.contains("<html>")) {
-            StringBuilder bodyBuilder = new StringBuilder();
-            html = bodyBuilder.append("<html><head></head><body style='padding:0;margin:0;'>").append(html).append("</body></html>").toString();
-        } else if (!html.contains("<head>")) {
-            // The <html> tags are present, but there is no <head> section to
-            // inject the mraid js
-            html = html.replace("<html>", "<html><head></head>");
+        timeline = ad.getTimeline();
+        if (timeline != null) {
+            timeline.mark(AdRequestTimeline.Phase.RENDER_STARTED);
         }
-        return html;
-    }
-
-    private String prependRawResources(String html) {
-        Resources res = getResources();
-        StringBuilder htmlSB = new StringBuilder("<head><script>");
-
-        // retrieve source from raw resources
-        // insert sdkjs, anjam, mraid into html content, in that order
-        if (res == null
-                || !StringUtil.appendRes(htmlSB, res, R.raw.sdkjs)
-                || !StringUtil.appendRes(htmlSB, res, R.raw.anjam)
-                || !StringUtil.appendRes(htmlSB, res, R.raw.mraid)) {
-            Clog.e(Clog.baseLogTag, "Error reading SDK's raw resources.");
-            return html;
-        }
-        htmlSB.append("</script>");
-
-        return html.replace("<head>", htmlSB.toString());
+        loadStartTime = SystemClock.uptimeMillis();
+        this.loadDataWithBaseURL(Settings.BASE_URL, document.getHtml(), "text/html", "UTF-8", null);
+        Clog.d(Clog.baseLogTag, R.string.creative_prepared, SystemClock.uptimeMillis() - start);
+        // e.g. an interstitial waiting in the queue, paused unless it is shown soon
+        updatePauseState();
     }
 
     private void parseAdResponseExtras(HashMap extras) {
@@ -209,8 +261,9 @@ class AdWebView extends WebView implements Displayable {
             @Override
             protected void onPostExecute(HTTPResponse response) {
                 if(response.getSucceeded()){
-                    String html = preLoadContent(response.getResponseBody());
-                    html = prependRawResources(html);
+                    CreativeDocument document = CreativeDocument.assemble(getResources(),
+                            response.getResponseBody(), SDKScriptCache.ALL);
+                    injectedScripts = document.getScripts();
                     String baseString;
                     try {
                         baseString = new URL(url).getHost();
@@ -218,7 +271,8 @@ class AdWebView extends WebView implements Displayable {
                         baseString=null;
                     }
 
-                    loadDataWithBaseURL(baseString, html, "text/html", "UTF-8", null);
+                    loadStartTime = SystemClock.uptimeMillis();
+                    loadDataWithBaseURL(baseString, document.getHtml(), "text/html", "UTF-8", null);
 
                     fireMRAIDEnabled();
                 }
@@ -282,11 +336,33 @@ class AdWebView extends WebView implements Displayable {
             return true;
         }
 
+        @TargetApi(Build.VERSION_CODES.HONEYCOMB)
+        @Override
+        public WebResourceResponse shouldInterceptRequest(WebView view, String url) {
+            WebResourceResponse response = SDKScriptCache.getResponse(getResources(), url);
+            if (response != null) {
+                return response;
+            }
+            return super.shouldInterceptRequest(view, url);
+        }
+
         @Override
         public void onPageFinished(WebView view, String url) {
             super.onPageFinished(view, url);
             if (!firstPageFinished) {
-                view.loadUrl("javascript:window.mraid.util.pageFinished()");
+                if (loadStartTime > 0) {
+                    Clog.d(Clog.baseLogTag, R.string.creative_page_finished,
+                            SystemClock.uptimeMillis() - loadStartTime);
+                }
+                if (timeline != null) {
+                    timeline.mark(AdRequestTimeline.Phase.PAGE_FINISHED);
+                    timeline.finish(ResultCode.SUCCESS);
+                    timeline = null;
+                }
+                // creatives without mraid.js have nothing to tell
+                if ((injectedScripts & SDKScriptCache.MRAID) != 0) {
+                    implementation.bridge.fireEvent("pageFinished()");
+                }
                 if (isMRAIDEnabled) {
                     implementation.webViewFinishedLoading(AdWebView.this, initialMraidStateString);
                     startCheckViewable();
@@ -333,8 +409,8 @@ class AdWebView extends WebView implements Displayable {
         @Override
         public void onReceivedError(WebView view, int errorCode,
                                     String description, String failingURL) {
-            Clog.w(Clog.httpRespLogTag, Clog.getString(
-                    R.string.webview_received_error, errorCode, description, failingURL));
+            Clog.w(Clog.httpRespLogTag,
+                    R.string.webview_received_error, errorCode, description, failingURL);
         }
 
         @Override
@@ -342,8 +418,8 @@ class AdWebView extends WebView implements Displayable {
                                        SslErrorHandler handler, SslError error) {
             AdWebView.this.fail();
             Clog.w(Clog.httpRespLogTag,
-                    Clog.getString(R.string.webclient_error,
-                            error.getPrimaryError(), error.toString()));
+                    R.string.webclient_error,
+                            error.getPrimaryError(), error.toString());
         }
     }
 
@@ -363,7 +439,7 @@ class AdWebView extends WebView implements Displayable {
             return true;
         } catch (ActivityNotFoundException e) {
             Clog.w(Clog.baseLogTag,
-                    Clog.getString(R.string.opening_url_failed, url));
+                    R.string.opening_url_failed, url);
             if (isMRAIDEnabled) {
                 Toast.makeText(adView.getContext(),
                         R.string.action_cant_be_completed,
@@ -376,7 +452,7 @@ class AdWebView extends WebView implements Displayable {
     // returns success or failure
     private boolean checkForApp(String url) {
         if (url.contains("://play.google.com") || (!url.startsWith("http") && !url.startsWith("about:blank"))) {
-            Clog.i(Clog.baseLogTag, Clog.getString(R.string.opening_app_store));
+            Clog.i(Clog.baseLogTag, R.string.opening_app_store);
             return openNativeIntent(url);
         }
 
@@ -402,7 +478,7 @@ class AdWebView extends WebView implements Displayable {
         try {
             adView.getContext().startActivity(intent);
         } catch (ActivityNotFoundException e) {
-            Clog.w(Clog.baseLogTag, Clog.getString(R.string.adactivity_missing, activity_clz.getName()));
+            Clog.w(Clog.baseLogTag, R.string.adactivity_missing, activity_clz.getName());
             BrowserAdActivity.BROWSER_QUEUE.remove();
         }
     }
@@ -411,7 +487,7 @@ class AdWebView extends WebView implements Displayable {
     void loadURLInCorrectBrowser(String url) {
         if (!adView.getOpensNativeBrowser()) {
 
-            Clog.d(Clog.baseLogTag, Clog.getString(R.string.opening_inapp));
+            Clog.d(Clog.baseLogTag, R.string.opening_inapp);
 
             //If it's a direct URL to the play store, just open it.
             if (checkForApp(url)) {
@@ -453,7 +529,7 @@ class AdWebView extends WebView implements Displayable {
 
         } else {
             Clog.d(Clog.baseLogTag,
-                    Clog.getString(R.string.opening_native));
+                    R.string.opening_native);
             openNativeIntent(url);
         }
     }
@@ -484,9 +560,22 @@ class AdWebView extends WebView implements Displayable {
     public void destroy() {
         // in case `this` was not removed when destroy was called
         ViewUtil.removeChildFromParent(this);
+        if (!destroyed) {
+            destroyed = true;
+            liveWebViews.decrementAndGet();
+        }
         super.destroy();
         this.removeAllViews();
         stopCheckViewable();
+        if (implementation != null) {
+            implementation.bridge.cancel();
+        }
+        handler.removeCallbacks(pauseRunnable);
+        pauseScheduled = false;
+        if (pausedOutOfSight) {
+            pausedOutOfSight = false;
+            reportPausedTime();
+        }
     }
 
     private void setCreativeWidth(int w){
@@ -516,18 +605,18 @@ class AdWebView extends WebView implements Displayable {
 
     private void handleVisibilityChangedEvent(int windowVisibility, int visibility) {
         if ((windowVisibility == VISIBLE) && (visibility == VISIBLE)) {
-            WebviewUtil.onResume(this);
             isVisible = true;
-            // only start checking if MRAID is enabled
-            if (isMRAIDEnabled && firstPageFinished) {
-                startCheckViewable();
-            }
+            // resumed by the check once the ad is found on screen
+            startCheckViewable();
         } else {
-            WebviewUtil.onPause(this);
             isVisible = false;
             stopCheckViewable();
+            pauseOutOfSight();
+        }
+        // pooled webviews have no implementation until they are handed to an ad view
+        if (implementation != null) {
+            implementation.fireViewableChangeEvent();
         }
-        implementation.fireViewableChangeEvent();
     }
 
     @Override
@@ -641,25 +730,35 @@ class AdWebView extends WebView implements Displayable {
     }
 
     protected void checkPosition() {
-        if (!(this.getContext() instanceof Activity)) return;
+        if (!(getActivityContext() instanceof Activity)) {
+            updatePauseState();
+            return;
+        }
 
         // check whether newly drawn view is onscreen or not,
         // fires a viewableChangeEvent with the result
         int viewLocation[] = new int[2];
         this.getLocationOnScreen(viewLocation);
+        geometry[0] = viewLocation[0];
+        geometry[1] = viewLocation[1];
+        geometry[2] = this.getWidth();
+        geometry[3] = this.getHeight();
+        geometry[4] = this.getContext().getResources().getConfiguration().orientation;
 
         int left = viewLocation[0];
         int right = viewLocation[0] + this.getWidth();
         int top = viewLocation[1];
         int bottom = viewLocation[1] + this.getHeight();
 
-        int[] screenSize = ViewUtil.getScreenSizeAsPixels((Activity) this.getContext());
+        int[] screenSize = ViewUtil.getScreenSizeAsPixels((Activity) getActivityContext());
 
         this.isOnscreen = (right > 0) && (left < screenSize[0])
                 && (bottom > 0) && (top < screenSize[1]);
 
+        updatePauseState();
+
         // update current position
-        if (implementation != null) {
+        if (implementation != null && isMRAIDEnabled) {
             implementation.fireViewableChangeEvent();
             implementation.setCurrentPosition(left, top, this.getWidth(), this.getHeight());
             int orientation = this.getContext().getResources().getConfiguration().orientation;
@@ -704,28 +803,185 @@ class AdWebView extends WebView implements Displayable {
         void onCreateCompleted();
     }
 
-    // Viewable timer code
+    // Viewable tracking code
+
+    // scrolls and layouts that may have moved the ad, checked once per frame for MRAID ads and
+    // once per WEBVIEW_POSITION_CHECK_INTERVAL for plain banners. a redraw alone does not move it
+    private final GeometryListener geometryListener = new GeometryListener();
+
+    private class GeometryListener implements ViewTreeObserver.OnScrollChangedListener,
+            ViewTreeObserver.OnGlobalLayoutListener {
+        @Override
+        public void onScrollChanged() {
+            scheduleGeometryCheck();
+        }
+
+        @Override
+        public void onGlobalLayout() {
+            scheduleGeometryCheck();
+        }
+    }
 
-    private final Runnable checkViewableRunnable = new Runnable() {
+    private final Runnable geometryCheckRunnable = new Runnable() {
         @Override
         public void run() {
-            if (viewableCheckPaused) return;
-            checkPosition();
-            handler.postDelayed(this, 1000);
+            geometryCheckScheduled = false;
+            lastGeometryCheck = SystemClock.uptimeMillis();
+            if (trackingGeometry) {
+                checkPositionIfChanged();
+            }
         }
     };
 
+    void scheduleGeometryCheck() {
+        if (trackingGeometry && !geometryCheckScheduled) {
+            geometryCheckScheduled = true;
+            long delay = 0;
+            if (!isMRAIDEnabled) {
+                // only pausing depends on where a plain banner is, checking it once per interval is enough
+                delay = Math.max(0, lastGeometryCheck + Settings.WEBVIEW_POSITION_CHECK_INTERVAL
+                        - SystemClock.uptimeMillis());
+            }
+            handler.postDelayed(geometryCheckRunnable, delay);
+        }
+    }
+
+    // calls checkPosition only if the ad moved, was resized or the screen rotated
+    private void checkPositionIfChanged() {
+        int viewLocation[] = new int[2];
+        this.getLocationOnScreen(viewLocation);
+        if (geometry[0] == viewLocation[0] && geometry[1] == viewLocation[1]
+                && geometry[2] == this.getWidth() && geometry[3] == this.getHeight()
+                && geometry[4] == this.getContext().getResources().getConfiguration().orientation) {
+            return;
+        }
+        checkPosition();
+    }
+
     private void startCheckViewable() {
         // only start if webview is visible
         if (!isVisible) return;
-        viewableCheckPaused = false;
-        handler.removeCallbacks(checkViewableRunnable);
-        handler.post(checkViewableRunnable);
+        if (!trackingGeometry) {
+            trackingGeometry = true;
+            ViewTreeObserver observer = getViewTreeObserver();
+            observer.addOnScrollChangedListener(geometryListener);
+            observer.addOnGlobalLayoutListener(geometryListener);
+        }
+        // the ad may have moved while it was not tracked, check it right away in any case
+        geometry[2] = -1;
+        handler.removeCallbacks(geometryCheckRunnable);
+        geometryCheckScheduled = false;
+        lastGeometryCheck = -Settings.WEBVIEW_POSITION_CHECK_INTERVAL;
+        scheduleGeometryCheck();
     }
 
+    @SuppressWarnings("deprecation")
     private void stopCheckViewable() {
-        viewableCheckPaused = true;
-        handler.removeCallbacks(checkViewableRunnable);
+        if (trackingGeometry) {
+            trackingGeometry = false;
+            ViewTreeObserver observer = getViewTreeObserver();
+            if (observer.isAlive()) {
+                observer.removeOnScrollChangedListener(geometryListener);
+                observer.removeGlobalOnLayoutListener(geometryListener);
+            }
+        }
+        handler.removeCallbacks(geometryCheckRunnable);
+        geometryCheckScheduled = false;
+    }
+
+    // Out of sight pausing code
+
+    private final Runnable pauseRunnable = new Runnable() {
+        @Override
+        public void run() {
+            pauseScheduled = false;
+            if (!isInSight()) {
+                pauseOutOfSight();
+            }
+        }
+    };
+
+    private boolean isInSight() {
+        // where the screen can't be measured, visible is all we know
+        return isVisible && (isOnscreen || !(getActivityContext() instanceof Activity));
+    }
+
+    // pauses the creative once it has been out of sight for the grace period, resumes it when back
+    private void updatePauseState() {
+        if (isInSight()) {
+            handler.removeCallbacks(pauseRunnable);
+            pauseScheduled = false;
+            if (pausedOutOfSight && !pausedByHost) {
+                pausedOutOfSight = false;
+                WebviewUtil.onResume(this);
+                reportPausedTime();
+            }
+        } else if (!pausedOutOfSight && !pauseScheduled) {
+            pauseScheduled = true;
+            handler.postDelayed(pauseRunnable, Settings.WEBVIEW_PAUSE_GRACE_PERIOD);
+        }
+    }
+
+    private void pauseOutOfSight() {
+        handler.removeCallbacks(pauseRunnable);
+        pauseScheduled = false;
+        if (!pausedOutOfSight) {
+            pausedOutOfSight = true;
+            pausedAt = SystemClock.uptimeMillis();
+            WebviewUtil.onPause(this);
+        }
+    }
+
+    boolean isPausedOutOfSight() {
+        return pausedOutOfSight;
+    }
+
+    /**
+     * Pauses the creative while the app or the window showing it is away.
+     */
+    void onHostPause() {
+        pausedByHost = true;
+        WebviewUtil.onPause(this);
+    }
+
+    /**
+     * Resumes the creative when the app or window is back, unless it is
+     * paused out of sight. It is then resumed once it is back in sight.
+     */
+    void onHostResume() {
+        pausedByHost = false;
+        if (pausedOutOfSight) {
+            updatePauseState();
+        } else {
+            WebviewUtil.onResume(this);
+        }
+    }
+
+    // ad webviews pause and resume themselves, so that they stay paused out of sight
+    static void pauseWebView(WebView webView) {
+        if (webView instanceof AdWebView) {
+            ((AdWebView) webView).onHostPause();
+        } else {
+            WebviewUtil.onPause(webView);
+        }
+    }
+
+    static void resumeWebView(WebView webView) {
+        if (webView instanceof AdWebView) {
+            ((AdWebView) webView).onHostResume();
+        } else {
+            WebviewUtil.onResume(webView);
+        }
+    }
+
+    private void reportPausedTime() {
+        long pausedTime = SystemClock.uptimeMillis() - pausedAt;
+        totalPausedTime += pausedTime;
+        SDKMetrics.AD_WEBVIEW_PAUSED_MILLIS.add(pausedTime);
+        Clog.d(Clog.baseLogTag, R.string.webview_paused_out_of_sight, pausedTime);
+        if (pauseListener != null) {
+            pauseListener.onAdWebViewResumed(pausedTime, totalPausedTime);
+        }
     }
 
     private class RedirectWebView extends WebView {
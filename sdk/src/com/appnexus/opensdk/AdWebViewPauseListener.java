@@ -0,0 +1,36 @@
+/*
+ *    Copyright 2015 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk;
+
+/**
+ * Receives how long the SDK kept ad webviews paused while they were out of
+ * sight: hidden, scrolled off screen, or loaded but not yet shown. The
+ * time paused approximates the CPU the creatives did not spend on timers,
+ * animations and polling nobody could see. Register an implementation
+ * with {@link SDKSettings#setAdWebViewPauseListener(AdWebViewPauseListener)}.
+ * Callbacks are made on the main thread.
+ */
+public interface AdWebViewPauseListener {
+    /**
+     * Called when a paused ad webview is resumed or destroyed.
+     *
+     * @param pausedTime      how long this webview was paused, in milliseconds
+     * @param totalPausedTime how long all ad webviews were paused since the
+     *                        app started, in milliseconds
+     */
+    public void onAdWebViewResumed(long pausedTime, long totalPausedTime);
+}
@@ -0,0 +1,169 @@
+/*
+ *    Copyright 2015 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk;
+
+import android.content.Context;
+import android.content.MutableContextWrapper;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.webkit.WebView;
+import android.webkit.WebViewClient;
+
+import com.appnexus.opensdk.utils.Clog;
+import com.appnexus.opensdk.utils.Settings;
+
+import java.util.LinkedList;
+
+/**
+ * Keeps a few AdWebViews created and configured ahead of time, so an ad
+ * that arrives does not pay for WebView creation and renderer start up.
+ * The pool is filled one webview at a time while the main thread is idle.
+ * Pooled webviews are created in the application context and switched to
+ * the context of the ad view they are handed to. Once handed out, a
+ * webview belongs to its ad view and is destroyed with it as before; it
+ * never returns to the pool, since the page it showed can't be undone.
+ * All methods must be called on the main thread.
+ */
+class AdWebViewPool {
+    private static final String WARM_UP_HTML = "<html><head></head><body></body></html>";
+
+    // webviews that finished loading the warm up page, ready to be handed out
+    static final LinkedList<AdWebView> ready = new LinkedList<AdWebView>();
+    static final LinkedList<AdWebView> warming = new LinkedList<AdWebView>();
+    private static Context appContext;
+    private static int size = Settings.DEFAULT_WEBVIEW_POOL_SIZE;
+    private static boolean fillScheduled = false;
+
+    private static int hits = 0;
+    private static int misses = 0;
+
+    private static final MessageQueue.IdleHandler idleFiller = new MessageQueue.IdleHandler() {
+        @Override
+        public boolean queueIdle() {
+            // one webview per idle slot, stay registered until the pool is full
+            fillScheduled = fillOne();
+            return fillScheduled;
+        }
+    };
+
+    /**
+     * Starts filling the pool the next time the main thread is idle.
+     */
+    static void warmUp(Context context) {
+        if (appContext == null && context != null) {
+            appContext = context.getApplicationContext();
+        }
+        if (fillScheduled || appContext == null || ready.size() + warming.size() >= size) {
+            return;
+        }
+        fillScheduled = true;
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            Looper.myQueue().addIdleHandler(idleFiller);
+        } else {
+            new Handler(Looper.getMainLooper()).post(new Runnable() {
+                @Override
+                public void run() {
+                    Looper.myQueue().addIdleHandler(idleFiller);
+                }
+            });
+        }
+    }
+
+    /**
+     * @return a pooled webview handed to the owner, or a new one if none is ready
+     */
+    static AdWebView obtain(AdView owner) {
+        AdWebView webView = ready.poll();
+        if (webView != null) {
+            hits++;
+            webView.attach(owner);
+        } else {
+            misses++;
+            webView = new AdWebView(owner);
+        }
+        warmUp(owner.getContext());
+        return webView;
+    }
+
+    static void setSize(int size) {
+        AdWebViewPool.size = Math.max(0, Math.min(size, Settings.MAX_WEBVIEW_POOL_SIZE));
+        while (ready.size() + warming.size() > AdWebViewPool.size) {
+            AdWebView extra = warming.isEmpty() ? ready.removeLast() : warming.removeLast();
+            extra.destroy();
+        }
+    }
+
+    static int getSize() {
+        return size;
+    }
+
+    static int getReadyCount() {
+        return ready.size();
+    }
+
+    static int getHitCount() {
+        return hits;
+    }
+
+    static int getMissCount() {
+        return misses;
+    }
+
+    /**
+     * Destroys every pooled webview, e.g. when the app is low on memory.
+     */
+    static void clear() {
+        for (AdWebView webView : ready) {
+            webView.destroy();
+        }
+        for (AdWebView webView : warming) {
+            webView.destroy();
+        }
+        ready.clear();
+        warming.clear();
+    }
+
+    // creates one webview, returns whether or not the pool needs more
+    static boolean fillOne() {
+        if (appContext == null || ready.size() + warming.size() >= size) {
+            return false;
+        }
+        final AdWebView webView;
+        try {
+            webView = new AdWebView(new MutableContextWrapper(appContext));
+        } catch (Exception e) {
+            // e.g. the WebView package is being updated, ads will create their own
+            Clog.w(Clog.baseLogTag, "Unable to create a webview for the pool", e);
+            return false;
+        }
+        warming.add(webView);
+        webView.setWebViewClient(new WebViewClient() {
+            @Override
+            public void onPageFinished(WebView view, String url) {
+                // replaced by the ad's client when the webview is handed out
+                if (warming.remove(webView)) {
+                    ready.add(webView);
+                }
+            }
+        });
+        // starts the renderer, the ad's page replaces this one
+        webView.loadDataWithBaseURL(Settings.BASE_URL, WARM_UP_HTML, "text/html", "UTF-8", null);
+        Clog.d(Clog.baseLogTag, "Added a webview to the pool, " + (ready.size() + warming.size()) + " of " + size);
+        return ready.size() + warming.size() < size;
+    }
+}
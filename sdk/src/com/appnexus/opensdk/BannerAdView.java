@@ -42,7 +42,6 @@ import com.appnexus.opensdk.transitionanimation.TransitionDirection;
 import com.appnexus.opensdk.transitionanimation.TransitionType;
 import com.appnexus.opensdk.utils.Clog;
 import com.appnexus.opensdk.utils.Settings;
-import com.appnexus.opensdk.utils.WebviewUtil;
 
 import java.lang.ref.WeakReference;
 import java.util.LinkedList;
@@ -108,6 +107,8 @@ public class BannerAdView extends AdView {
     private boolean measured;
     private Animator animator;
     private boolean autoRefreshOffInXML;
+    private BannerPrefetcher prefetcher;
+    private boolean prefetchEnabled = false;
 
     private void setDefaultsBeforeXML() {
         loadAdHasBeenCalled = false;
@@ -203,7 +204,7 @@ public class BannerAdView extends AdView {
                 if (intent.getAction().equals(Intent.ACTION_SCREEN_OFF)) {
                     stop();
                     Clog.d(Clog.baseLogTag,
-                            Clog.getString(R.string.screen_off_stop));
+                            R.string.screen_off_stop);
                 } else if (intent.getAction().equals(Intent.ACTION_SCREEN_ON)) {
                     boolean ad_started = false;
                     if (period > 0) {
@@ -216,7 +217,7 @@ public class BannerAdView extends AdView {
                     }
                     if (ad_started) {
                         Clog.d(Clog.baseLogTag,
-                                Clog.getString(R.string.screen_on_start));
+                                R.string.screen_on_start);
                     }
                 }
             }
@@ -241,8 +242,8 @@ public class BannerAdView extends AdView {
             int measuredHeight = (int) ((bottom - top) / density + 0.5f);
             if ((measuredHeight < requestParameters.getAdHeight() || measuredWidth < requestParameters.getAdHeight())
                     && measuredHeight > 0 && measuredWidth > 0) {
-                Clog.e(Clog.baseLogTag, Clog.getString(R.string.adsize_too_big,
-                        measuredWidth, measuredHeight, requestParameters.getAdHeight(), requestParameters.getAdHeight()));
+                Clog.e(Clog.baseLogTag, R.string.adsize_too_big,
+                        measuredWidth, measuredHeight, requestParameters.getAdHeight(), requestParameters.getAdHeight());
                 // Hide the space, since no ad will be loaded due to error
                 hide();
                 // Stop any request in progress
@@ -506,13 +507,13 @@ public class BannerAdView extends AdView {
     }
 
     void start() {
-        Clog.d(Clog.publicFunctionsLogTag, Clog.getString(R.string.start));
+        Clog.d(Clog.publicFunctionsLogTag, R.string.start);
         mAdFetcher.start();
         loadAdHasBeenCalled = true;
     }
 
     void stop() {
-        Clog.d(Clog.publicFunctionsLogTag, Clog.getString(R.string.stop));
+        Clog.d(Clog.publicFunctionsLogTag, R.string.stop);
         mAdFetcher.stop();
         loadAdHasBeenCalled = false;
     }
@@ -529,13 +530,13 @@ public class BannerAdView extends AdView {
         int height = -1;
 
         final int N = a.getIndexCount();
-        Clog.v(Clog.xmlLogTag, Clog.getString(R.string.found_n_in_xml, N));
+        Clog.v(Clog.xmlLogTag, R.string.found_n_in_xml, N);
         for (int i = 0; i < N; ++i) {
             int attr = a.getIndex(i);
             if (attr == R.styleable.BannerAdView_placement_id) {
                 setPlacementID(a.getString(attr));
-                Clog.d(Clog.xmlLogTag, Clog.getString(R.string.placement_id,
-                        a.getString(attr)));
+                Clog.d(Clog.xmlLogTag, R.string.placement_id,
+                        a.getString(attr));
             } else if (attr == R.styleable.BannerAdView_auto_refresh_interval) {
                 int period = a.getInt(attr, Settings.DEFAULT_REFRESH);
                 setAutoRefreshInterval(period);
@@ -543,58 +544,58 @@ public class BannerAdView extends AdView {
                     autoRefreshOffInXML = true;
                 }
                 Clog.d(Clog.xmlLogTag,
-                        Clog.getString(R.string.xml_set_period, period));
+                        R.string.xml_set_period, period);
             } else if (attr == R.styleable.BannerAdView_test) {
                 Settings.getSettings().test_mode = a.getBoolean(attr, false);
                 Clog.d(Clog.xmlLogTag,
-                        Clog.getString(R.string.xml_set_test,
-                                Settings.getSettings().test_mode));
+                        R.string.xml_set_test,
+                                Settings.getSettings().test_mode);
             } else if (attr == R.styleable.BannerAdView_adWidth) {
                 width = a.getInt(attr, -1);
                 Clog.d(Clog.xmlLogTag,
-                        Clog.getString(R.string.xml_ad_width,
-                                a.getInt(attr, -1)));
+                        R.string.xml_ad_width,
+                                a.getInt(attr, -1));
             } else if (attr == R.styleable.BannerAdView_adHeight) {
                 height= a.getInt(attr, -1);
                 Clog.d(Clog.xmlLogTag,
-                        Clog.getString(R.string.xml_ad_height,
-                                a.getInt(attr, -1)));
+                        R.string.xml_ad_height,
+                                a.getInt(attr, -1));
             } else if (attr == R.styleable.BannerAdView_should_reload_on_resume) {
                 setShouldReloadOnResume(a.getBoolean(attr, false));
-                Clog.d(Clog.xmlLogTag, Clog.getString(
-                        R.string.xml_set_should_reload, shouldReloadOnResume));
+                Clog.d(Clog.xmlLogTag,
+                        R.string.xml_set_should_reload, shouldReloadOnResume);
             } else if (attr == R.styleable.BannerAdView_opens_native_browser) {
                 setOpensNativeBrowser(a.getBoolean(attr, false));
-                Clog.d(Clog.xmlLogTag, Clog.getString(
+                Clog.d(Clog.xmlLogTag,
                         R.string.xml_set_opens_native_browser,
-                        getOpensNativeBrowser()));
+                        getOpensNativeBrowser());
             }else if (attr == R.styleable.BannerAdView_expands_to_fit_screen_width){
                 setExpandsToFitScreenWidth(a.getBoolean(attr, false));
-                Clog.d(Clog.xmlLogTag, Clog.getString(
+                Clog.d(Clog.xmlLogTag,
                         R.string.xml_set_expands_to_full_screen_width,
                         expandsToFitScreenWidth
-                ));
+                );
             }else if (attr == R.styleable.BannerAdView_show_loading_indicator) {
                 Clog.d(Clog.xmlLogTag,
-                        Clog.getString(R.string.show_loading_indicator_xml));
+                        R.string.show_loading_indicator_xml);
                 setShowLoadingIndicator(a.getBoolean(attr, true));
             } else if (attr == R.styleable.BannerAdView_transition_type) {
                 Clog.d(Clog.xmlLogTag,
-                        Clog.getString(R.string.transition_type));
+                        R.string.transition_type);
                 int transitionTypeFromXML = a.getInt(attr, 0);
                 setTransitionType(TransitionType.getTypeForInt(transitionTypeFromXML));
             } else if (attr == R.styleable.BannerAdView_transition_direction) {
                 Clog.d(Clog.xmlLogTag,
-                        Clog.getString(R.string.transition_direction));
+                        R.string.transition_direction);
                 setTransitionDirection(TransitionDirection.getDirectionForInt(a.getInt(attr, 0)));
 
             } else if (attr == R.styleable.BannerAdView_transition_duration) {
                 Clog.d(Clog.xmlLogTag,
-                        Clog.getString(R.string.transition_duration));
+                        R.string.transition_duration);
                 setTransitionDuration((long) a.getInt(attr, 1000));
             }else if (attr == R.styleable.BannerAdView_load_landing_page_in_background) {
                 setLoadsInBackground(a.getBoolean(attr, true));
-                Clog.d(Clog.xmlLogTag, Clog.getString(R.string.xml_load_landing_page_in_background, doesLoadingInBackground));
+                Clog.d(Clog.xmlLogTag, R.string.xml_load_landing_page_in_background, doesLoadingInBackground);
             }
         }
 
@@ -614,7 +615,7 @@ public class BannerAdView extends AdView {
      */
     public int getAutoRefreshInterval() {
         Clog.d(Clog.publicFunctionsLogTag,
-                Clog.getString(R.string.get_period, period));
+                R.string.get_period, period);
         return period;
     }
 
@@ -626,7 +627,7 @@ public class BannerAdView extends AdView {
      */
     @Deprecated
     public void setAdHeight(int h) {
-        Clog.d(Clog.baseLogTag, Clog.getString(R.string.set_height, h));
+        Clog.d(Clog.baseLogTag, R.string.set_height, h);
         requestParameters.setAdHeight(h);
     }
 
@@ -638,7 +639,7 @@ public class BannerAdView extends AdView {
      */
     @Deprecated
     public void setAdWidth(int w) {
-        Clog.d(Clog.baseLogTag, Clog.getString(R.string.set_width, w));
+        Clog.d(Clog.baseLogTag, R.string.set_width, w);
         requestParameters.setAdWidth(w);
     }
 
@@ -649,7 +650,7 @@ public class BannerAdView extends AdView {
      * @param h The height of the ad, in pixels.
      */
     public void setAdSize(int w, int h){
-        Clog.d(Clog.baseLogTag, Clog.getString(R.string.set_size, w, h));
+        Clog.d(Clog.baseLogTag, R.string.set_size, w, h);
         requestParameters.setAdWidth(w);
         requestParameters.setAdHeight(h);
     }
@@ -662,7 +663,7 @@ public class BannerAdView extends AdView {
      * @param maxH The maximum height in pixels.
      */
     public void setMaxSize(int maxW, int maxH){
-        Clog.d(Clog.baseLogTag, Clog.getString(R.string.set_max_size, maxW, maxH));
+        Clog.d(Clog.baseLogTag, R.string.set_max_size, maxW, maxH);
         requestParameters.setMaxSize(maxW, maxH);
     }
 
@@ -676,7 +677,7 @@ public class BannerAdView extends AdView {
      *                              for a maximum size. Default is false.
      */
     public void setOverrideMaxSize(boolean shouldOverrideMaxSize){
-        Clog.d(Clog.baseLogTag, Clog.getString(R.string.set_override_max_size, shouldOverrideMaxSize));
+        Clog.d(Clog.baseLogTag, R.string.set_override_max_size, shouldOverrideMaxSize);
         requestParameters.setOverrideMaxSize(shouldOverrideMaxSize);
     }
 
@@ -687,7 +688,7 @@ public class BannerAdView extends AdView {
      * @return The maximum height of the ad to be requested.
      */
     public int getMaxHeight(){
-        Clog.d(Clog.baseLogTag, Clog.getString(R.string.get_max_height, requestParameters.getMaxHeight()));
+        Clog.d(Clog.baseLogTag, R.string.get_max_height, requestParameters.getMaxHeight());
         return requestParameters.getMaxHeight();
     }
 
@@ -698,7 +699,7 @@ public class BannerAdView extends AdView {
      * @return The maximum width of the ad to be requested.
      */
     public int getMaxWidth(){
-        Clog.d(Clog.baseLogTag, Clog.getString(R.string.get_max_width, requestParameters.getMaxWidth()));
+        Clog.d(Clog.baseLogTag, R.string.get_max_width, requestParameters.getMaxWidth());
         return requestParameters.getMaxWidth();
     }
 
@@ -709,7 +710,7 @@ public class BannerAdView extends AdView {
      * @return If the maximum size will be passed instead of the ad size.
      */
     public boolean getOverrideMaxSize(){
-        Clog.d(Clog.baseLogTag, Clog.getString(R.string.get_override_max_size, requestParameters.getOverrideMaxSize()));
+        Clog.d(Clog.baseLogTag, R.string.get_override_max_size, requestParameters.getOverrideMaxSize());
         return requestParameters.getOverrideMaxSize();
     }
 
@@ -719,7 +720,7 @@ public class BannerAdView extends AdView {
      * @return The height of the ad to request.
      */
     public int getAdHeight() {
-        Clog.d(Clog.baseLogTag, Clog.getString(R.string.get_height, requestParameters.getAdHeight()));
+        Clog.d(Clog.baseLogTag, R.string.get_height, requestParameters.getAdHeight());
         return requestParameters.getAdHeight();
     }
 
@@ -729,7 +730,7 @@ public class BannerAdView extends AdView {
      * @return The width of the ad to request.
      */
     public int getAdWidth() {
-        Clog.d(Clog.baseLogTag, Clog.getString(R.string.get_width, requestParameters.getAdWidth()));
+        Clog.d(Clog.baseLogTag, R.string.get_width, requestParameters.getAdWidth());
         return requestParameters.getAdWidth();
     }
 
@@ -750,7 +751,7 @@ public class BannerAdView extends AdView {
             this.period = period;
         }
         Clog.d(Clog.publicFunctionsLogTag,
-                Clog.getString(R.string.set_period, this.period));
+                R.string.set_period, this.period);
         if (mAdFetcher != null)
             mAdFetcher.setPeriod(this.period);
     }
@@ -762,8 +763,8 @@ public class BannerAdView extends AdView {
      * @return If true, the ad will reload on resume.
      */
     public boolean getShouldReloadOnResume() {
-        Clog.d(Clog.publicFunctionsLogTag, Clog.getString(
-                R.string.get_should_resume, shouldReloadOnResume));
+        Clog.d(Clog.publicFunctionsLogTag,
+                R.string.get_should_resume, shouldReloadOnResume);
         return shouldReloadOnResume;
     }
 
@@ -775,8 +776,8 @@ public class BannerAdView extends AdView {
      *                             on resume.
      */
     public void setShouldReloadOnResume(boolean shouldReloadOnResume) {
-        Clog.d(Clog.publicFunctionsLogTag, Clog.getString(
-                R.string.set_should_resume, shouldReloadOnResume));
+        Clog.d(Clog.publicFunctionsLogTag,
+                R.string.set_should_resume, shouldReloadOnResume);
         this.shouldReloadOnResume = shouldReloadOnResume;
     }
 
@@ -789,7 +790,7 @@ public class BannerAdView extends AdView {
             // is
             // locked
             setupBroadcast();
-            Clog.d(Clog.baseLogTag, Clog.getString(R.string.unhidden));
+            Clog.d(Clog.baseLogTag, R.string.unhidden);
             //The only time we want to request on visibility changes is if an ad hasn't been loaded yet (loadAdHasBeenCalled)
             // shouldReloadOnResume is true
             // OR auto_refresh is enabled
@@ -806,19 +807,19 @@ public class BannerAdView extends AdView {
 
             if (getChildAt(0) instanceof WebView) {
                 WebView webView = (WebView) getChildAt(0);
-                WebviewUtil.onResume(webView);
+                AdWebView.resumeWebView(webView);
             }
         } else {
             // Unregister the receiver to prevent a leak.
             dismantleBroadcast();
-            Clog.d(Clog.baseLogTag, Clog.getString(R.string.hidden));
+            Clog.d(Clog.baseLogTag, R.string.hidden);
             if (mAdFetcher != null && loadAdHasBeenCalled) {
                 stop();
             }
 
             if (getChildAt(0) instanceof WebView) {
                 WebView webView = (WebView) getChildAt(0);
-                WebviewUtil.onPause(webView);
+                AdWebView.pauseWebView(webView);
             }
         }
     }
@@ -841,6 +842,9 @@ public class BannerAdView extends AdView {
     @Override
     public void destroy() {
         super.destroy();
+        if (prefetcher != null) {
+            prefetcher.clear();
+        }
     }
 
 
@@ -864,14 +868,18 @@ public class BannerAdView extends AdView {
 
     @Override
     public void activityOnPause() {
-        if(this.currentDisplayable!=null){
+        if (this.currentDisplayable instanceof AdWebView) {
+            ((AdWebView) this.currentDisplayable).onHostPause();
+        } else if(this.currentDisplayable!=null){
             this.currentDisplayable.onPause();
         }
     }
 
     @Override
     public void activityOnResume() {
-        if(this.currentDisplayable!=null){
+        if (this.currentDisplayable instanceof AdWebView) {
+            ((AdWebView) this.currentDisplayable).onHostResume();
+        } else if(this.currentDisplayable!=null){
             this.currentDisplayable.onResume();
         }
     }
@@ -900,6 +908,91 @@ public class BannerAdView extends AdView {
         this.expandsToFitScreenWidth = expandsToFitScreenWidth;
     }
 
+    /**
+     * Check whether the next ad is prefetched before each refresh.
+     * This feature is disabled by default.
+     *
+     * @return If true, ads are prefetched.
+     */
+    public boolean getPrefetchEnabled() {
+        return prefetchEnabled;
+    }
+
+    /**
+     * Set whether the next ad should be requested and rendered
+     * off-screen shortly before each auto-refresh, so that it can be
+     * shown as soon as the refresh interval elapses. This only has an
+     * effect when auto-refresh is enabled. This feature is disabled by
+     * default.
+     *
+     * @param prefetchEnabled If true, ads are prefetched.
+     */
+    public void setPrefetchEnabled(boolean prefetchEnabled) {
+        Clog.d(Clog.publicFunctionsLogTag, "Set prefetch enabled: " + prefetchEnabled);
+        this.prefetchEnabled = prefetchEnabled;
+        if (prefetchEnabled && prefetcher == null) {
+            prefetcher = new BannerPrefetcher(this);
+        }
+        if (mAdFetcher != null) {
+            mAdFetcher.setPrefetcher(prefetchEnabled ? prefetcher : null);
+        }
+    }
+
+    /**
+     * Returns how long before a refresh the next ad is requested
+     * when prefetching is enabled.
+     *
+     * @return The lead time, in milliseconds.
+     */
+    public int getPrefetchLeadTime() {
+        return prefetcher != null ? prefetcher.getLeadTime() : Settings.DEFAULT_PREFETCH_LEAD_TIME;
+    }
+
+    /**
+     * Set how long before a refresh the next ad is requested when
+     * prefetching is enabled. The lead time is capped at half of the
+     * auto-refresh interval. The default is 3 seconds.
+     *
+     * @param leadTime The lead time, in milliseconds.
+     */
+    public void setPrefetchLeadTime(int leadTime) {
+        Clog.d(Clog.publicFunctionsLogTag, "Set prefetch lead time: " + leadTime);
+        if (prefetcher == null) {
+            prefetcher = new BannerPrefetcher(this);
+        }
+        prefetcher.setLeadTime(leadTime);
+    }
+
+    /**
+     * Returns the number of refreshes that showed a prefetched ad.
+     * The prefetch hit rate is hits / (hits + misses).
+     *
+     * @return The number of prefetch hits.
+     */
+    public int getPrefetchHitCount() {
+        return prefetcher != null ? prefetcher.getHitCount() : 0;
+    }
+
+    /**
+     * Returns the number of refreshes, while prefetching was enabled,
+     * that had no prefetched ad ready.
+     *
+     * @return The number of prefetch misses.
+     */
+    public int getPrefetchMissCount() {
+        return prefetcher != null ? prefetcher.getMissCount() : 0;
+    }
+
+    /**
+     * Returns the number of prefetched ads that were thrown away
+     * because they went stale or were not needed.
+     *
+     * @return The number of discarded prefetched ads.
+     */
+    public int getPrefetchDiscardCount() {
+        return prefetcher != null ? prefetcher.getDiscardCount() : 0;
+    }
+
     protected int oldH;
     protected int oldW;
 
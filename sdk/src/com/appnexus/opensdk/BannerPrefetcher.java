@@ -0,0 +1,200 @@
+/*
+ *    Copyright 2015 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk;
+
+import android.os.SystemClock;
+import android.view.View;
+import android.view.ViewGroup;
+
+import com.appnexus.opensdk.utils.Clog;
+import com.appnexus.opensdk.utils.Settings;
+
+/**
+ * Requests the next banner a lead time before the refresh tick and renders
+ * it in an AdWebView that is not attached to the window, so the tick only
+ * has to swap the finished creative in. Mediated responses are held as is
+ * and handed to mediation on the tick. A creative that is older than
+ * {@link Settings#BANNER_PREFETCH_MAX_AGE_MILLIS} when the tick comes is
+ * discarded and a regular request is made instead.
+ * All methods must be called on the main thread.
+ */
+class BannerPrefetcher {
+    private final BannerAdView owner;
+    private int leadTime = Settings.DEFAULT_PREFETCH_LEAD_TIME;
+
+    private AdViewRequestManager requestManager;
+    private ServerResponse response;
+    private AdWebView prerendered;
+    private long receivedAt = -1;
+    private boolean showWhenReady = false;
+
+    // prefetch hit rate is hits / (hits + misses)
+    private int hits = 0;
+    private int misses = 0;
+    private int discards = 0;
+
+    BannerPrefetcher(BannerAdView owner) {
+        this.owner = owner;
+    }
+
+    void setLeadTime(int leadTime) {
+        this.leadTime = Math.max(0, leadTime);
+    }
+
+    int getLeadTime() {
+        return leadTime;
+    }
+
+    /**
+     * @return the lead time to use with the given refresh period, at most half of the period
+     */
+    long getLeadTime(int period) {
+        return Math.min(leadTime, period / 2);
+    }
+
+    /**
+     * Starts the request for the next tick, dropping a creative the last tick did not take.
+     */
+    void prefetch() {
+        if (requestManager != null) {
+            discard();
+        }
+        Clog.d(Clog.baseLogTag, "Prefetching the next banner");
+        requestManager = new AdViewRequestManager(owner, this);
+        requestManager.execute();
+    }
+
+    /**
+     * Called on the refresh tick.
+     *
+     * @return the request manager that shows the ad for this tick, either right away
+     * or once the prefetch in flight completes, or null if a regular request is needed
+     */
+    AdViewRequestManager showPrefetched() {
+        if (response != null && SystemClock.uptimeMillis() - receivedAt > Settings.BANNER_PREFETCH_MAX_AGE_MILLIS) {
+            Clog.d(Clog.baseLogTag, "Discarding stale prefetched banner");
+            discard();
+        }
+        AdViewRequestManager manager = requestManager;
+        if (response != null) {
+            hits++;
+            show();
+            return manager;
+        }
+        misses++;
+        if (manager != null) {
+            // still in flight, show it as soon as it arrives instead of requesting again
+            showWhenReady = true;
+            return manager;
+        }
+        return null;
+    }
+
+    void onPrefetchResponse(AdViewRequestManager manager, ServerResponse response) {
+        if (manager != requestManager) {
+            return;
+        }
+        if (response == null || !response.containsAds()) {
+            onPrefetchFailed(manager);
+            return;
+        }
+        this.response = response;
+        receivedAt = SystemClock.uptimeMillis();
+        if (response.getMediatedAds() == null || response.getMediatedAds().isEmpty()) {
+            prerendered = AdWebViewPool.obtain(owner);
+            prerendered.loadAd(response);
+            layoutOffscreen(prerendered);
+        }
+        if (showWhenReady) {
+            showWhenReady = false;
+            show();
+        }
+    }
+
+    void onPrefetchFailed(AdViewRequestManager manager) {
+        if (manager != requestManager) {
+            return;
+        }
+        requestManager = null;
+        if (showWhenReady) {
+            // the tick is waiting on this prefetch, fall back to a regular request
+            showWhenReady = false;
+            if (owner.mAdFetcher != null) {
+                owner.mAdFetcher.requestNow();
+            }
+        }
+    }
+
+    /**
+     * Drops everything that was prefetched, cancelling a request in flight.
+     */
+    void clear() {
+        discard();
+        showWhenReady = false;
+    }
+
+    int getHitCount() {
+        return hits;
+    }
+
+    int getMissCount() {
+        return misses;
+    }
+
+    int getDiscardCount() {
+        return discards;
+    }
+
+    private void show() {
+        AdViewRequestManager manager = requestManager;
+        ServerResponse response = this.response;
+        AdWebView prerendered = this.prerendered;
+        reset();
+        manager.showPrefetched(response, prerendered);
+    }
+
+    private void discard() {
+        if (response != null) {
+            discards++;
+        }
+        if (requestManager != null) {
+            requestManager.cancel();
+        }
+        if (prerendered != null) {
+            prerendered.destroy();
+        }
+        reset();
+    }
+
+    private void reset() {
+        requestManager = null;
+        response = null;
+        prerendered = null;
+        receivedAt = -1;
+    }
+
+    // lay the creative out at its own size so the page renders before it is attached
+    private static void layoutOffscreen(AdWebView webView) {
+        ViewGroup.LayoutParams lp = webView.getLayoutParams();
+        if (lp == null || lp.width <= 0 || lp.height <= 0) {
+            return;
+        }
+        webView.measure(View.MeasureSpec.makeMeasureSpec(lp.width, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(lp.height, View.MeasureSpec.EXACTLY));
+        webView.layout(0, 0, lp.width, lp.height);
+    }
+}
@@ -27,10 +27,10 @@ class BaseWebChromeClient extends WebChromeClient {
     @Override
     public boolean onConsoleMessage(ConsoleMessage consoleMessage) {
         Clog.v(Clog.jsLogTag,
-                Clog.getString(com.appnexus.opensdk.R.string.console_message,
+                com.appnexus.opensdk.R.string.console_message,
                         consoleMessage.message(),
                         consoleMessage.lineNumber(),
-                        consoleMessage.sourceId()));
+                        consoleMessage.sourceId());
         return true;
     }
 
@@ -38,7 +38,7 @@ class BaseWebChromeClient extends WebChromeClient {
     public boolean onJsAlert(WebView view, String url, String message,
                              JsResult result) {
         Clog.v(Clog.jsLogTag,
-                Clog.getString(com.appnexus.opensdk.R.string.js_alert, message, url));
+                com.appnexus.opensdk.R.string.js_alert, message, url);
         result.confirm();
         return true;
     }
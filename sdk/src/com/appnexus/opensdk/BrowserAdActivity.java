@@ -152,7 +152,7 @@ class BrowserAdActivity implements AdActivity.AdActivityImplementation {
             @Override
             public void onClick(View v) {
                 Clog.d(Clog.browserLogTag,
-                        Clog.getString(R.string.opening_native_current));
+                        R.string.opening_native_current);
                 openNativeIntent(webView.getUrl());
             }
         });
@@ -161,7 +161,7 @@ class BrowserAdActivity implements AdActivity.AdActivityImplementation {
             @Override
             public boolean shouldOverrideUrlLoading(WebView view, String url) {
                 Clog.v(Clog.browserLogTag,
-                        Clog.getString(R.string.opening_url, url));
+                        R.string.opening_url, url);
                 if (url.startsWith("http")) {
                     return false;
                 } else {
@@ -198,10 +198,10 @@ class BrowserAdActivity implements AdActivity.AdActivityImplementation {
             @Override
             public boolean onConsoleMessage(ConsoleMessage consoleMessage) {
                 Clog.w(Clog.browserLogTag,
-                        Clog.getString(R.string.console_message,
+                        R.string.console_message,
                                 consoleMessage.message(),
                                 consoleMessage.lineNumber(),
-                                consoleMessage.sourceId()));
+                                consoleMessage.sourceId());
                 return true;
             }
 
@@ -209,7 +209,7 @@ class BrowserAdActivity implements AdActivity.AdActivityImplementation {
             public boolean onJsAlert(WebView view, String url, String message,
                                      JsResult result) {
                 Clog.w(Clog.browserLogTag,
-                        Clog.getString(R.string.js_alert, message, url));
+                        R.string.js_alert, message, url);
                 result.confirm();
                 return true;
             }
@@ -233,7 +233,7 @@ class BrowserAdActivity implements AdActivity.AdActivityImplementation {
 
         if (launch_url == null) {
             Clog.w(Clog.browserLogTag,
-                    Clog.getString(R.string.opening_url_failed, url));
+                    R.string.opening_url_failed, url);
             return;
         }
         Intent i = new Intent(Intent.ACTION_VIEW, launch_url);
@@ -244,7 +244,7 @@ class BrowserAdActivity implements AdActivity.AdActivityImplementation {
             finishAdActivity();
         } catch (ActivityNotFoundException e) {
             Clog.w(Clog.browserLogTag,
-                    Clog.getString(R.string.opening_url_failed, url));
+                    R.string.opening_url_failed, url);
         }
     }
 
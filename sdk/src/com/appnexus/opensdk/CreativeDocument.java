@@ -0,0 +1,91 @@
+/*
+ *    Copyright 2015 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk;
+
+import android.content.res.Resources;
+
+/**
+ * A creative wrapped into the document an AdWebView loads: with html and
+ * head tags, and the SDK scripts it needs right after the opening head tag.
+ * The document is assembled in a single copy into a buffer of the final
+ * size, so it can be done on the request's background thread and leave
+ * only loadDataWithBaseURL to the main thread.
+ */
+class CreativeDocument {
+    private static final String HTML = "<html>";
+    private static final String HEAD = "<head>";
+    private static final String HEAD_END = "</head>";
+    private static final String BODY_OPEN = "<body style='padding:0;margin:0;'>";
+    private static final String DOCUMENT_END = "</body></html>";
+
+    private final String html;
+    private final int scripts;
+
+    private CreativeDocument(String html, int scripts) {
+        this.html = html;
+        this.scripts = scripts;
+    }
+
+    /**
+     * @return the document to load
+     */
+    String getHtml() {
+        return html;
+    }
+
+    /**
+     * @return the flags of the SDK scripts injected, see {@link SDKScriptCache}
+     */
+    int getScripts() {
+        return scripts;
+    }
+
+    /**
+     * Assembles the document for a creative. Safe to call off the main thread.
+     *
+     * @param res     resources to read the scripts from
+     * @param content the creative from the ad server
+     * @param scripts the flags of the SDK scripts to inject
+     */
+    static CreativeDocument assemble(Resources res, String content, int scripts) {
+        String tags = SDKScriptCache.getScriptTags(res, scripts);
+        if (tags == null) {
+            tags = "";
+        }
+        int html = content.indexOf(HTML);
+        if (html < 0) {
+            // a fragment, wrap it into a document
+            return new CreativeDocument(new StringBuilder(HTML.length() + HEAD.length() + tags.length()
+                    + HEAD_END.length() + BODY_OPEN.length() + content.length() + DOCUMENT_END.length())
+                    .append(HTML).append(HEAD).append(tags).append(HEAD_END)
+                    .append(BODY_OPEN).append(content).append(DOCUMENT_END).toString(), scripts);
+        }
+        int head = content.indexOf(HEAD, html);
+        if (head < 0) {
+            // no head section to inject the scripts into, add one after the html tag
+            int insert = html + HTML.length();
+            return new CreativeDocument(new StringBuilder(content.length() + HEAD.length()
+                    + tags.length() + HEAD_END.length())
+                    .append(content, 0, insert).append(HEAD).append(tags).append(HEAD_END)
+                    .append(content, insert, content.length()).toString(), scripts);
+        }
+        int insert = head + HEAD.length();
+        return new CreativeDocument(new StringBuilder(content.length() + tags.length())
+                .append(content, 0, insert).append(tags)
+                .append(content, insert, content.length()).toString(), scripts);
+    }
+}
@@ -17,6 +17,7 @@
 package com.appnexus.opensdk;
 
 import android.content.Context;
+import android.os.SystemClock;
 
 import com.appnexus.opensdk.utils.Clog;
 import com.appnexus.opensdk.utils.HTTPGet;
@@ -53,11 +54,12 @@ class ImpressionTracker extends HTTPGet {
             SharedNetworkManager nm = SharedNetworkManager.getInstance(context);
             if (nm.isConnected(context)) {
                 execute();
-                visibilityDetector.removeVisibilityListener(listener);
-                listener = null;
             } else {
                 nm.addURL(url, context);
             }
+            // either way the impression is handled, stop visibility checks for it
+            visibilityDetector.removeVisibilityListener(listener);
+            listener = null;
             fired = true;
         }
     }
@@ -73,15 +75,19 @@ class ImpressionTracker extends HTTPGet {
     }
 
     class ImpressionListener implements VisibilityDetector.VisibilityListener {
-        long elapsedTime = 0;
+        long visibleSince = -1;
         @Override
         public void onVisibilityChanged(boolean visible) {
-            if (visible) {
-                elapsedTime += VisibilityDetector.VISIBILITY_THROTTLE_MILLIS;
-            } else {
-                elapsedTime = 0;
+            if (!visible) {
+                visibleSince = -1;
+                return;
+            }
+            // checks are event driven, so measure the time since the view became visible
+            long now = SystemClock.uptimeMillis();
+            if (visibleSince < 0) {
+                visibleSince = now;
             }
-            if (elapsedTime >= Settings.NATIVE_AD_VISIBLE_PERIOD_MILLIS) {
+            if (now - visibleSince >= Settings.NATIVE_AD_VISIBLE_PERIOD_MILLIS) {
                 ImpressionTracker.this.fire();
             }
         }
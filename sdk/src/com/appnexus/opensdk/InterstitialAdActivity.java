@@ -19,6 +19,7 @@ package com.appnexus.opensdk;
 import android.app.Activity;
 import android.os.Handler;
 import android.os.Message;
+import android.os.SystemClock;
 import android.view.View;
 import android.view.ViewGroup;
 import android.webkit.WebView;
@@ -52,7 +53,7 @@ class InterstitialAdActivity implements AdActivity.AdActivityImplementation {
 
         // set 'now' variable to filter expired ads
         now = adActivity.getIntent().getLongExtra(InterstitialAdView.INTENT_KEY_TIME,
-                System.currentTimeMillis());
+                SystemClock.elapsedRealtime());
         setIAdView(InterstitialAdView.INTERSTITIALADVIEW_TO_USE);
 
         // Add a close button after a delay.
@@ -109,9 +110,10 @@ class InterstitialAdActivity implements AdActivity.AdActivityImplementation {
         // if now-p.first is less than 0, the ad will be considered to be from the future
         while (iAQE != null
                 && (now - iAQE.getTime() > InterstitialAdView.MAX_AGE || now - iAQE.getTime() < 0)) {
-            Clog.w(Clog.baseLogTag, Clog.getString(R.string.too_old));
+            Clog.w(Clog.baseLogTag, R.string.too_old);
             iAQE = adView.getAdQueue().poll();
         }
+        adView.onAdTakenFromQueue();
         if ((iAQE == null)
                 || !(iAQE.getView() instanceof AdWebView))
             return;
@@ -23,6 +23,7 @@ import android.content.Intent;
 import android.content.res.TypedArray;
 import android.graphics.Color;
 import android.graphics.Rect;
+import android.os.SystemClock;
 import android.util.AttributeSet;
 import android.util.DisplayMetrics;
 import android.view.View;
@@ -33,7 +34,8 @@ import com.appnexus.opensdk.utils.Clog;
 import com.appnexus.opensdk.utils.Settings;
 
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.Comparator;
+import java.util.PriorityQueue;
 import java.util.Queue;
 
 /**
@@ -47,7 +49,18 @@ public class InterstitialAdView extends AdView {
     private int backgroundColor = Color.BLACK;
     private int closeButtonDelay = Settings.DEFAULT_INTERSTITIAL_CLOSE_BUTTON_DELAY;
     static InterstitialAdView INTERSTITIALADVIEW_TO_USE;
-    private Queue<InterstitialAdQueueEntry> adQueue = new LinkedList<InterstitialAdQueueEntry>();
+    // ordered by load time, so the ad that expires first is always at the head
+    private Queue<InterstitialAdQueueEntry> adQueue = new PriorityQueue<InterstitialAdQueueEntry>(4,
+            new Comparator<InterstitialAdQueueEntry>() {
+                @Override
+                public int compare(InterstitialAdQueueEntry lhs, InterstitialAdQueueEntry rhs) {
+                    long l = lhs.getTime();
+                    long r = rhs.getTime();
+                    return l < r ? -1 : (l == r ? 0 : 1);
+                }
+            });
+    private int poolSize = 0;
+    private boolean requestInFlight = false;
 
     //Intent Keys
     static final String INTENT_KEY_TIME = "TIME";
@@ -152,29 +165,29 @@ public class InterstitialAdView extends AdView {
                 R.styleable.InterstitialAdView);
 
         final int N = a.getIndexCount();
-        Clog.v(Clog.xmlLogTag, Clog.getString(R.string.found_n_in_xml, N));
+        Clog.v(Clog.xmlLogTag, R.string.found_n_in_xml, N);
         for (int i = 0; i < N; ++i) {
             int attr = a.getIndex(i);
             if (attr == R.styleable.InterstitialAdView_placement_id) {
                 setPlacementID(a.getString(attr));
-                Clog.d(Clog.xmlLogTag, Clog.getString(R.string.placement_id,
-                        a.getString(attr)));
+                Clog.d(Clog.xmlLogTag, R.string.placement_id,
+                        a.getString(attr));
             } else if (attr == R.styleable.InterstitialAdView_test) {
                 Settings.getSettings().test_mode = a.getBoolean(attr, false);
                 Clog.d(Clog.xmlLogTag,
-                        Clog.getString(R.string.xml_set_test,
-                                Settings.getSettings().test_mode));
+                        R.string.xml_set_test,
+                                Settings.getSettings().test_mode);
             } else if (attr == R.styleable.InterstitialAdView_opens_native_browser) {
                 Clog.d(Clog.xmlLogTag,
-                        Clog.getString(R.string.xml_set_opens_native_browser));
+                        R.string.xml_set_opens_native_browser);
                 this.setOpensNativeBrowser(a.getBoolean(attr, false));
             }else if (attr == R.styleable.InterstitialAdView_show_loading_indicator) {
                 Clog.d(Clog.xmlLogTag,
-                        Clog.getString(R.string.show_loading_indicator_xml));
+                        R.string.show_loading_indicator_xml);
                 setShowLoadingIndicator(a.getBoolean(attr, true));
             }else if (attr == R.styleable.InterstitialAdView_load_landing_page_in_background) {
                 setLoadsInBackground(a.getBoolean(attr, true));
-                Clog.d(Clog.xmlLogTag, Clog.getString(R.string.xml_load_landing_page_in_background, doesLoadingInBackground ));
+                Clog.d(Clog.xmlLogTag, R.string.xml_load_landing_page_in_background, doesLoadingInBackground );
             }
         }
         a.recycle();
@@ -197,11 +210,12 @@ public class InterstitialAdView extends AdView {
      */
     @Override
     public boolean loadAd() {
-        Clog.d(Clog.publicFunctionsLogTag, Clog.getString(R.string.load_ad_int));
+        Clog.d(Clog.publicFunctionsLogTag, R.string.load_ad_int);
         if (!isReadyToStart())
             return false;
         if (mAdFetcher != null) {
             // Load an interstitial ad
+            requestInFlight = true;
             mAdFetcher.stop();
             mAdFetcher.start();
             return true;
@@ -216,14 +230,15 @@ public class InterstitialAdView extends AdView {
             return;
         }
 
-        if (lastDisplayable != null) {
-            lastDisplayable.destroy();
-        }
+        destroyLastDisplayableIfShown();
 
         //Prevent responses from reaching this InterstitialAdView if it has been destroyed already
+        requestInFlight = false;
         if(!destroyed && !paused) {
             lastDisplayable = d;
-            adQueue.add(new DisplayableInterstitialAdQueueEntry(d, System.currentTimeMillis(), false, null));
+            adQueue.add(new DisplayableInterstitialAdQueueEntry(d, SystemClock.elapsedRealtime(), false, null));
+            scheduleEviction();
+            refill();
         }else{
             if(d!=null){
                 d.destroy();
@@ -238,14 +253,15 @@ public class InterstitialAdView extends AdView {
             return;
         }
 
-        if (lastDisplayable != null) {
-            lastDisplayable.destroy();
-        }
+        destroyLastDisplayableIfShown();
 
         //Prevent responses from reaching this InterstitialAdView if it has been destroyed already
+        requestInFlight = false;
         if(!destroyed && !paused) {
             lastDisplayable = d;
-            adQueue.add(new DisplayableInterstitialAdQueueEntry(d, System.currentTimeMillis(), true, d.getMAVC()));
+            adQueue.add(new DisplayableInterstitialAdQueueEntry(d, SystemClock.elapsedRealtime(), true, d.getMAVC()));
+            scheduleEviction();
+            refill();
         }else{
             if(d!=null){
                 d.destroy();
@@ -277,26 +293,121 @@ public class InterstitialAdView extends AdView {
         // leave empty so that we don't call super
     }
 
-    // removes stale ads and returns whether or not a valid ad exists
-    // removes ads from the future
-    private boolean removeStaleAds(long now) {
-        boolean validAdExists = false;
-        ArrayList<InterstitialAdQueueEntry> staleAdsList = new ArrayList<InterstitialAdQueueEntry>();
+    // an ad that is still waiting in the queue must stay intact
+    private void destroyLastDisplayableIfShown() {
+        if (lastDisplayable == null) {
+            return;
+        }
         for (InterstitialAdQueueEntry iAQE : adQueue) {
-            if (iAQE == null
-                    || (((now - iAQE.getTime()) > InterstitialAdView.MAX_AGE) || now - iAQE.getTime() < 0)) {
-                staleAdsList.add(iAQE);
-            } else {
-                // We've reached a valid ad, so we can stop looking
-                validAdExists = true;
-                break;
+            if (iAQE.holds(lastDisplayable)) {
+                return;
+            }
+        }
+        lastDisplayable.destroy();
+        lastDisplayable = null;
+    }
+
+    private final Runnable evictionRunnable = new Runnable() {
+        @Override
+        public void run() {
+            removeStaleAds(SystemClock.elapsedRealtime());
+        }
+    };
+
+    // wakes up when the ad at the head of the queue expires
+    private void scheduleEviction() {
+        handler.removeCallbacks(evictionRunnable);
+        InterstitialAdQueueEntry head = adQueue.peek();
+        if (head != null) {
+            long expiresIn = head.getTime() + MAX_AGE - SystemClock.elapsedRealtime();
+            handler.postDelayed(evictionRunnable, Math.max(0, expiresIn) + 1);
+        }
+    }
+
+    // removes stale ads from the head of the queue and returns whether or not a valid ad exists.
+    // entries are stamped with SystemClock.elapsedRealtime(), which a wall clock change can't move,
+    // so an ad can't appear to come from the future
+    private boolean removeStaleAds(long now) {
+        boolean removed = false;
+        InterstitialAdQueueEntry head = adQueue.peek();
+        while (head != null && now - head.getTime() > MAX_AGE) {
+            adQueue.poll();
+            if (lastDisplayable != null && head.holds(lastDisplayable)) {
+                lastDisplayable = null;
             }
+            head.destroy();
+            removed = true;
+            head = adQueue.peek();
+        }
+        scheduleEviction();
+        if (removed) {
+            Clog.w(Clog.baseLogTag, R.string.too_old);
+            refill();
+        }
+        return head != null;
+    }
+
+    private final Runnable refillRunnable = new Runnable() {
+        @Override
+        public void run() {
+            refill();
         }
-        // Clear the queue of invalid ads
-        for (InterstitialAdQueueEntry remove_ad : staleAdsList) {
-            adQueue.remove(remove_ad);
+    };
+
+    // requests one more ad if the pool is not full, the next one is requested when it arrives
+    private void refill() {
+        handler.removeCallbacks(refillRunnable);
+        if (poolSize <= 0 || destroyed || requestInFlight
+                || adQueue.size() >= poolSize || mAdFetcher == null) {
+            return;
+        }
+        if (!isReadyToStart()) {
+            return;
+        }
+        Clog.d(Clog.baseLogTag, "Refilling interstitial pool, " + adQueue.size() + " of " + poolSize + " ready");
+        requestInFlight = true;
+        mAdFetcher.stop();
+        mAdFetcher.start();
+    }
+
+    @Override
+    void adRequestFailed(ResultCode code) {
+        requestInFlight = false;
+        if (poolSize > 0) {
+            // don't hammer the server when there is no fill
+            handler.postDelayed(refillRunnable, Settings.INTERSTITIAL_POOL_RETRY_DELAY);
         }
-        return validAdExists;
+    }
+
+    // called once an ad has been taken out of the queue to be shown
+    void onAdTakenFromQueue() {
+        refill();
+    }
+
+    /**
+     * Keeps up to the given number of interstitial ads loaded, so that
+     * {@link #show()} can show one right away. When an ad is shown or
+     * expires, a new one is requested in the background. Every ad
+     * that is loaded this way is reported to the {@link AdListener}
+     * like one requested with {@link #loadAd()}. The default pool size
+     * is 0, which means ads are only requested by calling loadAd().
+     *
+     * @param poolSize The number of ads to keep ready, at most
+     *                 {@link Settings#MAX_INTERSTITIAL_POOL_SIZE}.
+     */
+    public void setPoolSize(int poolSize) {
+        Clog.d(Clog.publicFunctionsLogTag, "Set interstitial pool size: " + poolSize);
+        this.poolSize = Math.max(0, Math.min(poolSize, Settings.MAX_INTERSTITIAL_POOL_SIZE));
+        refill();
+    }
+
+    /**
+     * Returns the number of interstitial ads that are kept ready.
+     *
+     * @return The pool size, 0 if the pool is disabled.
+     */
+    public int getPoolSize() {
+        return poolSize;
     }
 
     @Override
@@ -317,7 +428,7 @@ public class InterstitialAdView extends AdView {
      * the queue, <code>false</code> otherwise.
      */
     public boolean isReady() {
-        long now = System.currentTimeMillis();
+        long now = SystemClock.elapsedRealtime();
         if (removeStaleAds(now)) {
             InterstitialAdQueueEntry top = adQueue.peek();
             if (top != null && top.isMediated()) {
@@ -340,9 +451,9 @@ public class InterstitialAdView extends AdView {
      * exceed the timeout.
      */
     public int show() {
-        Clog.d(Clog.publicFunctionsLogTag, Clog.getString(R.string.show_int));
+        Clog.d(Clog.publicFunctionsLogTag, R.string.show_int);
         // Make sure there is an ad to show
-        long now = System.currentTimeMillis();
+        long now = SystemClock.elapsedRealtime();
         boolean validAdExists = removeStaleAds(now);
 
         //If the head of the queue is interstitial mediation, show that instead of our adactivity
@@ -353,6 +464,7 @@ public class InterstitialAdView extends AdView {
 
                 //Pop the mediated view;
                 adQueue.poll();
+                refill();
                 return adQueue.size();
             }
         }
@@ -371,12 +483,12 @@ public class InterstitialAdView extends AdView {
                 getContext().startActivity(i);
             } catch (ActivityNotFoundException e) {
                 INTERSTITIALADVIEW_TO_USE = null;
-                Clog.e(Clog.baseLogTag, Clog.getString(R.string.adactivity_missing,activity_clz.getName()));
+                Clog.e(Clog.baseLogTag, R.string.adactivity_missing,activity_clz.getName());
             }
 
             return adQueue.size() - 1; // Return the number of ads remaining, less the one we're about to show
         }
-        Clog.w(Clog.baseLogTag, Clog.getString(R.string.empty_queue));
+        Clog.w(Clog.baseLogTag, R.string.empty_queue);
         return adQueue.size();
     }
 
@@ -389,7 +501,7 @@ public class InterstitialAdView extends AdView {
      */
     public ArrayList<AdSize> getAllowedSizes() {
         Clog.d(Clog.publicFunctionsLogTag,
-                Clog.getString(R.string.get_allowed_sizes));
+                R.string.get_allowed_sizes);
         return requestParameters.getAllowedSizes();
     }
 
@@ -404,7 +516,7 @@ public class InterstitialAdView extends AdView {
      */
     public void setAllowedSizes(ArrayList<AdSize> allowed_sizes) {
         Clog.d(Clog.publicFunctionsLogTag,
-                Clog.getString(R.string.set_allowed_sizes));
+                R.string.set_allowed_sizes);
         requestParameters.setAllowedSizes(allowed_sizes);
     }
 
@@ -413,7 +525,7 @@ public class InterstitialAdView extends AdView {
      * If left unspecified, the default is black.
      */
     public void setBackgroundColor(int color) {
-        Clog.d(Clog.publicFunctionsLogTag, Clog.getString(R.string.set_bg));
+        Clog.d(Clog.publicFunctionsLogTag, R.string.set_bg);
         backgroundColor = color;
     }
 
@@ -424,7 +536,7 @@ public class InterstitialAdView extends AdView {
      * @return The background color to use behind the interstitial ad.
      */
     public int getBackgroundColor() {
-        Clog.d(Clog.publicFunctionsLogTag, Clog.getString(R.string.get_bg));
+        Clog.d(Clog.publicFunctionsLogTag, R.string.get_bg);
         return backgroundColor;
     }
 
@@ -433,11 +545,24 @@ public class InterstitialAdView extends AdView {
      */
     @Override
     public void destroy() {
+        // queued ads are destroyed with the queue below
+        for (InterstitialAdQueueEntry iAQE : adQueue) {
+            if (lastDisplayable != null && iAQE.holds(lastDisplayable)) {
+                lastDisplayable = null;
+                break;
+            }
+        }
         super.destroy();
-        Clog.d(Clog.publicFunctionsLogTag, Clog.getString(R.string.destroy_int));
+        Clog.d(Clog.publicFunctionsLogTag, R.string.destroy_int);
         if (this.mAdFetcher != null)
             mAdFetcher.stop();
-        adQueue.clear();
+        handler.removeCallbacks(evictionRunnable);
+        handler.removeCallbacks(refillRunnable);
+        requestInFlight = false;
+        InterstitialAdQueueEntry iAQE;
+        while ((iAQE = adQueue.poll()) != null) {
+            iAQE.destroy();
+        }
         InterstitialAdView.INTERSTITIALADVIEW_TO_USE = null;
     }
 
@@ -527,6 +652,8 @@ interface InterstitialAdQueueEntry{
     abstract boolean isMediated();
     abstract MediatedAdViewController getMediatedAdViewController();
     abstract View getView();
+    abstract boolean holds(Displayable d);
+    abstract void destroy();
 }
 
 class DisplayableInterstitialAdQueueEntry implements InterstitialAdQueueEntry{
@@ -560,4 +687,14 @@ class DisplayableInterstitialAdQueueEntry implements InterstitialAdQueueEntry{
         if(d==null) return null;
         return d.getView();
     }
+
+    @Override
+    public boolean holds(Displayable d) {
+        return this.d == d;
+    }
+
+    @Override
+    public void destroy() {
+        if(d!=null) d.destroy();
+    }
 }
@@ -0,0 +1,165 @@
+/*
+ *    Copyright 2015 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.webkit.WebView;
+
+import com.appnexus.opensdk.utils.Clog;
+import com.appnexus.opensdk.utils.SDKMetrics;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+
+/**
+ * Sends MRAID state and events to the creative's mraid.js. Everything
+ * sent during one pass of the main thread is collected and sent as a
+ * single script on the next, through evaluateJavascript where available
+ * and a javascript url before KitKat, instead of one round trip into the
+ * renderer per value. Properties are sent only when they differ from what
+ * the creative already has, and a property set twice before a flush is
+ * sent once with its latest value. Events are always sent, in order.
+ */
+class MRAIDBridge {
+    private static final String PREFIX = "window.mraid.util.";
+
+    private final WebView webView;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    // property name or event sequence number to statement, in the order queued
+    private final LinkedHashMap<String, String> pending = new LinkedHashMap<String, String>();
+    // the last value of each property sent to the creative
+    private final HashMap<String, String> sent = new HashMap<String, String>();
+    private int events = 0;
+    private int calls = 0;
+    private int statements = 0;
+    private boolean flushScheduled = false;
+
+    private final Runnable flusher = new Runnable() {
+        @Override
+        public void run() {
+            flushScheduled = false;
+            flush();
+        }
+    };
+
+    MRAIDBridge(WebView webView) {
+        this.webView = webView;
+    }
+
+    /**
+     * Queues a call to a mraid.util setter, unless the creative already has
+     * the value.
+     *
+     * @param property the name the value is deduplicated under
+     * @param call     the call, without the window.mraid.util prefix
+     */
+    void setProperty(String property, String call) {
+        String statement = PREFIX + call;
+        if (statement.equals(sent.get(property))) {
+            // back to the value the creative has, drop whatever was queued
+            pending.remove(property);
+            return;
+        }
+        // a value set after queued events goes after them
+        pending.remove(property);
+        pending.put(property, statement);
+        scheduleFlush();
+    }
+
+    /**
+     * Queues a call to a mraid.util event function, sent even if identical
+     * to a previous one.
+     *
+     * @param call the call, without the window.mraid.util prefix
+     */
+    void fireEvent(String call) {
+        pending.put("#" + events++, PREFIX + call);
+        scheduleFlush();
+    }
+
+    /**
+     * Sends whatever is queued now, in one call.
+     */
+    void flush() {
+        if (flushScheduled) {
+            handler.removeCallbacks(flusher);
+            flushScheduled = false;
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+        StringBuilder script = new StringBuilder();
+        for (String property : pending.keySet()) {
+            String statement = pending.get(property);
+            script.append(statement).append(';');
+            if (!property.startsWith("#")) {
+                sent.put(property, statement);
+            }
+        }
+        statements += pending.size();
+        SDKMetrics.MRAID_UPDATES.add(pending.size());
+        SDKMetrics.MRAID_CALLS.increment();
+        pending.clear();
+        calls++;
+        evaluate(script.toString());
+    }
+
+    /**
+     * Drops whatever is queued, e.g. when the webview is destroyed.
+     */
+    void cancel() {
+        handler.removeCallbacks(flusher);
+        flushScheduled = false;
+        pending.clear();
+        if (calls > 0) {
+            Clog.d(Clog.mraidLogTag, "MRAID bridge sent " + statements + " updates in " + calls + " calls");
+        }
+    }
+
+    /**
+     * @return the number of calls into the creative's javascript so far
+     */
+    int getCallCount() {
+        return calls;
+    }
+
+    /**
+     * @return the number of mraid.util calls made so far, across all bridge calls
+     */
+    int getStatementCount() {
+        return statements;
+    }
+
+    private void scheduleFlush() {
+        if (!flushScheduled) {
+            flushScheduled = true;
+            handler.post(flusher);
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    private void evaluate(String script) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            webView.evaluateJavascript(script, null);
+        } else {
+            webView.loadUrl("javascript:" + script);
+        }
+    }
+}
@@ -56,6 +56,7 @@ class MRAIDImplementation {
     protected final static String[] MRAID_INIT_STATE_STRINGS = {"default", "expanded"};
 
     protected final AdWebView owner;
+    final MRAIDBridge bridge;
     private boolean readyFired = false;
     boolean expanded = false;
     boolean resized = false;
@@ -73,6 +74,7 @@ class MRAIDImplementation {
 
     public MRAIDImplementation(AdWebView owner) {
         this.owner = owner;
+        this.bridge = new MRAIDBridge(owner);
     }
 
     void webViewFinishedLoading(WebView view, String startingState) {
@@ -84,19 +86,18 @@ class MRAIDImplementation {
                             MRAID_INIT_STATE_STRINGS[MRAID_INIT_STATE.STARTING_EXPANDED.ordinal()]);
             owner.isFullScreen = isMRAIDTwoPartExpanded;
 
-            view.loadUrl("javascript:window.mraid.util.setPlacementType('"
-                    + adType + "')");
+            bridge.setProperty("placementType", "setPlacementType('" + adType + "')");
 
             if(!isMRAIDTwoPartExpanded) {
-                setSupportsValues(view);
+                setSupportsValues();
                 setScreenSize();
                 setMaxSize();
                 setDefaultPosition();
             }
 
             owner.checkPosition(); //set CURRENT position, in addition to default
-            view.loadUrl("javascript:window.mraid.util.stateChangeEvent('"+startingState+"')");
-            view.loadUrl("javascript:window.mraid.util.readyEvent();");
+            bridge.fireEvent("stateChangeEvent('" + startingState + "')");
+            bridge.fireEvent("readyEvent()");
 
             // Store width and height for close()
             default_width = owner.getLayoutParams().width;
@@ -113,7 +114,7 @@ class MRAIDImplementation {
     private void setDefaultPosition() {
         if (!readyFired) return;
 
-        Activity a = (Activity) owner.getContext();
+        Activity a = (Activity) owner.getActivityContext();
 
         int[] location = new int[2];
         owner.getLocationOnScreen(location);
@@ -129,33 +130,34 @@ class MRAIDImplementation {
         int[] size = {width, height};
         ViewUtil.convertFromPixelsToDP(a, size);
 
-        owner.loadUrl(String.format("javascript:window.mraid.util.setDefaultPosition(%d, %d, %d, %d)",
+        bridge.setProperty("defaultPosition", String.format("setDefaultPosition(%d, %d, %d, %d)",
                 location[0], location[1], size[0], size[1]));
     }
 
-    private void setSupports(WebView view, String feature, boolean value) {
-        view.loadUrl(String.format("javascript:window.mraid.util.setSupports(\'%s\', %s)", feature, String.valueOf(value)));
+    private void setSupports(String feature, boolean value) {
+        bridge.setProperty("supports." + feature,
+                String.format("setSupports(\'%s\', %s)", feature, String.valueOf(value)));
     }
 
     @SuppressLint("NewApi")
-    private void setSupportsValues(WebView view) {
+    private void setSupportsValues() {
         //SMS
         if (hasIntent(new Intent(Intent.ACTION_VIEW, Uri.parse("sms:5555555555")))) {
-            setSupports(view, "sms", true);
+            setSupports("sms", true);
         }
 
         //Tel
         if (hasIntent(new Intent(Intent.ACTION_VIEW, Uri.parse("tel:5555555555")))) {
-            setSupports(view, "tel", true);
+            setSupports("tel", true);
         }
 
         //Calendar
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
             if (hasIntent(new Intent(Intent.ACTION_EDIT).setData(CalendarContract.Events.CONTENT_URI))) {
-                setSupports(view, "calendar", true);
+                setSupports("calendar", true);
                 supportsCalendar = true;
             } else if (hasIntent(new Intent(Intent.ACTION_EDIT).setType("vnd.android.cursor.item/event"))) {
-                setSupports(view, "calendar", true);
+                setSupports("calendar", true);
                 supportsCalendar = true;
                 W3CEvent.useMIME = true;
             }
@@ -165,13 +167,13 @@ class MRAIDImplementation {
         PackageManager pm = owner.getContext().getPackageManager();
         if (pm.checkPermission(Manifest.permission.WRITE_EXTERNAL_STORAGE, owner.getContext().getPackageName()) == PackageManager.PERMISSION_GRANTED) {
             if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
-                setSupports(view, "storePicture", true);
+                setSupports("storePicture", true);
                 supportsPictureAPI = true;
             }
         }
 
         //Video should always work inline.
-        setSupports(view, "inlineVideo", true);
+        setSupports("inlineVideo", true);
     }
 
     boolean hasIntent(Intent i) {
@@ -183,7 +185,7 @@ class MRAIDImplementation {
         if (!readyFired) return;
         isViewable = viewable;
 
-        owner.loadUrl("javascript:window.mraid.util.setIsViewable(" + viewable + ")");
+        bridge.setProperty("isViewable", "setIsViewable(" + viewable + ")");
     }
 
     // parameters are view properties in pixels
@@ -198,7 +200,7 @@ class MRAIDImplementation {
         position[2] = width;
         position[3] = height;
 
-        Activity a = (Activity) owner.getContext();
+        Activity a = (Activity) owner.getActivityContext();
         // current position is relative to max size, so subtract the status bar from y
         int contentViewTop = a.getWindow().findViewById(Window.ID_ANDROID_CONTENT).getTop();
         top -= contentViewTop;
@@ -211,10 +213,9 @@ class MRAIDImplementation {
         top = properties[1];
         width = properties[2];
         height = properties[3];
-        owner.loadUrl(String.format("javascript:window.mraid.util.setCurrentPosition(%d, %d, %d, %d)",
+        bridge.setProperty("currentPosition", String.format("setCurrentPosition(%d, %d, %d, %d)",
                 left, top, width, height));
-        owner.loadUrl(String.format("javascript:window.mraid.util.sizeChangeEvent(%d, %d)",
-                width, height));
+        bridge.fireEvent(String.format("sizeChangeEvent(%d, %d)", width, height));
     }
 
     void close() {
@@ -230,7 +231,7 @@ class MRAIDImplementation {
             }
             owner.setLayoutParams(lp);
             owner.close();
-            owner.loadUrl("javascript:window.mraid.util.stateChangeEvent('default');");
+            bridge.fireEvent("stateChangeEvent('default')");
 
             //Avoid calling onAdCollapsed if this is the TwoPartView closing
             if (!owner.adView.isInterstitial() && !isMRAIDTwoPartExpanded) {
@@ -238,7 +239,7 @@ class MRAIDImplementation {
             }
 
             // Allow orientation changes
-            Activity a = ((Activity) this.owner.getContext());
+            Activity a = ((Activity) this.owner.getActivityContext());
             if (a != null)
                 a.setRequestedOrientation(ActivityInfo.SCREEN_ORIENTATION_UNSPECIFIED);
             expanded = false;
@@ -311,7 +312,7 @@ class MRAIDImplementation {
         }
 
         // Fire the stateChange to MRAID
-        this.owner.loadUrl("javascript:window.mraid.util.stateChangeEvent('expanded');");
+        bridge.fireEvent("stateChangeEvent('expanded')");
         expanded = true;
 
         // Fire the AdListener event
@@ -350,7 +351,7 @@ class MRAIDImplementation {
             if (userInteracted) {
                 expand(parameters);
             } else {
-                Clog.w(Clog.mraidLogTag, Clog.getString(R.string.no_user_interaction, url));
+                Clog.w(Clog.mraidLogTag, R.string.no_user_interaction, url);
             }
         } else if (func.equals("close")) {
             close();
@@ -358,7 +359,7 @@ class MRAIDImplementation {
             if (userInteracted) {
                 resize(parameters);
             } else {
-                Clog.w(Clog.mraidLogTag, Clog.getString(R.string.no_user_interaction, url));
+                Clog.w(Clog.mraidLogTag, R.string.no_user_interaction, url);
             }
         } else if (func.equals("setOrientationProperties")) {
             setOrientationProperties(parameters);
@@ -366,32 +367,32 @@ class MRAIDImplementation {
             if (userInteracted) {
                 createCalendarEvent(parameters);
             } else {
-                Clog.w(Clog.mraidLogTag, Clog.getString(R.string.no_user_interaction, url));
+                Clog.w(Clog.mraidLogTag, R.string.no_user_interaction, url);
             }
         } else if (func.equals("playVideo")) {
             if (userInteracted) {
                 playVideo(parameters);
             } else {
-                Clog.w(Clog.mraidLogTag, Clog.getString(R.string.no_user_interaction, url));
+                Clog.w(Clog.mraidLogTag, R.string.no_user_interaction, url);
             }
         } else if (supportsPictureAPI && func.equals("storePicture")) {
             if (userInteracted) {
                 storePicture(parameters);
             } else {
-                Clog.w(Clog.mraidLogTag, Clog.getString(R.string.no_user_interaction, url));
+                Clog.w(Clog.mraidLogTag, R.string.no_user_interaction, url);
             }
         } else if (func.equals("open")) {
             if (userInteracted) {
                 open(parameters);
             } else {
-                Clog.w(Clog.mraidLogTag, Clog.getString(R.string.no_user_interaction, url));
+                Clog.w(Clog.mraidLogTag, R.string.no_user_interaction, url);
             }
         } else {
             if (func.equals("enable")) {
                 // suppress error for enable command
                 return;
             }
-            Clog.d(Clog.mraidLogTag, Clog.getString(R.string.unsupported_mraid, func));
+            Clog.d(Clog.mraidLogTag, R.string.unsupported_mraid, func);
         }
     }
 
@@ -417,7 +418,7 @@ class MRAIDImplementation {
             }
         }
         if (uri == null) {
-            Clog.d(Clog.mraidLogTag, Clog.getString(R.string.store_picture_error));
+            Clog.d(Clog.mraidLogTag, R.string.store_picture_error);
             return;
         }
 
@@ -465,17 +466,17 @@ class MRAIDImplementation {
                             outstream.write(out_array);
                         }
                     } catch (FileNotFoundException e) {
-                        Clog.d(Clog.mraidLogTag, Clog.getString(R.string.store_picture_error));
+                        Clog.d(Clog.mraidLogTag, R.string.store_picture_error);
                     } catch (IOException e) {
-                        Clog.d(Clog.mraidLogTag, Clog.getString(R.string.store_picture_error));
+                        Clog.d(Clog.mraidLogTag, R.string.store_picture_error);
                     } catch (IllegalArgumentException e) {
-                        Clog.d(Clog.mraidLogTag, Clog.getString(R.string.store_picture_error));
+                        Clog.d(Clog.mraidLogTag, R.string.store_picture_error);
                     } finally {
                         if (outstream != null) {
                             try {
                                 outstream.close();
                             } catch (IOException e) {
-                                Clog.d(Clog.mraidLogTag, Clog.getString(R.string.store_picture_error));
+                                Clog.d(Clog.mraidLogTag, R.string.store_picture_error);
                             }
                         }
                     }
@@ -494,10 +495,10 @@ class MRAIDImplementation {
                             r.setNotificationVisibility(DownloadManager.Request.VISIBILITY_VISIBLE_NOTIFY_COMPLETED);
                             dm.enqueue(r);
                         } catch (IllegalStateException ex) {
-                            Clog.d(Clog.mraidLogTag, Clog.getString(R.string.store_picture_error));
+                            Clog.d(Clog.mraidLogTag, R.string.store_picture_error);
                         }
                     } else {
-                        Clog.d(Clog.mraidLogTag, Clog.getString(R.string.store_picture_error));
+                        Clog.d(Clog.mraidLogTag, R.string.store_picture_error);
                     }
                 }
 
@@ -526,7 +527,7 @@ class MRAIDImplementation {
             }
         }
         if (uri == null) {
-            Clog.d(Clog.mraidLogTag, Clog.getString(R.string.play_vide_no_uri));
+            Clog.d(Clog.mraidLogTag, R.string.play_vide_no_uri);
             return;
         }
         Intent i = new Intent(Intent.ACTION_VIEW);
@@ -534,7 +535,7 @@ class MRAIDImplementation {
         try {
             i.setDataAndType(Uri.parse(URLDecoder.decode(uri, "UTF-8")), "video/mp4");
         } catch (UnsupportedEncodingException e) {
-            Clog.d(Clog.mraidLogTag, Clog.getString(R.string.unsupported_encoding));
+            Clog.d(Clog.mraidLogTag, R.string.unsupported_encoding);
             return;
         }
         try {
@@ -562,7 +563,7 @@ class MRAIDImplementation {
                 i.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
                 owner.getContext().startActivity(i);
                 owner.fireAdClicked();
-                Clog.d(Clog.mraidLogTag, Clog.getString(R.string.create_calendar_event));
+                Clog.d(Clog.mraidLogTag, R.string.create_calendar_event);
             } catch (ActivityNotFoundException e) {
 
             }
@@ -650,13 +651,13 @@ class MRAIDImplementation {
                     allow_offscrean = Boolean.parseBoolean(bnvp.getValue());
                 }
             } catch (NumberFormatException e) {
-                Clog.d(Clog.mraidLogTag, Clog.getString(R.string.number_format));
+                Clog.d(Clog.mraidLogTag, R.string.number_format);
                 return;
             }
         }
         //If the resized ad is larger than the screen, reject with great prejudice
         if (w > screenWidth && h > screenHeight) {
-            this.owner.loadUrl("javascript:mraid.util.errorEvent('Resize called with resizeProperties larger than the screen.', 'mraid.resize()')");
+            bridge.fireEvent("errorEvent('Resize called with resizeProperties larger than the screen.', 'mraid.resize()')");
             return;
         }
 
@@ -667,20 +668,19 @@ class MRAIDImplementation {
         } //Default case is used
 
 
-        Clog.d(Clog.mraidLogTag, Clog.getString(R.string.resize, w, h, offset_x, offset_y, custom_close_position, allow_offscrean));
+        Clog.d(Clog.mraidLogTag, R.string.resize, w, h, offset_x, offset_y, custom_close_position, allow_offscrean);
         this.owner.resize(w, h, offset_x, offset_y, cp_enum, allow_offscrean);
 
         owner.fireAdClicked();
 
-        this.owner
-                .loadUrl("javascript:window.mraid.util.stateChangeEvent('resized');");
+        bridge.fireEvent("stateChangeEvent('resized')");
         resized = true;
 
     }
 
     private void setMaxSize() {
-        if (owner.getContext() instanceof Activity) {
-            Activity a = ((Activity) owner.getContext());
+        if (owner.getActivityContext() instanceof Activity) {
+            Activity a = ((Activity) owner.getActivityContext());
 
             int[] screenSize = ViewUtil.getScreenSizeAsPixels(a);
             int maxWidth = screenSize[0];
@@ -695,17 +695,17 @@ class MRAIDImplementation {
             maxHeight = (int) ((maxHeight / scale) + 0.5f);
             maxWidth = (int) ((maxWidth / scale) + 0.5f);
 
-            owner.loadUrl("javascript:window.mraid.util.setMaxSize(" + maxWidth + ", " + maxHeight + ")");
+            bridge.setProperty("maxSize", "setMaxSize(" + maxWidth + ", " + maxHeight + ")");
         }
     }
 
     private void setScreenSize() {
-        if (owner.getContext() instanceof Activity) {
-            int[] screenSize = ViewUtil.getScreenSizeAsDP(((Activity) owner.getContext()));
+        if (owner.getActivityContext() instanceof Activity) {
+            int[] screenSize = ViewUtil.getScreenSizeAsDP(((Activity) owner.getActivityContext()));
             screenWidth = screenSize[0];
             screenHeight = screenSize[1];
 
-            owner.loadUrl("javascript:window.mraid.util.setScreenSize(" + screenWidth + ", " + screenHeight + ")");
+            bridge.setProperty("screenSize", "setScreenSize(" + screenWidth + ", " + screenHeight + ")");
         }
     }
 
@@ -25,6 +25,7 @@ import android.os.Message;
 import com.appnexus.opensdk.utils.Clog;
 import com.appnexus.opensdk.utils.HTTPGet;
 import com.appnexus.opensdk.utils.HTTPResponse;
+import com.appnexus.opensdk.utils.SDKMetrics;
 import com.appnexus.opensdk.utils.Settings;
 import com.appnexus.opensdk.utils.StringUtil;
 
@@ -67,12 +68,16 @@ public abstract class MediatedAdViewController {
         ResultCode errorCode = null;
 
         if (currentAd == null) {
-            Clog.e(Clog.mediationLogTag, Clog.getString(R.string.mediated_no_ads));
+            Clog.e(Clog.mediationLogTag, R.string.mediated_no_ads);
             errorCode = ResultCode.UNABLE_TO_FILL;
         } else {
             boolean instantiateSuccessful = instantiateNewMediatedAd();
             if (!instantiateSuccessful)
                 errorCode = ResultCode.MEDIATED_SDK_UNAVAILABLE;
+            else {
+                SDKMetrics.MEDIATION_REQUESTS.increment();
+                markTimeline(AdRequestTimeline.Phase.MEDIATED_ADAPTER_INSTANTIATED);
+            }
         }
 
         if (errorCode != null)
@@ -99,8 +104,8 @@ public abstract class MediatedAdViewController {
             return false;
         }
         if ((mAV == null) || (callerClass == null) || !callerClass.isInstance(mAV)) {
-            Clog.e(Clog.mediationLogTag, Clog.getString(R.string.instance_exception,
-                    callerClass != null ? callerClass.getCanonicalName() : "null"));
+            Clog.e(Clog.mediationLogTag, R.string.instance_exception,
+                    callerClass != null ? callerClass.getCanonicalName() : "null");
             onAdFailed(ResultCode.MEDIATED_SDK_UNAVAILABLE);
             return false;
         }
@@ -127,8 +132,8 @@ public abstract class MediatedAdViewController {
      *         <code>false</code> otherwise.
      */
     private boolean instantiateNewMediatedAd() {
-        Clog.d(Clog.mediationLogTag, Clog.getString(
-                R.string.instantiating_class, currentAd.getClassName()));
+        Clog.d(Clog.mediationLogTag,
+                R.string.instantiating_class, currentAd.getClassName());
 
         try {
             String className = currentAd.getClassName();
@@ -174,11 +179,18 @@ public abstract class MediatedAdViewController {
         return false;
     }
 
+    private void markTimeline(AdRequestTimeline.Phase phase) {
+        AdRequester requester = this.caller_requester.get();
+        if (requester != null && requester.getTimeline() != null) {
+            requester.getTimeline().mark(phase);
+        }
+    }
+
     // Accepts both Exceptions and Errors
     private void handleInstantiationFailure(Throwable throwable, String className) {
         Clog.e(Clog.mediationLogTag,
-                Clog.getString(R.string.mediation_instantiation_failure,
-                        throwable.getClass().getSimpleName()));
+                R.string.mediation_instantiation_failure,
+                        throwable.getClass().getSimpleName());
         if (!StringUtil.isEmpty(className)) {
             Clog.w(Clog.mediationLogTag, String.format("Adding %s to invalid networks list", className));
             Settings.getSettings().addInvalidNetwork(mediaType, className);
@@ -192,7 +204,7 @@ public abstract class MediatedAdViewController {
         destroyed = true;
         mAV = null;
         currentAd = null;
-        Clog.d(Clog.mediationLogTag, Clog.getString(R.string.mediation_finish));
+        Clog.d(Clog.mediationLogTag, R.string.mediation_finish);
     }
 
     /**
@@ -207,6 +219,8 @@ public abstract class MediatedAdViewController {
     public void onAdLoaded() {
         if (hasSucceeded || hasFailed || destroyed) return;
         markLatencyStop();
+        SDKMetrics.MEDIATION_LATENCY.record(getLatencyParam());
+        markTimeline(AdRequestTimeline.Phase.MEDIATED_AD_LOADED);
         cancelTimeout();
         hasSucceeded = true;
 
@@ -315,10 +329,10 @@ public abstract class MediatedAdViewController {
         // if resultCB is empty don't fire resultCB, and just continue to next ad
         if ((currentAd == null) || StringUtil.isEmpty(currentAd.getResultCB())) {
             if(result == ResultCode.SUCCESS) return;
-            Clog.w(Clog.mediationLogTag, Clog.getString(R.string.fire_cb_result_null));
+            Clog.w(Clog.mediationLogTag, R.string.fire_cb_result_null);
             // just making sure
             if (requester == null) {
-                Clog.e(Clog.httpRespLogTag, Clog.getString(R.string.fire_cb_requester_null));
+                Clog.e(Clog.httpRespLogTag, R.string.fire_cb_requester_null);
                 return;
             }
             requester.onReceiveServerResponse(null);
@@ -366,6 +380,7 @@ public abstract class MediatedAdViewController {
         private final boolean ignoreResult;
         private final long latency;
         private final long totalLatency;
+        private final AdRequestTimeline timeline;
 
         private ResultCBRequest(AdRequester requester, String resultCB, ResultCode result,
                                 HashMap<String, Object> extras, boolean ignoreResult,
@@ -377,17 +392,18 @@ public abstract class MediatedAdViewController {
             this.ignoreResult = ignoreResult;
             this.latency = latency;
             this.totalLatency = totalLatency;
+            this.timeline = requester != null ? requester.getTimeline() : null;
         }
 
         @Override
         protected void onPostExecute(HTTPResponse httpResponse) {
             if (this.ignoreResult) {
-                Clog.i(Clog.httpRespLogTag, Clog.getString(R.string.result_cb_ignored));
+                Clog.i(Clog.httpRespLogTag, R.string.result_cb_ignored);
                 return;
             }
             AdRequester requester = this.requester.get();
             if (requester == null) {
-                Clog.w(Clog.httpRespLogTag, Clog.getString(R.string.fire_cb_requester_null));
+                Clog.w(Clog.httpRespLogTag, R.string.fire_cb_requester_null);
                 return;
             }
 
@@ -399,7 +415,7 @@ public abstract class MediatedAdViewController {
                             extras.get(ServerResponse.EXTRAS_KEY_ORIENTATION));
                 }
             } else {
-                Clog.w(Clog.httpRespLogTag, Clog.getString(R.string.result_cb_bad_response));
+                Clog.w(Clog.httpRespLogTag, R.string.result_cb_bad_response);
             }
 
             requester.onReceiveServerResponse(response);
@@ -424,6 +440,9 @@ public abstract class MediatedAdViewController {
             if (totalLatency > 0) {
                 sb.append("&total_latency=").append(Uri.encode(String.valueOf(totalLatency)));
             }
+            if (timeline != null) {
+                timeline.appendQueryParameters(sb);
+            }
 
             return sb.toString();
         }
@@ -454,7 +473,8 @@ public abstract class MediatedAdViewController {
             MediatedAdViewController avc = mavc.get();
             
             if (avc == null || avc.hasFailed) return;
-            Clog.w(Clog.mediationLogTag, Clog.getString(R.string.mediation_timeout));
+            Clog.w(Clog.mediationLogTag, R.string.mediation_timeout);
+            SDKMetrics.MEDIATION_TIMEOUTS.increment();
             try {
                 avc.onAdFailed(ResultCode.INTERNAL_ERROR);
             } catch (IllegalArgumentException e) {
@@ -55,7 +55,7 @@ public class MediatedBannerAdViewController extends MediatedAdViewController {
             return;
 
         // if controller is valid, request an ad
-        Clog.d(Clog.mediationLogTag, Clog.getString(R.string.mediated_request));
+        Clog.d(Clog.mediationLogTag, R.string.mediated_request);
 
         ResultCode errorCode = null;
 
@@ -73,7 +73,7 @@ public class MediatedBannerAdViewController extends MediatedAdViewController {
                         getTargetingParameters());
                 mediatedDisplayable.setView(viewFromMediatedAdaptor);
             }else{
-                Clog.e(Clog.mediationLogTag, Clog.getString(R.string.mediated_request_null_activity));
+                Clog.e(Clog.mediationLogTag, R.string.mediated_request_null_activity);
                 errorCode = ResultCode.INTERNAL_ERROR;
             }
         } catch (Exception e) {
@@ -87,7 +87,7 @@ public class MediatedBannerAdViewController extends MediatedAdViewController {
 
         if ((errorCode == null) && (mediatedDisplayable.getView() == null)) {
             // To check that if by accident instantiated an interstitial ad
-            Clog.e(Clog.mediationLogTag, Clog.getString(R.string.mediated_view_null));
+            Clog.e(Clog.mediationLogTag, R.string.mediated_view_null);
             errorCode = ResultCode.INTERNAL_ERROR;
         }
 
@@ -44,7 +44,7 @@ public class MediatedInterstitialAdViewController extends MediatedAdViewControll
             return;
 
         // if controller is valid, request an ad
-        Clog.d(Clog.mediationLogTag, Clog.getString(R.string.mediated_request));
+        Clog.d(Clog.mediationLogTag, R.string.mediated_request);
 
         ResultCode errorCode = null;
 
@@ -59,7 +59,7 @@ public class MediatedInterstitialAdViewController extends MediatedAdViewControll
                         currentAd.getId(),
                         getTargetingParameters());
             }else{
-                Clog.e(Clog.mediationLogTag, Clog.getString(R.string.mediated_request_null_activity));
+                Clog.e(Clog.mediationLogTag, R.string.mediated_request_null_activity);
                 errorCode = ResultCode.INTERNAL_ERROR;
             }
         } catch (Exception e) {
@@ -26,6 +26,7 @@ import android.os.Message;
 import com.appnexus.opensdk.utils.Clog;
 import com.appnexus.opensdk.utils.HTTPGet;
 import com.appnexus.opensdk.utils.HTTPResponse;
+import com.appnexus.opensdk.utils.SDKMetrics;
 import com.appnexus.opensdk.utils.Settings;
 import com.appnexus.opensdk.utils.StringUtil;
 
@@ -49,11 +50,11 @@ public class MediatedNativeAdController {
 
     private MediatedNativeAdController(MediatedAd currentAd, AdRequester requester) {
         if (currentAd == null) {
-            Clog.e(Clog.mediationLogTag, Clog.getString(R.string.mediated_no_ads));
+            Clog.e(Clog.mediationLogTag, R.string.mediated_no_ads);
             errorCode = ResultCode.UNABLE_TO_FILL;
         } else {
-            Clog.d(Clog.mediationLogTag, Clog.getString(
-                    R.string.instantiating_class, currentAd.getClassName()));
+            Clog.d(Clog.mediationLogTag,
+                    R.string.instantiating_class, currentAd.getClassName());
 
             this.requester = new WeakReference<AdRequester>(requester);
             this.currentAd = currentAd;
@@ -64,6 +65,8 @@ public class MediatedNativeAdController {
             try {
                 Class<?> c = Class.forName(currentAd.getClassName());
                 MediatedNativeAd ad = (MediatedNativeAd) c.newInstance();
+                SDKMetrics.MEDIATION_REQUESTS.increment();
+                markTimeline(requester, AdRequestTimeline.Phase.MEDIATED_ADAPTER_INSTANTIATED);
                 if (requester.getRequestParams() != null) {
                     ad.requestNativeAd(
                             requester.getRequestParams().getContext(),
@@ -95,10 +98,16 @@ public class MediatedNativeAdController {
         }
     }
 
+    private static void markTimeline(AdRequester requester, AdRequestTimeline.Phase phase) {
+        if (requester != null && requester.getTimeline() != null) {
+            requester.getTimeline().mark(phase);
+        }
+    }
+
     private void handleInstantiationFailure(Throwable throwable, String className) {
         Clog.e(Clog.mediationLogTag,
-                Clog.getString(R.string.mediation_instantiation_failure,
-                        throwable.getClass().getSimpleName()));
+                R.string.mediation_instantiation_failure,
+                        throwable.getClass().getSimpleName());
         if (!StringUtil.isEmpty(className)) {
             Clog.w(Clog.mediationLogTag, String.format("Adding %s to invalid networks list", className));
             Settings.getSettings().addInvalidNetwork(MediaType.NATIVE, className);
@@ -108,7 +117,7 @@ public class MediatedNativeAdController {
 
     protected void finishController() {
         currentAd = null;
-        Clog.d(Clog.mediationLogTag, Clog.getString(R.string.mediation_finish));
+        Clog.d(Clog.mediationLogTag, R.string.mediation_finish);
     }
 
     /**
@@ -122,6 +131,8 @@ public class MediatedNativeAdController {
     public void onAdLoaded(final NativeAdResponse response) {
         if (hasSucceeded || hasFailed) return;
         markLatencyStop();
+        SDKMetrics.MEDIATION_LATENCY.record(getLatencyParam());
+        markTimeline(this.requester.get(), AdRequestTimeline.Phase.MEDIATED_AD_LOADED);
         cancelTimeout();
         hasSucceeded = true;
 
@@ -195,10 +206,10 @@ public class MediatedNativeAdController {
         // if resultCB is empty don't fire resultCB, and just continue to next ad
         if ((currentAd == null) || StringUtil.isEmpty(currentAd.getResultCB())) {
             if(result == ResultCode.SUCCESS) return;
-            Clog.w(Clog.mediationLogTag, Clog.getString(R.string.fire_cb_result_null));
+            Clog.w(Clog.mediationLogTag, R.string.fire_cb_result_null);
             // just making sure
             if (requester == null) {
-                Clog.e(Clog.httpRespLogTag, Clog.getString(R.string.fire_cb_requester_null));
+                Clog.e(Clog.httpRespLogTag, R.string.fire_cb_requester_null);
                 return;
             }
             requester.onReceiveServerResponse(null);
@@ -247,6 +258,7 @@ public class MediatedNativeAdController {
         private final boolean ignoreResult;
         private final long latency;
         private final long totalLatency;
+        private final AdRequestTimeline timeline;
 
         private ResultCBRequest(AdRequester requester, String resultCB, ResultCode result,
                                 HashMap<String, Object> extras, boolean ignoreResult,
@@ -258,17 +270,18 @@ public class MediatedNativeAdController {
             this.ignoreResult = ignoreResult;
             this.latency = latency;
             this.totalLatency = totalLatency;
+            this.timeline = requester != null ? requester.getTimeline() : null;
         }
 
         @Override
         protected void onPostExecute(HTTPResponse httpResponse) {
             if (this.ignoreResult) {
-                Clog.i(Clog.httpRespLogTag, Clog.getString(R.string.result_cb_ignored));
+                Clog.i(Clog.httpRespLogTag, R.string.result_cb_ignored);
                 return;
             }
             AdRequester requester = this.requester.get();
             if (requester == null) {
-                Clog.w(Clog.httpRespLogTag, Clog.getString(R.string.fire_cb_requester_null));
+                Clog.w(Clog.httpRespLogTag, R.string.fire_cb_requester_null);
                 return;
             }
 
@@ -280,7 +293,7 @@ public class MediatedNativeAdController {
                             extras.get(ServerResponse.EXTRAS_KEY_ORIENTATION));
                 }
             } else {
-                Clog.w(Clog.httpRespLogTag, Clog.getString(R.string.result_cb_bad_response));
+                Clog.w(Clog.httpRespLogTag, R.string.result_cb_bad_response);
             }
 
             requester.onReceiveServerResponse(response);
@@ -305,6 +318,9 @@ public class MediatedNativeAdController {
             if (totalLatency > 0) {
                 sb.append("&total_latency=").append(Uri.encode(String.valueOf(totalLatency)));
             }
+            if (timeline != null) {
+                timeline.appendQueryParameters(sb);
+            }
 
             return sb.toString();
         }
@@ -335,7 +351,8 @@ public class MediatedNativeAdController {
             MediatedNativeAdController nac = mnac.get();
 
             if (nac == null || nac.hasFailed) return;
-            Clog.w(Clog.mediationLogTag, Clog.getString(R.string.mediation_timeout));
+            Clog.w(Clog.mediationLogTag, R.string.mediation_timeout);
+            SDKMetrics.MEDIATION_TIMEOUTS.increment();
             try {
                 nac.onAdFailed(ResultCode.INTERNAL_ERROR);
             } catch (IllegalArgumentException e) {
@@ -0,0 +1,288 @@
+/*
+ *    Copyright 2015 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import com.appnexus.opensdk.utils.Clog;
+import com.appnexus.opensdk.utils.Settings;
+
+import java.util.LinkedList;
+
+/**
+ * Keeps a number of fully loaded native ads ready for a single placement,
+ * for feeds that need to show a native ad every few rows. The cache loads
+ * ads with the given {@link NativeAdRequest} one after the other until it
+ * holds {@link #getDepth()} of them, and requests a new one in the background
+ * whenever an ad is taken out or expires. Images and icons are loaded
+ * according to the request's {@link NativeAdRequest#shouldLoadImage(boolean)}
+ * and {@link NativeAdRequest#shouldLoadIcon(boolean)} settings before an ad
+ * is added to the cache.
+ *
+ * The cache replaces the listener of the request it is given; use a separate
+ * NativeAdRequest for each cache. All methods must be called on the main thread.
+ */
+public class NativeAdCache {
+    private final NativeAdRequest request;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    // ordered by arrival, so the ad that expires first is always at the head
+    private final LinkedList<CachedResponse> cache = new LinkedList<CachedResponse>();
+    private int depth;
+    private boolean started = false;
+    private boolean destroyed = false;
+    private long requestStartTime = -1;
+
+    private int hits = 0;
+    private int misses = 0;
+    private int fills = 0;
+    private long lastFillLatency = -1;
+    private long totalFillLatency = 0;
+
+    /**
+     * Creates a cache that keeps up to depth native ads loaded with the given request.
+     * Call {@link #start()} to begin loading ads.
+     *
+     * @param request The request describing the native ads to load. Its targeting
+     *                parameters are used for every ad the cache loads.
+     * @param depth   The number of ads to keep ready, at most
+     *                {@link Settings#MAX_NATIVE_AD_CACHE_DEPTH}.
+     */
+    public NativeAdCache(NativeAdRequest request, int depth) {
+        this.request = request;
+        setDepth(depth);
+        request.setListener(requestListener);
+    }
+
+    /**
+     * Begins filling the cache.
+     */
+    public void start() {
+        if (destroyed) {
+            Clog.e(Clog.nativeLogTag, "Native ad cache has been destroyed, won't load a new ad");
+            return;
+        }
+        started = true;
+        refill();
+    }
+
+    /**
+     * Takes the next native ad out of the cache, and requests a replacement
+     * in the background. The caller is responsible for the returned response,
+     * it is not destroyed by the cache.
+     *
+     * @return A loaded native ad that has not expired, or null if none is ready.
+     */
+    public NativeAdResponse poll() {
+        removeExpired();
+        CachedResponse entry = cache.poll();
+        if (entry == null) {
+            misses++;
+            Clog.d(Clog.nativeLogTag, "Native ad cache miss");
+            refill();
+            return null;
+        }
+        hits++;
+        scheduleEviction();
+        refill();
+        return entry.response;
+    }
+
+    /**
+     * Returns the number of native ads that are ready right now.
+     *
+     * @return The number of ads in the cache that have not expired.
+     */
+    public int size() {
+        removeExpired();
+        return cache.size();
+    }
+
+    /**
+     * Sets the number of native ads to keep ready. Lowering the depth
+     * does not remove ads that are already loaded.
+     *
+     * @param depth The number of ads to keep ready, at most
+     *              {@link Settings#MAX_NATIVE_AD_CACHE_DEPTH}.
+     */
+    public void setDepth(int depth) {
+        this.depth = Math.max(1, Math.min(depth, Settings.MAX_NATIVE_AD_CACHE_DEPTH));
+        if (started) {
+            refill();
+        }
+    }
+
+    /**
+     * Returns the number of native ads the cache keeps ready.
+     *
+     * @return The depth of the cache.
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Returns how many times {@link #poll()} returned an ad.
+     *
+     * @return The number of cache hits.
+     */
+    public int getHitCount() {
+        return hits;
+    }
+
+    /**
+     * Returns how many times {@link #poll()} found the cache empty.
+     *
+     * @return The number of cache misses.
+     */
+    public int getMissCount() {
+        return misses;
+    }
+
+    /**
+     * Returns the time it took to load the last native ad added to the
+     * cache, from the request until its images were downloaded.
+     *
+     * @return The fill latency in milliseconds, -1 if no ad was loaded yet.
+     */
+    public long getLastFillLatency() {
+        return lastFillLatency;
+    }
+
+    /**
+     * Returns the average time it took to load a native ad into the cache.
+     *
+     * @return The average fill latency in milliseconds, -1 if no ad was loaded yet.
+     */
+    public long getAverageFillLatency() {
+        return fills == 0 ? -1 : totalFillLatency / fills;
+    }
+
+    /**
+     * Stops loading ads and destroys the ads that are still in the cache.
+     */
+    public void destroy() {
+        destroyed = true;
+        started = false;
+        handler.removeCallbacksAndMessages(null);
+        CachedResponse entry;
+        while ((entry = cache.poll()) != null) {
+            entry.response.destroy();
+        }
+    }
+
+    // loads one more ad if the cache is not full, the next one is loaded when it arrives
+    private void refill() {
+        handler.removeCallbacks(refillRunnable);
+        if (!started || destroyed || request.isLoading || cache.size() >= depth) {
+            return;
+        }
+        Clog.d(Clog.nativeLogTag, "Refilling native ad cache, " + cache.size() + " of " + depth + " ready");
+        if (request.loadAd()) {
+            requestStartTime = SystemClock.elapsedRealtime();
+        } else {
+            // the request could not be made, e.g. its placement is not set yet, try again later
+            handler.postDelayed(refillRunnable, Settings.NATIVE_AD_CACHE_RETRY_DELAY);
+        }
+    }
+
+    private final Runnable refillRunnable = new Runnable() {
+        @Override
+        public void run() {
+            refill();
+        }
+    };
+
+    private final Runnable evictionRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (removeExpired()) {
+                refill();
+            }
+        }
+    };
+
+    // wakes up when the ad at the head of the cache expires
+    private void scheduleEviction() {
+        handler.removeCallbacks(evictionRunnable);
+        CachedResponse head = cache.peek();
+        if (head != null) {
+            long expiresIn = head.time + Settings.NATIVE_AD_RESPONSE_EXPIRATION_TIME - SystemClock.elapsedRealtime();
+            handler.postDelayed(evictionRunnable, Math.max(0, expiresIn) + 1);
+        }
+    }
+
+    // removes expired ads from the head of the cache and returns whether or not any were removed
+    private boolean removeExpired() {
+        boolean removed = false;
+        long now = SystemClock.elapsedRealtime();
+        CachedResponse head = cache.peek();
+        while (head != null && (head.response.hasExpired()
+                || now - head.time > Settings.NATIVE_AD_RESPONSE_EXPIRATION_TIME)) {
+            cache.poll();
+            head.response.destroy();
+            removed = true;
+            head = cache.peek();
+        }
+        if (removed) {
+            Clog.d(Clog.nativeLogTag, "Removed expired native ads from the cache");
+            scheduleEviction();
+        }
+        return removed;
+    }
+
+    private final NativeAdRequestListener requestListener = new NativeAdRequestListener() {
+        @Override
+        public void onAdLoaded(NativeAdResponse response) {
+            if (destroyed) {
+                response.destroy();
+                return;
+            }
+            long now = SystemClock.elapsedRealtime();
+            if (requestStartTime >= 0) {
+                lastFillLatency = now - requestStartTime;
+                totalFillLatency += lastFillLatency;
+                fills++;
+                requestStartTime = -1;
+            }
+            cache.add(new CachedResponse(response, now));
+            scheduleEviction();
+            // the request is still marked as loading until this returns
+            handler.post(refillRunnable);
+        }
+
+        @Override
+        public void onAdFailed(ResultCode errorcode) {
+            requestStartTime = -1;
+            if (!destroyed) {
+                // don't hammer the server when there is no fill
+                handler.postDelayed(refillRunnable, Settings.NATIVE_AD_CACHE_RETRY_DELAY);
+            }
+        }
+    };
+
+    private static class CachedResponse {
+        final NativeAdResponse response;
+        final long time;
+
+        CachedResponse(NativeAdResponse response, long time) {
+            this.response = response;
+            this.time = time;
+        }
+    }
+}
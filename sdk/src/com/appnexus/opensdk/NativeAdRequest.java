@@ -21,7 +21,9 @@ import android.graphics.Bitmap;
 
 import com.appnexus.opensdk.utils.AdvertistingIDUtil;
 import com.appnexus.opensdk.utils.Clog;
+import com.appnexus.opensdk.utils.ImageCache;
 import com.appnexus.opensdk.utils.ImageService;
+import com.appnexus.opensdk.utils.SDKMetrics;
 
 /**
  * Define the attributes used for requesting a native ad.
@@ -31,11 +33,17 @@ public class NativeAdRequest implements Ad {
     private final RequestParameters requestParameters;
     private final AdFetcher mAdFetcher;
     private final NativeAdDispatcher dispatcher;
+    private final Context context;
     private boolean loadImage;
     private boolean loadIcon;
+    private int imageWidth, imageHeight;
+    private int iconWidth, iconHeight;
+    private Bitmap.Config bitmapConfig = Bitmap.Config.ARGB_8888;
+    private Bitmap.Config iconBitmapConfig = Bitmap.Config.ARGB_8888;
 
     public NativeAdRequest(Context context, String placementID) {
         AdvertistingIDUtil.retrieveAndSetAAID(context);
+        this.context = context.getApplicationContext();
         requestParameters = new RequestParameters(context);
         requestParameters.setPlacementID(placementID);
         requestParameters.setMediaType(MediaType.NATIVE);
@@ -46,6 +54,7 @@ public class NativeAdRequest implements Ad {
 
     public NativeAdRequest(Context context, String inventoryCode, int memberID) {
         AdvertistingIDUtil.retrieveAndSetAAID(context);
+        this.context = context.getApplicationContext();
         requestParameters = new RequestParameters(context);
         requestParameters.setInventoryCodeAndMemberID(memberID, inventoryCode);
         requestParameters.setMediaType(MediaType.NATIVE);
@@ -62,8 +71,8 @@ public class NativeAdRequest implements Ad {
      * @return true if the device's native browser will be used; false otherwise.
      */
     public boolean getOpensNativeBrowser() {
-        Clog.d(Clog.nativeLogTag, Clog.getString(
-                R.string.get_opens_native_browser, requestParameters.getOpensNativeBrowser()));
+        Clog.d(Clog.nativeLogTag,
+                R.string.get_opens_native_browser, requestParameters.getOpensNativeBrowser());
         return requestParameters.getOpensNativeBrowser();
     }
 
@@ -78,8 +87,8 @@ public class NativeAdRequest implements Ad {
      * @param opensNativeBrowser
      */
     public void setOpensNativeBrowser(boolean opensNativeBrowser) {
-        Clog.d(Clog.nativeLogTag, Clog.getString(
-                R.string.set_opens_native_browser, opensNativeBrowser));
+        Clog.d(Clog.nativeLogTag,
+                R.string.set_opens_native_browser, opensNativeBrowser);
         requestParameters.setOpensNativeBrowser(opensNativeBrowser);
     }
 
@@ -92,8 +101,8 @@ public class NativeAdRequest implements Ad {
      * @param placementID The placement ID to use.
      */
     public void setPlacementID(String placementID) {
-        Clog.d(Clog.nativeLogTag, Clog.getString(
-                R.string.set_placement_id, placementID));
+        Clog.d(Clog.nativeLogTag,
+                R.string.set_placement_id, placementID);
         requestParameters.setPlacementID(placementID);
     }
 
@@ -103,8 +112,8 @@ public class NativeAdRequest implements Ad {
      * @return The Placement ID
      */
     public String getPlacementID() {
-        Clog.d(Clog.nativeLogTag, Clog.getString(
-                R.string.get_placement_id, requestParameters.getPlacementID()));
+        Clog.d(Clog.nativeLogTag,
+                R.string.get_placement_id, requestParameters.getPlacementID());
         return requestParameters.getPlacementID();
     }
 
@@ -146,8 +155,8 @@ public class NativeAdRequest implements Ad {
      * @param gender User's gender
      */
     public void setGender(AdView.GENDER gender) {
-        Clog.d(Clog.nativeLogTag, Clog.getString(
-                R.string.set_gender, gender.toString()));
+        Clog.d(Clog.nativeLogTag,
+                R.string.set_gender, gender.toString());
         requestParameters.setGender(gender);
     }
 
@@ -157,8 +166,8 @@ public class NativeAdRequest implements Ad {
      * @return User's gender
      */
     public AdView.GENDER getGender() {
-        Clog.d(Clog.nativeLogTag, Clog.getString(
-                R.string.get_gender, requestParameters.getGender().toString()));
+        Clog.d(Clog.nativeLogTag,
+                R.string.get_gender, requestParameters.getGender().toString());
         return requestParameters.getGender();
     }
 
@@ -234,6 +243,60 @@ public class NativeAdRequest implements Ad {
         loadIcon = flag;
     }
 
+    /**
+     * Set the size of the view the main image will be shown in. The image is
+     * sampled down while it is decoded, keeping it at least as large as this
+     * size, instead of being kept at its full resolution. By default the
+     * image is decoded at its full size.
+     *
+     * @param width  The width of the image view in pixels.
+     * @param height The height of the image view in pixels.
+     */
+    public void setImageSize(int width, int height) {
+        imageWidth = width;
+        imageHeight = height;
+    }
+
+    /**
+     * Set the size of the view the icon will be shown in. The icon is
+     * sampled down while it is decoded, keeping it at least as large as this
+     * size. By default the icon is decoded at its full size.
+     *
+     * @param width  The width of the icon view in pixels.
+     * @param height The height of the icon view in pixels.
+     */
+    public void setIconSize(int width, int height) {
+        iconWidth = width;
+        iconHeight = height;
+    }
+
+    /**
+     * Set the config the main image is decoded with. Use RGB_565 to halve
+     * its memory use when it doesn't need transparency. The default is
+     * ARGB_8888. The icon has its own config, see
+     * {@link #setIconBitmapConfig(Bitmap.Config)}.
+     *
+     * @param config The preferred bitmap config.
+     */
+    public void setBitmapConfig(Bitmap.Config config) {
+        if (config != null) {
+            bitmapConfig = config;
+        }
+    }
+
+    /**
+     * Set the config the icon is decoded with. Icons are often transparent,
+     * so the default is ARGB_8888 whatever the main image uses. Use RGB_565
+     * only for icons without transparency.
+     *
+     * @param config The preferred bitmap config.
+     */
+    public void setIconBitmapConfig(Bitmap.Config config) {
+        if (config != null) {
+            iconBitmapConfig = config;
+        }
+    }
+
     /**
      * Register a listener for ad success/fail to load notification events
      *
@@ -322,6 +385,7 @@ public class NativeAdRequest implements Ad {
             if (!ad.getMediaType().equals(MediaType.NATIVE)) {
                 onAdFailed(ResultCode.INTERNAL_ERROR);
             } else {
+                SDKMetrics.getResultCounter(ResultCode.SUCCESS).increment();
                 final NativeAdResponse response = ad.getNativeAdResponse();
                 if (!loadImage && !loadIcon) {
                     if (listener != null) {
@@ -332,7 +396,7 @@ public class NativeAdRequest implements Ad {
                     isLoading = false;
                     return;
                 }
-                imageService = new ImageService();
+                imageService = new ImageService(ImageCache.getInstance(context));
                 this.response = response;
                 if (loadImage) {
                     ImageService.ImageReceiver imageReceiver = new ImageService.ImageReceiver() {
@@ -346,7 +410,8 @@ public class NativeAdRequest implements Ad {
                             Clog.e(Clog.httpRespLogTag, "Image downloading failed for url " + response.getImageUrl());
                         }
                     };
-                    imageService.registerImageReceiver(imageReceiver, response.getImageUrl());
+                    imageService.registerImageReceiver(imageReceiver, response.getImageUrl(),
+                            imageWidth, imageHeight, bitmapConfig);
                 }
                 if (loadIcon) {
                     ImageService.ImageReceiver iconReceiver = new ImageService.ImageReceiver() {
@@ -360,7 +425,8 @@ public class NativeAdRequest implements Ad {
                             Clog.e(Clog.httpRespLogTag, "Image downloading failed for url " + response.getIconUrl());
                         }
                     };
-                    imageService.registerImageReceiver(iconReceiver, response.getIconUrl());
+                    imageService.registerImageReceiver(iconReceiver, response.getIconUrl(),
+                            iconWidth, iconHeight, iconBitmapConfig);
                 }
                 imageService.registerNotification(this);
                 imageService.execute();
@@ -369,6 +435,7 @@ public class NativeAdRequest implements Ad {
 
         @Override
         public void onAdFailed(ResultCode resultCode) {
+            SDKMetrics.getResultCounter(resultCode).increment();
             if (listener != null) {
                 listener.onAdFailed(resultCode);
             }
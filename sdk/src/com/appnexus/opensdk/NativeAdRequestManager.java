@@ -56,6 +56,7 @@ class NativeAdRequestManager extends RequestManager {
     @Override
     public void failed(ResultCode code) {
         printMediatedClasses();
+        finishTimeline(code);
         NativeAdRequest owner = this.owner.get();
         if (owner != null) {
             owner.getAdDispatcher().onAdFailed(code);
@@ -71,8 +72,8 @@ class NativeAdRequestManager extends RequestManager {
 
             // no ads in the response and no old ads means no fill
             if (!responseHasAds && !ownerHasAds) {
-                Clog.w(Clog.httpRespLogTag, Clog.getString(R.string.response_no_ads));
-
+                Clog.w(Clog.httpRespLogTag, R.string.response_no_ads);
+                finishTimeline(ResultCode.UNABLE_TO_FILL);
                 owner.getAdDispatcher().onAdFailed(ResultCode.UNABLE_TO_FILL);
                 return;
             }
@@ -128,6 +129,7 @@ class NativeAdRequestManager extends RequestManager {
     @Override
     public void onReceiveAd(AdResponse ad) {
         printMediatedClasses();
+        finishTimeline(ResultCode.SUCCESS);
         if (controller != null) {
             // do not hold a reference of current mediated ad controller after ad is loaded
             controller = null;
@@ -86,8 +86,8 @@ class PBImplementation {
         try {
             context.startActivity(intent);
         } catch (ActivityNotFoundException e) {
-            Clog.w(Clog.baseLogTag, Clog.getString(R.string.opening_url_failed,
-                    URI_LAUNCH_APP.toString()));
+            Clog.w(Clog.baseLogTag, R.string.opening_url_failed,
+                    URI_LAUNCH_APP.toString());
         }
     }
 
@@ -20,6 +20,7 @@ import android.os.AsyncTask;
 import android.os.Build;
 
 import com.appnexus.opensdk.utils.Clog;
+import com.appnexus.opensdk.utils.SDKMetrics;
 
 import java.util.ArrayList;
 import java.util.LinkedList;
@@ -28,12 +29,16 @@ abstract class RequestManager implements AdRequester{
     private LinkedList<MediatedAd> mediatedAds;
     protected AdRequest adRequest;
     private long totalLatencyStart = -1;
+    private AdRequestTimeline timeline;
 
     @Override
     public abstract void cancel();
 
     @Override
     public void execute() {
+        RequestParameters params = getRequestParams();
+        timeline = new AdRequestTimeline(params != null ? params.getMediaType() : null);
+        SDKMetrics.AD_REQUESTS.increment();
         adRequest = new AdRequest(this);
         markLatencyStart();
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
@@ -69,6 +74,21 @@ abstract class RequestManager implements AdRequester{
         return -1;
     }
 
+    @Override
+    public AdRequestTimeline getTimeline() {
+        return timeline;
+    }
+
+    /**
+     * Ends the request's timeline, for failures and ads that are not
+     * rendered in an AdWebView.
+     */
+    protected void finishTimeline(ResultCode result) {
+        if (timeline != null) {
+            timeline.finish(result);
+        }
+    }
+
     /*
      * Meditated Ads
      */
@@ -253,7 +253,7 @@ class RequestParameters {
      */
     boolean isReadyForRequest() {
         if ((StringUtil.isEmpty(invCode) || memberID <= 0) && StringUtil.isEmpty(placementID)) {
-            Clog.e(Clog.baseLogTag, Clog.getString(R.string.no_identification));
+            Clog.e(Clog.baseLogTag, R.string.no_identification);
             return false;
         }
         if (!mediaType.equals(MediaType.NATIVE)) {
@@ -264,7 +264,7 @@ class RequestParameters {
                 tempMaxWidth = maximumWidth;
                 tempMaxHeight = maximumHeight;
                 if (tempMaxWidth <= 0 || tempMaxHeight <= 0) {
-                    Clog.w(Clog.baseLogTag, Clog.getString(R.string.max_size_not_set));
+                    Clog.w(Clog.baseLogTag, R.string.max_size_not_set);
                 }
             } else {
                 tempMaxWidth = measuredWidth;
@@ -272,7 +272,7 @@ class RequestParameters {
             }
             if ((tempMaxHeight <= 0 || tempMaxWidth <= 0) &&
                     (width <= 0 || height <= 0)) {
-                Clog.e(Clog.baseLogTag, Clog.getString(R.string.no_size_info));
+                Clog.e(Clog.baseLogTag, R.string.no_size_info);
                 return false;
             }
         }
@@ -306,18 +306,6 @@ class RequestParameters {
         } else {
             sb.append("id=").append("NO-PLACEMENT-ID");
         }
-        if (!StringUtil.isEmpty(settings.hidmd5))
-            sb.append("&md5udid=").append(Uri.encode(settings.hidmd5));
-        if (!StringUtil.isEmpty(settings.hidsha1))
-            sb.append("&sha1udid=").append(Uri.encode(settings.hidsha1));
-        if (!StringUtil.isEmpty(settings.aaid)) {
-            sb.append("&aaid=").append(Uri.encode(settings.aaid));
-            sb.append(settings.limitTrackingEnabled ? "&LimitAdTrackingEnabled=1" : "&LimitAdTrackingEnabled=0");
-        }
-        if (!StringUtil.isEmpty(settings.deviceMake))
-            sb.append("&devmake=").append(Uri.encode(settings.deviceMake));
-        if (!StringUtil.isEmpty(settings.deviceModel))
-            sb.append("&devmodel=").append(Uri.encode(settings.deviceModel));
         // Get carrier
         if (settings.carrierName == null) {
             TelephonyManager telephonyManager = (TelephonyManager) context
@@ -329,15 +317,10 @@ class RequestParameters {
                 settings.carrierName = "";
             }
         }
-        if (!StringUtil.isEmpty(settings.carrierName))
-            sb.append("&carrier=").append(Uri.encode(settings.carrierName));
-        sb.append("&appid=");
-        if (!StringUtil.isEmpty(settings.app_id)) {
-            sb.append(Uri.encode(settings.app_id));
-        } else {
-            sb.append("NO-APP-ID");
-        }
-        if (settings.first_launch) sb.append("&firstlaunch=true");
+        // device, app and user agent parameters only change with their inputs
+        String staticSegment = StaticSegment.get(settings);
+        sb.ensureCapacity(sb.length() + staticSegment.length() + 512);
+        sb.append(staticSegment);
 
         // Location settings
         String lat, lon, locDataAge, locDataPrecision;
@@ -374,7 +357,7 @@ class RequestParameters {
                 }
             } else {
                 Clog.w(Clog.httpReqLogTag,
-                        Clog.getString(R.string.permissions_missing_location));
+                        R.string.permissions_missing_location);
             }
         }
 
@@ -405,7 +388,6 @@ class RequestParameters {
         if (!StringUtil.isEmpty(locDataAge)) sb.append("&loc_age=").append(locDataAge);
         if (!StringUtil.isEmpty(locDataPrecision)) sb.append("&loc_prec=").append(locDataPrecision);
         if (settings.test_mode) sb.append("&istest=true");
-        if (!StringUtil.isEmpty(settings.ua)) sb.append("&ua=").append(Uri.encode(settings.ua));
 
         // Get orientation, the current rotation of the device
         orientation = context.getResources().getConfiguration().orientation
@@ -420,7 +402,7 @@ class RequestParameters {
             maxHeight = getMaxHeight();
             maxWidth = getMaxWidth();
             if (maxWidth <= 0 || maxHeight <= 0) {
-                Clog.w(Clog.httpReqLogTag, Clog.getString(R.string.max_size_not_set));
+                Clog.w(Clog.httpReqLogTag, R.string.max_size_not_set);
             }
         } else {
             maxHeight = getContainerHeight();
@@ -449,13 +431,6 @@ class RequestParameters {
                 sb.append("&promo_sizes=").append(allowedSizesForInterstitial);
         }
 
-        if (!StringUtil.isEmpty(settings.mcc)) sb.append("&mcc=").append(Uri.encode(settings.mcc));
-        if (!StringUtil.isEmpty(settings.mnc)) sb.append("&mnc=").append(Uri.encode(settings.mnc));
-        if (!StringUtil.isEmpty(settings.language))
-            sb.append("&language=").append(Uri.encode(settings.language));
-        String dev_timezone = "" + Settings.getSettings().dev_timezone;
-        if (!StringUtil.isEmpty(dev_timezone))
-            sb.append("&devtz=").append(Uri.encode(dev_timezone));
         String dev_time = "" + System.currentTimeMillis();
         if (!StringUtil.isEmpty(dev_time)) sb.append("&devtime=").append(Uri.encode(dev_time));
 
@@ -511,9 +486,6 @@ class RequestParameters {
         nonet = nonetSB.toString();
 
         if (!StringUtil.isEmpty(nonet)) sb.append("&nonet=").append(Uri.encode(nonet));
-        sb.append("&format=json");
-        sb.append("&st=mobile_app");
-        sb.append("&sdkver=").append(Uri.encode(Settings.getSettings().sdkVersion));
 
         // add custom parameters if there are any
         if (customKeywords != null) {
@@ -526,7 +498,7 @@ class RequestParameters {
                                     .append("=")
                                     .append(Uri.encode(pair.second));
                         } else {
-                            Clog.w(Clog.httpReqLogTag, Clog.getString(R.string.request_parameter_override_attempt, pair.first));
+                            Clog.w(Clog.httpReqLogTag, R.string.request_parameter_override_attempt, pair.first);
                         }
                     }
                 }
@@ -536,6 +508,107 @@ class RequestParameters {
         return sb.toString();
     }
 
+    /**
+     * The part of the request url built from values that stay the same for
+     * many requests: hashed device ids, AAID, device, carrier, app id, user
+     * agent, mcc/mnc, language and timezone. It is encoded once and rebuilt
+     * only when one of its inputs in Settings changes, e.g. a new AAID.
+     */
+    static class StaticSegment {
+        private static StaticSegment current = null;
+
+        private final String hidmd5;
+        private final String hidsha1;
+        private final String aaid;
+        private final boolean limitTrackingEnabled;
+        private final String carrierName;
+        private final String app_id;
+        private final boolean first_launch;
+        private final String ua;
+        private final String mcc;
+        private final String mnc;
+        private final String value;
+
+        private StaticSegment(Settings settings) {
+            hidmd5 = settings.hidmd5;
+            hidsha1 = settings.hidsha1;
+            aaid = settings.aaid;
+            limitTrackingEnabled = settings.limitTrackingEnabled;
+            carrierName = settings.carrierName;
+            app_id = settings.app_id;
+            first_launch = settings.first_launch;
+            ua = settings.ua;
+            mcc = settings.mcc;
+            mnc = settings.mnc;
+            value = build(settings);
+        }
+
+        static synchronized String get(Settings settings) {
+            if (current == null || !current.matches(settings)) {
+                current = new StaticSegment(settings);
+            }
+            return current.value;
+        }
+
+        static synchronized void invalidate() {
+            current = null;
+        }
+
+        private boolean matches(Settings settings) {
+            return limitTrackingEnabled == settings.limitTrackingEnabled
+                    && first_launch == settings.first_launch
+                    && same(hidmd5, settings.hidmd5)
+                    && same(hidsha1, settings.hidsha1)
+                    && same(aaid, settings.aaid)
+                    && same(carrierName, settings.carrierName)
+                    && same(app_id, settings.app_id)
+                    && same(ua, settings.ua)
+                    && same(mcc, settings.mcc)
+                    && same(mnc, settings.mnc);
+        }
+
+        private static boolean same(String a, String b) {
+            return a == null ? b == null : a.equals(b);
+        }
+
+        private String build(Settings settings) {
+            StringBuilder sb = new StringBuilder();
+            if (!StringUtil.isEmpty(hidmd5))
+                sb.append("&md5udid=").append(Uri.encode(hidmd5));
+            if (!StringUtil.isEmpty(hidsha1))
+                sb.append("&sha1udid=").append(Uri.encode(hidsha1));
+            if (!StringUtil.isEmpty(aaid)) {
+                sb.append("&aaid=").append(Uri.encode(aaid));
+                sb.append(limitTrackingEnabled ? "&LimitAdTrackingEnabled=1" : "&LimitAdTrackingEnabled=0");
+            }
+            if (!StringUtil.isEmpty(settings.deviceMake))
+                sb.append("&devmake=").append(Uri.encode(settings.deviceMake));
+            if (!StringUtil.isEmpty(settings.deviceModel))
+                sb.append("&devmodel=").append(Uri.encode(settings.deviceModel));
+            if (!StringUtil.isEmpty(carrierName))
+                sb.append("&carrier=").append(Uri.encode(carrierName));
+            sb.append("&appid=");
+            if (!StringUtil.isEmpty(app_id)) {
+                sb.append(Uri.encode(app_id));
+            } else {
+                sb.append("NO-APP-ID");
+            }
+            if (first_launch) sb.append("&firstlaunch=true");
+            if (!StringUtil.isEmpty(ua)) sb.append("&ua=").append(Uri.encode(ua));
+            if (!StringUtil.isEmpty(mcc)) sb.append("&mcc=").append(Uri.encode(mcc));
+            if (!StringUtil.isEmpty(mnc)) sb.append("&mnc=").append(Uri.encode(mnc));
+            if (!StringUtil.isEmpty(settings.language))
+                sb.append("&language=").append(Uri.encode(settings.language));
+            String dev_timezone = "" + settings.dev_timezone;
+            if (!StringUtil.isEmpty(dev_timezone))
+                sb.append("&devtz=").append(Uri.encode(dev_timezone));
+            sb.append("&format=json");
+            sb.append("&st=mobile_app");
+            sb.append("&sdkver=").append(Uri.encode(settings.sdkVersion));
+            return sb.toString();
+        }
+    }
+
     private String orientation;
 
     String getOrientation() {
@@ -0,0 +1,200 @@
+/*
+ *    Copyright 2015 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk;
+
+import android.annotation.TargetApi;
+import android.content.res.Resources;
+import android.os.Build;
+import android.webkit.WebResourceResponse;
+
+import com.appnexus.opensdk.utils.Clog;
+import com.appnexus.opensdk.utils.Settings;
+import com.appnexus.opensdk.utils.StringUtil;
+
+import java.io.ByteArrayInputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.regex.Pattern;
+
+/**
+ * The SDK's javascript (sdkjs, anjam and mraid), read from the raw
+ * resources once per process. From Honeycomb on, creatives load each
+ * script with a script tag pointing at {@link #getScriptUrl(int)}, which
+ * the ad webview's client answers from memory through
+ * shouldInterceptRequest. The urls stay the same for a given SDK version,
+ * so the webview can keep the compiled scripts between creatives instead
+ * of parsing the inlined javascript for each of them. Older devices get
+ * the scripts inlined from the same cached copy.
+ *
+ * {@link #planScripts(String, boolean)} picks the scripts a creative
+ * needs, so plain banners don't load the MRAID and ANJAM bridges.
+ */
+class SDKScriptCache {
+    // scripts, as flags for a plan, in the order they are injected
+    static final int SDKJS = 1;
+    static final int ANJAM = 1 << 1;
+    static final int MRAID = 1 << 2;
+    static final int ALL = SDKJS | ANJAM | MRAID;
+
+    private static final int[] SCRIPTS = {SDKJS, ANJAM, MRAID};
+    private static final int[] RESOURCES = {R.raw.sdkjs, R.raw.anjam, R.raw.mraid};
+    private static final String[] NAMES = {"sdkjs.js", "anjam.js", "mraid.js"};
+    private static final String SCRIPT_PATH = "appnexus-sdk/";
+
+    // documents or scripts the creative pulls in, which can't be inspected up front
+    private static final Pattern EXTERNAL_CONTENT = Pattern.compile(
+            "<iframe|<script[^>]*\\ssrc\\s*=", Pattern.CASE_INSENSITIVE);
+
+    private static final String[] sources = new String[SCRIPTS.length];
+    private static final byte[][] bytes = new byte[SCRIPTS.length][];
+
+    /**
+     * Inspects a creative once to decide which scripts it needs. sdkjs is
+     * always loaded, it answers ANJAM frames and pitbull messages. mraid is
+     * loaded for creatives the server flagged as MRAID, creatives that use
+     * the mraid object, and creatives that pull in frames or scripts, since
+     * ANJAM frames relay their MRAID calls through sdkjs to the top window.
+     * anjam is loaded for creatives that call it directly.
+     *
+     * @param html the creative
+     * @param isMRAID whether or not the server flagged the creative as MRAID
+     * @return the flags of the scripts to inject
+     */
+    static int planScripts(String html, boolean isMRAID) {
+        if (html == null) {
+            return ALL;
+        }
+        int plan = SDKJS;
+        if (html.contains("anjam")) {
+            plan |= ANJAM;
+        }
+        if (isMRAID || html.contains("mraid") || EXTERNAL_CONTENT.matcher(html).find()) {
+            plan |= MRAID;
+        }
+        return plan;
+    }
+
+    /**
+     * @return the script's source, or null if the raw resource could not be read
+     */
+    static synchronized String getSource(Resources res, int script) {
+        int i = indexOf(script);
+        if (sources[i] == null && res != null) {
+            StringBuilder sb = new StringBuilder();
+            if (StringUtil.appendRes(sb, res, RESOURCES[i])) {
+                sources[i] = sb.toString();
+            } else {
+                Clog.e(Clog.baseLogTag, "Error reading SDK's raw resources.");
+            }
+        }
+        return sources[i];
+    }
+
+    static String getScriptUrl(int script) {
+        return Settings.BASE_URL + SCRIPT_PATH + Settings.getSettings().sdkVersion
+                + "/" + NAMES[indexOf(script)];
+    }
+
+    /**
+     * @param plan the flags of the scripts to load
+     * @return the markup that makes a creative load the scripts, to be inserted
+     * right after its opening head tag, or null if the scripts are not available
+     */
+    static String getScriptTags(Resources res, int plan) {
+        boolean useUrls = Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB;
+        StringBuilder sb = new StringBuilder();
+        if (!useUrls) {
+            sb.append("<script>");
+        }
+        for (int script : SCRIPTS) {
+            if ((plan & script) == 0) {
+                continue;
+            }
+            if (useUrls) {
+                if (getBytes(res, script) == null) {
+                    return null;
+                }
+                // plain script tags block the parser, so they run in order and
+                // before the creative's scripts
+                sb.append("<script src=\"").append(getScriptUrl(script)).append("\"></script>");
+            } else {
+                String source = getSource(res, script);
+                if (source == null) {
+                    return null;
+                }
+                sb.append(source);
+            }
+        }
+        if (!useUrls) {
+            sb.append("</script>");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return the script served at the url, or 0 if it is not one of the SDK's
+     */
+    static int scriptForUrl(String url) {
+        if (url == null || !url.startsWith(Settings.BASE_URL + SCRIPT_PATH)) {
+            return 0;
+        }
+        for (int script : SCRIPTS) {
+            if (url.equals(getScriptUrl(script))) {
+                return script;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return the response for a script url, or null to let the webview load it
+     */
+    @TargetApi(Build.VERSION_CODES.HONEYCOMB)
+    static WebResourceResponse getResponse(Resources res, String url) {
+        int script = scriptForUrl(url);
+        if (script == 0) {
+            return null;
+        }
+        byte[] data = getBytes(res, script);
+        if (data == null) {
+            return null;
+        }
+        return new WebResourceResponse("text/javascript", "UTF-8", new ByteArrayInputStream(data));
+    }
+
+    private static synchronized byte[] getBytes(Resources res, int script) {
+        int i = indexOf(script);
+        if (bytes[i] == null) {
+            String source = getSource(res, script);
+            if (source != null) {
+                try {
+                    bytes[i] = source.getBytes("UTF-8");
+                } catch (UnsupportedEncodingException ignored) {
+                }
+            }
+        }
+        return bytes[i];
+    }
+
+    private static int indexOf(int script) {
+        for (int i = 0; i < SCRIPTS.length; i++) {
+            if (SCRIPTS[i] == script) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Unknown script " + script);
+    }
+}
@@ -136,6 +136,60 @@ public class SDKSettings {
         return Settings.getSettings().locationDecimalDigits;
     }
 
+    /**
+     * Sets the number of webviews the SDK creates ahead of time, while the
+     * app is idle, so that ads render faster when they arrive. Each pooled
+     * webview holds on to memory until it is used. Set to 0 to create
+     * webviews only when an ad arrives. The default is 1.
+     *
+     * @param size the number of webviews to keep ready, at most 3
+     */
+    public static void setWebViewPoolSize(int size) {
+        AdWebViewPool.setSize(size);
+    }
+
+    /**
+     * Returns the number of webviews the SDK creates ahead of time.
+     *
+     * @return the webview pool size
+     */
+    public static int getWebViewPoolSize() {
+        return AdWebViewPool.getSize();
+    }
+
+    /**
+     * Sets a listener told how long the SDK kept ad webviews paused. Ad
+     * webviews that stay out of sight for a couple of seconds, hidden,
+     * scrolled off screen or waiting to be shown, are paused until they
+     * are visible again.
+     *
+     * @param listener the listener, or null to remove it
+     */
+    public static void setAdWebViewPauseListener(AdWebViewPauseListener listener) {
+        AdWebView.pauseListener = listener;
+    }
+
+    /**
+     * Sets a listener given the timeline of each ad request when it
+     * completes: how long building the request, waiting for the server,
+     * parsing, mediation and rendering each took.
+     *
+     * @param listener the listener, or null to remove it
+     */
+    public static void setAdRequestTimelineListener(AdRequestTimelineListener listener) {
+        AdRequestTimeline.listener = listener;
+    }
+
+    /**
+     * Sets whether the timeline of an ad request is sent to the ad server
+     * along with the results of mediated networks. Off by default.
+     *
+     * @param report true to add the phases reached to result callbacks
+     */
+    public static void setReportAdRequestTimeline(boolean report) {
+        AdRequestTimeline.reportToServer = report;
+    }
+
     /**
      * Register a mapping for an external mediation class.
      *
@@ -17,15 +17,30 @@
 package com.appnexus.opensdk;
 
 import android.annotation.SuppressLint;
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.os.Build;
+import android.util.JsonReader;
+import android.util.JsonToken;
+
 import com.appnexus.opensdk.utils.Clog;
+import com.appnexus.opensdk.utils.ClogListener;
 import com.appnexus.opensdk.utils.HTTPResponse;
 import com.appnexus.opensdk.utils.JsonUtil;
+import com.appnexus.opensdk.utils.RequestHistory;
 import com.appnexus.opensdk.utils.StringUtil;
 import org.apache.http.Header;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PushbackReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.Locale;
@@ -42,6 +57,11 @@ class ServerResponse {
 
     private HashMap<String, Object> extras = new HashMap<String, Object>();
 
+    // standard ad content ready to load, assembled off the main thread
+    private CreativeDocument document;
+    // the request that brought the response, finished once the creative renders
+    private AdRequestTimeline timeline;
+
     private boolean containsAds = false;
 
     private boolean isHttpError = false;
@@ -69,25 +89,74 @@ class ServerResponse {
     static final String EXTRAS_KEY_ORIENTATION = "ORIENTATION";
 
     public ServerResponse(String body, Header[] headers, MediaType mediaType) {
+        this(body, headers, mediaType, null);
+    }
+
+    /**
+     * @param history the request's history entry, or null if not kept
+     */
+    ServerResponse(String body, Header[] headers, MediaType mediaType, RequestHistory.Entry history) {
+        RequestHistory.recordResponse(history, body);
         if (StringUtil.isEmpty(body)) {
-            Clog.clearLastResponse();
             return;
         }
 
-        Clog.setLastResponse(body);
-
         Clog.d(Clog.httpRespLogTag,
-                Clog.getString(R.string.response_body, body));
+                R.string.response_body, body);
 
         this.mediaType = mediaType;
         printHeaders(headers);
-        parseResponse(body);
+        parseResponse(new StringReader(body));
     }
 
     public ServerResponse(HTTPResponse httpResponse, MediaType mediaType) {
         this.mediaType = mediaType;
         printHeaders(httpResponse.getHeaders());
-        parseResponse(httpResponse.getResponseBody());
+        String body = httpResponse.getResponseBody();
+        if (!StringUtil.isEmpty(body)) {
+            parseResponse(new StringReader(body));
+        }
+    }
+
+    /**
+     * Parses the response while it is read from the network, keeping only the
+     * fields the SDK uses instead of the whole body. The body is buffered
+     * only when debug logging is on, to log it, or when the request is kept
+     * in the {@link RequestHistory}.
+     *
+     * @param body    response stream, not closed by this constructor
+     * @param charset charset of the response
+     * @param history the request's history entry, or null if not kept
+     */
+    ServerResponse(InputStream body, String charset, Header[] headers, MediaType mediaType,
+                   RequestHistory.Entry history) throws IOException {
+        this.mediaType = mediaType;
+        Reader reader = new InputStreamReader(body, charset);
+        if (history != null || Clog.isLoggable(Clog.httpRespLogTag, ClogListener.LOG_LEVEL.D)) {
+            String bodyString = readFully(reader);
+            RequestHistory.recordResponse(history, bodyString);
+            if (StringUtil.isEmpty(bodyString)) {
+                Clog.e(Clog.httpRespLogTag, R.string.response_blank);
+                return;
+            }
+            Clog.d(Clog.httpRespLogTag,
+                    R.string.response_body, bodyString);
+            printHeaders(headers);
+            parseResponse(new StringReader(bodyString));
+            return;
+        }
+
+        printHeaders(headers);
+        PushbackReader pushbackReader = new PushbackReader(reader, 1);
+        int first = pushbackReader.read();
+        if (first == -1) {
+            // just log and leave the response empty so that it is
+            // marked as UNABLE_TO_FILL
+            Clog.e(Clog.httpRespLogTag, R.string.response_blank);
+            return;
+        }
+        pushbackReader.unread(first);
+        parseResponse(pushbackReader);
     }
 
     public ServerResponse(boolean isHttpError) {
@@ -102,54 +171,80 @@ class ServerResponse {
     }
 
     private void printHeaders(Header[] headers) {
-        if (headers != null) {
+        if (headers != null && Clog.isLoggable(Clog.httpRespLogTag, ClogListener.LOG_LEVEL.V)) {
             for (Header h : headers) {
                 Clog.v(Clog.httpRespLogTag,
-                        Clog.getString(R.string.response_header, h.getName(),
-                                h.getValue()));
+                        R.string.response_header, h.getName(), h.getValue());
             }
         }
     }
 
-    private void parseResponse(String body) {
-        JSONObject response;
+    /**
+     * Fields pulled out of the response. The response keys can come in any
+     * order, so they are collected first and applied once the whole document
+     * has been read.
+     */
+    private static class ParsedResponse {
+        String status;
+        String errorMessage;
+
+        boolean hasStdAd = false;
+        String adType;
+        int adWidth = -1;
+        int adHeight = -1;
+        String adContent;
+
+        boolean hasNativeAd = false;
+        JSONObject nativeAd;
+
+        LinkedList<MediatedAd> mediatedAds;
+    }
 
+    private void parseResponse(Reader body) {
+        ParsedResponse parsed = new ParsedResponse();
         try {
-            if (!StringUtil.isEmpty(body)) {
-                response = new JSONObject(body);
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
+                readResponse(body, parsed);
             } else {
-                return;
+                // JsonReader is not available, fall back to building the tree
+                readResponse(new JSONObject(readFully(body)), parsed);
             }
         } catch (JSONException e) {
             Clog.e(Clog.httpRespLogTag,
-                Clog.getString(R.string.response_json_error, body));
+                    R.string.response_json_error, e.getMessage());
+            return;
+        } catch (IOException e) {
+            Clog.e(Clog.httpRespLogTag,
+                    R.string.response_json_error, e.getMessage());
+            return;
+        } catch (IllegalStateException e) {
+            // thrown by JsonReader when the document has an unexpected shape
+            Clog.e(Clog.httpRespLogTag,
+                    R.string.response_json_error, e.getMessage());
             return;
         }
-        // response will never be null at this point
 
         // stop parsing if status is not valid
-        if (!checkStatusIsValid(response)) return;
+        if (!checkStatusIsValid(parsed)) return;
         if (mediaType != MediaType.NATIVE) {
             // stop parsing if we get an ad from ads[]
-            if (handleStdAds(response)) return;
+            if (handleStdAds(parsed)) return;
         } else {
             // stop parsing if we get an ad from native[]
             // the order needs to be handled
-            if (handleNativeAds(response)) return;
+            if (handleNativeAds(parsed)) return;
         }
 
         // stop parsing if we get an ad from mediated[]
-        if (handleMediatedAds(response)) return;
+        if (handleMediatedAds(parsed)) return;
     }
 
     // returns true if no error in status. don't fail on null or missing status
-    private boolean checkStatusIsValid(JSONObject response) {
-        String status = JsonUtil.getJSONString(response, RESPONSE_KEY_STATUS);
-        if (status != null) {
-            if (status.equals(RESPONSE_VALUE_ERROR)) {
-                String error = JsonUtil.getJSONString(response, RESPONSE_KEY_ERROR_MESSAGE);
+    private boolean checkStatusIsValid(ParsedResponse parsed) {
+        if (parsed.status != null) {
+            if (parsed.status.equals(RESPONSE_VALUE_ERROR)) {
                 Clog.e(Clog.httpRespLogTag,
-                        Clog.getString(R.string.response_error, error));
+                        R.string.response_error, parsed.errorMessage);
                 return false;
             }
         }
@@ -157,18 +252,15 @@ class ServerResponse {
     }
 
     // returns true if response contains an ad, false if not
-    private boolean handleStdAds(JSONObject response) {
-        JSONArray ads = JsonUtil.getJSONArray(response, RESPONSE_KEY_ADS);
-        if (ads != null) {
-            // take the first ad
-            JSONObject firstAd = JsonUtil.getJSONObjectFromArray(ads, 0);
-            type = JsonUtil.getJSONString(firstAd, RESPONSE_KEY_TYPE);
-            height = JsonUtil.getJSONInt(firstAd, RESPONSE_KEY_HEIGHT);
-            width = JsonUtil.getJSONInt(firstAd, RESPONSE_KEY_WIDTH);
-            content = JsonUtil.getJSONString(firstAd, RESPONSE_KEY_CONTENT);
+    private boolean handleStdAds(ParsedResponse parsed) {
+        if (parsed.hasStdAd) {
+            type = parsed.adType;
+            height = parsed.adHeight;
+            width = parsed.adWidth;
+            content = parsed.adContent;
             if (StringUtil.isEmpty(content)) {
                 Clog.e(Clog.httpRespLogTag,
-                        Clog.getString(R.string.blank_ad));
+                        R.string.blank_ad);
             }
             else {
                 if (content.contains(MRAID_JS_FILENAME)) {
@@ -184,13 +276,10 @@ class ServerResponse {
     private ANNativeAdResponse anNativeAdResponse;
 
     // returns true if response contains a native response, false if not
-    private boolean handleNativeAds(JSONObject response) {
-        JSONArray nativeAd = JsonUtil.getJSONArray(response, RESPONSE_KEY_NATIVE);
-        if (nativeAd != null) {
-            // take the first ad
-            JSONObject firstAd = JsonUtil.getJSONObjectFromArray(nativeAd, 0);
-            type = JsonUtil.getJSONString(firstAd, RESPONSE_KEY_TYPE);
-            anNativeAdResponse = ANNativeAdResponse.create(firstAd);
+    private boolean handleNativeAds(ParsedResponse parsed) {
+        if (parsed.hasNativeAd) {
+            type = JsonUtil.getJSONString(parsed.nativeAd, RESPONSE_KEY_TYPE);
+            anNativeAdResponse = ANNativeAdResponse.create(parsed.nativeAd);
             if (anNativeAdResponse != null){
                 containsAds = true;
                 return true;
@@ -200,10 +289,295 @@ class ServerResponse {
     }
 
     // returns true if response contains an ad, false if not
-    private boolean handleMediatedAds(JSONObject response) {
+    private boolean handleMediatedAds(ParsedResponse parsed) {
+        if (parsed.mediatedAds != null) {
+            mediatedAds = parsed.mediatedAds;
+            if (!mediatedAds.isEmpty()) {
+                containsAds = true;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /*
+     * Streaming parser, only the first entry of ads[] or native[] is kept
+     * and only the android handlers of mediated[].
+     */
+
+    @TargetApi(Build.VERSION_CODES.HONEYCOMB)
+    private void readResponse(Reader body, ParsedResponse parsed) throws IOException, JSONException {
+        JsonReader reader = new JsonReader(body);
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (RESPONSE_KEY_STATUS.equals(name)) {
+                parsed.status = readString(reader);
+            } else if (RESPONSE_KEY_ERROR_MESSAGE.equals(name)) {
+                parsed.errorMessage = readString(reader);
+            } else if (RESPONSE_KEY_ADS.equals(name) && mediaType != MediaType.NATIVE) {
+                readStdAds(reader, parsed);
+            } else if (RESPONSE_KEY_NATIVE.equals(name) && mediaType == MediaType.NATIVE) {
+                readNativeAds(reader, parsed);
+            } else if (RESPONSE_KEY_MEDIATED_ADS.equals(name)) {
+                readMediatedAds(reader, parsed);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    @TargetApi(Build.VERSION_CODES.HONEYCOMB)
+    private static void readStdAds(JsonReader reader, ParsedResponse parsed) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+            reader.skipValue();
+            return;
+        }
+        reader.beginArray();
+        if (reader.hasNext()) {
+            parsed.hasStdAd = true;
+            // take the first ad
+            if (reader.peek() == JsonToken.BEGIN_OBJECT) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String name = reader.nextName();
+                    if (RESPONSE_KEY_TYPE.equals(name)) {
+                        parsed.adType = readString(reader);
+                    } else if (RESPONSE_KEY_WIDTH.equals(name)) {
+                        parsed.adWidth = readInt(reader);
+                    } else if (RESPONSE_KEY_HEIGHT.equals(name)) {
+                        parsed.adHeight = readInt(reader);
+                    } else if (RESPONSE_KEY_CONTENT.equals(name)) {
+                        parsed.adContent = readString(reader);
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            } else {
+                reader.skipValue();
+            }
+        }
+        skipRemaining(reader);
+        reader.endArray();
+    }
+
+    @TargetApi(Build.VERSION_CODES.HONEYCOMB)
+    private static void readNativeAds(JsonReader reader, ParsedResponse parsed) throws IOException, JSONException {
+        if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+            reader.skipValue();
+            return;
+        }
+        reader.beginArray();
+        if (reader.hasNext()) {
+            parsed.hasNativeAd = true;
+            // take the first ad, native metadata is small so it is kept as a tree
+            Object firstAd = readValue(reader);
+            parsed.nativeAd = firstAd instanceof JSONObject ? (JSONObject) firstAd : null;
+        }
+        skipRemaining(reader);
+        reader.endArray();
+    }
+
+    @TargetApi(Build.VERSION_CODES.HONEYCOMB)
+    private static void readMediatedAds(JsonReader reader, ParsedResponse parsed) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+            reader.skipValue();
+            return;
+        }
+        reader.beginArray();
+        if (reader.hasNext()) {
+            parsed.mediatedAds = new LinkedList<MediatedAd>();
+        }
+        while (reader.hasNext()) {
+            // parse through the elements of the mediated array for handlers
+            if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                reader.skipValue();
+                continue;
+            }
+            ArrayList<String[]> handlers = new ArrayList<String[]>();
+            ArrayList<int[]> sizes = new ArrayList<int[]>();
+            String resultCB = null;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (RESPONSE_KEY_HANDLER.equals(name) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        readHandler(reader, handlers, sizes);
+                    }
+                    reader.endArray();
+                } else if (RESPONSE_KEY_RESULT_CB.equals(name)) {
+                    resultCB = readString(reader);
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            // result_cb may come after the handlers, so the ads are built once the element is read
+            for (int i = 0; i < handlers.size(); i++) {
+                String[] handler = handlers.get(i);
+                int[] size = sizes.get(i);
+                parsed.mediatedAds.add(new MediatedAd(handler[0],
+                        handler[1], size[0], size[1], handler[2],
+                        resultCB));
+            }
+        }
+        reader.endArray();
+    }
+
+    // adds {class, param, id} and {width, height} of an android handler
+    @TargetApi(Build.VERSION_CODES.HONEYCOMB)
+    private static void readHandler(JsonReader reader, ArrayList<String[]> handlers,
+                                    ArrayList<int[]> sizes) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            reader.skipValue();
+            return;
+        }
+        String type = null;
+        String className = null;
+        String param = null;
+        String adId = null;
+        int width = -1;
+        int height = -1;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (RESPONSE_KEY_TYPE.equals(name)) {
+                type = readString(reader);
+            } else if (RESPONSE_KEY_CLASS.equals(name)) {
+                className = readString(reader);
+            } else if (RESPONSE_KEY_PARAM.equals(name)) {
+                param = readString(reader);
+            } else if (RESPONSE_KEY_ID.equals(name)) {
+                adId = readString(reader);
+            } else if (RESPONSE_KEY_WIDTH.equals(name)) {
+                width = readInt(reader);
+            } else if (RESPONSE_KEY_HEIGHT.equals(name)) {
+                height = readInt(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        // we only care about handlers for android
+        if (type != null && type.toLowerCase(Locale.US).equals(RESPONSE_VALUE_ANDROID)
+                && !StringUtil.isEmpty(className)) {
+            handlers.add(new String[]{className, param, adId});
+            sizes.add(new int[]{width, height});
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.HONEYCOMB)
+    private static void skipRemaining(JsonReader reader) throws IOException {
+        while (reader.hasNext()) {
+            reader.skipValue();
+        }
+    }
+
+    // same coercion as JSONObject.getString, null if the value is not a primitive
+    @TargetApi(Build.VERSION_CODES.HONEYCOMB)
+    private static String readString(JsonReader reader) throws IOException {
+        switch (reader.peek()) {
+            case STRING:
+            case NUMBER:
+                return reader.nextString();
+            case BOOLEAN:
+                return String.valueOf(reader.nextBoolean());
+            default:
+                reader.skipValue();
+                return null;
+        }
+    }
+
+    // same coercion as JSONObject.getInt, -1 if the value is not a number
+    @TargetApi(Build.VERSION_CODES.HONEYCOMB)
+    private static int readInt(JsonReader reader) throws IOException {
+        JsonToken token = reader.peek();
+        if (token != JsonToken.NUMBER && token != JsonToken.STRING) {
+            reader.skipValue();
+            return -1;
+        }
+        String value = reader.nextString();
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException ignored) {
+        }
+        try {
+            return (int) Double.parseDouble(value);
+        } catch (NumberFormatException ignored) {
+        }
+        return -1;
+    }
+
+    @TargetApi(Build.VERSION_CODES.HONEYCOMB)
+    private static Object readValue(JsonReader reader) throws IOException, JSONException {
+        switch (reader.peek()) {
+            case BEGIN_OBJECT:
+                JSONObject object = new JSONObject();
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String name = reader.nextName();
+                    object.put(name, readValue(reader));
+                }
+                reader.endObject();
+                return object;
+            case BEGIN_ARRAY:
+                JSONArray array = new JSONArray();
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    array.put(readValue(reader));
+                }
+                reader.endArray();
+                return array;
+            case BOOLEAN:
+                return reader.nextBoolean();
+            case NUMBER:
+                String number = reader.nextString();
+                try {
+                    return Long.parseLong(number);
+                } catch (NumberFormatException e) {
+                    return Double.parseDouble(number);
+                }
+            case NULL:
+                reader.nextNull();
+                return JSONObject.NULL;
+            default:
+                return reader.nextString();
+        }
+    }
+
+    /*
+     * Tree parser for devices without JsonReader
+     */
+
+    private void readResponse(JSONObject response, ParsedResponse parsed) {
+        parsed.status = JsonUtil.getJSONString(response, RESPONSE_KEY_STATUS);
+        parsed.errorMessage = JsonUtil.getJSONString(response, RESPONSE_KEY_ERROR_MESSAGE);
+
+        JSONArray ads = JsonUtil.getJSONArray(response, RESPONSE_KEY_ADS);
+        if (ads != null && mediaType != MediaType.NATIVE) {
+            // take the first ad
+            JSONObject firstAd = JsonUtil.getJSONObjectFromArray(ads, 0);
+            parsed.hasStdAd = true;
+            parsed.adType = JsonUtil.getJSONString(firstAd, RESPONSE_KEY_TYPE);
+            parsed.adHeight = JsonUtil.getJSONInt(firstAd, RESPONSE_KEY_HEIGHT);
+            parsed.adWidth = JsonUtil.getJSONInt(firstAd, RESPONSE_KEY_WIDTH);
+            parsed.adContent = JsonUtil.getJSONString(firstAd, RESPONSE_KEY_CONTENT);
+        }
+
+        JSONArray nativeAd = JsonUtil.getJSONArray(response, RESPONSE_KEY_NATIVE);
+        if (nativeAd != null && mediaType == MediaType.NATIVE) {
+            parsed.hasNativeAd = true;
+            parsed.nativeAd = JsonUtil.getJSONObjectFromArray(nativeAd, 0);
+        }
+
         JSONArray mediated = JsonUtil.getJSONArray(response, RESPONSE_KEY_MEDIATED_ADS);
         if (mediated != null) {
-            mediatedAds = new LinkedList<MediatedAd>();
+            parsed.mediatedAds = new LinkedList<MediatedAd>();
             for (int i = 0; i < mediated.length(); i++) {
                 // parse through the elements of the mediated array for handlers
                 JSONObject mediatedElement = JsonUtil.getJSONObjectFromArray(mediated, i);
@@ -228,7 +602,7 @@ class ServerResponse {
                                     String resultCB = JsonUtil.getJSONString(mediatedElement, RESPONSE_KEY_RESULT_CB);
 
                                     if (!StringUtil.isEmpty(className)) {
-                                        mediatedAds.add(new MediatedAd(className,
+                                        parsed.mediatedAds.add(new MediatedAd(className,
                                                 param, width, height, adId,
                                                 resultCB));
                                     }
@@ -238,13 +612,17 @@ class ServerResponse {
                     }
                 }
             }
+        }
+    }
 
-            if (!mediatedAds.isEmpty()) {
-                containsAds = true;
-                return true;
-            }
+    private static String readFully(Reader reader) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        char[] buffer = new char[4096];
+        int read;
+        while ((read = reader.read(buffer)) != -1) {
+            sb.append(buffer, 0, read);
         }
-        return false;
+        return sb.toString();
     }
 
     NativeAdResponse getNativeAdResponse() {
@@ -259,6 +637,34 @@ class ServerResponse {
         return content != null ? content : "";
     }
 
+    /**
+     * Assembles the document of a standard ad ahead of time, so that the
+     * main thread only has to load it. Called on the request's background thread.
+     */
+    void assembleDocument(Context context) {
+        if (context == null || mediaType == MediaType.NATIVE || StringUtil.isEmpty(content)) {
+            return;
+        }
+        boolean isMRAID = Boolean.TRUE.equals(extras.get(EXTRAS_KEY_MRAID));
+        document = CreativeDocument.assemble(context.getResources(), content,
+                SDKScriptCache.planScripts(content, isMRAID));
+    }
+
+    /**
+     * @return the assembled document, or null if it was not assembled ahead of time
+     */
+    CreativeDocument getDocument() {
+        return document;
+    }
+
+    AdRequestTimeline getTimeline() {
+        return timeline;
+    }
+
+    void setTimeline(AdRequestTimeline timeline) {
+        this.timeline = timeline;
+    }
+
     int getHeight() {
         return height;
     }
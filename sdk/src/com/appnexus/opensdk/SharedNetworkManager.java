@@ -16,26 +16,47 @@
 
 package com.appnexus.opensdk;
 
+import android.content.BroadcastReceiver;
 import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
 import android.content.pm.PackageManager;
 import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
+import android.os.SystemClock;
 
+import com.appnexus.opensdk.utils.Clog;
 import com.appnexus.opensdk.utils.HTTPGet;
 import com.appnexus.opensdk.utils.HTTPResponse;
 import com.appnexus.opensdk.utils.HttpErrorCode;
+import com.appnexus.opensdk.utils.MetricGauge;
+import com.appnexus.opensdk.utils.SDKMetrics;
+import com.appnexus.opensdk.utils.StringUtil;
 
 
-import java.lang.ref.WeakReference;
+import java.io.File;
 import java.util.ArrayList;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.LinkedHashMap;
+import java.util.Random;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Delivers impression and click trackers that could not be sent right away.
+ * Pending urls are kept in a TrackerJournal on disk so they survive process
+ * death, are de-duplicated by url, and are retried with exponential backoff
+ * and jitter. A flush is also triggered whenever connectivity comes back.
+ * Deliveries and journal writes run on a dedicated background thread, so
+ * neither blocks the caller nor the shared SDKScheduler. The in-memory state
+ * is guarded by this object's lock, which is never held during I/O.
+ */
 class SharedNetworkManager {
 
     private static SharedNetworkManager manager;
 
-    static SharedNetworkManager getInstance(Context context) {
+    static synchronized SharedNetworkManager getInstance(Context context) {
         if (manager == null) {
             manager = new SharedNetworkManager(context);
         }
@@ -43,10 +64,21 @@ class SharedNetworkManager {
     }
 
 
-    private ArrayList<UrlObject> urls = new ArrayList<UrlObject>();
-    private Timer retryTimer;
+    private final LinkedHashMap<String, UrlObject> urls = new LinkedHashMap<String, UrlObject>();
+    private final TrackerJournal journal;
+    private final Context appContext;
+    private final Random random = new Random();
+    private final ScheduledThreadPoolExecutor worker;
+    private ScheduledFuture<?> retryTask;
+    private long retryTaskAt = 0;
+    private boolean loaded = false;
+    private boolean flushing = false;
+    private boolean receiverRegistered = false;
     private static final int TOTAL_RETRY_TIMES = 3;
     private static final int TOTAL_RETRY_WAIT_INTERVAL_MILLES = 1 * 10 * 1000;
+    private static final int MAX_RETRY_WAIT_INTERVAL_MILLES = 10 * 60 * 1000;
+    private static final long IDLE_THREAD_TIMEOUT_MILLIS = 30000;
+    private static final String JOURNAL_FILE_NAME = "appnexus_trackers.journal";
     private static final String permission = "android.permission.ACCESS_NETWORK_STATE";
     private boolean permitted;
 
@@ -56,6 +88,34 @@ class SharedNetworkManager {
                 context.getPackageName()
         );
         permitted = (permissionStatus == PackageManager.PERMISSION_GRANTED);
+        appContext = context.getApplicationContext() != null ? context.getApplicationContext() : context;
+        journal = new TrackerJournal(new File(appContext.getFilesDir(), JOURNAL_FILE_NAME));
+
+        worker = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "AppNexusSDK-Trackers");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        worker.setKeepAliveTime(IDLE_THREAD_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        worker.allowCoreThreadTimeOut(true);
+
+        SDKMetrics.TRACKER_BACKLOG.setSource(new MetricGauge.Source() {
+            @Override
+            public long get() {
+                return getPendingCount();
+            }
+        });
+
+        // replay the trackers left over by a previous process off the caller's thread
+        worker.execute(new Runnable() {
+            @Override
+            public void run() {
+                load();
+            }
+        });
     }
 
     boolean isConnected(Context context) {
@@ -68,69 +128,229 @@ class SharedNetworkManager {
         }
     }
 
-    synchronized void addURL(String url, Context context) {
-        urls.add(new UrlObject(url));
-        startTimer(context);
-    }
-
-    private void startTimer(Context context) {
-        if (retryTimer == null) {
-            // check Network Connectivity after a certain period
-            final WeakReference<Context> weakContext = new WeakReference<Context>(context);
-            retryTimer = new Timer();
-            retryTimer.scheduleAtFixedRate(new TimerTask() {
+    void addURL(final String url, Context context) {
+        if (StringUtil.isEmpty(url)) {
+            return;
+        }
+        synchronized (this) {
+            if (urls.containsKey(url)) {
+                // already queued, keep its place and retry count
+                return;
+            }
+            UrlObject urlObject = new UrlObject(url);
+            urlObject.nextAttemptAt = SystemClock.elapsedRealtime() + TOTAL_RETRY_WAIT_INTERVAL_MILLES;
+            urls.put(url, urlObject);
+            worker.execute(new Runnable() {
                 @Override
                 public void run() {
-                    Context context = weakContext.get();
-                    if (context != null) {
-                        while (!urls.isEmpty()) {
-                            if (isConnected(context)) {
-                                final UrlObject urlObject = urls.remove(0);
-                                if (urlObject.retryTimes < TOTAL_RETRY_TIMES) {
-                                    {
-
-                                        new HTTPGet() {
-                                            @Override
-                                            protected void onPostExecute(HTTPResponse response) {
-                                                if (response == null ||
-                                                        (!response.getSucceeded() && response.getErrorCode() == HttpErrorCode.CONNECTION_FAILURE)) {
-                                                    urlObject.retryTimes += 1;
-                                                    urls.add(urlObject);
-                                                }
-
-                                            }
-
-                                            @Override
-                                            protected String getUrl() {
-                                                return urlObject.url;
-                                            }
-                                        }.execute();
-                                    }
-                                }
-                            } else {
-                                break;
-                            }
-                        }
-                        if (urls.isEmpty()) stopTimer();
+                    // deliveries run on this thread too, skip urls already sent
+                    if (isPending(url)) {
+                        journal.add(url);
+                    }
+                }
+            });
+            SDKMetrics.TRACKERS_QUEUED.increment();
+            if (loaded) {
+                scheduleRetry();
+            }
+        }
+        registerConnectivityReceiver();
+    }
+
+    synchronized int getPendingCount() {
+        return urls.size();
+    }
+
+    private synchronized boolean isPending(String url) {
+        return urls.containsKey(url);
+    }
+
+    private void load() {
+        ArrayList<String> replayed = new ArrayList<String>(journal.load());
+        synchronized (this) {
+            long now = SystemClock.elapsedRealtime();
+            for (String url : replayed) {
+                if (!urls.containsKey(url)) {
+                    UrlObject urlObject = new UrlObject(url);
+                    urlObject.nextAttemptAt = now;
+                    urls.put(url, urlObject);
+                }
+            }
+            loaded = true;
+            if (!replayed.isEmpty()) {
+                Clog.d(Clog.baseLogTag, "Replayed " + replayed.size() + " pending trackers");
+            }
+            scheduleRetry();
+        }
+        if (!replayed.isEmpty()) {
+            registerConnectivityReceiver();
+        }
+    }
+
+    /**
+     * Sends every tracker whose backoff has elapsed, on the calling thread.
+     * Trackers are removed from the journal once the server answered, and
+     * rescheduled with backoff on connection or transport failures.
+     */
+    void deliverPending() {
+        ArrayList<UrlObject> due = new ArrayList<UrlObject>();
+        ArrayList<String> pending;
+        synchronized (this) {
+            if (flushing || !loaded) {
+                return;
+            }
+            flushing = true;
+            cancelRetry();
+            long now = SystemClock.elapsedRealtime();
+            for (UrlObject urlObject : urls.values()) {
+                if (urlObject.nextAttemptAt <= now) {
+                    due.add(urlObject);
+                }
+            }
+        }
+
+        try {
+            for (UrlObject urlObject : due) {
+                if (!isConnected(appContext)) {
+                    break;
+                }
+                HTTPResponse response = HTTPGet.get(urlObject.url);
+                boolean shouldRetry = !response.getSucceeded()
+                        && (response.getErrorCode() == HttpErrorCode.CONNECTION_FAILURE
+                        || response.getErrorCode() == HttpErrorCode.TRANSPORT_ERROR);
+                boolean done;
+                synchronized (this) {
+                    if (shouldRetry) {
+                        urlObject.retryTimes++;
+                    }
+                    done = !shouldRetry || urlObject.retryTimes >= TOTAL_RETRY_TIMES;
+                    if (done) {
+                        urls.remove(urlObject.url);
                     } else {
-                        stopTimer();
+                        urlObject.nextAttemptAt = SystemClock.elapsedRealtime() + backoff(urlObject.retryTimes);
                     }
                 }
-            }, TOTAL_RETRY_WAIT_INTERVAL_MILLES, TOTAL_RETRY_WAIT_INTERVAL_MILLES);
+                if (done) {
+                    journal.remove(urlObject.url);
+                }
+            }
+        } finally {
+            synchronized (this) {
+                flushing = false;
+                pending = new ArrayList<String>(urls.keySet());
+                scheduleRetry();
+            }
+        }
+        journal.compact(pending);
+
+        synchronized (this) {
+            if (!urls.isEmpty()) {
+                return;
+            }
+        }
+        unregisterConnectivityReceiver();
+    }
+
+    // exponential backoff with equal jitter: half of the delay is fixed, half random
+    private long backoff(int retryTimes) {
+        long delay = Math.min(MAX_RETRY_WAIT_INTERVAL_MILLES,
+                (long) TOTAL_RETRY_WAIT_INTERVAL_MILLES << Math.min(retryTimes, 16));
+        return delay / 2 + (long) (random.nextDouble() * (delay / 2));
+    }
+
+    // must hold the lock
+    private void scheduleRetry() {
+        if (urls.isEmpty() || flushing) {
+            return;
+        }
+        long now = SystemClock.elapsedRealtime();
+        long earliest = Long.MAX_VALUE;
+        for (UrlObject urlObject : urls.values()) {
+            earliest = Math.min(earliest, urlObject.nextAttemptAt);
+        }
+        // while offline, check again at the base interval, the receiver covers reconnects
+        long delay = Math.max(0, earliest - now);
+        if (!isConnected(appContext)) {
+            delay = Math.max(delay, TOTAL_RETRY_WAIT_INTERVAL_MILLES);
+        }
+        long at = now + delay;
+        if (retryTask != null && retryTaskAt <= at) {
+            return;
+        }
+        cancelRetry();
+        retryTaskAt = at;
+        retryTask = worker.schedule(flushRunnable, delay, TimeUnit.MILLISECONDS);
+    }
 
+    // must hold the lock
+    private void cancelRetry() {
+        if (retryTask != null && retryTask.cancel(false)) {
+            // drop the cancelled task from the queue right away
+            worker.purge();
         }
+        retryTask = null;
     }
 
-    private void stopTimer() {
-        if (retryTimer != null) {
-            retryTimer.cancel();
-            retryTimer = null;
+    private final Runnable flushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            deliverPending();
+        }
+    };
+
+    private final BroadcastReceiver connectivityReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            if (isConnected(context)) {
+                retryNow();
+            }
+        }
+    };
+
+    // back online, skip the remaining backoff
+    synchronized void retryNow() {
+        for (UrlObject urlObject : urls.values()) {
+            urlObject.nextAttemptAt = 0;
+        }
+        scheduleRetry();
+    }
+
+    private void registerConnectivityReceiver() {
+        synchronized (this) {
+            if (receiverRegistered) {
+                return;
+            }
+            receiverRegistered = true;
+        }
+        try {
+            appContext.registerReceiver(connectivityReceiver,
+                    new IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION));
+        } catch (Exception e) {
+            Clog.w(Clog.baseLogTag, "Unable to listen for connectivity changes", e);
+            synchronized (this) {
+                receiverRegistered = false;
+            }
+        }
+    }
+
+    private void unregisterConnectivityReceiver() {
+        synchronized (this) {
+            if (!receiverRegistered) {
+                return;
+            }
+            receiverRegistered = false;
+        }
+        try {
+            appContext.unregisterReceiver(connectivityReceiver);
+        } catch (IllegalArgumentException ignored) {
+            // not registered
         }
     }
 
     class UrlObject {
         String url;
         int retryTimes;
+        long nextAttemptAt;
 
         UrlObject(String url) {
             this.url = url;
@@ -0,0 +1,216 @@
+/*
+ *    Copyright 2015 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk;
+
+import com.appnexus.opensdk.utils.Clog;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of tracker urls waiting for delivery. Every queued url is
+ * written as an "added" record and every delivered or dropped url as a
+ * "removed" record, so the pending set survives process death and can be
+ * rebuilt by replaying the file. Each record carries a CRC32 so a record
+ * torn by a crash is skipped on replay. The log is rewritten with only the
+ * pending urls once it is mostly made of removed entries.
+ */
+class TrackerJournal {
+    private static final char RECORD_ADDED = '+';
+    private static final char RECORD_REMOVED = '-';
+    private static final int CRC_LENGTH = 8;
+    private static final int COMPACT_THRESHOLD = 256;
+
+    private final File file;
+    private Writer writer;
+    private int records = 0;
+
+    TrackerJournal(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Replays the log.
+     *
+     * @return pending urls in the order they were added
+     */
+    synchronized LinkedHashSet<String> load() {
+        LinkedHashSet<String> pending = new LinkedHashSet<String>();
+        records = 0;
+        if (!file.exists()) {
+            return pending;
+        }
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String url = parseUrl(line);
+                if (url == null) {
+                    continue;
+                }
+                records++;
+                if (line.charAt(0) == RECORD_ADDED) {
+                    pending.add(url);
+                } else {
+                    pending.remove(url);
+                }
+            }
+        } catch (IOException e) {
+            Clog.w(Clog.baseLogTag, "Unable to read tracker journal", e);
+        } finally {
+            closeQuietly(reader);
+        }
+        return pending;
+    }
+
+    synchronized void add(String url) {
+        write(RECORD_ADDED, url);
+    }
+
+    synchronized void remove(String url) {
+        write(RECORD_REMOVED, url);
+    }
+
+    /**
+     * Rewrites the log with only the given urls if it has grown large
+     * compared to the number of pending urls.
+     *
+     * @param pending urls still waiting for delivery
+     */
+    synchronized void compact(Collection<String> pending) {
+        if (records < COMPACT_THRESHOLD || records < 2 * pending.size()) {
+            return;
+        }
+        closeQuietly(writer);
+        writer = null;
+
+        File tmp = new File(file.getPath() + ".tmp");
+        Writer tmpWriter = null;
+        try {
+            tmpWriter = openWriter(tmp, false);
+            for (String url : pending) {
+                tmpWriter.write(formatRecord(RECORD_ADDED, url));
+            }
+            tmpWriter.close();
+            tmpWriter = null;
+            if (tmp.renameTo(file)) {
+                records = pending.size();
+            } else {
+                tmp.delete();
+            }
+        } catch (IOException e) {
+            Clog.w(Clog.baseLogTag, "Unable to compact tracker journal", e);
+            closeQuietly(tmpWriter);
+            tmp.delete();
+        }
+    }
+
+    synchronized int getRecordCount() {
+        return records;
+    }
+
+    synchronized void close() {
+        closeQuietly(writer);
+        writer = null;
+    }
+
+    private void write(char type, String url) {
+        if (url == null || url.indexOf('\n') >= 0 || url.indexOf('\r') >= 0) {
+            return;
+        }
+        try {
+            if (writer == null) {
+                writer = openWriter(file, true);
+            }
+            writer.write(formatRecord(type, url));
+            // hand the record to the OS so it survives the process dying
+            writer.flush();
+            records++;
+        } catch (IOException e) {
+            Clog.w(Clog.baseLogTag, "Unable to write tracker journal", e);
+            closeQuietly(writer);
+            writer = null;
+        }
+    }
+
+    private static Writer openWriter(File f, boolean append) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(f, append), "UTF-8"));
+    }
+
+    private static String formatRecord(char type, String url) {
+        String crc = Long.toHexString(crc(url));
+        StringBuilder sb = new StringBuilder(url.length() + CRC_LENGTH + 3);
+        sb.append(type);
+        for (int i = crc.length(); i < CRC_LENGTH; i++) {
+            sb.append('0');
+        }
+        sb.append(crc).append(' ').append(url).append('\n');
+        return sb.toString();
+    }
+
+    /**
+     * @return the url of a well formed record, or null
+     */
+    private static String parseUrl(String line) {
+        if (line.length() < CRC_LENGTH + 3) {
+            return null;
+        }
+        char type = line.charAt(0);
+        if ((type != RECORD_ADDED && type != RECORD_REMOVED) || line.charAt(CRC_LENGTH + 1) != ' ') {
+            return null;
+        }
+        String url = line.substring(CRC_LENGTH + 2);
+        try {
+            long expected = Long.parseLong(line.substring(1, CRC_LENGTH + 1), 16);
+            return expected == crc(url) ? url : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static long crc(String s) {
+        CRC32 crc32 = new CRC32();
+        try {
+            crc32.update(s.getBytes("UTF-8"));
+        } catch (UnsupportedEncodingException e) {
+            crc32.update(s.getBytes());
+        }
+        return crc32.getValue();
+    }
+
+    private static void closeQuietly(Closeable c) {
+        if (c != null) {
+            try {
+                c.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
@@ -46,7 +46,7 @@ class VideoEnabledWebChromeClient extends BaseWebChromeClient {
     }
 
     public VideoEnabledWebChromeClient(AdWebView adWebView) {
-        this.context = (Activity) adWebView.getContext();
+        this.context = (Activity) adWebView.getActivityContext();
         this.adWebView = adWebView;
         this.adView = this.adWebView.adView;
     }
@@ -62,12 +62,12 @@ class VideoEnabledWebChromeClient extends BaseWebChromeClient {
         super.onShowCustomView(view, callback);
 
         if (context == null) {
-            Clog.w(Clog.baseLogTag, Clog.getString(R.string.fullscreen_video_show_error));
+            Clog.w(Clog.baseLogTag, R.string.fullscreen_video_show_error);
             return;
         }
         ViewGroup root = (ViewGroup) context.findViewById(android.R.id.content);
         if (root == null) {
-            Clog.w(Clog.baseLogTag, Clog.getString(R.string.fullscreen_video_show_error));
+            Clog.w(Clog.baseLogTag, R.string.fullscreen_video_show_error);
             return;
         }
 
@@ -99,12 +99,12 @@ class VideoEnabledWebChromeClient extends BaseWebChromeClient {
         super.onHideCustomView();
 
         if ((context == null) || (frame == null)) {
-            Clog.w(Clog.baseLogTag, Clog.getString(R.string.fullscreen_video_hide_error));
+            Clog.w(Clog.baseLogTag, R.string.fullscreen_video_hide_error);
             return;
         }
         ViewGroup root = (ViewGroup) context.findViewById(android.R.id.content);
         if (root == null) {
-            Clog.w(Clog.baseLogTag, Clog.getString(R.string.fullscreen_video_hide_error));
+            Clog.w(Clog.baseLogTag, R.string.fullscreen_video_hide_error);
             return;
         }
 
@@ -18,22 +18,18 @@ package com.appnexus.opensdk;
 
 import android.graphics.Rect;
 import android.view.View;
+import android.view.ViewTreeObserver;
 
 import com.appnexus.opensdk.utils.Clog;
 import com.appnexus.opensdk.utils.Settings;
 
 import java.util.ArrayList;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
 
 class VisibilityDetector {
     static final long VISIBILITY_THROTTLE_MILLIS = 250;
-    private boolean scheduled = false;
     private View mView; // not null
     private ArrayList<VisibilityListener> listeners;
-    private Runnable visibilityCheck;
-    private ScheduledExecutorService tasker;
+    private ViewTreeObserver observer;
 
     static VisibilityDetector create(View view) {
         if (view == null) {
@@ -41,64 +37,62 @@ class VisibilityDetector {
             return null;
         }
 
+        // the detector is checked once it has listeners
         return new VisibilityDetector(view);
     }
 
     private VisibilityDetector(View view) {
         this.mView = view;
         this.listeners = new ArrayList<VisibilityListener>();
-        scheduleVisibilityCheck();
     }
 
     void addVisibilityListener(VisibilityListener listener) {
-        if (listener != null) {
+        if (listener != null && listeners != null) {
             listeners.add(listener);
+            VisibilityEngine.getInstance().register(this);
         }
     }
 
     boolean removeVisibilityListener(VisibilityListener listener) {
-        return listeners.remove(listener);
+        if (listeners == null || !listeners.remove(listener)) {
+            return false;
+        }
+        if (listeners.isEmpty()) {
+            // nothing left to report, stop listening to the view's tree
+            VisibilityEngine.getInstance().unregister(this);
+        }
+        return true;
+    }
+
+    boolean hasListeners() {
+        return listeners != null && !listeners.isEmpty();
     }
 
-    void scheduleVisibilityCheck(){
-        if(scheduled) return;
-        scheduled = true;
-        this.visibilityCheck = new Runnable() {
-            @Override
-            public void run() {
-                // copy listeners to a new array to avoid concurrentmodificationexception
-                ArrayList<VisibilityListener> tempList = new ArrayList<VisibilityListener>();
-                for (VisibilityListener listener : listeners) {
-                    tempList.add(listener);
-                }
-                if (isVisible()) {
-                    for (VisibilityListener listener : tempList) {
-                        listener.onVisibilityChanged(true);
-                    }
-                } else {
-                    for (VisibilityListener listener : tempList) {
-                        listener.onVisibilityChanged(false);
-                    }
-                }
+    /**
+     * Notifies the listeners of the current state. Listeners may remove
+     * themselves while being notified, so iterate by index from the end
+     * instead of copying the list.
+     */
+    void notifyListeners(boolean visible) {
+        for (int i = listeners.size() - 1; i >= 0; i--) {
+            if (listeners == null) {
+                return;
             }
-        };
-        tasker = Executors.newSingleThreadScheduledExecutor();
-        tasker.scheduleAtFixedRate(new Runnable() {
-            @Override
-            public void run() {
-                mView.post(visibilityCheck);
+            if (i < listeners.size()) {
+                listeners.get(i).onVisibilityChanged(visible);
             }
-        }, 0, VISIBILITY_THROTTLE_MILLIS, TimeUnit.MILLISECONDS);
+        }
     }
 
-    boolean isVisible() {
+    /**
+     * @param clippedArea scratch rect that receives the visible part of the view
+     * @return true if at least MIN_PERCENTAGE_VIEWED of the view is on screen
+     */
+    boolean isVisible(Rect clippedArea) {
         if (mView == null || mView.getVisibility() != View.VISIBLE || mView.getParent() == null) {
             return false;
         }
 
-        // holds the visible part of a view
-        Rect clippedArea = new Rect();
-
         if (!mView.getGlobalVisibleRect(clippedArea)) {
             return false;
         }
@@ -113,11 +107,43 @@ class VisibilityDetector {
         return 100 * visibleViewArea >= Settings.MIN_PERCENTAGE_VIEWED * totalArea;
     }
 
-    void destroy() {
-        if (tasker != null) {
-            tasker.shutdownNow();
+    /**
+     * Makes sure the engine listens to the tree observer the view currently
+     * belongs to. A view that is not attached yet hands out a temporary
+     * observer which is merged into the window's observer on attach.
+     */
+    void attachObserver(VisibilityEngine engine) {
+        if (mView == null) {
+            return;
+        }
+        ViewTreeObserver current = mView.getViewTreeObserver();
+        if (current == observer) {
+            return;
         }
-        mView.removeCallbacks(visibilityCheck);
+        if (observer != null && !observer.isAlive()) {
+            // the temporary observer was merged, our listeners moved with it
+            observer = current;
+            return;
+        }
+        detachObserver(engine);
+        if (current != null && current.isAlive()) {
+            current.addOnScrollChangedListener(engine);
+            current.addOnGlobalLayoutListener(engine);
+            observer = current;
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    void detachObserver(VisibilityEngine engine) {
+        if (observer != null && observer.isAlive()) {
+            observer.removeOnScrollChangedListener(engine);
+            observer.removeGlobalOnLayoutListener(engine);
+        }
+        observer = null;
+    }
+
+    void destroy() {
+        VisibilityEngine.getInstance().unregister(this);
         mView = null;
         listeners = null;
     }
@@ -0,0 +1,140 @@
+/*
+ *    Copyright 2015 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk;
+
+import android.graphics.Rect;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.view.ViewTreeObserver;
+
+import java.util.ArrayList;
+
+/**
+ * Checks the visibility of every registered VisibilityDetector in one batch
+ * on the main thread. Only detectors with listeners are registered, and only
+ * they listen to their trees. Checks are triggered by scroll and layout events
+ * and coalesced so that at most one batch runs per frame; a tree that is
+ * merely redrawn does not trigger one. While a view with pending listeners is
+ * on screen the engine also re-checks every VISIBILITY_THROTTLE_MILLIS so that
+ * time based rules keep progressing when nothing moves. A batch does not
+ * allocate.
+ */
+class VisibilityEngine implements ViewTreeObserver.OnScrollChangedListener,
+        ViewTreeObserver.OnGlobalLayoutListener {
+
+    private static VisibilityEngine engine;
+
+    static VisibilityEngine getInstance() {
+        if (engine == null) {
+            engine = new VisibilityEngine();
+        }
+        return engine;
+    }
+
+    private final ArrayList<VisibilityDetector> detectors = new ArrayList<VisibilityDetector>();
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Rect clippedArea = new Rect(); // reused by every check
+    private boolean checkScheduled = false;
+    private long checkScheduledAt = 0;
+
+    private final Runnable checkRunnable = new Runnable() {
+        @Override
+        public void run() {
+            checkScheduled = false;
+            checkAll();
+        }
+    };
+
+    private VisibilityEngine() {
+    }
+
+    void register(VisibilityDetector detector) {
+        if (!detectors.contains(detector)) {
+            detectors.add(detector);
+            detector.attachObserver(this);
+        }
+        requestCheck(0);
+    }
+
+    void unregister(VisibilityDetector detector) {
+        if (detectors.remove(detector)) {
+            detector.detachObserver(this);
+        }
+        if (detectors.isEmpty()) {
+            handler.removeCallbacks(checkRunnable);
+            checkScheduled = false;
+        }
+    }
+
+    int getDetectorCount() {
+        return detectors.size();
+    }
+
+    /**
+     * Schedules a batch check, keeping an earlier one if already scheduled.
+     *
+     * @param delayMillis delay from now
+     */
+    void requestCheck(long delayMillis) {
+        if (detectors.isEmpty()) {
+            return;
+        }
+        long when = SystemClock.uptimeMillis() + delayMillis;
+        if (checkScheduled && checkScheduledAt <= when) {
+            return;
+        }
+        handler.removeCallbacks(checkRunnable);
+        handler.postAtTime(checkRunnable, when);
+        checkScheduled = true;
+        checkScheduledAt = when;
+    }
+
+    private void checkAll() {
+        boolean pendingVisible = false;
+        // detectors may unregister while their listeners run
+        for (int i = detectors.size() - 1; i >= 0; i--) {
+            if (i >= detectors.size()) {
+                continue;
+            }
+            VisibilityDetector detector = detectors.get(i);
+            if (!detector.hasListeners()) {
+                unregister(detector);
+                continue;
+            }
+            detector.attachObserver(this);
+            boolean visible = detector.isVisible(clippedArea);
+            detector.notifyListeners(visible);
+            if (visible && detector.hasListeners()) {
+                pendingVisible = true;
+            }
+        }
+        if (pendingVisible) {
+            requestCheck(VisibilityDetector.VISIBILITY_THROTTLE_MILLIS);
+        }
+    }
+
+    @Override
+    public void onScrollChanged() {
+        requestCheck(0);
+    }
+
+    @Override
+    public void onGlobalLayout() {
+        requestCheck(0);
+    }
+}
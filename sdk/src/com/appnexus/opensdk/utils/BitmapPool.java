@@ -0,0 +1,168 @@
+/*
+ *    Copyright 2015 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk.utils;
+
+import android.annotation.SuppressLint;
+import android.graphics.Bitmap;
+import android.os.Build;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.WeakHashMap;
+
+/**
+ * Keeps bitmaps that are no longer shown so the next image decode can
+ * write into one of them (BitmapFactory.Options.inBitmap) instead of
+ * allocating a new one. Bitmaps decoded by the SDK are reference counted:
+ * every holder (a native ad response, the memory level of
+ * {@link ImageCache}) retains the bitmap, and it is only put in the pool
+ * once the last holder has released it. The pool is bounded by
+ * {@link Settings#BITMAP_POOL_SIZE} bytes. Safe to use from any thread.
+ */
+public class BitmapPool {
+    private static final BitmapPool instance = new BitmapPool();
+
+    // weak keys, so a bitmap dropped without being released is still collected
+    private final WeakHashMap<Bitmap, int[]> references = new WeakHashMap<Bitmap, int[]>();
+    private final LinkedList<Bitmap> pool = new LinkedList<Bitmap>();
+    private long poolSize = 0;
+    private int reused = 0;
+
+    public static BitmapPool getInstance() {
+        return instance;
+    }
+
+    /**
+     * Adds a holder to the bitmap.
+     */
+    public synchronized void retain(Bitmap bitmap) {
+        if (bitmap == null) {
+            return;
+        }
+        int[] count = references.get(bitmap);
+        if (count == null) {
+            references.put(bitmap, new int[]{1});
+        } else {
+            count[0]++;
+        }
+    }
+
+    /**
+     * Removes a holder from the bitmap, putting it in the pool when it was the last one.
+     *
+     * @return false if the bitmap was never retained, in which case the caller still owns it
+     */
+    public synchronized boolean release(Bitmap bitmap) {
+        if (bitmap == null) {
+            return true;
+        }
+        int[] count = references.get(bitmap);
+        if (count == null) {
+            return false;
+        }
+        if (--count[0] <= 0) {
+            references.remove(bitmap);
+            put(bitmap);
+        }
+        return true;
+    }
+
+    /**
+     * Takes a bitmap out of the pool that a decode of the given size can write into.
+     *
+     * @param width  the width of the decoded image, after sampling
+     * @param height the height of the decoded image, after sampling
+     * @param config the config of the decoded image
+     * @param sampled whether or not the image is sampled down
+     * @return a bitmap to use as inBitmap, or null if none fits
+     */
+    @SuppressLint("NewApi")
+    synchronized Bitmap get(int width, int height, Bitmap.Config config, boolean sampled) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.HONEYCOMB) {
+            return null;
+        }
+        Iterator<Bitmap> it = pool.iterator();
+        while (it.hasNext()) {
+            Bitmap candidate = it.next();
+            if (canReuse(candidate, width, height, config, sampled)) {
+                it.remove();
+                poolSize -= sizeOf(candidate);
+                reused++;
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the number of decodes that reused a pooled bitmap
+     */
+    public synchronized int getReuseCount() {
+        return reused;
+    }
+
+    /**
+     * Recycles every pooled bitmap.
+     */
+    public synchronized void clear() {
+        for (Bitmap bitmap : pool) {
+            bitmap.recycle();
+        }
+        pool.clear();
+        poolSize = 0;
+    }
+
+    private void put(Bitmap bitmap) {
+        int size = sizeOf(bitmap);
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.HONEYCOMB || bitmap.isRecycled()
+                || !bitmap.isMutable() || size > Settings.BITMAP_POOL_SIZE) {
+            bitmap.recycle();
+            return;
+        }
+        pool.add(bitmap);
+        poolSize += size;
+        while (poolSize > Settings.BITMAP_POOL_SIZE) {
+            Bitmap eldest = pool.removeFirst();
+            poolSize -= sizeOf(eldest);
+            eldest.recycle();
+        }
+    }
+
+    @SuppressLint("NewApi")
+    private static boolean canReuse(Bitmap candidate, int width, int height, Bitmap.Config config, boolean sampled) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            // any bitmap that is large enough
+            return candidate.getAllocationByteCount() >= width * height * bytesPerPixel(config);
+        }
+        // before KitKat the size has to match exactly and the image can't be sampled
+        return !sampled && candidate.getWidth() == width && candidate.getHeight() == height
+                && candidate.getConfig() == config;
+    }
+
+    static int bytesPerPixel(Bitmap.Config config) {
+        if (config == Bitmap.Config.RGB_565 || config == Bitmap.Config.ARGB_4444) {
+            return 2;
+        } else if (config == Bitmap.Config.ALPHA_8) {
+            return 1;
+        }
+        return 4;
+    }
+
+    static int sizeOf(Bitmap bitmap) {
+        return bitmap.getRowBytes() * bitmap.getHeight();
+    }
+}
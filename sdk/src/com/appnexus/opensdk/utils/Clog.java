@@ -20,7 +20,8 @@ import android.content.Context;
 import android.util.Log;
 
 import java.lang.ref.WeakReference;
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static com.appnexus.opensdk.utils.ClogListener.LOG_LEVEL;
 
@@ -36,7 +37,7 @@ public class Clog {
     private static void logIfLoggable(String LogTag, String message, int level, Throwable tr){
         //Allow logging if baseLogTag would allow it, or if this log tag
         //specifically allows it.
-        if(Log.isLoggable(LogTag, level) || Log.isLoggable(baseLogTag, level)) {
+        if (level >= getLogcatLevel(LogTag)) {
             if (tr != null) {
                 switch (level) {
                     case Log.VERBOSE:
@@ -95,6 +96,33 @@ public class Clog {
         }
     }
 
+    /**
+     * Logs a string resource, formatted only if the message will be seen.
+     */
+    public static void v(String LogTag, int resId) {
+        if (isLoggable(LogTag, LOG_LEVEL.V)) {
+            v(LogTag, getString(resId));
+        }
+    }
+
+    /**
+     * Logs a string resource, formatted with the argument only if the message will be seen.
+     */
+    public static void v(String LogTag, int resId, Object formatArg) {
+        if (isLoggable(LogTag, LOG_LEVEL.V)) {
+            v(LogTag, format(resId, formatArg));
+        }
+    }
+
+    /**
+     * Logs a string resource, formatted with the arguments only if the message will be seen.
+     */
+    public static void v(String LogTag, int resId, Object... formatArgs) {
+        if (isLoggable(LogTag, LOG_LEVEL.V)) {
+            v(LogTag, format(resId, formatArgs));
+        }
+    }
+
     public static void d(String LogTag, String message) {
         if (message != null) {
             notifyListener(LOG_LEVEL.D, LogTag, message);
@@ -109,6 +137,33 @@ public class Clog {
         }
     }
 
+    /**
+     * Logs a string resource, formatted only if the message will be seen.
+     */
+    public static void d(String LogTag, int resId) {
+        if (isLoggable(LogTag, LOG_LEVEL.D)) {
+            d(LogTag, getString(resId));
+        }
+    }
+
+    /**
+     * Logs a string resource, formatted with the argument only if the message will be seen.
+     */
+    public static void d(String LogTag, int resId, Object formatArg) {
+        if (isLoggable(LogTag, LOG_LEVEL.D)) {
+            d(LogTag, format(resId, formatArg));
+        }
+    }
+
+    /**
+     * Logs a string resource, formatted with the arguments only if the message will be seen.
+     */
+    public static void d(String LogTag, int resId, Object... formatArgs) {
+        if (isLoggable(LogTag, LOG_LEVEL.D)) {
+            d(LogTag, format(resId, formatArgs));
+        }
+    }
+
     public static void i(String LogTag, String message) {
         if (message != null) {
             notifyListener(LOG_LEVEL.I, LogTag, message);
@@ -123,6 +178,33 @@ public class Clog {
         }
     }
 
+    /**
+     * Logs a string resource, formatted only if the message will be seen.
+     */
+    public static void i(String LogTag, int resId) {
+        if (isLoggable(LogTag, LOG_LEVEL.I)) {
+            i(LogTag, getString(resId));
+        }
+    }
+
+    /**
+     * Logs a string resource, formatted with the argument only if the message will be seen.
+     */
+    public static void i(String LogTag, int resId, Object formatArg) {
+        if (isLoggable(LogTag, LOG_LEVEL.I)) {
+            i(LogTag, format(resId, formatArg));
+        }
+    }
+
+    /**
+     * Logs a string resource, formatted with the arguments only if the message will be seen.
+     */
+    public static void i(String LogTag, int resId, Object... formatArgs) {
+        if (isLoggable(LogTag, LOG_LEVEL.I)) {
+            i(LogTag, format(resId, formatArgs));
+        }
+    }
+
     public static void w(String LogTag, String message) {
         if (message != null) {
             notifyListener(LOG_LEVEL.W, LogTag, message);
@@ -137,6 +219,33 @@ public class Clog {
         }
     }
 
+    /**
+     * Logs a string resource, formatted only if the message will be seen.
+     */
+    public static void w(String LogTag, int resId) {
+        if (isLoggable(LogTag, LOG_LEVEL.W)) {
+            w(LogTag, getString(resId));
+        }
+    }
+
+    /**
+     * Logs a string resource, formatted with the argument only if the message will be seen.
+     */
+    public static void w(String LogTag, int resId, Object formatArg) {
+        if (isLoggable(LogTag, LOG_LEVEL.W)) {
+            w(LogTag, format(resId, formatArg));
+        }
+    }
+
+    /**
+     * Logs a string resource, formatted with the arguments only if the message will be seen.
+     */
+    public static void w(String LogTag, int resId, Object... formatArgs) {
+        if (isLoggable(LogTag, LOG_LEVEL.W)) {
+            w(LogTag, format(resId, formatArgs));
+        }
+    }
+
     public static void e(String LogTag, String message) {
         if (message != null) {
             notifyListener(LOG_LEVEL.E, LogTag, message);
@@ -151,6 +260,33 @@ public class Clog {
         }
     }
 
+    /**
+     * Logs a string resource, formatted only if the message will be seen.
+     */
+    public static void e(String LogTag, int resId) {
+        if (isLoggable(LogTag, LOG_LEVEL.E)) {
+            e(LogTag, getString(resId));
+        }
+    }
+
+    /**
+     * Logs a string resource, formatted with the argument only if the message will be seen.
+     */
+    public static void e(String LogTag, int resId, Object formatArg) {
+        if (isLoggable(LogTag, LOG_LEVEL.E)) {
+            e(LogTag, format(resId, formatArg));
+        }
+    }
+
+    /**
+     * Logs a string resource, formatted with the arguments only if the message will be seen.
+     */
+    public static void e(String LogTag, int resId, Object... formatArgs) {
+        if (isLoggable(LogTag, LOG_LEVEL.E)) {
+            e(LogTag, format(resId, formatArgs));
+        }
+    }
+
     /**
      * Logging helper functions for SDK
      */
@@ -172,6 +308,14 @@ public class Clog {
 
     private static WeakReference<Context> clog_context = new WeakReference<Context>(null);
 
+    private static String format(int id, Object... formatArgs) {
+        Context error_context = clog_context.get();
+
+        if (error_context == null)
+            return null;
+        return error_context.getString(id, formatArgs);
+    }
+
     public static String getString(int id) {
         Context error_context = clog_context.get();
 
@@ -278,62 +422,186 @@ public class Clog {
 
     /**
      * lastRequest/lastResponse helper methods
+     *
+     * @deprecated
+     * Requests and responses are kept only while {@link RequestHistory} is
+     * enabled, use it instead.
      */
 
-
-    private static String lastRequest = "";
-    private static String lastResponse = "";
-
-    synchronized public static void setLastRequest(String lastRequest) {
-        Clog.lastRequest = lastRequest;
+    @Deprecated
+    public static void setLastRequest(String lastRequest) {
+        RequestHistory.recordRequest(lastRequest);
     }
 
-    synchronized public static String getLastRequest() {
-        return lastRequest;
+    @Deprecated
+    public static String getLastRequest() {
+        RequestHistory.Entry entry = RequestHistory.getLastEntry();
+        return entry != null ? entry.getRequest() : "";
     }
 
-    synchronized public static void clearLastResponse() {
-        Clog.lastResponse = "";
+    @Deprecated
+    public static void clearLastResponse() {
+        RequestHistory.clearResponse(RequestHistory.getLastEntry());
     }
 
-    synchronized public static void setLastResponse(String lastResponse) {
-        Clog.lastResponse = lastResponse;
+    @Deprecated
+    public static void setLastResponse(String lastResponse) {
+        RequestHistory.recordResponse(RequestHistory.getLastEntry(), lastResponse);
     }
 
-    synchronized public static String getLastResponse() {
-        return lastResponse;
+    @Deprecated
+    public static String getLastResponse() {
+        RequestHistory.Entry entry = RequestHistory.getLastEntry();
+        return entry != null && entry.getResponse() != null ? entry.getResponse() : "";
     }
 
     /**
      * ClogListener helper methods
      */
 
-    private static final ArrayList<ClogListener> listeners = new ArrayList<ClogListener>();
+    private static final ClogListener[] NO_LISTENERS = new ClogListener[0];
+    // replaced, never modified, so logging threads can read it without a lock
+    private static volatile ClogListener[] listeners = NO_LISTENERS;
+    // lowest level any registered listener accepts, recomputed whenever the
+    // listeners change, so a listener's level is read when it is registered
+    private static volatile int listenerLevel = Integer.MAX_VALUE;
+    private static volatile ClogDispatcher dispatcher = null;
 
     synchronized public static boolean registerListener(ClogListener listener) {
-        return listener != null && listeners.add(listener);
+        if (listener == null) {
+            return false;
+        }
+        if (dispatcher == null) {
+            dispatcher = new ClogDispatcher(Settings.CLOG_LISTENER_QUEUE_SIZE);
+        }
+        ClogListener[] updated = Arrays.copyOf(listeners, listeners.length + 1);
+        updated[listeners.length] = listener;
+        listeners = updated;
+        updateListenerLevel();
+        return true;
     }
 
     synchronized public static boolean unregisterListener(ClogListener listener) {
-        return listener != null && listeners.remove(listener);
+        if (listener == null) {
+            return false;
+        }
+        ClogListener[] current = listeners;
+        for (int i = 0; i < current.length; i++) {
+            if (listener.equals(current[i])) {
+                ClogListener[] updated = new ClogListener[current.length - 1];
+                System.arraycopy(current, 0, updated, 0, i);
+                System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                listeners = updated;
+                updateListenerLevel();
+                return true;
+            }
+        }
+        return false;
     }
 
     synchronized public static void unregisterAllListeners() {
-        listeners.clear();
+        listeners = NO_LISTENERS;
+        updateListenerLevel();
     }
 
-    private synchronized static void notifyListener(LOG_LEVEL level, String LogTag, String message) {
-        notifyListener(level, LogTag, message, null);
+    /**
+     * Listeners receive messages on a background thread. Waits until the
+     * messages logged before this call have been delivered, e.g. before
+     * reporting a crash or in tests.
+     *
+     * @param timeoutMillis the longest to wait
+     * @return false if some messages were not delivered within the timeout,
+     * or if called from a listener
+     */
+    public static boolean flushListeners(long timeoutMillis) {
+        ClogDispatcher d = dispatcher;
+        return d == null || d.flush(timeoutMillis);
+    }
+
+    /**
+     * @return the number of messages not delivered to listeners because
+     * they were logged faster than the listeners could take them
+     */
+    public static long getDroppedListenerMessageCount() {
+        ClogDispatcher d = dispatcher;
+        return d == null ? 0 : d.getDroppedCount();
+    }
+
+    static ClogListener[] getListeners() {
+        return listeners;
     }
 
-    private synchronized static void notifyListener(LOG_LEVEL level, String LogTag, String message, Throwable tr) {
+    private static void updateListenerLevel() {
+        int level = Integer.MAX_VALUE;
         for (ClogListener listener : listeners) {
-            if (level.ordinal() >= listener.getLogLevel().ordinal()) {
-                if (tr != null)
-                    listener.onReceiveMessage(level, LogTag, message, tr);
-                else
-                    listener.onReceiveMessage(level, LogTag, message);
+            level = Math.min(level, listener.getLogLevel().ordinal());
+        }
+        listenerLevel = level;
+    }
+
+    /**
+     * Log.isLoggable reads a system property on every call, so the lowest
+     * logcat level of each tag is looked up once and cached. Call this
+     * after changing log.tag properties while the app is running.
+     */
+    public static void refreshLoggability() {
+        logcatLevels.clear();
+    }
+
+    private static final ConcurrentHashMap<String, Integer> logcatLevels = new ConcurrentHashMap<String, Integer>();
+
+    // lowest android.util.Log priority written to logcat for the tag, or the baseLogTag
+    private static int getLogcatLevel(String LogTag) {
+        Integer level = logcatLevels.get(LogTag);
+        if (level == null) {
+            int lowest = Log.ASSERT + 1;
+            for (int priority = Log.VERBOSE; priority <= Log.ASSERT; priority++) {
+                if (isLogcatLoggable(LogTag, priority) || isLogcatLoggable(baseLogTag, priority)) {
+                    lowest = priority;
+                    break;
+                }
             }
+            level = lowest;
+            logcatLevels.put(LogTag, level);
+        }
+        return level;
+    }
+
+    private static boolean isLogcatLoggable(String LogTag, int priority) {
+        try {
+            return Log.isLoggable(LogTag, priority);
+        } catch (IllegalArgumentException e) {
+            // tags longer than 23 characters
+            return false;
+        }
+    }
+
+    private static final int[] PRIORITIES = {Log.VERBOSE, Log.DEBUG, Log.INFO, Log.WARN, Log.ERROR};
+
+    /**
+     * Lets callers skip building expensive messages nobody will see.
+     * Costs a cache lookup, loggability is cached per tag.
+     *
+     * @return true if a message at this level would be written to logcat
+     * or delivered to a registered listener
+     */
+    public static boolean isLoggable(String LogTag, LOG_LEVEL level) {
+        return level.ordinal() >= listenerLevel
+                || PRIORITIES[level.ordinal()] >= getLogcatLevel(LogTag);
+    }
+
+    private static void notifyListener(LOG_LEVEL level, String LogTag, String message) {
+        notifyListener(level, LogTag, message, null);
+    }
+
+    private static void notifyListener(LOG_LEVEL level, String LogTag, String message, Throwable tr) {
+        if (level.ordinal() < listenerLevel) {
+            return;
+        }
+        ClogListener[] current = listeners;
+        ClogDispatcher d = dispatcher;
+        if (current.length > 0 && d != null) {
+            d.offer(current, level, LogTag, message, tr);
         }
     }
 }
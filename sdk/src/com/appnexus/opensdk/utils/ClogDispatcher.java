@@ -0,0 +1,189 @@
+/*
+ *    Copyright 2015 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk.utils;
+
+import android.util.Log;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static com.appnexus.opensdk.utils.ClogListener.LOG_LEVEL;
+
+/**
+ * Delivers Clog messages to ClogListeners on one background thread.
+ * Logging threads put messages into a fixed ring of slots without taking
+ * a lock: each claims the next slot with a compare-and-set on the tail and
+ * publishes it by writing the slot's sequence number. The delivery thread
+ * takes slots in sequence order, so messages from any one thread reach the
+ * listeners in the order they were logged. When the ring is full the
+ * message is dropped and counted instead of blocking the caller.
+ */
+class ClogDispatcher implements Runnable {
+    private static class Slot {
+        // equals the slot's position when free, position + 1 when published
+        volatile long sequence;
+        ClogListener[] listeners;
+        LOG_LEVEL level;
+        String LogTag;
+        String message;
+        Throwable tr;
+    }
+
+    private final Slot[] slots;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread thread;
+    // only advanced by the delivery thread
+    private volatile long delivered = 0;
+    private volatile boolean parked = false;
+    private long droppedReported = 0;
+
+    ClogDispatcher(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        slots = new Slot[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Slot();
+            slots[i].sequence = i;
+        }
+        mask = size - 1;
+        thread = new Thread(this, "AppNexusSDK-ClogListener");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Queues a message for the listeners registered when it was logged.
+     *
+     * @return false if the ring was full and the message was dropped
+     */
+    boolean offer(ClogListener[] listeners, LOG_LEVEL level, String LogTag, String message, Throwable tr) {
+        Slot slot;
+        long position;
+        while (true) {
+            position = tail.get();
+            slot = slots[(int) position & mask];
+            long difference = slot.sequence - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    break;
+                }
+            } else if (difference < 0) {
+                // the delivery thread hasn't freed this slot yet
+                dropped.incrementAndGet();
+                return false;
+            }
+            // another thread claimed the position, try the next one
+        }
+        slot.listeners = listeners;
+        slot.level = level;
+        slot.LogTag = LogTag;
+        slot.message = message;
+        slot.tr = tr;
+        slot.sequence = position + 1;
+        if (parked) {
+            LockSupport.unpark(thread);
+        }
+        return true;
+    }
+
+    /**
+     * Waits until the messages queued before this call have been delivered.
+     *
+     * @return false if they were not all delivered within the timeout
+     */
+    boolean flush(long timeoutMillis) {
+        if (Thread.currentThread() == thread) {
+            return false;
+        }
+        long target = tail.get();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (delivered < target) {
+            if (System.nanoTime() - deadline >= 0) {
+                return false;
+            }
+            LockSupport.unpark(thread);
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        return true;
+    }
+
+    long getDroppedCount() {
+        return dropped.get();
+    }
+
+    @Override
+    public void run() {
+        long head = 0;
+        while (true) {
+            Slot slot = slots[(int) head & mask];
+            if (slot.sequence != head + 1) {
+                reportDropped();
+                parked = true;
+                // check again, a message published before parked was set
+                // would not have unparked this thread
+                if (slot.sequence != head + 1) {
+                    LockSupport.park(this);
+                }
+                parked = false;
+                continue;
+            }
+            ClogListener[] listeners = slot.listeners;
+            LOG_LEVEL level = slot.level;
+            String LogTag = slot.LogTag;
+            String message = slot.message;
+            Throwable tr = slot.tr;
+            slot.listeners = null;
+            slot.LogTag = null;
+            slot.message = null;
+            slot.tr = null;
+            // hand the slot back to the producers, one lap ahead
+            slot.sequence = head + slots.length;
+            head++;
+
+            deliver(listeners, level, LogTag, message, tr);
+            delivered = head;
+        }
+    }
+
+    private void reportDropped() {
+        long count = dropped.get();
+        if (count > droppedReported) {
+            String message = (count - droppedReported) + " log messages were not delivered to listeners, the queue was full";
+            droppedReported = count;
+            Log.w(Clog.baseLogTag, message);
+            deliver(Clog.getListeners(), LOG_LEVEL.W, Clog.baseLogTag, message, null);
+        }
+    }
+
+    private static void deliver(ClogListener[] listeners, LOG_LEVEL level, String LogTag, String message, Throwable tr) {
+        for (ClogListener listener : listeners) {
+            try {
+                if (level.ordinal() >= listener.getLogLevel().ordinal()) {
+                    if (tr != null)
+                        listener.onReceiveMessage(level, LogTag, message, tr);
+                    else
+                        listener.onReceiveMessage(level, LogTag, message);
+                }
+            } catch (Throwable t) {
+                // keep delivering to the other listeners and later messages
+                Log.e(Clog.baseLogTag, "ClogListener threw while receiving a message", t);
+            }
+        }
+    }
+}
@@ -33,8 +33,9 @@ public abstract class ClogListener {
     /**
      * Callback for all messages set to Clog after listener is registered.
      * Implement special handling of Clog messages here.
-     * Make sure not to print to Clog in this method, or else
-     * the program will deadlock.
+     * Messages are delivered in order on a background thread shared
+     * by all listeners, so keep this method short. Printing to Clog
+     * from this method sends the message back to the listener.
      *
      * @param level the level of verbosity
      * @param LogTag the log tag associated with the message
@@ -45,8 +46,9 @@ public abstract class ClogListener {
     /**
      * Callback for all messages set to Clog after listener is registered.
      * Implement special handling of Clog messages here.
-     * Make sure not to print to Clog in this method, or else
-     * the program will deadlock.
+     * Messages are delivered in order on a background thread shared
+     * by all listeners, so keep this method short. Printing to Clog
+     * from this method sends the message back to the listener.
      *
      * @param level the level of verbosity
      * @param LogTag the log tag associated with the message
@@ -56,7 +58,10 @@ public abstract class ClogListener {
     public abstract void onReceiveMessage(LOG_LEVEL level, String LogTag, String message, Throwable tr);
 
     /**
-     * Specify filtering level for Clog messages
+     * Specify filtering level for Clog messages.
+     * Clog reads the level when the listener is registered and skips
+     * building messages below it; to change the level, unregister the
+     * listener and register it again.
      *
      * @return minimum level of verbosity to filter messages at.
      * For example, returning V (Verbose) will receive all messages.
@@ -22,11 +22,9 @@ import android.os.Build;
 
 import org.apache.http.HttpResponse;
 import org.apache.http.client.ClientProtocolException;
-import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.conn.ConnectTimeoutException;
 import org.apache.http.conn.ConnectionPoolTimeoutException;
-import org.apache.http.impl.client.DefaultHttpClient;
 import org.apache.http.util.EntityUtils;
 
 import java.io.IOException;
@@ -44,11 +42,20 @@ public abstract class HTTPGet extends AsyncTask<Void, Void, HTTPResponse> {
 
 	@Override
     protected HTTPResponse doInBackground(Void... params) {
+        return get(getUrl());
+    }
+
+    /**
+     * Performs a GET on the calling thread.
+     *
+     * @param url the url to request
+     * @return the response, never null
+     */
+    public static HTTPResponse get(String url) {
         HTTPResponse out = new HTTPResponse();
 
-        HttpClient httpc = new DefaultHttpClient();
         try {
-            URI uri = new URI(getUrl());
+            URI uri = new URI(url);
             if(uri.getHost()==null){
                  Clog.w(Clog.httpReqLogTag, "An HTTP request with an invalid URL was attempted.", new IllegalStateException("An HTTP request with an invalid URL was attempted."));
                 out.setSucceeded(false);
@@ -58,7 +65,7 @@ public abstract class HTTPGet extends AsyncTask<Void, Void, HTTPResponse> {
             request.setHeader("User-Agent", Settings.getSettings().ua);
             request.setURI(uri);
             request.addHeader("Cookie", WebviewUtil.getCookie());
-            HttpResponse r = httpc.execute(request);
+            HttpResponse r = HTTPTransport.execute(request, null);
 
             out.setHeaders(r.getAllHeaders());
             out.setResponseBody(EntityUtils.toString(r.getEntity()));
@@ -81,8 +88,6 @@ public abstract class HTTPGet extends AsyncTask<Void, Void, HTTPResponse> {
         } catch (IOException e) {
             out.setSucceeded(false);
             out.setErrorCode(HttpErrorCode.TRANSPORT_ERROR);
-        } finally {
-            httpc.getConnectionManager().shutdown();
         }
 
         return out;
@@ -0,0 +1,161 @@
+/*
+ *    Copyright 2015 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk.utils;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.CookieStore;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.protocol.ClientContext;
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.params.ConnManagerParams;
+import org.apache.http.conn.params.ConnPerRouteBean;
+import org.apache.http.conn.scheme.PlainSocketFactory;
+import org.apache.http.conn.scheme.Scheme;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.conn.ssl.SSLSocketFactory;
+import org.apache.http.impl.client.BasicCookieStore;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.params.HttpConnectionParams;
+import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.HttpContext;
+
+import java.io.IOException;
+
+/**
+ * SDK-wide HTTP transport. Ad requests and tracker pings all go through a
+ * single pooled client so that connections to the ad server are kept alive
+ * and reused instead of paying a new TCP/TLS handshake on every call.
+ */
+public class HTTPTransport {
+
+    private static DefaultHttpClient client = null;
+
+    /**
+     * Returns the shared client, creating it on first use.
+     *
+     * @return the process-wide pooled HTTP client
+     */
+    public static synchronized DefaultHttpClient getClient() {
+        if (client == null) {
+            client = createClient();
+        }
+        return client;
+    }
+
+    /**
+     * Executes a request on the shared client. Each call gets its own cookie
+     * store so that cookies are never leaked between requests; callers that
+     * need the cookies set by the server may pass in their own store.
+     *
+     * @param request     the request to execute
+     * @param cookieStore the cookie store to use for this request, or null
+     * @return the response. Callers must consume the entity (or call
+     * {@link #release(HttpResponse)}) so the connection returns to the pool.
+     * @throws IOException on any transport failure
+     */
+    public static HttpResponse execute(HttpUriRequest request, CookieStore cookieStore) throws IOException {
+        DefaultHttpClient httpClient = getClient();
+        httpClient.getConnectionManager().closeExpiredConnections();
+
+        HttpContext context = new BasicHttpContext();
+        context.setAttribute(ClientContext.COOKIE_STORE,
+                cookieStore != null ? cookieStore : new BasicCookieStore());
+        try {
+            return httpClient.execute(request, context);
+        } catch (IOException e) {
+            request.abort();
+            throw e;
+        } catch (RuntimeException e) {
+            request.abort();
+            throw e;
+        }
+    }
+
+    /**
+     * Discards the body of a response that is not going to be read, which
+     * hands the underlying connection back to the pool.
+     *
+     * @param response the response to release
+     */
+    public static void release(HttpResponse response) {
+        if (response == null) {
+            return;
+        }
+        HttpEntity entity = response.getEntity();
+        if (entity != null) {
+            try {
+                entity.consumeContent();
+            } catch (IOException e) {
+                // the connection is closed rather than reused
+            }
+        }
+    }
+
+    /**
+     * Closes all pooled connections. The next request will create a new pool.
+     */
+    public static synchronized void shutdown() {
+        if (client != null) {
+            client.getConnectionManager().shutdown();
+            client = null;
+        }
+    }
+
+    private static DefaultHttpClient createClient() {
+        HttpParams params = new BasicHttpParams();
+        HttpConnectionParams.setConnectionTimeout(params, Settings.HTTP_CONNECTION_TIMEOUT);
+        HttpConnectionParams.setSoTimeout(params, Settings.HTTP_SOCKET_TIMEOUT);
+        HttpConnectionParams.setSocketBufferSize(params, 8192);
+        HttpConnectionParams.setStaleCheckingEnabled(params, true);
+        ConnManagerParams.setMaxTotalConnections(params, Settings.HTTP_MAX_CONNECTIONS);
+        ConnManagerParams.setMaxConnectionsPerRoute(params,
+                new ConnPerRouteBean(Settings.HTTP_MAX_CONNECTIONS_PER_ROUTE));
+        ConnManagerParams.setTimeout(params, Settings.HTTP_CONNECTION_TIMEOUT);
+
+        SchemeRegistry schemeRegistry = new SchemeRegistry();
+        schemeRegistry.register(new Scheme("http", PlainSocketFactory.getSocketFactory(), 80));
+        schemeRegistry.register(new Scheme("https", SSLSocketFactory.getSocketFactory(), 443));
+
+        ClientConnectionManager connectionManager = new ThreadSafeClientConnManager(params, schemeRegistry);
+        DefaultHttpClient httpClient = new DefaultHttpClient(connectionManager, params);
+        httpClient.setKeepAliveStrategy(new BoundedKeepAliveStrategy());
+        return httpClient;
+    }
+
+    /**
+     * Honors the server's Keep-Alive header but never keeps an idle
+     * connection around for longer than {@link Settings#HTTP_KEEP_ALIVE_MILLIS}.
+     */
+    private static class BoundedKeepAliveStrategy implements ConnectionKeepAliveStrategy {
+        private final DefaultConnectionKeepAliveStrategy serverStrategy = new DefaultConnectionKeepAliveStrategy();
+
+        @Override
+        public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+            long duration = serverStrategy.getKeepAliveDuration(response, context);
+            if (duration <= 0 || duration > Settings.HTTP_KEEP_ALIVE_MILLIS) {
+                return Settings.HTTP_KEEP_ALIVE_MILLIS;
+            }
+            return duration;
+        }
+    }
+}
@@ -0,0 +1,344 @@
+/*
+ *    Copyright 2015 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk.utils;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Two level cache for native ad images. Decoded bitmaps are kept in a
+ * memory LRU keyed by url, target size and config, bounded by
+ * {@link Settings#IMAGE_MEMORY_CACHE_SIZE} bytes of pixels. The encoded
+ * images are kept in the app's cache directory, bounded by
+ * {@link Settings#IMAGE_DISK_CACHE_SIZE} bytes, evicting the least recently
+ * used file first. Images larger than
+ * {@link Settings#IMAGE_DISK_CACHE_MAX_ENTRY_SIZE} are not written to disk.
+ * Safe to use from any thread.
+ */
+public class ImageCache {
+    private static final String DIRECTORY = "appnexus_images";
+
+    private static ImageCache instance;
+
+    private final File directory;
+    private final LinkedHashMap<String, MemoryEntry> memory
+            = new LinkedHashMap<String, MemoryEntry>(16, 0.75f, true);
+    private long memorySize = 0;
+    // file name to length, in access order
+    private LinkedHashMap<String, Long> diskIndex;
+    private long diskSize = 0;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long bytesSaved = 0;
+
+    public static synchronized ImageCache getInstance(Context context) {
+        if (instance == null) {
+            instance = new ImageCache(new File(context.getApplicationContext().getCacheDir(), DIRECTORY));
+        }
+        return instance;
+    }
+
+    ImageCache(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Looks the image up in memory, then on disk.
+     *
+     * @param url    the url the image was downloaded from
+     * @param width  the size the image was decoded for, 0 for the full size
+     * @param height the size the image was decoded for, 0 for the full size
+     * @param config the config the image was decoded with
+     * @return the cached image, or null if it has to be downloaded. The image is retained
+     * for the caller, who releases it with {@link BitmapPool#release(Bitmap)} when done
+     */
+    public Bitmap get(String url, int width, int height, Bitmap.Config config) {
+        String memoryKey = memoryKey(url, width, height, config);
+        synchronized (this) {
+            MemoryEntry entry = memory.get(memoryKey);
+            if (entry != null) {
+                hits++;
+                bytesSaved += entry.encodedSize;
+                BitmapPool.getInstance().retain(entry.bitmap);
+                return entry.bitmap;
+            }
+        }
+
+        byte[] encoded = readFromDisk(diskKey(url));
+        if (encoded != null) {
+            Bitmap bitmap = ImageDecoder.decode(encoded, width, height, config);
+            if (bitmap != null) {
+                BitmapPool.getInstance().retain(bitmap);
+                synchronized (this) {
+                    hits++;
+                    bytesSaved += encoded.length;
+                }
+                putInMemory(memoryKey, bitmap, encoded.length);
+                return bitmap;
+            }
+        }
+        synchronized (this) {
+            misses++;
+        }
+        return null;
+    }
+
+    /**
+     * Adds a downloaded image.
+     *
+     * @param url     the url the image was downloaded from
+     * @param width   the size the image was decoded for, 0 for the full size
+     * @param height  the size the image was decoded for, 0 for the full size
+     * @param config  the config the image was decoded with
+     * @param bitmap  the decoded image
+     * @param encoded the downloaded bytes, or null if the image should not be written to disk
+     */
+    public void put(String url, int width, int height, Bitmap.Config config, Bitmap bitmap, byte[] encoded) {
+        if (bitmap != null) {
+            putInMemory(memoryKey(url, width, height, config), bitmap, encoded != null ? encoded.length : 0);
+        }
+        if (encoded != null && encoded.length <= Settings.IMAGE_DISK_CACHE_MAX_ENTRY_SIZE) {
+            writeToDisk(diskKey(url), encoded);
+        }
+    }
+
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    /**
+     * @return the fraction of lookups served from memory or disk, 0 if there were none
+     */
+    public synchronized double getHitRatio() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    /**
+     * @return the number of downloaded bytes that cache hits did not have to download again
+     */
+    public synchronized long getBytesSaved() {
+        return bytesSaved;
+    }
+
+    /**
+     * Drops the decoded images, keeping the ones on disk. Call this when
+     * the app is running low on memory.
+     */
+    public synchronized void clearMemory() {
+        releaseAll();
+    }
+
+    /**
+     * Drops every cached image from memory and disk.
+     */
+    public synchronized void clear() {
+        releaseAll();
+        loadDiskIndex();
+        for (String name : diskIndex.keySet()) {
+            new File(directory, name).delete();
+        }
+        diskIndex.clear();
+        diskSize = 0;
+    }
+
+    private synchronized void putInMemory(String key, Bitmap bitmap, int encodedSize) {
+        int size = BitmapPool.sizeOf(bitmap);
+        if (size > Settings.IMAGE_MEMORY_CACHE_SIZE) {
+            return;
+        }
+        BitmapPool.getInstance().retain(bitmap);
+        MemoryEntry previous = memory.put(key, new MemoryEntry(bitmap, size, encodedSize));
+        if (previous != null) {
+            memorySize -= previous.size;
+            BitmapPool.getInstance().release(previous.bitmap);
+        }
+        memorySize += size;
+        Iterator<MemoryEntry> eldest = memory.values().iterator();
+        while (memorySize > Settings.IMAGE_MEMORY_CACHE_SIZE && eldest.hasNext()) {
+            MemoryEntry entry = eldest.next();
+            memorySize -= entry.size;
+            eldest.remove();
+            // only pooled once no ad shows it anymore
+            BitmapPool.getInstance().release(entry.bitmap);
+        }
+    }
+
+    private void releaseAll() {
+        for (MemoryEntry entry : memory.values()) {
+            BitmapPool.getInstance().release(entry.bitmap);
+        }
+        memory.clear();
+        memorySize = 0;
+    }
+
+    private byte[] readFromDisk(String name) {
+        synchronized (this) {
+            loadDiskIndex();
+            if (diskIndex.get(name) == null) {
+                return null;
+            }
+        }
+        File file = new File(directory, name);
+        FileInputStream in = null;
+        try {
+            byte[] data = new byte[(int) file.length()];
+            in = new FileInputStream(file);
+            int read = 0;
+            while (read < data.length) {
+                int count = in.read(data, read, data.length - read);
+                if (count < 0) {
+                    throw new IOException("Unexpected end of file");
+                }
+                read += count;
+            }
+            file.setLastModified(System.currentTimeMillis());
+            return data;
+        } catch (IOException e) {
+            Clog.w(Clog.baseLogTag, "Unable to read cached image " + name, e);
+            removeFromDisk(name);
+        } finally {
+            closeQuietly(in);
+        }
+        return null;
+    }
+
+    private void writeToDisk(String name, byte[] data) {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            return;
+        }
+        File tmp = new File(directory, name + ".tmp");
+        FileOutputStream out = null;
+        try {
+            out = new FileOutputStream(tmp);
+            out.write(data);
+            out.close();
+            out = null;
+            synchronized (this) {
+                loadDiskIndex();
+                if (!tmp.renameTo(new File(directory, name))) {
+                    tmp.delete();
+                    return;
+                }
+                Long previous = diskIndex.put(name, (long) data.length);
+                if (previous != null) {
+                    diskSize -= previous;
+                }
+                diskSize += data.length;
+                trimDisk();
+            }
+        } catch (IOException e) {
+            Clog.w(Clog.baseLogTag, "Unable to cache image " + name, e);
+            tmp.delete();
+        } finally {
+            closeQuietly(out);
+        }
+    }
+
+    private synchronized void removeFromDisk(String name) {
+        Long length = diskIndex.remove(name);
+        if (length != null) {
+            diskSize -= length;
+        }
+        new File(directory, name).delete();
+    }
+
+    private void trimDisk() {
+        Iterator<Map.Entry<String, Long>> eldest = diskIndex.entrySet().iterator();
+        while (diskSize > Settings.IMAGE_DISK_CACHE_SIZE && eldest.hasNext()) {
+            Map.Entry<String, Long> entry = eldest.next();
+            new File(directory, entry.getKey()).delete();
+            diskSize -= entry.getValue();
+            eldest.remove();
+        }
+    }
+
+    // rebuilds the index from the directory the first time it is needed, oldest files first
+    private void loadDiskIndex() {
+        if (diskIndex != null) {
+            return;
+        }
+        diskIndex = new LinkedHashMap<String, Long>(16, 0.75f, true);
+        diskSize = 0;
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File lhs, File rhs) {
+                long l = lhs.lastModified();
+                long r = rhs.lastModified();
+                return l < r ? -1 : (l == r ? 0 : 1);
+            }
+        });
+        for (File file : files) {
+            if (file.getName().endsWith(".tmp")) {
+                file.delete();
+                continue;
+            }
+            diskIndex.put(file.getName(), file.length());
+            diskSize += file.length();
+        }
+        trimDisk();
+    }
+
+    private static String memoryKey(String url, int width, int height, Bitmap.Config config) {
+        return width + "x" + height + ":" + (config != null ? config : Bitmap.Config.ARGB_8888) + ":" + url;
+    }
+
+    private static String diskKey(String url) {
+        return HashingFunctions.md5(url);
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private static class MemoryEntry {
+        final Bitmap bitmap;
+        final int size;
+        final int encodedSize;
+
+        MemoryEntry(Bitmap bitmap, int size, int encodedSize) {
+            this.bitmap = bitmap;
+            this.size = size;
+            this.encodedSize = encodedSize;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ *    Copyright 2015 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk.utils;
+
+import android.annotation.SuppressLint;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Build;
+
+/**
+ * Decodes downloaded images at the size they will be shown at. The bounds
+ * are read first, the image is sampled down by the largest power of two
+ * that keeps it at least as large as the target size, and a bitmap from
+ * {@link BitmapPool} is reused when one fits.
+ */
+public class ImageDecoder {
+
+    /**
+     * @param data   the encoded image
+     * @param width  the width the image will be shown at, 0 for the full size
+     * @param height the height the image will be shown at, 0 for the full size
+     * @param config the preferred config, null for ARGB_8888
+     * @return the decoded image, or null if it could not be decoded
+     */
+    @SuppressLint("NewApi")
+    public static Bitmap decode(byte[] data, int width, int height, Bitmap.Config config) {
+        if (data == null || data.length == 0) {
+            return null;
+        }
+        if (config == null) {
+            config = Bitmap.Config.ARGB_8888;
+        }
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+        options.inSampleSize = calculateInSampleSize(options.outWidth, options.outHeight, width, height);
+        options.inJustDecodeBounds = false;
+        options.inPreferredConfig = config;
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
+            // mutable so it can go back to the pool once it is released
+            options.inMutable = true;
+            int sampledWidth = (options.outWidth + options.inSampleSize - 1) / options.inSampleSize;
+            int sampledHeight = (options.outHeight + options.inSampleSize - 1) / options.inSampleSize;
+            options.inBitmap = BitmapPool.getInstance().get(sampledWidth, sampledHeight,
+                    config, options.inSampleSize > 1);
+        }
+        try {
+            return BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        } catch (IllegalArgumentException e) {
+            // the pooled bitmap could not be reused after all
+            Clog.d(Clog.baseLogTag, "Unable to reuse bitmap, decoding into a new one");
+            options.inBitmap = null;
+            return BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        }
+    }
+
+    /**
+     * @return the largest power of two that keeps both sides at least as large as
+     * the requested size, 1 if no size was requested
+     */
+    public static int calculateInSampleSize(int width, int height, int requestedWidth, int requestedHeight) {
+        int inSampleSize = 1;
+        if (requestedWidth <= 0 || requestedHeight <= 0) {
+            return inSampleSize;
+        }
+        while (width / (inSampleSize * 2) >= requestedWidth
+                && height / (inSampleSize * 2) >= requestedHeight) {
+            inSampleSize *= 2;
+        }
+        return inSampleSize;
+    }
+}
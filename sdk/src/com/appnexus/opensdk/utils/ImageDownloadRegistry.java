@@ -0,0 +1,219 @@
+/*
+ *    Copyright 2015 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk.utils;
+
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Process-wide registry of image downloads in flight. When several native
+ * ads ask for the same image at the same size while it is still loading,
+ * they share one download and decode and each of them receives the result.
+ * Downloads run on a pool of {@link Settings#IMAGE_DOWNLOAD_THREAD_COUNT}
+ * daemon threads of their own, so they neither wait behind nor hold up the
+ * app's AsyncTasks. Results are delivered on the main thread.
+ */
+class ImageDownloadRegistry {
+    private static final long IDLE_THREAD_TIMEOUT_MILLIS = 30000;
+    static final int TIMEOUT = 10000;
+
+    private static ImageDownloadRegistry instance;
+
+    private final ThreadPoolExecutor executor;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final HashMap<String, Download> inFlight = new HashMap<String, Download>();
+    private int shared = 0;
+
+    interface Callback {
+        /**
+         * Called on the main thread with the image, retained for this callback, or null if it failed.
+         */
+        void onDownloadFinished(Bitmap image);
+    }
+
+    static synchronized ImageDownloadRegistry getInstance() {
+        if (instance == null) {
+            instance = new ImageDownloadRegistry();
+        }
+        return instance;
+    }
+
+    private ImageDownloadRegistry() {
+        executor = new ThreadPoolExecutor(Settings.IMAGE_DOWNLOAD_THREAD_COUNT, Settings.IMAGE_DOWNLOAD_THREAD_COUNT,
+                IDLE_THREAD_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, "AppNexusSDK-Image-" + threadNumber.getAndIncrement());
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Loads the image at the given size, joining a download of the same image that is already in flight.
+     */
+    synchronized void load(String url, int width, int height, Bitmap.Config config, ImageCache cache,
+                           Callback callback) {
+        String key = width + "x" + height + ":" + config + ":" + url;
+        Download download = inFlight.get(key);
+        if (download != null) {
+            shared++;
+            Clog.d(Clog.baseLogTag, "Image already loading, sharing the download: " + url);
+            download.callbacks.add(callback);
+            return;
+        }
+        download = new Download(key, url, width, height, config, cache);
+        download.callbacks.add(callback);
+        inFlight.put(key, download);
+        Clog.d(Clog.baseLogTag, "Downloading image from url: " + url);
+        executor.execute(download);
+    }
+
+    /**
+     * @return the number of loads that joined a download already in flight instead of starting their own
+     */
+    synchronized int getSharedCount() {
+        return shared;
+    }
+
+    synchronized int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    private void finish(final Download download, final Bitmap image) {
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                ArrayList<Callback> callbacks;
+                synchronized (ImageDownloadRegistry.this) {
+                    // later loads of this image start a new download, or hit the cache
+                    inFlight.remove(download.key);
+                    callbacks = download.callbacks;
+                }
+                for (Callback callback : callbacks) {
+                    BitmapPool.getInstance().retain(image);
+                    callback.onDownloadFinished(image);
+                }
+                // drop the hold taken while the image was handed over
+                BitmapPool.getInstance().release(image);
+            }
+        });
+    }
+
+    private class Download implements Runnable {
+        final String key;
+        final String url;
+        final int width;
+        final int height;
+        final Bitmap.Config config;
+        final ImageCache cache;
+        // guarded by the registry
+        final ArrayList<Callback> callbacks = new ArrayList<Callback>(1);
+
+        Download(String key, String url, int width, int height, Bitmap.Config config, ImageCache cache) {
+            this.key = key;
+            this.url = url;
+            this.width = width;
+            this.height = height;
+            this.config = config;
+            this.cache = cache;
+        }
+
+        @Override
+        public void run() {
+            Bitmap image = null;
+            try {
+                image = load();
+            } catch (Throwable e) {
+                // an image that fails to load or decode must not take the thread down
+                Clog.e(Clog.httpRespLogTag, "Image loading failed for url " + url + ": " + e.getMessage());
+            }
+            finish(this, image);
+        }
+
+        // the returned image is retained for the hand over
+        private Bitmap load() throws IOException {
+            if (cache != null) {
+                Bitmap cached = cache.get(url, width, height, config);
+                if (cached != null) {
+                    Clog.d(Clog.baseLogTag, "Image loaded from cache: " + url);
+                    return cached;
+                }
+            }
+            InputStream is = null;
+            try {
+                URLConnection connection = new URL(url).openConnection();
+                connection.setConnectTimeout(TIMEOUT);
+                connection.setReadTimeout(TIMEOUT);
+                if (connection.getContentLength() > Settings.IMAGE_MAX_DOWNLOAD_SIZE) {
+                    Clog.w(Clog.httpRespLogTag, "Image is too large to download: " + url);
+                    return null;
+                }
+                is = (InputStream) connection.getContent();
+                byte[] encoded = readFully(is, Settings.IMAGE_MAX_DOWNLOAD_SIZE);
+                Bitmap bitmap = ImageDecoder.decode(encoded, width, height, config);
+                if (bitmap != null) {
+                    BitmapPool.getInstance().retain(bitmap);
+                    if (cache != null) {
+                        cache.put(url, width, height, config, bitmap, encoded);
+                    }
+                }
+                return bitmap;
+            } finally {
+                if (is != null) {
+                    try {
+                        is.close();
+                    } catch (IOException ignore) {
+                    }
+                }
+            }
+        }
+    }
+
+    // the content length may be missing, so the limit is checked while reading too
+    private static byte[] readFully(InputStream is, int maxBytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(8192);
+        byte[] buffer = new byte[8192];
+        int count;
+        while ((count = is.read(buffer)) != -1) {
+            if (out.size() + count > maxBytes) {
+                throw new IOException("Image is larger than " + maxBytes + " bytes");
+            }
+            out.write(buffer, 0, count);
+        }
+        return out.toByteArray();
+    }
+}
@@ -17,24 +17,71 @@
 package com.appnexus.opensdk.utils;
 
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
-import android.os.AsyncTask;
 
-import java.io.InputStream;
 import java.lang.ref.WeakReference;
-import java.net.URL;
-import java.net.URLConnection;
 import java.util.HashMap;
 import java.util.Map;
 
 public class ImageService {
     HashMap<ImageReceiver, String> imageUrls = new HashMap<ImageReceiver, String>();
+    HashMap<ImageReceiver, int[]> imageSizes = new HashMap<ImageReceiver, int[]>();
+    HashMap<ImageReceiver, Bitmap.Config> imageConfigs = new HashMap<ImageReceiver, Bitmap.Config>();
+    private Bitmap.Config config = Bitmap.Config.ARGB_8888;
     ImageServiceListener imageServiceListener;
-    static final int TIMEOUT = 10000;
+    private final ImageCache cache;
+
+    public ImageService() {
+        this(null);
+    }
+
+    /**
+     * @param cache images are looked up in this cache before they are downloaded
+     *              and added to it afterwards, or null to always download them
+     */
+    public ImageService(ImageCache cache) {
+        this.cache = cache;
+    }
 
     public void registerImageReceiver(ImageReceiver imageReceiver, String url) {
+        registerImageReceiver(imageReceiver, url, 0, 0);
+    }
+
+    /**
+     * Registers an image that will be shown at the given size. The image is
+     * sampled down while it is decoded, keeping it at least as large as the
+     * given size.
+     *
+     * @param width  the width of the view showing the image in pixels, 0 for the full size
+     * @param height the height of the view showing the image in pixels, 0 for the full size
+     */
+    public void registerImageReceiver(ImageReceiver imageReceiver, String url, int width, int height) {
+        registerImageReceiver(imageReceiver, url, width, height, null);
+    }
+
+    /**
+     * Registers an image that will be shown at the given size and decoded
+     * with its own config instead of the one set with {@link #setBitmapConfig(Bitmap.Config)}.
+     *
+     * @param config the config to decode this image with, or null for the service's config
+     */
+    public void registerImageReceiver(ImageReceiver imageReceiver, String url, int width, int height,
+                                      Bitmap.Config config) {
         if (!StringUtil.isEmpty(url) && imageReceiver != null) {
             imageUrls.put(imageReceiver, url);
+            imageSizes.put(imageReceiver, new int[]{Math.max(0, width), Math.max(0, height)});
+            if (config != null) {
+                imageConfigs.put(imageReceiver, config);
+            }
+        }
+    }
+
+    /**
+     * Sets the config images are decoded with. RGB_565 halves the memory
+     * used by images without transparency. The default is ARGB_8888.
+     */
+    public void setBitmapConfig(Bitmap.Config config) {
+        if (config != null) {
+            this.config = config;
         }
     }
 
@@ -57,6 +104,8 @@ public class ImageService {
 
     private void finish() {
         imageUrls = null;
+        imageSizes = null;
+        imageConfigs = null;
         imageServiceListener = null;
     }
 
@@ -68,9 +117,12 @@ public class ImageService {
         }
         if (imageUrls != null && !imageUrls.isEmpty()) {
             for(Map.Entry pairs : imageUrls.entrySet()) {
-                ImageDownloader downloader = new ImageDownloader((ImageReceiver) pairs.getKey(), (String) pairs.getValue(), this);
-                Clog.d(Clog.baseLogTag, "Downloading image from url: " + pairs.getValue());
-                downloader.execute();
+                int[] size = imageSizes.get(pairs.getKey());
+                Bitmap.Config imageConfig = imageConfigs.get(pairs.getKey());
+                // shared with other native ads loading the same image at the same time
+                ImageDownloadRegistry.getInstance().load((String) pairs.getValue(), size[0], size[1],
+                        imageConfig != null ? imageConfig : config, cache,
+                        new ImageDelivery((ImageReceiver) pairs.getKey(), this));
             }
         } else {
             imageServiceListener.onAllImageDownloadsFinish();
@@ -78,44 +130,17 @@ public class ImageService {
         }
     }
 
-    class ImageDownloader extends AsyncTask<Void, Void, Bitmap> {
+    static class ImageDelivery implements ImageDownloadRegistry.Callback {
         WeakReference<ImageService> caller;
         WeakReference<ImageReceiver> imageReceiver;
-        String url;
 
-        ImageDownloader(ImageReceiver imageReceiver, String url, ImageService caller) {
+        ImageDelivery(ImageReceiver imageReceiver, ImageService caller) {
             this.caller = new WeakReference<ImageService>(caller);
             this.imageReceiver = new WeakReference<ImageReceiver>(imageReceiver);
-            this.url = url;
-        }
-
-        @Override
-        protected void onCancelled() {
-            super.onCancelled();
-            imageReceiver.clear();
-            caller.clear();
-        }
-
-        @Override
-        protected Bitmap doInBackground(Void... params) {
-            if (isCancelled()) {
-                return null;
-            }
-            try {
-                URLConnection connection = new URL(url).openConnection();
-                connection.setReadTimeout(TIMEOUT);
-                InputStream is = (InputStream) connection.getContent();
-                Bitmap bitmap = BitmapFactory.decodeStream(is);
-                is.close();
-                return bitmap;
-
-            } catch (Exception ignore) {
-            }
-            return null;
         }
 
         @Override
-        protected void onPostExecute(Bitmap image) {
+        public void onDownloadFinished(Bitmap image) {
             ImageReceiver receiver = imageReceiver.get();
             ImageService service = caller.get();
             if (receiver != null) {
@@ -124,6 +149,8 @@ public class ImageService {
                 } else {
                     receiver.onReceiveImage(image);
                 }
+            } else {
+                BitmapPool.getInstance().release(image);
             }
             if (service != null) {
                 service.finishDownload(receiver);
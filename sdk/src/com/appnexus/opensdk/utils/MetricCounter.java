@@ -0,0 +1,71 @@
+/*
+ *    Copyright 2015 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk.utils;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A long that many threads add to without contending on one memory
+ * location. Each thread adds to one of a few stripes, picked from its id,
+ * and reading the value sums the stripes. Adding never allocates.
+ */
+public class MetricCounter {
+    private static final int STRIPES = 8;
+    // stripes are spread out so that each sits on its own cache line
+    private static final int SPACING = 8;
+
+    private final String name;
+    private final AtomicLongArray cells = new AtomicLongArray(STRIPES * SPACING);
+
+    MetricCounter(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void increment() {
+        add(1);
+    }
+
+    public void decrement() {
+        add(-1);
+    }
+
+    public void add(long delta) {
+        int stripe = (int) Thread.currentThread().getId() & (STRIPES - 1);
+        cells.addAndGet(stripe * SPACING, delta);
+    }
+
+    /**
+     * @return the sum of everything added so far
+     */
+    public long get() {
+        long sum = 0;
+        for (int i = 0; i < STRIPES; i++) {
+            sum += cells.get(i * SPACING);
+        }
+        return sum;
+    }
+
+    void reset() {
+        for (int i = 0; i < STRIPES; i++) {
+            cells.set(i * SPACING, 0);
+        }
+    }
+}
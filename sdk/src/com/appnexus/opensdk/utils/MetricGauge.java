@@ -0,0 +1,56 @@
+/*
+ *    Copyright 2015 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk.utils;
+
+/**
+ * A metric read from the SDK's current state when it is read, such as the
+ * number of trackers waiting to be sent, rather than counted as things
+ * happen. The SDK sets the gauge's source once the state it reports exists;
+ * until then the gauge reads 0. Resetting the metrics does not affect it.
+ */
+public class MetricGauge {
+    /**
+     * Reports the current value of a gauge. Called on the thread reading
+     * the metrics, so it must be thread safe.
+     */
+    public interface Source {
+        long get();
+    }
+
+    private final String name;
+    private volatile Source source = null;
+
+    MetricGauge(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setSource(Source source) {
+        this.source = source;
+    }
+
+    /**
+     * @return the value the source reports now, or 0 if it has no source
+     */
+    public long get() {
+        Source s = source;
+        return s != null ? s.get() : 0;
+    }
+}
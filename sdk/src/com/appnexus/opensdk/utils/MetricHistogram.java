@@ -0,0 +1,181 @@
+/*
+ *    Copyright 2015 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts recorded values, such as latencies in milliseconds, into a fixed
+ * set of buckets. As in an HDR histogram, buckets are linear below 8 and
+ * split each power of two into 8 above, so any value is placed within
+ * 12.5% of its size, from 0 up to {@link #MAX_VALUE}. Recording a value
+ * never allocates or locks.
+ */
+public class MetricHistogram {
+    /**
+     * Values above this are counted as this. About 12 days in milliseconds.
+     */
+    public static final long MAX_VALUE = (1L << 30) - 1;
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = bucketOf(MAX_VALUE) + 1;
+
+    private final String name;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    MetricHistogram(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @param value the value to count, negative values are ignored
+     */
+    public void record(long value) {
+        if (value < 0) {
+            return;
+        }
+        value = Math.min(value, MAX_VALUE);
+        counts.incrementAndGet(bucketOf(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        long current;
+        while (value > (current = max.get())) {
+            if (max.compareAndSet(current, value)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * @return a copy of the counts, which may miss values recorded while it is made
+     */
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+        }
+        return new Snapshot(name, copy, count.get(), sum.get(), max.get());
+    }
+
+    void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        int sub = (int) (value >> shift) & (SUB_BUCKETS - 1);
+        return SUB_BUCKETS + shift * SUB_BUCKETS + sub;
+    }
+
+    // the largest value counted in the bucket
+    static long highestValueIn(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long sub = bucket % SUB_BUCKETS;
+        return ((SUB_BUCKETS + sub + 1) << shift) - 1;
+    }
+
+    /**
+     * The counts of a histogram at one point in time.
+     */
+    public static class Snapshot {
+        private final String name;
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        private Snapshot(String name, long[] counts, long count, long sum, long max) {
+            this.name = name;
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getSum() {
+            return sum;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        public double getMean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        /**
+         * @param percentile between 0 and 100
+         * @return a value at least as large as the given percentile of the
+         * recorded values, within the bucket precision, or 0 if none were recorded
+         */
+        public long getPercentile(double percentile) {
+            long total = 0;
+            for (long c : counts) {
+                total += c;
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(Math.max(0, Math.min(100, percentile)) / 100 * total);
+            rank = Math.max(rank, 1);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(highestValueIn(i), max);
+                }
+            }
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            return name + "{count=" + count + ", mean=" + getMean() + ", p50=" + getPercentile(50)
+                    + ", p90=" + getPercentile(90) + ", p99=" + getPercentile(99) + ", max=" + max + "}";
+        }
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ *    Copyright 2015 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Debugging aid that keeps the last few ad requests and their responses.
+ * Off by default: until {@link #enable(int, int)} is called, recording
+ * costs a single field read and keeps nothing in memory. When enabled,
+ * the entries live in a fixed size ring and every url and response is
+ * truncated so that the whole history stays under the given byte cap.
+ */
+public class RequestHistory {
+    // java strings take two bytes per char
+    private static final int BYTES_PER_CHAR = 2;
+
+    /**
+     * One ad request and, once it arrived, its response.
+     */
+    public static class Entry {
+        private final long time;
+        private final String request;
+        private final boolean requestTruncated;
+        private final int maxChars;
+        private volatile String response = null;
+        private volatile boolean responseTruncated = false;
+
+        private Entry(String request, int maxChars) {
+            this.time = System.currentTimeMillis();
+            this.maxChars = maxChars;
+            this.requestTruncated = request.length() > maxChars;
+            this.request = truncate(request, maxChars);
+        }
+
+        /**
+         * @return when the request was made, in milliseconds since the epoch
+         */
+        public long getTime() {
+            return time;
+        }
+
+        /**
+         * @return the request url, possibly truncated
+         */
+        public String getRequest() {
+            return request;
+        }
+
+        public boolean isRequestTruncated() {
+            return requestTruncated;
+        }
+
+        /**
+         * @return the response body, possibly truncated, or null if none was received
+         */
+        public String getResponse() {
+            return response;
+        }
+
+        public boolean isResponseTruncated() {
+            return responseTruncated;
+        }
+
+        private void setResponse(String body) {
+            // the url and the body share the entry's budget
+            int available = Math.max(maxChars - request.length(), 0);
+            responseTruncated = body.length() > available;
+            response = truncate(body, available);
+        }
+
+        private void clearResponse() {
+            response = null;
+            responseTruncated = false;
+        }
+    }
+
+    private static class Ring {
+        private final Entry[] entries;
+        private final int maxChars;
+        private int next = 0;
+
+        private Ring(int maxEntries, int maxBytes) {
+            entries = new Entry[maxEntries];
+            maxChars = maxBytes / BYTES_PER_CHAR / maxEntries;
+        }
+
+        private synchronized Entry add(String request) {
+            Entry entry = new Entry(request, maxChars);
+            entries[next] = entry;
+            next = (next + 1) % entries.length;
+            return entry;
+        }
+
+        private synchronized Entry last() {
+            return entries[(next + entries.length - 1) % entries.length];
+        }
+
+        private synchronized List<Entry> snapshot() {
+            ArrayList<Entry> list = new ArrayList<Entry>(entries.length);
+            for (int i = 0; i < entries.length; i++) {
+                Entry entry = entries[(next + i) % entries.length];
+                if (entry != null) {
+                    list.add(entry);
+                }
+            }
+            return list;
+        }
+    }
+
+    private static volatile Ring ring = null;
+
+    /**
+     * Starts keeping the last requests and responses, dropping whatever
+     * was kept before.
+     *
+     * @param maxEntries the number of requests to keep
+     * @param maxBytes   the most memory the kept urls and responses may take;
+     *                   each entry gets an equal share and longer strings are truncated
+     */
+    public static void enable(int maxEntries, int maxBytes) {
+        if (maxEntries <= 0 || maxBytes <= 0) {
+            disable();
+            return;
+        }
+        ring = new Ring(maxEntries, maxBytes);
+    }
+
+    /**
+     * Stops keeping requests and releases the ones kept.
+     */
+    public static void disable() {
+        ring = null;
+    }
+
+    public static boolean isEnabled() {
+        return ring != null;
+    }
+
+    /**
+     * @return the kept requests, oldest first, or an empty list if disabled
+     */
+    public static List<Entry> getEntries() {
+        Ring r = ring;
+        if (r == null) {
+            return new ArrayList<Entry>();
+        }
+        return r.snapshot();
+    }
+
+    /**
+     * @return the most recent request, or null if there is none
+     */
+    public static Entry getLastEntry() {
+        Ring r = ring;
+        return r == null ? null : r.last();
+    }
+
+    /**
+     * Records a request the SDK is about to make.
+     *
+     * @param url the request url
+     * @return the entry to pass to {@link #recordResponse(Entry, String)},
+     * or null if the history is disabled
+     */
+    public static Entry recordRequest(String url) {
+        Ring r = ring;
+        if (r == null || url == null) {
+            return null;
+        }
+        return r.add(url);
+    }
+
+    /**
+     * Records the response to a request.
+     *
+     * @param entry the entry returned by {@link #recordRequest(String)}, may be null
+     * @param body  the response body
+     */
+    public static void recordResponse(Entry entry, String body) {
+        if (entry != null && body != null) {
+            entry.setResponse(body);
+        }
+    }
+
+    /**
+     * Drops the response recorded for a request, e.g. when it was blank.
+     *
+     * @param entry the entry returned by {@link #recordRequest(String)}, may be null
+     */
+    public static void clearResponse(Entry entry) {
+        if (entry != null) {
+            entry.clearResponse();
+        }
+    }
+
+    private static String truncate(String s, int maxChars) {
+        // older Android versions share the original's chars with a substring,
+        // copy them so the full string is not kept alive
+        return s.length() > maxChars ? new String(s.substring(0, maxChars)) : s;
+    }
+}
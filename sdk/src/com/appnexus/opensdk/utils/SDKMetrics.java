@@ -0,0 +1,220 @@
+/*
+ *    Copyright 2015 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk.utils;
+
+import com.appnexus.opensdk.ResultCode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Process-wide counters, gauges and latency histograms the SDK keeps about
+ * its ad requests, mediation, trackers and ad webviews. Updating a metric
+ * costs a few atomic adds and never allocates, so the SDK keeps them up to
+ * date at all times. Apps can poll {@link #snapshot()} and forward the
+ * values to their own telemetry.
+ */
+public class SDKMetrics {
+    private static final List<MetricCounter> counters = new ArrayList<MetricCounter>();
+    private static final List<MetricGauge> gauges = new ArrayList<MetricGauge>();
+    private static final List<MetricHistogram> histograms = new ArrayList<MetricHistogram>();
+
+    /**
+     * Ad requests sent to the ad server.
+     */
+    public static final MetricCounter AD_REQUESTS = counter("ad_requests");
+    /**
+     * Ad requests whose result was dispatched to the ad, by the result, see
+     * {@link #getResultCounter(ResultCode)}. Requests cancelled or still in
+     * flight have no result yet, so the fill rate is ad_results.SUCCESS over
+     * the sum of all ad_results counters rather than over ad_requests.
+     */
+    private static final MetricCounter[] AD_RESULTS = new MetricCounter[ResultCode.values().length];
+
+    static {
+        for (ResultCode result : ResultCode.values()) {
+            AD_RESULTS[result.ordinal()] = counter("ad_results." + result.name());
+        }
+    }
+
+    /**
+     * Mediated network adapters instantiated.
+     */
+    public static final MetricCounter MEDIATION_REQUESTS = counter("mediation_requests");
+    /**
+     * Mediated networks that did not answer within {@link Settings#MEDIATED_NETWORK_TIMEOUT}.
+     */
+    public static final MetricCounter MEDIATION_TIMEOUTS = counter("mediation_timeouts");
+    /**
+     * Impression and click trackers queued for retry.
+     */
+    public static final MetricCounter TRACKERS_QUEUED = counter("trackers_queued");
+    /**
+     * Trackers waiting to be sent.
+     */
+    public static final MetricGauge TRACKER_BACKLOG = gauge("tracker_backlog");
+    /**
+     * Ad webviews created and not yet destroyed.
+     */
+    public static final MetricGauge LIVE_AD_WEBVIEWS = gauge("live_ad_webviews");
+    /**
+     * Milliseconds ad webviews spent paused out of sight.
+     */
+    public static final MetricCounter AD_WEBVIEW_PAUSED_MILLIS = counter("ad_webview_paused_ms");
+    /**
+     * MRAID updates sent to creatives, and the javascript calls they were sent in.
+     */
+    public static final MetricCounter MRAID_UPDATES = counter("mraid_updates");
+    public static final MetricCounter MRAID_CALLS = counter("mraid_calls");
+
+    /**
+     * Milliseconds from the start of an ad request to its response reaching the main thread.
+     */
+    public static final MetricHistogram AD_RESPONSE_LATENCY = histogram("ad_response_latency_ms");
+    /**
+     * Milliseconds from the start of an ad request to its completion, success or failure.
+     */
+    public static final MetricHistogram AD_REQUEST_LATENCY = histogram("ad_request_latency_ms");
+    /**
+     * Milliseconds from a mediated adapter being instantiated to its ad loading.
+     */
+    public static final MetricHistogram MEDIATION_LATENCY = histogram("mediation_latency_ms");
+    /**
+     * Milliseconds from a creative starting to load to its page finishing.
+     */
+    public static final MetricHistogram RENDER_LATENCY = histogram("render_latency_ms");
+
+    private static synchronized MetricCounter counter(String name) {
+        MetricCounter counter = new MetricCounter(name);
+        counters.add(counter);
+        return counter;
+    }
+
+    private static synchronized MetricGauge gauge(String name) {
+        MetricGauge gauge = new MetricGauge(name);
+        gauges.add(gauge);
+        return gauge;
+    }
+
+    private static synchronized MetricHistogram histogram(String name) {
+        MetricHistogram histogram = new MetricHistogram(name);
+        histograms.add(histogram);
+        return histogram;
+    }
+
+    /**
+     * @return the counter of ad requests that completed with the result
+     */
+    public static MetricCounter getResultCounter(ResultCode result) {
+        return AD_RESULTS[result.ordinal()];
+    }
+
+    /**
+     * Reads all metrics. Metrics updated while the snapshot is taken may
+     * or may not be included.
+     */
+    public static synchronized Snapshot snapshot() {
+        LinkedHashMap<String, Long> counterValues = new LinkedHashMap<String, Long>();
+        for (MetricCounter counter : counters) {
+            counterValues.put(counter.getName(), counter.get());
+        }
+        LinkedHashMap<String, Long> gaugeValues = new LinkedHashMap<String, Long>();
+        for (MetricGauge gauge : gauges) {
+            gaugeValues.put(gauge.getName(), gauge.get());
+        }
+        LinkedHashMap<String, MetricHistogram.Snapshot> histogramValues
+                = new LinkedHashMap<String, MetricHistogram.Snapshot>();
+        for (MetricHistogram histogram : histograms) {
+            histogramValues.put(histogram.getName(), histogram.snapshot());
+        }
+        return new Snapshot(counterValues, gaugeValues, histogramValues);
+    }
+
+    /**
+     * Sets every counter and histogram back to zero. Gauges keep reporting
+     * the current state.
+     */
+    public static synchronized void reset() {
+        for (MetricCounter counter : counters) {
+            counter.reset();
+        }
+        for (MetricHistogram histogram : histograms) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * The values of all metrics at one point in time.
+     */
+    public static class Snapshot {
+        private final Map<String, Long> counters;
+        private final Map<String, Long> gauges;
+        private final Map<String, MetricHistogram.Snapshot> histograms;
+
+        private Snapshot(Map<String, Long> counters, Map<String, Long> gauges,
+                         Map<String, MetricHistogram.Snapshot> histograms) {
+            this.counters = Collections.unmodifiableMap(counters);
+            this.gauges = Collections.unmodifiableMap(gauges);
+            this.histograms = Collections.unmodifiableMap(histograms);
+        }
+
+        /**
+         * @return counter values by name
+         */
+        public Map<String, Long> getCounters() {
+            return counters;
+        }
+
+        /**
+         * @return gauge values by name
+         */
+        public Map<String, Long> getGauges() {
+            return gauges;
+        }
+
+        /**
+         * @return histograms by name
+         */
+        public Map<String, MetricHistogram.Snapshot> getHistograms() {
+            return histograms;
+        }
+
+        /**
+         * @return the counter's value, or 0 if there is no counter by that name
+         */
+        public long getCounter(String name) {
+            Long value = counters.get(name);
+            return value != null ? value : 0;
+        }
+
+        /**
+         * @return the gauge's value, or 0 if there is no gauge by that name
+         */
+        public long getGauge(String name) {
+            Long value = gauges.get(name);
+            return value != null ? value : 0;
+        }
+
+        @Override
+        public String toString() {
+            return "SDKMetrics{counters=" + counters + ", gauges=" + gauges + ", histograms=" + histograms.values() + "}";
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ *    Copyright 2015 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk.utils;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Process-wide scheduler for the SDK's timed work such as banner refresh
+ * ticks. All ad views share a small pool of daemon threads instead of each
+ * creating its own executor. Cancelling a task never blocks the caller.
+ */
+public class SDKScheduler {
+    private static final long IDLE_THREAD_TIMEOUT_MILLIS = 30000;
+
+    private static ScheduledThreadPoolExecutor executor = null;
+
+    private static synchronized ScheduledThreadPoolExecutor getExecutor() {
+        if (executor == null) {
+            executor = new ScheduledThreadPoolExecutor(Settings.FETCH_THREAD_COUNT, new ThreadFactory() {
+                private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "AppNexusSDK-Scheduler-" + threadNumber.getAndIncrement());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+            executor.setKeepAliveTime(IDLE_THREAD_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            executor.allowCoreThreadTimeOut(true);
+        }
+        return executor;
+    }
+
+    /**
+     * Runs a task once after the given delay.
+     *
+     * @param task    the task to run
+     * @param delayMs delay in milliseconds
+     * @return a handle that can be passed to {@link #cancel(ScheduledFuture)}
+     */
+    public static ScheduledFuture<?> schedule(Runnable task, long delayMs) {
+        return getExecutor().schedule(task, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Runs a task repeatedly at a fixed rate until it is cancelled.
+     *
+     * @param task           the task to run
+     * @param initialDelayMs delay before the first run in milliseconds
+     * @param periodMs       period between runs in milliseconds
+     * @return a handle that can be passed to {@link #cancel(ScheduledFuture)}
+     */
+    public static ScheduledFuture<?> scheduleAtFixedRate(Runnable task, long initialDelayMs, long periodMs) {
+        return getExecutor().scheduleAtFixedRate(task, initialDelayMs, periodMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Cancels a task returned by one of the schedule methods. A run that is
+     * already in progress is allowed to finish; this call does not wait for it.
+     *
+     * @param future the handle of the task to cancel, may be null
+     */
+    public static void cancel(ScheduledFuture<?> future) {
+        if (future == null) {
+            return;
+        }
+        if (future.cancel(false)) {
+            ScheduledThreadPoolExecutor e = executor;
+            if (e != null) {
+                // drop the cancelled task from the queue right away
+                e.purge();
+            }
+        }
+    }
+
+    /**
+     * @return the number of threads currently alive in the shared scheduler
+     */
+    public static int getThreadCount() {
+        ScheduledThreadPoolExecutor e = executor;
+        return e == null ? 0 : e.getPoolSize();
+    }
+
+    /**
+     * @return the number of tasks waiting for their next run
+     */
+    public static int getScheduledTaskCount() {
+        ScheduledThreadPoolExecutor e = executor;
+        return e == null ? 0 : e.getQueue().size();
+    }
+
+    /**
+     * @return the number of tasks running right now
+     */
+    public static int getActiveTaskCount() {
+        ScheduledThreadPoolExecutor e = executor;
+        return e == null ? 0 : e.getActiveCount();
+    }
+}
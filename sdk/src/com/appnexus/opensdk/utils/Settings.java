@@ -61,21 +61,44 @@ public class Settings {
     // STATICS
     public static final int HTTP_CONNECTION_TIMEOUT = 15000;
     public static final int HTTP_SOCKET_TIMEOUT = 20000;
+    public static final int HTTP_MAX_CONNECTIONS = 8;
+    public static final int HTTP_MAX_CONNECTIONS_PER_ROUTE = 4;
+    public static final long HTTP_KEEP_ALIVE_MILLIS = 30000;
 
-    public static final int FETCH_THREAD_COUNT = 4;
+    public static final int FETCH_THREAD_COUNT = 4; // Threads shared by all AdFetchers, see SDKScheduler
 
     public static final int DEFAULT_REFRESH = 30000; // Default banner refresh interval is 30 seconds
     public static final int MIN_REFRESH_MILLISECONDS = 15000;
+    public static final int DEFAULT_PREFETCH_LEAD_TIME = 3000; // Prefetching banners request the next ad 3 seconds early
+    public static final long BANNER_PREFETCH_MAX_AGE_MILLIS = 60000; // Older prefetched banners are discarded
     public static final int DEFAULT_INTERSTITIAL_CLOSE_BUTTON_DELAY = 10000;
+    public static final int MAX_INTERSTITIAL_POOL_SIZE = 5;
+    public static final long INTERSTITIAL_POOL_RETRY_DELAY = 30000; // Wait before refilling the pool after a failed request
 
     public static final long MEDIATED_NETWORK_TIMEOUT = 15000;
 
+    public static final int DEFAULT_WEBVIEW_POOL_SIZE = 1;
+    public static final int MAX_WEBVIEW_POOL_SIZE = 3;
+    public static final long WEBVIEW_PAUSE_GRACE_PERIOD = 2000; // Ad webviews out of sight for longer are paused
+    public static final long WEBVIEW_POSITION_CHECK_INTERVAL = 1000; // Plain banners are checked for scrolling off screen at most this often
+
     public static final long NATIVE_AD_RESPONSE_EXPIRATION_TIME = 3600000; // an hour
+    public static final int MAX_NATIVE_AD_CACHE_DEPTH = 10;
+    public static final long NATIVE_AD_CACHE_RETRY_DELAY = 30000; // Wait before refilling the cache after a failed request
 
     public static final int NATIVE_AD_VISIBLE_PERIOD_MILLIS = 1000;
 
+    public static final int IMAGE_MEMORY_CACHE_SIZE = 4 * 1024 * 1024; // bytes of decoded pixels
+    public static final long IMAGE_DISK_CACHE_SIZE = 10 * 1024 * 1024;
+    public static final int IMAGE_DISK_CACHE_MAX_ENTRY_SIZE = 1024 * 1024; // Larger images are not written to disk
+    public static final int IMAGE_MAX_DOWNLOAD_SIZE = 4 * 1024 * 1024; // Larger images are not downloaded
+    public static final int BITMAP_POOL_SIZE = 4 * 1024 * 1024; // bytes of released bitmaps kept for reuse
+    public static final int IMAGE_DOWNLOAD_THREAD_COUNT = 2; // Image downloads run in parallel up to this limit
+
     public static final int MIN_PERCENTAGE_VIEWED = 50;
 
+    public static final int CLOG_LISTENER_QUEUE_SIZE = 1024; // Messages waiting for ClogListeners, more are dropped
+
     public static String COOKIE_DOMAIN = "http://mediation.adnxs.com";
     public static final String AN_UUID = "uuid2";
     public static String BASE_URL = "http://mediation.adnxs.com/";
@@ -87,7 +110,7 @@ public class Settings {
     public static Settings getSettings() {
         if (settings_instance == null) {
             settings_instance = new Settings();
-            Clog.v(Clog.baseLogTag, Clog.getString(R.string.init));
+            Clog.v(Clog.baseLogTag, R.string.init);
         }
         return settings_instance;
     }
@@ -0,0 +1,154 @@
+/*
+ *    Copyright 2015 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk.utils;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.preference.PreferenceManager;
+import android.webkit.WebSettings;
+import android.webkit.WebView;
+
+import com.appnexus.opensdk.R;
+
+/**
+ * Utility class for retrieving and setting the WebView user agent.
+ * The value is computed once and stored together with the OS build and
+ * WebView package version it was computed for, so later processes read it
+ * from preferences instead of constructing a WebView. When either version
+ * changes, the stored value is served while a fresh one is computed once
+ * the main thread is idle.
+ */
+public class UserAgentUtil {
+    private static final String PREF_USER_AGENT = "opensdk_ua";
+    private static final String PREF_USER_AGENT_KEY = "opensdk_ua_key";
+    private static final String[] WEBVIEW_PACKAGES = {
+            "com.google.android.webview",
+            "com.android.webview",
+            "com.android.chrome"
+    };
+
+    private static boolean refreshScheduled = false;
+
+    /**
+     * Sets Settings.ua if it isn't set yet. Must be called on the main thread.
+     *
+     * @param context context used to read preferences and, if needed, build a WebView.
+     */
+    public static void retrieveAndSetUserAgent(Context context) {
+        if (!StringUtil.isEmpty(Settings.getSettings().ua)) {
+            return;
+        }
+
+        final Context appContext = context.getApplicationContext() != null
+                ? context.getApplicationContext() : context;
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(appContext);
+        String storedUserAgent = prefs.getString(PREF_USER_AGENT, null);
+        String storedKey = prefs.getString(PREF_USER_AGENT_KEY, null);
+        String key = getCacheKey(appContext);
+
+        if (!StringUtil.isEmpty(storedUserAgent)) {
+            Settings.getSettings().ua = storedUserAgent;
+            if (!key.equals(storedKey)) {
+                scheduleRefresh(appContext, key);
+            }
+        } else {
+            // nothing stored yet, this happens once per install
+            refresh(context, key);
+        }
+        Clog.v(Clog.baseLogTag,
+                R.string.ua, Settings.getSettings().ua);
+    }
+
+    private static void scheduleRefresh(final Context appContext, final String key) {
+        if (refreshScheduled) {
+            return;
+        }
+        refreshScheduled = true;
+        new Handler(Looper.getMainLooper()).post(new Runnable() {
+            @Override
+            public void run() {
+                Looper.myQueue().addIdleHandler(new MessageQueue.IdleHandler() {
+                    @Override
+                    public boolean queueIdle() {
+                        refresh(appContext, key);
+                        refreshScheduled = false;
+                        return false;
+                    }
+                });
+            }
+        });
+    }
+
+    private static void refresh(Context context, String key) {
+        String userAgent = computeUserAgent(context);
+        if (StringUtil.isEmpty(userAgent)) {
+            return;
+        }
+        Settings.getSettings().ua = userAgent;
+        PreferenceManager.getDefaultSharedPreferences(context).edit()
+                .putString(PREF_USER_AGENT, userAgent)
+                .putString(PREF_USER_AGENT_KEY, key)
+                .commit();
+    }
+
+    private static String computeUserAgent(Context context) {
+        try {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+                return getDefaultUserAgent(context);
+            }
+            return new WebView(context).getSettings().getUserAgentString();
+        } catch (Exception e) {
+            Clog.w(Clog.baseLogTag, "Unable to retrieve the WebView user agent", e);
+            return null;
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR1)
+    private static String getDefaultUserAgent(Context context) {
+        return WebSettings.getDefaultUserAgent(context);
+    }
+
+    /**
+     * The user agent only changes with the OS build or the WebView provider.
+     * Which installed package is the active provider can't be asked for on
+     * older releases, so every candidate's version is part of the key and
+     * installing, updating or removing any of them invalidates the value.
+     */
+    static String getCacheKey(Context context) {
+        StringBuilder key = new StringBuilder(String.valueOf(Build.FINGERPRINT));
+        PackageManager pm = context.getPackageManager();
+        if (pm != null) {
+            for (String packageName : WEBVIEW_PACKAGES) {
+                try {
+                    PackageInfo info = pm.getPackageInfo(packageName, 0);
+                    if (info != null) {
+                        key.append('/').append(packageName).append(':').append(info.versionCode);
+                    }
+                } catch (PackageManager.NameNotFoundException ignored) {
+                }
+            }
+        }
+        return key.toString();
+    }
+}
@@ -18,6 +18,7 @@ package com.appnexus.opensdk.utils;
 
 import android.app.Activity;
 import android.content.Context;
+import android.content.MutableContextWrapper;
 import android.graphics.Color;
 import android.graphics.Point;
 import android.os.Build;
@@ -54,7 +55,12 @@ public class ViewUtil {
         ViewParent parent = view.getParent();
 
         if ((parent == null) || !(parent instanceof View)) {
-            return view.getContext();
+            Context context = view.getContext();
+            // pooled ad webviews wrap the context of the ad view they were handed to
+            if (context instanceof MutableContextWrapper) {
+                return ((MutableContextWrapper) context).getBaseContext();
+            }
+            return context;
         }
 
         //noinspection ConstantConditions
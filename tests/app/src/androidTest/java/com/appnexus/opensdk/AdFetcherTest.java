@@ -21,6 +21,8 @@ import android.content.Context;
 import com.appnexus.opensdk.shadows.ShadowAsyncTaskNoExecutor;
 import com.appnexus.opensdk.shadows.ShadowWebSettings;
 import com.appnexus.opensdk.shadows.ShadowWebView;
+import com.appnexus.opensdk.utils.SDKScheduler;
+import com.appnexus.opensdk.utils.Settings;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -30,6 +32,7 @@ import org.robolectric.annotation.Config;
 
 import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertNotSame;
+import static junit.framework.Assert.assertTrue;
 
 @Config(shadows = {ShadowAsyncTaskNoExecutor.class,
         ShadowWebView.class, ShadowWebSettings.class},
@@ -162,6 +165,41 @@ public class AdFetcherTest extends BaseRoboTest {
         assertEquals(AdFetcher.STATE.SINGLE_REQUEST, adFetcher.getState());
     }
 
+    @Test
+    public void testFetchersShareScheduler() throws InterruptedException {
+        AdFetcher[] fetchers = new AdFetcher[8];
+        for (int i = 0; i < fetchers.length; i++) {
+            MockAdOwner owner = new MockAdOwner(activity);
+            owner.setPlacementID("0");
+            owner.setAdSize(320, 50);
+            fetchers[i] = new AdFetcher(owner);
+            fetchers[i].setPeriod(Settings.DEFAULT_REFRESH);
+            fetchers[i].start();
+        }
+        // the first ticks run right away, a running tick is out of the queue
+        waitForSchedulerIdle();
+
+        assertTrue(SDKScheduler.getThreadCount() <= Settings.FETCH_THREAD_COUNT);
+        assertTrue(SDKScheduler.getScheduledTaskCount() >= fetchers.length);
+
+        int tasksBeforeStop = SDKScheduler.getScheduledTaskCount();
+        long stopStart = System.currentTimeMillis();
+        for (AdFetcher fetcher : fetchers) {
+            fetcher.stop();
+        }
+        // stopping must not wait for the refresh period
+        assertTrue(System.currentTimeMillis() - stopStart < Settings.DEFAULT_REFRESH);
+        assertEquals(tasksBeforeStop - fetchers.length, SDKScheduler.getScheduledTaskCount());
+    }
+
+    private void waitForSchedulerIdle() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 1000;
+        while (SDKScheduler.getActiveTaskCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, SDKScheduler.getActiveTaskCount());
+    }
+
     class MockAdOwner extends BannerAdView {
 
         public MockAdOwner(Context context) {
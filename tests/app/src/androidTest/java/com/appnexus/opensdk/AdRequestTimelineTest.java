@@ -0,0 +1,170 @@
+/*
+ *    Copyright 2015 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk;
+
+import com.appnexus.opensdk.shadows.ShadowAsyncTaskNoExecutor;
+import com.appnexus.opensdk.shadows.ShadowWebSettings;
+import com.appnexus.opensdk.shadows.ShadowWebView;
+import com.appnexus.opensdk.utils.Settings;
+
+import org.apache.http.Header;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+
+@Config(shadows = {ShadowAsyncTaskNoExecutor.class,
+        ShadowWebView.class, ShadowWebSettings.class},
+        emulateSdk = 18)
+@RunWith(RobolectricTestRunner.class)
+public class AdRequestTimelineTest extends BaseViewAdTest implements AdRequestTimelineListener {
+    private AdRequestTimeline completed;
+    private int completions;
+
+    @Override
+    public void setup() {
+        super.setup();
+        requestManager = new AdViewRequestManager(bannerAdView);
+        completed = null;
+        completions = 0;
+        SDKSettings.setAdRequestTimelineListener(this);
+    }
+
+    @Override
+    public void tearDown() {
+        SDKSettings.setAdRequestTimelineListener(null);
+        SDKSettings.setReportAdRequestTimeline(false);
+        super.tearDown();
+    }
+
+    @Override
+    public void onAdRequestCompleted(AdRequestTimeline timeline) {
+        completed = timeline;
+        completions++;
+    }
+
+    private void executeAdRequest() {
+        requestManager.execute();
+        while (Robolectric.getBackgroundScheduler().areAnyRunnable()) {
+            Robolectric.getBackgroundScheduler().runOneTask();
+        }
+        Robolectric.runUiThreadTasks();
+    }
+
+    private void assertInOrder(AdRequestTimeline timeline, AdRequestTimeline.Phase... phases) {
+        long last = 0;
+        for (AdRequestTimeline.Phase phase : phases) {
+            long elapsed = timeline.getElapsedMillis(phase);
+            assertTrue(phase + " not reached", elapsed >= last);
+            last = elapsed;
+        }
+    }
+
+    @Test
+    public void testStandardAdPhases() {
+        Robolectric.addPendingHttpResponse(200, TestResponses.banner());
+        executeAdRequest();
+
+        AdRequestTimeline timeline = requestManager.getTimeline();
+        assertNotNull(timeline);
+        assertEquals(MediaType.BANNER, timeline.getMediaType());
+        assertInOrder(timeline, AdRequestTimeline.Phase.URL_BUILT,
+                AdRequestTimeline.Phase.RESPONSE_HEADERS_RECEIVED,
+                AdRequestTimeline.Phase.RESPONSE_PARSED,
+                AdRequestTimeline.Phase.CREATIVE_ASSEMBLED,
+                AdRequestTimeline.Phase.RESPONSE_DELIVERED,
+                AdRequestTimeline.Phase.RENDER_STARTED);
+        assertEquals(-1, timeline.getElapsedMillis(AdRequestTimeline.Phase.MEDIATED_AD_LOADED));
+        // finished when the page finishes loading
+        assertNull(timeline.getResult());
+        assertEquals(0, completions);
+    }
+
+    @Test
+    public void testFinishedWithPage() {
+        AdRequestTimeline timeline = new AdRequestTimeline(MediaType.BANNER);
+        ServerResponse response = new ServerResponse(TestResponses.banner(), new Header[0], MediaType.BANNER);
+        response.setTimeline(timeline);
+        AdWebView webView = new AdWebView(bannerAdView);
+
+        webView.loadAd(response);
+        Robolectric.shadowOf(webView).getWebViewClient().onPageFinished(webView, Settings.BASE_URL);
+        Robolectric.shadowOf(webView).getWebViewClient().onPageFinished(webView, Settings.BASE_URL);
+
+        assertEquals(1, completions);
+        assertSame(timeline, completed);
+        assertEquals(ResultCode.SUCCESS, timeline.getResult());
+        assertInOrder(timeline, AdRequestTimeline.Phase.RENDER_STARTED, AdRequestTimeline.Phase.PAGE_FINISHED);
+        webView.destroy();
+    }
+
+    @Test
+    public void testNoFill() {
+        Robolectric.addPendingHttpResponse(200, TestResponses.blank());
+        executeAdRequest();
+
+        assertEquals(1, completions);
+        assertEquals(ResultCode.UNABLE_TO_FILL, completed.getResult());
+        assertEquals(-1, completed.getElapsedMillis(AdRequestTimeline.Phase.RENDER_STARTED));
+    }
+
+    @Test
+    public void testMediatedPhasesReported() {
+        SDKSettings.setReportAdRequestTimeline(true);
+        Robolectric.addPendingHttpResponse(200, TestResponses.mediatedSuccessfulBanner());
+        Robolectric.addPendingHttpResponse(200, TestResponses.blank());
+        executeAdRequest();
+        Robolectric.getUiThreadScheduler().advanceToLastPostedRunnable();
+        while (Robolectric.getBackgroundScheduler().areAnyRunnable()) {
+            Robolectric.getBackgroundScheduler().runOneTask();
+        }
+
+        assertEquals(1, completions);
+        assertEquals(ResultCode.SUCCESS, completed.getResult());
+        assertInOrder(completed, AdRequestTimeline.Phase.RESPONSE_DELIVERED,
+                AdRequestTimeline.Phase.MEDIATED_ADAPTER_INSTANTIATED,
+                AdRequestTimeline.Phase.MEDIATED_AD_LOADED);
+
+        String resultCB = ((HttpUriRequest) Robolectric.getSentHttpRequest(1)).getURI().toString();
+        assertTrue(resultCB.contains("&t_url="));
+        assertTrue(resultCB.contains("&t_mediated="));
+        assertFalse(resultCB.contains("&t_page="));
+    }
+
+    @Test
+    public void testNotReportedByDefault() {
+        AdRequestTimeline timeline = new AdRequestTimeline(MediaType.BANNER);
+        timeline.mark(AdRequestTimeline.Phase.URL_BUILT);
+        StringBuilder url = new StringBuilder("http://nym1.mobile.adnxs.com/cb?id=1");
+
+        timeline.appendQueryParameters(url);
+        assertEquals("http://nym1.mobile.adnxs.com/cb?id=1", url.toString());
+
+        SDKSettings.setReportAdRequestTimeline(true);
+        timeline.appendQueryParameters(url);
+        assertTrue(url.toString().startsWith("http://nym1.mobile.adnxs.com/cb?id=1&t_url="));
+    }
+}
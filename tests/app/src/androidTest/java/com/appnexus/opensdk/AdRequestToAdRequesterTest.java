@@ -177,6 +177,11 @@ public class AdRequestToAdRequesterTest extends BaseRoboTest implements AdReques
         return System.currentTimeMillis()-time;
     }
 
+    @Override
+    public AdRequestTimeline getTimeline() {
+        return null;
+    }
+
     @Override
     public void cancel() {
 
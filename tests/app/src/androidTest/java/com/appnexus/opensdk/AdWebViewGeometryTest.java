@@ -0,0 +1,121 @@
+/*
+ *    Copyright 2015 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk;
+
+import android.view.View;
+
+import com.appnexus.opensdk.shadows.ShadowAsyncTaskNoExecutor;
+import com.appnexus.opensdk.shadows.ShadowWebSettings;
+import com.appnexus.opensdk.shadows.ShadowWebView;
+import com.appnexus.opensdk.utils.Settings;
+
+import org.apache.http.Header;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static junit.framework.Assert.assertEquals;
+
+@Config(shadows = {ShadowAsyncTaskNoExecutor.class,
+        ShadowWebView.class, ShadowWebSettings.class},
+        emulateSdk = 18)
+@RunWith(RobolectricTestRunner.class)
+public class AdWebViewGeometryTest extends BaseViewAdTest {
+    private CountingAdWebView webView;
+
+    @Override
+    public void setup() {
+        super.setup();
+        webView = new CountingAdWebView(bannerAdView);
+        webView.loadAd(new ServerResponse(TestResponses.mraidBanner("geometry"), new Header[0], MediaType.BANNER));
+        webView.onWindowVisibilityChanged(View.VISIBLE);
+        Robolectric.shadowOf(webView).getWebViewClient().onPageFinished(webView, Settings.BASE_URL);
+        Robolectric.runUiThreadTasks();
+    }
+
+    @Override
+    public void tearDown() {
+        webView.destroy();
+        super.tearDown();
+    }
+
+    @Test
+    public void testIdleAdNotChecked() {
+        int checks = webView.positionChecks;
+
+        Robolectric.getUiThreadScheduler().advanceBy(10000);
+
+        assertEquals(checks, webView.positionChecks);
+    }
+
+    @Test
+    public void testUnchangedGeometryNotSent() {
+        int checks = webView.positionChecks;
+
+        // scroll, layout and draw of a frame in which the ad did not move
+        webView.scheduleGeometryCheck();
+        webView.scheduleGeometryCheck();
+        webView.scheduleGeometryCheck();
+        Robolectric.runUiThreadTasks();
+
+        assertEquals(checks, webView.positionChecks);
+    }
+
+    @Test
+    public void testMoveCheckedOncePerFrame() {
+        int checks = webView.positionChecks;
+
+        webView.layout(0, 100, webView.getWidth(), 100 + webView.getHeight());
+        webView.scheduleGeometryCheck();
+        webView.scheduleGeometryCheck();
+        Robolectric.runUiThreadTasks();
+
+        assertEquals(checks + 1, webView.positionChecks);
+    }
+
+    @Test
+    public void testNotTrackedWhenHidden() {
+        webView.onWindowVisibilityChanged(View.GONE);
+        int checks = webView.positionChecks;
+
+        webView.layout(0, 100, webView.getWidth(), 100 + webView.getHeight());
+        webView.scheduleGeometryCheck();
+        Robolectric.runUiThreadTasks();
+        assertEquals(checks, webView.positionChecks);
+
+        // checked again when shown, since it may have moved meanwhile
+        webView.onWindowVisibilityChanged(View.VISIBLE);
+        Robolectric.runUiThreadTasks();
+        assertEquals(checks + 1, webView.positionChecks);
+    }
+
+    static class CountingAdWebView extends AdWebView {
+        int positionChecks = 0;
+
+        CountingAdWebView(AdView adView) {
+            super(adView);
+        }
+
+        @Override
+        protected void checkPosition() {
+            positionChecks++;
+            super.checkPosition();
+        }
+    }
+}
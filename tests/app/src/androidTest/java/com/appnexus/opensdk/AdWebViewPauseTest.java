@@ -0,0 +1,183 @@
+/*
+ *    Copyright 2015 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk;
+
+import android.view.View;
+
+import com.appnexus.opensdk.shadows.ShadowAsyncTaskNoExecutor;
+import com.appnexus.opensdk.shadows.ShadowWebSettings;
+import com.appnexus.opensdk.shadows.ShadowWebView;
+import com.appnexus.opensdk.utils.Settings;
+
+import org.apache.http.Header;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+@Config(shadows = {ShadowAsyncTaskNoExecutor.class,
+        ShadowWebView.class, ShadowWebSettings.class},
+        emulateSdk = 18)
+@RunWith(RobolectricTestRunner.class)
+public class AdWebViewPauseTest extends BaseViewAdTest implements AdWebViewPauseListener {
+    private AdWebView webView;
+    private int resumed;
+    private long pausedTime;
+
+    @Override
+    public void setup() {
+        super.setup();
+        resumed = 0;
+        pausedTime = 0;
+        SDKSettings.setAdWebViewPauseListener(this);
+        webView = new AdWebView(bannerAdView);
+        webView.loadAd(new ServerResponse(TestResponses.banner(), new Header[0], MediaType.BANNER));
+        webView.layout(0, 0, 320, 50);
+    }
+
+    @Override
+    public void tearDown() {
+        webView.destroy();
+        SDKSettings.setAdWebViewPauseListener(null);
+        super.tearDown();
+    }
+
+    @Override
+    public void onAdWebViewResumed(long pausedTime, long totalPausedTime) {
+        resumed++;
+        this.pausedTime = pausedTime;
+    }
+
+    private void show() {
+        webView.onWindowVisibilityChanged(View.VISIBLE);
+        Robolectric.runUiThreadTasks();
+    }
+
+    private void waitGracePeriod() {
+        Robolectric.getUiThreadScheduler().advanceBy(Settings.WEBVIEW_PAUSE_GRACE_PERIOD);
+    }
+
+    @Test
+    public void testNeverShownPaused() {
+        // an interstitial waiting in the queue
+        Robolectric.getUiThreadScheduler().advanceBy(Settings.WEBVIEW_PAUSE_GRACE_PERIOD - 1);
+        assertFalse(webView.isPausedOutOfSight());
+        Robolectric.getUiThreadScheduler().advanceBy(1);
+        assertTrue(webView.isPausedOutOfSight());
+
+        Robolectric.getUiThreadScheduler().advanceBy(5000);
+        webView.destroy();
+        assertEquals(1, resumed);
+        assertEquals(5000, pausedTime);
+    }
+
+    @Test
+    public void testShownNotPaused() {
+        show();
+        waitGracePeriod();
+        assertFalse(webView.isPausedOutOfSight());
+    }
+
+    // a plain banner was just checked when shown, the next check waits for the interval
+    private void waitCheckInterval() {
+        Robolectric.getUiThreadScheduler().advanceBy(Settings.WEBVIEW_POSITION_CHECK_INTERVAL);
+    }
+
+    @Test
+    public void testScrolledOffScreenPaused() {
+        show();
+        webView.layout(0, -1000, 320, -950);
+        webView.scheduleGeometryCheck();
+        Robolectric.runUiThreadTasks();
+        // checks are throttled, nothing happens before the interval
+        assertFalse(webView.isPausedOutOfSight());
+        waitCheckInterval();
+        assertFalse(webView.isPausedOutOfSight());
+
+        waitGracePeriod();
+        assertTrue(webView.isPausedOutOfSight());
+
+        Robolectric.getUiThreadScheduler().advanceBy(3000);
+        webView.layout(0, 0, 320, 50);
+        webView.scheduleGeometryCheck();
+        Robolectric.runUiThreadTasks();
+        assertFalse(webView.isPausedOutOfSight());
+        assertEquals(1, resumed);
+        assertEquals(3000, pausedTime);
+    }
+
+    @Test
+    public void testBriefScrollNotPaused() {
+        show();
+        webView.layout(0, -1000, 320, -950);
+        webView.scheduleGeometryCheck();
+        waitCheckInterval();
+
+        webView.layout(0, 0, 320, 50);
+        webView.scheduleGeometryCheck();
+        waitCheckInterval();
+        waitGracePeriod();
+
+        assertFalse(webView.isPausedOutOfSight());
+        assertEquals(0, resumed);
+    }
+
+    @Test
+    public void testReturnFromBackgroundWhileScrolledOffScreen() {
+        ShadowWebView shadow = (ShadowWebView) Robolectric.shadowOf(webView);
+        bannerAdView.addView(webView);
+        show();
+        webView.layout(0, -1000, 320, -950);
+        webView.scheduleGeometryCheck();
+        waitCheckInterval();
+        waitGracePeriod();
+        assertTrue(webView.isPausedOutOfSight());
+        assertTrue(shadow.isPaused());
+
+        // the app goes to the background and comes back with the banner still off screen
+        bannerAdView.onWindowVisibilityChanged(View.GONE);
+        Robolectric.getUiThreadScheduler().advanceBy(3000);
+        bannerAdView.onWindowVisibilityChanged(View.VISIBLE);
+        Robolectric.runUiThreadTasks();
+        assertTrue(webView.isPausedOutOfSight());
+        assertTrue(shadow.isPaused());
+        assertEquals(0, resumed);
+
+        webView.layout(0, 0, 320, 50);
+        webView.scheduleGeometryCheck();
+        waitCheckInterval();
+        assertFalse(webView.isPausedOutOfSight());
+        assertFalse(shadow.isPaused());
+        assertEquals(1, resumed);
+    }
+
+    @Test
+    public void testHiddenPausedRightAway() {
+        show();
+        webView.onWindowVisibilityChanged(View.GONE);
+        assertTrue(webView.isPausedOutOfSight());
+
+        show();
+        assertFalse(webView.isPausedOutOfSight());
+        assertEquals(1, resumed);
+    }
+}
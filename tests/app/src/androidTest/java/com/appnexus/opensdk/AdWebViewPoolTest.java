@@ -0,0 +1,125 @@
+/*
+ *    Copyright 2015 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk;
+
+import com.appnexus.opensdk.shadows.ShadowAsyncTaskNoExecutor;
+import com.appnexus.opensdk.shadows.ShadowWebSettings;
+import com.appnexus.opensdk.shadows.ShadowWebView;
+import com.appnexus.opensdk.utils.Settings;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotSame;
+import static junit.framework.Assert.assertSame;
+
+@Config(shadows = {ShadowAsyncTaskNoExecutor.class,
+        ShadowWebView.class, ShadowWebSettings.class},
+        emulateSdk = 18)
+@RunWith(RobolectricTestRunner.class)
+public class AdWebViewPoolTest extends BaseViewAdTest {
+
+    @Override
+    public void setup() {
+        super.setup();
+        AdWebViewPool.clear();
+        AdWebViewPool.setSize(1);
+    }
+
+    @Override
+    public void tearDown() {
+        AdWebViewPool.clear();
+        AdWebViewPool.setSize(Settings.DEFAULT_WEBVIEW_POOL_SIZE);
+        super.tearDown();
+    }
+
+    // fills the pool and finishes loading the warm up page
+    private AdWebView fillPool() {
+        AdWebViewPool.fillOne();
+        AdWebView pooled = AdWebViewPool.warming.getFirst();
+        Robolectric.shadowOf(pooled).getWebViewClient().onPageFinished(pooled, Settings.BASE_URL);
+        return pooled;
+    }
+
+    @Test
+    public void testObtainPooledWebView() {
+        AdWebView pooled = fillPool();
+        assertEquals(1, AdWebViewPool.getReadyCount());
+        int hits = AdWebViewPool.getHitCount();
+
+        AdWebView webView = AdWebViewPool.obtain(bannerAdView);
+
+        assertSame(pooled, webView);
+        assertEquals(hits + 1, AdWebViewPool.getHitCount());
+        assertEquals(0, AdWebViewPool.getReadyCount());
+        // switched to the ad view
+        assertSame(bannerAdView, webView.adView);
+        assertSame(bannerAdView.getContext(), webView.getActivityContext());
+        webView.destroy();
+    }
+
+    @Test
+    public void testWarmingWebViewNotHandedOut() {
+        AdWebViewPool.fillOne();
+        int misses = AdWebViewPool.getMissCount();
+
+        AdWebView webView = AdWebViewPool.obtain(bannerAdView);
+
+        assertNotSame(AdWebViewPool.warming.getFirst(), webView);
+        assertEquals(misses + 1, AdWebViewPool.getMissCount());
+        assertSame(bannerAdView, webView.adView);
+        webView.destroy();
+    }
+
+    @Test
+    public void testPoolDisabled() {
+        AdWebViewPool.setSize(0);
+        assertEquals(false, AdWebViewPool.fillOne());
+        assertEquals(0, AdWebViewPool.getReadyCount());
+
+        AdWebView webView = AdWebViewPool.obtain(bannerAdView);
+        assertSame(bannerAdView, webView.adView);
+        webView.destroy();
+    }
+
+    @Test
+    public void testShrinkingDestroysExtraWebViews() {
+        fillPool();
+        AdWebViewPool.setSize(0);
+        assertEquals(0, AdWebViewPool.getReadyCount());
+
+        AdWebViewPool.setSize(Settings.MAX_WEBVIEW_POOL_SIZE + 1);
+        assertEquals(Settings.MAX_WEBVIEW_POOL_SIZE, AdWebViewPool.getSize());
+    }
+
+    @Test
+    public void testPooledWebViewShowsAd() {
+        fillPool();
+        Robolectric.addPendingHttpResponse(200, TestResponses.banner());
+        AdViewRequestManager requestManager = new AdViewRequestManager(bannerAdView);
+        requestManager.execute();
+        Robolectric.runBackgroundTasks();
+        Robolectric.runUiThreadTasks();
+
+        assertCallbacks(true);
+        assertEquals(0, AdWebViewPool.getReadyCount());
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ *    Copyright 2015 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk;
+
+import android.os.SystemClock;
+
+import com.appnexus.opensdk.shadows.ShadowAsyncTaskNoExecutor;
+import com.appnexus.opensdk.shadows.ShadowWebSettings;
+import com.appnexus.opensdk.shadows.ShadowWebView;
+import com.appnexus.opensdk.utils.Settings;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+@Config(shadows = {ShadowAsyncTaskNoExecutor.class,
+        ShadowWebView.class, ShadowWebSettings.class},
+        emulateSdk = 18)
+@RunWith(RobolectricTestRunner.class)
+public class BannerPrefetcherTest extends BaseViewAdTest {
+    private BannerPrefetcher prefetcher;
+
+    @Override
+    public void setup() {
+        super.setup();
+        prefetcher = new BannerPrefetcher(bannerAdView);
+    }
+
+    @Override
+    public void tearDown() {
+        prefetcher.clear();
+        super.tearDown();
+    }
+
+    private void runPrefetch(String response) {
+        Robolectric.addPendingHttpResponse(200, response);
+        prefetcher.prefetch();
+        Robolectric.runBackgroundTasks();
+        Robolectric.runUiThreadTasks();
+    }
+
+    @Test
+    public void testPrefetchHit() {
+        runPrefetch(TestResponses.banner());
+        // nothing is shown until the refresh tick
+        assertFalse(adLoaded);
+
+        assertNotNull(prefetcher.showPrefetched());
+        Robolectric.runUiThreadTasks();
+
+        assertCallbacks(true);
+        assertEquals(1, prefetcher.getHitCount());
+        assertEquals(0, prefetcher.getMissCount());
+    }
+
+    @Test
+    public void testStalePrefetchDiscarded() {
+        runPrefetch(TestResponses.banner());
+        SystemClock.sleep(Settings.BANNER_PREFETCH_MAX_AGE_MILLIS + 1);
+
+        assertNull(prefetcher.showPrefetched());
+        Robolectric.runUiThreadTasks();
+
+        assertFalse(adLoaded);
+        assertEquals(0, prefetcher.getHitCount());
+        assertEquals(1, prefetcher.getMissCount());
+        assertEquals(1, prefetcher.getDiscardCount());
+    }
+
+    @Test
+    public void testPrefetchFailureNotReported() {
+        runPrefetch(TestResponses.blank());
+
+        // the listener only hears about failures of the regular request made on the tick
+        assertFalse(adFailed);
+        assertNull(prefetcher.showPrefetched());
+        assertEquals(1, prefetcher.getMissCount());
+    }
+
+    @Test
+    public void testPrefetchInFlightShownOnArrival() {
+        Robolectric.addPendingHttpResponse(200, TestResponses.banner());
+        prefetcher.prefetch();
+
+        // the tick comes before the response
+        assertNotNull(prefetcher.showPrefetched());
+        assertEquals(1, prefetcher.getMissCount());
+
+        Robolectric.runBackgroundTasks();
+        Robolectric.runUiThreadTasks();
+        Robolectric.runUiThreadTasks();
+        assertTrue(adLoaded);
+    }
+
+    @Test
+    public void testUnusedPrefetchDiscarded() {
+        runPrefetch(TestResponses.banner());
+        runPrefetch(TestResponses.banner());
+
+        assertEquals(1, prefetcher.getDiscardCount());
+        assertNotNull(prefetcher.showPrefetched());
+        assertEquals(1, prefetcher.getHitCount());
+    }
+
+    @Test
+    public void testSamePrefetcherKeepsPrefetchedAd() {
+        AdFetcher fetcher = new AdFetcher(bannerAdView);
+        fetcher.setPrefetcher(prefetcher);
+        runPrefetch(TestResponses.banner());
+
+        fetcher.setPrefetcher(prefetcher);
+
+        assertEquals(0, prefetcher.getDiscardCount());
+        assertNotNull(prefetcher.showPrefetched());
+        assertEquals(1, prefetcher.getHitCount());
+    }
+}
@@ -20,6 +20,7 @@ import android.util.Log;
 import com.appnexus.opensdk.util.TestUtil;
 import com.appnexus.opensdk.utils.Clog;
 import com.appnexus.opensdk.utils.ClogListener;
+import com.appnexus.opensdk.utils.Settings;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -27,6 +28,12 @@ import org.junit.runner.RunWith;
 import org.robolectric.RobolectricTestRunner;
 import org.robolectric.annotation.Config;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
 import static junit.framework.Assert.*;
 
 @Config(emulateSdk=18)
@@ -34,10 +41,12 @@ import static junit.framework.Assert.*;
 public class ClogListenerTest {
 
     boolean didReceiveMessage;
+    long dropped;
 
     @Before
     public void setup() {
         Clog.clogged = false;
+        dropped = Clog.getDroppedListenerMessageCount();
     }
 
     @After
@@ -68,6 +77,7 @@ public class ClogListenerTest {
         });
 
         clogStuff();
+        assertTrue(Clog.flushListeners(1000));
 
         assertTrue(didReceiveMessage);
     }
@@ -96,6 +106,7 @@ public class ClogListenerTest {
         Clog.unregisterListener(listener);
 
         clogStuff();
+        assertTrue(Clog.flushListeners(1000));
 
         assertFalse(didReceiveMessage);
     }
@@ -115,7 +126,7 @@ public class ClogListenerTest {
 
         clogStuff();
 
-        Thread.sleep(1000);
+        assertTrue(Clog.flushListeners(1000));
 
         Log.d(TestUtil.testLogTag, vLevel.toString());
         Log.d(TestUtil.testLogTag, dLevel.toString());
@@ -195,10 +206,100 @@ public class ClogListenerTest {
 
         Throwable tr = new Throwable("test");
         Clog.e(TestUtil.testLogTag, "test throwable", tr);
+        assertTrue(Clog.flushListeners(1000));
 
         assertTrue(didReceiveMessage);
     }
 
+    @Test
+    public void testOrderPerThread() throws Exception {
+        final int threads = 4;
+        final int messages = 200;
+        final List<String> received = Collections.synchronizedList(new ArrayList<String>());
+        Clog.registerListener(new ClogListener() {
+            @Override
+            public void onReceiveMessage(LOG_LEVEL level, String LogTag, String message) {
+                if (TestUtil.testLogTag.equals(LogTag)) {
+                    received.add(message);
+                }
+            }
+
+            @Override
+            public void onReceiveMessage(LOG_LEVEL level, String LogTag, String message, Throwable tr) {
+            }
+
+            @Override
+            public LOG_LEVEL getLogLevel() {
+                return LOG_LEVEL.V;
+            }
+        });
+
+        Thread[] producers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int thread = t;
+            producers[t] = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < messages; i++) {
+                        Clog.d(TestUtil.testLogTag, thread + ":" + i);
+                    }
+                }
+            };
+            producers[t].start();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        assertTrue(Clog.flushListeners(1000));
+
+        int[] last = new int[threads];
+        Arrays.fill(last, -1);
+        for (String message : received) {
+            String[] parts = message.split(":");
+            int thread = Integer.parseInt(parts[0]);
+            int i = Integer.parseInt(parts[1]);
+            assertTrue(i > last[thread]);
+            last[thread] = i;
+        }
+        assertEquals(threads * messages, received.size() + Clog.getDroppedListenerMessageCount() - dropped);
+    }
+
+    @Test
+    public void testSlowListenerDoesNotBlock() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        Clog.registerListener(new ClogListener() {
+            @Override
+            public void onReceiveMessage(LOG_LEVEL level, String LogTag, String message) {
+                try {
+                    release.await();
+                } catch (InterruptedException ignored) {
+                }
+            }
+
+            @Override
+            public void onReceiveMessage(LOG_LEVEL level, String LogTag, String message, Throwable tr) {
+            }
+
+            @Override
+            public LOG_LEVEL getLogLevel() {
+                return LOG_LEVEL.V;
+            }
+        });
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 4 * Settings.CLOG_LISTENER_QUEUE_SIZE; i++) {
+            Clog.d(TestUtil.testLogTag, "message");
+        }
+        long elapsed = System.nanoTime() - start;
+        assertFalse(Clog.flushListeners(10));
+        release.countDown();
+        assertTrue(Clog.flushListeners(1000));
+
+        Log.d(TestUtil.testLogTag, "Logged " + 4 * Settings.CLOG_LISTENER_QUEUE_SIZE
+                + " messages to a blocked listener in " + elapsed / 1000000f + " ms");
+        assertTrue(Clog.getDroppedListenerMessageCount() - dropped >= 2 * Settings.CLOG_LISTENER_QUEUE_SIZE);
+    }
+
     private void clogStuff() {
         Clog.v(TestUtil.testLogTag, "verbose");
         Clog.d(TestUtil.testLogTag, "debug");
@@ -0,0 +1,154 @@
+/*
+ *    Copyright 2015 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk;
+
+import com.appnexus.opensdk.util.TestUtil;
+import com.appnexus.opensdk.utils.Clog;
+import com.appnexus.opensdk.utils.ClogListener;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+@Config(emulateSdk = 18)
+@RunWith(RobolectricTestRunner.class)
+public class ClogTest extends BaseRoboTest {
+    private static final int MESSAGES = 10000;
+    private static final int ROUNDS = 5;
+    private static final String URL = "http://mediation.adnxs.com/mob?id=0&md5udid=0123456789abcdef&ua=Mozilla";
+
+    private int formatted;
+    private String received;
+
+    // counts how often the message is actually built
+    private final Object countingArg = new Object() {
+        @Override
+        public String toString() {
+            formatted++;
+            return URL;
+        }
+    };
+
+    private final ClogListener listener = new ClogListener() {
+        @Override
+        public void onReceiveMessage(LOG_LEVEL level, String LogTag, String message) {
+            received = message;
+        }
+
+        @Override
+        public void onReceiveMessage(LOG_LEVEL level, String LogTag, String message, Throwable tr) {
+            received = message;
+        }
+
+        @Override
+        public LOG_LEVEL getLogLevel() {
+            return LOG_LEVEL.D;
+        }
+    };
+
+    @Override
+    public void setup() {
+        super.setup();
+        Clog.setErrorContext(activity);
+        Clog.unregisterAllListeners();
+        formatted = 0;
+        received = null;
+    }
+
+    @Override
+    public void tearDown() {
+        Clog.unregisterAllListeners();
+        super.tearDown();
+    }
+
+    @Test
+    public void testDisabledLevelNotFormatted() {
+        assertFalse(Clog.isLoggable(TestUtil.testLogTag, ClogListener.LOG_LEVEL.D));
+
+        Clog.d(TestUtil.testLogTag, R.string.fetch_url, countingArg);
+
+        assertEquals(0, formatted);
+    }
+
+    @Test
+    public void testEnabledLevelFormatted() {
+        Clog.registerListener(listener);
+        assertTrue(Clog.isLoggable(TestUtil.testLogTag, ClogListener.LOG_LEVEL.D));
+        assertFalse(Clog.isLoggable(TestUtil.testLogTag, ClogListener.LOG_LEVEL.V));
+
+        Clog.d(TestUtil.testLogTag, R.string.fetch_url, countingArg);
+        assertTrue(Clog.flushListeners(1000));
+        assertEquals(1, formatted);
+        assertEquals(activity.getString(R.string.fetch_url, URL), received);
+
+        Clog.v(TestUtil.testLogTag, R.string.fetch_url, countingArg);
+        assertEquals(1, formatted);
+
+        Clog.unregisterListener(listener);
+        assertFalse(Clog.isLoggable(TestUtil.testLogTag, ClogListener.LOG_LEVEL.D));
+    }
+
+    @Test
+    public void testFormatArguments() {
+        Clog.registerListener(listener);
+
+        Clog.d(TestUtil.testLogTag, R.string.response_header, "Content-Type", "application/json");
+        assertTrue(Clog.flushListeners(1000));
+        assertEquals(activity.getString(R.string.response_header, "Content-Type", "application/json"), received);
+
+        Clog.i(TestUtil.testLogTag, R.string.stop);
+        assertTrue(Clog.flushListeners(1000));
+        assertEquals(activity.getString(R.string.stop), received);
+    }
+
+    @Test
+    public void testDisabledCallSkipsFormatting() {
+        assertFalse(Clog.isLoggable(Clog.httpReqLogTag, ClogListener.LOG_LEVEL.D));
+
+        // warm up both paths
+        for (int i = 0; i < MESSAGES; i++) {
+            Clog.d(Clog.httpReqLogTag, Clog.getString(R.string.fetch_url, URL));
+            Clog.d(Clog.httpReqLogTag, R.string.fetch_url, URL);
+        }
+
+        // best of a few rounds, so that a pause in one round does not decide the result
+        long eager = Long.MAX_VALUE;
+        long lazy = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < MESSAGES; i++) {
+                Clog.d(Clog.httpReqLogTag, Clog.getString(R.string.fetch_url, URL));
+            }
+            eager = Math.min(eager, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            for (int i = 0; i < MESSAGES; i++) {
+                Clog.d(Clog.httpReqLogTag, R.string.fetch_url, URL);
+            }
+            lazy = Math.min(lazy, System.nanoTime() - start);
+        }
+
+        // a disabled call only checks the level, the caller built message
+        // costs a resource lookup and String.format every time
+        assertTrue(lazy * 2 < eager);
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ *    Copyright 2015 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk;
+
+import com.appnexus.opensdk.shadows.ShadowAsyncTaskNoExecutor;
+import com.appnexus.opensdk.shadows.ShadowWebSettings;
+import com.appnexus.opensdk.shadows.ShadowWebView;
+
+import org.apache.http.Header;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+@Config(shadows = {ShadowAsyncTaskNoExecutor.class,
+        ShadowWebView.class, ShadowWebSettings.class},
+        emulateSdk = 18)
+@RunWith(RobolectricTestRunner.class)
+public class CreativeDocumentTest extends BaseViewAdTest {
+    private static final String FRAGMENT = "<a href=\"http://www.appnexus.com\"><img src=\"http://www.appnexus.com/banner.png\"/></a>";
+
+    private String tags(int scripts) {
+        return SDKScriptCache.getScriptTags(activity.getResources(), scripts);
+    }
+
+    @Test
+    public void testFragmentWrapped() {
+        CreativeDocument document = CreativeDocument.assemble(activity.getResources(), FRAGMENT, SDKScriptCache.SDKJS);
+        assertEquals("<html><head>" + tags(SDKScriptCache.SDKJS)
+                + "</head><body style='padding:0;margin:0;'>" + FRAGMENT + "</body></html>", document.getHtml());
+        assertEquals(SDKScriptCache.SDKJS, document.getScripts());
+    }
+
+    @Test
+    public void testHeadAdded() {
+        String creative = "<html><body>" + FRAGMENT + "</body></html>";
+        CreativeDocument document = CreativeDocument.assemble(activity.getResources(), creative, SDKScriptCache.ALL);
+        assertEquals("<html><head>" + tags(SDKScriptCache.ALL) + "</head><body>" + FRAGMENT + "</body></html>",
+                document.getHtml());
+    }
+
+    @Test
+    public void testScriptsFirstInHead() {
+        String creative = "<html><head><title>ad</title></head><body>" + FRAGMENT + "</body></html>";
+        CreativeDocument document = CreativeDocument.assemble(activity.getResources(), creative, SDKScriptCache.ALL);
+        assertEquals("<html><head>" + tags(SDKScriptCache.ALL) + "<title>ad</title></head><body>"
+                + FRAGMENT + "</body></html>", document.getHtml());
+    }
+
+    @Test
+    public void testAssembledWithResponse() {
+        ServerResponse response = new ServerResponse(TestResponses.mraidBanner("mraid"), new Header[0], MediaType.BANNER);
+        assertNull(response.getDocument());
+
+        response.assembleDocument(activity);
+
+        CreativeDocument document = response.getDocument();
+        assertNotNull(document);
+        assertTrue((document.getScripts() & SDKScriptCache.MRAID) != 0);
+        assertTrue(document.getHtml().contains(tags(document.getScripts())));
+    }
+
+    @Test
+    public void testNativeNotAssembled() {
+        ServerResponse response = new ServerResponse(TestResponses.banner(), new Header[0], MediaType.NATIVE);
+        response.assembleDocument(activity);
+        assertNull(response.getDocument());
+    }
+
+    @Test
+    public void testLoadsAssembledDocument() {
+        ServerResponse response = new ServerResponse(TestResponses.banner(), new Header[0], MediaType.BANNER);
+        response.assembleDocument(activity);
+        AdWebView webView = new AdWebView(bannerAdView);
+
+        webView.loadAd(response);
+
+        assertEquals(response.getDocument().getHtml(),
+                Robolectric.shadowOf(webView).getLastLoadDataWithBaseURL().data);
+        webView.destroy();
+    }
+}
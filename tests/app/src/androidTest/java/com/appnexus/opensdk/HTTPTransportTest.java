@@ -0,0 +1,102 @@
+/*
+ *    Copyright 2015 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk;
+
+import com.appnexus.opensdk.util.LocalHttpServer;
+import com.appnexus.opensdk.utils.HTTPTransport;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.util.EntityUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+@Config(emulateSdk = 18)
+@RunWith(RobolectricTestRunner.class)
+public class HTTPTransportTest {
+    private static final int AD_LOADS = 100;
+
+    private LocalHttpServer server;
+
+    @Before
+    public void setup() throws Exception {
+        // talk to a real socket instead of Robolectric's fake http layer
+        Robolectric.getFakeHttpLayer().interceptHttpRequests(false);
+        HTTPTransport.shutdown();
+        server = new LocalHttpServer(TestResponses.blank());
+    }
+
+    @After
+    public void tearDown() {
+        HTTPTransport.shutdown();
+        server.shutdown();
+        Robolectric.getFakeHttpLayer().interceptHttpRequests(true);
+    }
+
+    @Test
+    public void testPooledTransportReusesConnections() throws Exception {
+        for (int i = 0; i < AD_LOADS; i++) {
+            HttpResponse r = HTTPTransport.execute(new HttpGet(server.getUrl("/mob?id=" + i)), null);
+            assertEquals(200, r.getStatusLine().getStatusCode());
+            EntityUtils.toString(r.getEntity());
+        }
+
+        assertEquals(AD_LOADS, server.getRequestCount());
+        assertEquals(1, server.getConnectionCount());
+    }
+
+    @Test
+    public void testReleasedResponseReturnsConnectionToPool() throws Exception {
+        for (int i = 0; i < AD_LOADS; i++) {
+            HttpResponse r = HTTPTransport.execute(new HttpGet(server.getUrl("/mob")), null);
+            HTTPTransport.release(r);
+        }
+
+        assertEquals(AD_LOADS, server.getRequestCount());
+        assertEquals(1, server.getConnectionCount());
+    }
+
+    @Test
+    public void testPooledTransportOpensFewerConnectionsThanPerRequestClients() throws Exception {
+        for (int i = 0; i < AD_LOADS; i++) {
+            HttpResponse r = HTTPTransport.execute(new HttpGet(server.getUrl("/mob")), null);
+            EntityUtils.toString(r.getEntity());
+        }
+        int pooledConnections = server.getConnectionCount();
+
+        // the previous behavior: one client per request, shut down afterwards
+        for (int i = 0; i < AD_LOADS; i++) {
+            DefaultHttpClient client = new DefaultHttpClient();
+            HttpResponse r = client.execute(new HttpGet(server.getUrl("/mob")));
+            EntityUtils.toString(r.getEntity());
+            client.getConnectionManager().shutdown();
+        }
+        int perRequestConnections = server.getConnectionCount() - pooledConnections;
+
+        assertEquals(AD_LOADS, perRequestConnections);
+        assertTrue(pooledConnections < perRequestConnections);
+    }
+}
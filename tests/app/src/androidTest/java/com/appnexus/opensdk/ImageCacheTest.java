@@ -0,0 +1,139 @@
+/*
+ *    Copyright 2015 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk;
+
+import android.graphics.Bitmap;
+
+import com.appnexus.opensdk.utils.BitmapPool;
+import com.appnexus.opensdk.utils.ImageCache;
+import com.appnexus.opensdk.utils.Settings;
+
+import org.json.JSONObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+
+@Config(emulateSdk = 18)
+@RunWith(RobolectricTestRunner.class)
+public class ImageCacheTest extends BaseRoboTest {
+    private static final String URL = "http://path_to_icon.com";
+    private ImageCache cache;
+
+    @Override
+    public void setup() {
+        super.setup();
+        cache = ImageCache.getInstance(activity);
+        cache.clear();
+    }
+
+    @Override
+    public void tearDown() {
+        cache.clear();
+        super.tearDown();
+    }
+
+    @Test
+    public void testMemoryHit() {
+        Bitmap bitmap = Bitmap.createBitmap(10, 10, Bitmap.Config.ARGB_8888);
+        byte[] encoded = new byte[100];
+        cache.put(URL, 0, 0, Bitmap.Config.ARGB_8888, bitmap, encoded);
+
+        long before = cache.getHitCount();
+        assertSame(bitmap, cache.get(URL, 0, 0, Bitmap.Config.ARGB_8888));
+        assertEquals(before + 1, cache.getHitCount());
+    }
+
+    @Test
+    public void testKeyedBySize() {
+        Bitmap bitmap = Bitmap.createBitmap(10, 10, Bitmap.Config.ARGB_8888);
+        cache.put(URL, 10, 10, Bitmap.Config.ARGB_8888, bitmap, null);
+
+        assertSame(bitmap, cache.get(URL, 10, 10, Bitmap.Config.ARGB_8888));
+        // not written to disk, so a different size is a miss
+        assertNull(cache.get(URL, 20, 20, Bitmap.Config.ARGB_8888));
+    }
+
+    @Test
+    public void testDiskHit() {
+        Bitmap bitmap = Bitmap.createBitmap(10, 10, Bitmap.Config.ARGB_8888);
+        byte[] encoded = new byte[100];
+        cache.put(URL, 0, 0, Bitmap.Config.ARGB_8888, bitmap, encoded);
+        cache.clearMemory();
+
+        long saved = cache.getBytesSaved();
+        assertNotNull(cache.get(URL, 0, 0, Bitmap.Config.ARGB_8888));
+        assertEquals(saved + encoded.length, cache.getBytesSaved());
+    }
+
+    @Test
+    public void testLargeImagesNotWrittenToDisk() {
+        Bitmap bitmap = Bitmap.createBitmap(10, 10, Bitmap.Config.ARGB_8888);
+        cache.put(URL, 0, 0, Bitmap.Config.ARGB_8888, bitmap, new byte[Settings.IMAGE_DISK_CACHE_MAX_ENTRY_SIZE + 1]);
+        cache.clearMemory();
+
+        assertNull(cache.get(URL, 0, 0, Bitmap.Config.ARGB_8888));
+    }
+
+    @Test
+    public void testHitRatio() {
+        long hits = cache.getHitCount();
+        long misses = cache.getMissCount();
+        assertNull(cache.get("http://not_cached.com", 0, 0, Bitmap.Config.ARGB_8888));
+        assertEquals(misses + 1, cache.getMissCount());
+        assertEquals(hits, cache.getHitCount());
+        assertEquals((double) hits / (hits + misses + 1), cache.getHitRatio(), 0.0001);
+    }
+
+    @Test
+    public void testExpiredAdKeepsCachedImage() throws Exception {
+        Bitmap bitmap = Bitmap.createBitmap(10, 10, Bitmap.Config.ARGB_8888);
+        BitmapPool.getInstance().retain(bitmap);
+        cache.put(URL, 0, 0, Bitmap.Config.ARGB_8888, bitmap, null);
+
+        // the ad holds the image as well, as after a download
+        ANNativeAdResponse response = ANNativeAdResponse.create(
+                new JSONObject("{\"impression_trackers\":[\"http://ib.adnxs.com/it\"]}"));
+        response.setImage(bitmap);
+        response.destroy();
+        Robolectric.runUiThreadTasks();
+
+        assertTrue(response.hasExpired());
+        assertFalse(bitmap.isRecycled());
+        assertSame(bitmap, cache.get(URL, 0, 0, Bitmap.Config.ARGB_8888));
+    }
+
+    @Test
+    public void testExpiredAdKeepsPublisherImage() throws Exception {
+        Bitmap bitmap = Bitmap.createBitmap(10, 10, Bitmap.Config.ARGB_8888);
+        ANNativeAdResponse response = ANNativeAdResponse.create(
+                new JSONObject("{\"impression_trackers\":[\"http://ib.adnxs.com/it\"]}"));
+        response.setIcon(bitmap);
+        response.destroy();
+        Robolectric.runUiThreadTasks();
+
+        assertFalse(bitmap.isRecycled());
+    }
+}
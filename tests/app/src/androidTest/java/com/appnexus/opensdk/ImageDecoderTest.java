@@ -0,0 +1,100 @@
+/*
+ *    Copyright 2015 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk;
+
+import android.graphics.Bitmap;
+
+import com.appnexus.opensdk.utils.BitmapPool;
+import com.appnexus.opensdk.utils.ImageDecoder;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+@Config(emulateSdk = 18)
+@RunWith(RobolectricTestRunner.class)
+public class ImageDecoderTest extends BaseRoboTest {
+    private static final int FEED_SIZE = 50;
+
+    @Test
+    public void testInSampleSize() {
+        // no target size, full resolution
+        assertEquals(1, ImageDecoder.calculateInSampleSize(1200, 628, 0, 0));
+        // already smaller than the target
+        assertEquals(1, ImageDecoder.calculateInSampleSize(300, 150, 360, 188));
+        // 1200x628 in a 360x188 slot, 2 would still leave 600x314, 4 would go below 188
+        assertEquals(2, ImageDecoder.calculateInSampleSize(1200, 628, 360, 188));
+        assertEquals(4, ImageDecoder.calculateInSampleSize(1200, 628, 300, 150));
+        assertEquals(8, ImageDecoder.calculateInSampleSize(1024, 1024, 100, 100));
+    }
+
+    @Test
+    public void testDecodeInvalid() {
+        assertNull(ImageDecoder.decode(null, 100, 100, Bitmap.Config.RGB_565));
+        assertNull(ImageDecoder.decode(new byte[0], 100, 100, Bitmap.Config.RGB_565));
+    }
+
+    @Test
+    public void testReferenceCounting() {
+        Bitmap bitmap = Bitmap.createBitmap(10, 10, Bitmap.Config.ARGB_8888);
+        BitmapPool pool = BitmapPool.getInstance();
+
+        // not decoded by the sdk, the caller keeps ownership
+        assertFalse(pool.release(bitmap));
+
+        pool.retain(bitmap);
+        pool.retain(bitmap);
+        assertTrue(pool.release(bitmap));
+        assertFalse(bitmap.isRecycled());
+        // released by the last holder
+        assertTrue(pool.release(bitmap));
+        assertFalse(pool.release(bitmap));
+        pool.clear();
+    }
+
+    @Test
+    public void testFeedDecodedAtSlotSize() {
+        // a feed of native ads, each with a 1200x628 main image in a 360x188 slot
+        // and a 300x300 icon in an 80x80 slot
+        long fullSize = 0;
+        long targeted = 0;
+        for (int i = 0; i < FEED_SIZE; i++) {
+            fullSize += decodedSize(1200, 628, 0, 0, Bitmap.Config.ARGB_8888);
+            fullSize += decodedSize(300, 300, 0, 0, Bitmap.Config.ARGB_8888);
+            targeted += decodedSize(1200, 628, 360, 188, Bitmap.Config.RGB_565);
+            targeted += decodedSize(300, 300, 80, 80, Bitmap.Config.ARGB_8888);
+        }
+        // sampled to slot size, the feed takes well under a quarter of the pixel memory
+        assertTrue(targeted * 4 < fullSize);
+    }
+
+    private static long decodedSize(int width, int height, int requestedWidth, int requestedHeight,
+                                    Bitmap.Config config) {
+        int sample = ImageDecoder.calculateInSampleSize(width, height, requestedWidth, requestedHeight);
+        Bitmap bitmap = Bitmap.createBitmap(width / sample, height / sample, config);
+        long size = (long) bitmap.getWidth() * bitmap.getHeight()
+                * (config == Bitmap.Config.RGB_565 ? 2 : 4);
+        bitmap.recycle();
+        return size;
+    }
+}
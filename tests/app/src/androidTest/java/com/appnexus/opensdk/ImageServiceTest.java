@@ -0,0 +1,114 @@
+/*
+ *    Copyright 2015 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk;
+
+import android.graphics.Bitmap;
+
+import com.appnexus.opensdk.util.LocalHttpServer;
+import com.appnexus.opensdk.utils.ImageService;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static junit.framework.Assert.assertEquals;
+
+@Config(emulateSdk = 18)
+@RunWith(RobolectricTestRunner.class)
+public class ImageServiceTest {
+    private static final int AD_COUNT = 5;
+    private static final long TIMEOUT = 5000;
+
+    private LocalHttpServer server;
+    private int delivered;
+    private int finished;
+
+    @Before
+    public void setup() throws Exception {
+        server = new LocalHttpServer("image");
+        delivered = 0;
+        finished = 0;
+        // results stay queued on the main thread until the test runs them
+        Robolectric.getUiThreadScheduler().pause();
+    }
+
+    @After
+    public void tearDown() {
+        server.shutdown();
+        Robolectric.getUiThreadScheduler().unPause();
+    }
+
+    private ImageService load(String url) {
+        ImageService service = new ImageService();
+        service.registerImageReceiver(new ImageService.ImageReceiver() {
+            @Override
+            public void onReceiveImage(Bitmap image) {
+                delivered++;
+            }
+
+            @Override
+            public void onFail() {
+                delivered++;
+            }
+        }, url, 80, 80);
+        service.registerNotification(new ImageService.ImageServiceListener() {
+            @Override
+            public void onAllImageDownloadsFinish() {
+                finished++;
+            }
+        });
+        service.execute();
+        return service;
+    }
+
+    private void waitForDeliveries(int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (finished < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            Robolectric.runUiThreadTasks();
+        }
+    }
+
+    @Test
+    public void testConcurrentLoadsShareDownload() throws InterruptedException {
+        String url = server.getUrl("/icon.png");
+        // services are only weakly referenced while loading, keep them alive
+        ImageService[] services = new ImageService[AD_COUNT];
+        for (int i = 0; i < AD_COUNT; i++) {
+            services[i] = load(url);
+        }
+        waitForDeliveries(AD_COUNT);
+
+        assertEquals(AD_COUNT, finished);
+        assertEquals(AD_COUNT, delivered);
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void testDifferentImagesDownloadedSeparately() throws InterruptedException {
+        ImageService first = load(server.getUrl("/icon.png"));
+        ImageService second = load(server.getUrl("/main.png"));
+        waitForDeliveries(2);
+
+        assertEquals(2, finished);
+        assertEquals(2, server.getRequestCount());
+    }
+}
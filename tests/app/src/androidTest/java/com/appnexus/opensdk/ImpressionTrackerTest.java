@@ -0,0 +1,78 @@
+/*
+ *    Copyright 2015 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk;
+
+import android.os.SystemClock;
+import android.view.View;
+
+import com.appnexus.opensdk.shadows.ShadowAsyncTaskNoExecutor;
+import com.appnexus.opensdk.utils.Settings;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertTrue;
+
+@Config(shadows = {ShadowAsyncTaskNoExecutor.class},
+        emulateSdk = 18)
+@RunWith(RobolectricTestRunner.class)
+public class ImpressionTrackerTest extends BaseRoboTest {
+    private VisibilityDetector detector;
+
+    @Override
+    public void setup() {
+        super.setup();
+        detector = VisibilityDetector.create(new View(activity));
+        assertNotNull(ImpressionTracker.create("http://impression.com", detector, activity));
+    }
+
+    @Override
+    public void tearDown() {
+        detector.destroy();
+        super.tearDown();
+    }
+
+    @Test
+    public void testFiresAfterVisiblePeriod() {
+        detector.notifyListeners(true);
+        assertTrue(detector.hasListeners());
+
+        SystemClock.sleep(Settings.NATIVE_AD_VISIBLE_PERIOD_MILLIS);
+        detector.notifyListeners(true);
+        // the impression is handled, the tracker stops listening
+        assertFalse(detector.hasListeners());
+    }
+
+    @Test
+    public void testHidingRestartsPeriod() {
+        detector.notifyListeners(true);
+        SystemClock.sleep(Settings.NATIVE_AD_VISIBLE_PERIOD_MILLIS / 2);
+        detector.notifyListeners(false);
+        detector.notifyListeners(true);
+        SystemClock.sleep(Settings.NATIVE_AD_VISIBLE_PERIOD_MILLIS / 2);
+        detector.notifyListeners(true);
+        assertTrue(detector.hasListeners());
+
+        SystemClock.sleep(Settings.NATIVE_AD_VISIBLE_PERIOD_MILLIS / 2);
+        detector.notifyListeners(true);
+        assertFalse(detector.hasListeners());
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ *    Copyright 2015 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk;
+
+import android.os.SystemClock;
+import android.view.View;
+
+import com.appnexus.opensdk.shadows.ShadowAsyncTaskNoExecutor;
+import com.appnexus.opensdk.shadows.ShadowWebSettings;
+import com.appnexus.opensdk.shadows.ShadowWebView;
+import com.appnexus.opensdk.utils.Settings;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+@Config(shadows = {ShadowAsyncTaskNoExecutor.class,
+        ShadowWebView.class, ShadowWebSettings.class},
+        emulateSdk = 18)
+@RunWith(RobolectricTestRunner.class)
+public class InterstitialPoolTest extends BaseViewAdTest {
+
+    @Override
+    public void tearDown() {
+        interstitialAdView.destroy();
+        super.tearDown();
+    }
+
+    // runs one request issued by the ad fetcher until the ad reaches the queue
+    private void runPoolRequest() {
+        waitForTasks();
+        Robolectric.runUiThreadTasks();
+        Robolectric.runBackgroundTasks();
+        Robolectric.runUiThreadTasks();
+        Robolectric.runUiThreadTasks();
+        Robolectric.runUiThreadTasks();
+    }
+
+    @Test
+    public void testQueueOrderedByExpiry() {
+        long now = SystemClock.elapsedRealtime();
+        FakeEntry newer = new FakeEntry(now);
+        FakeEntry older = new FakeEntry(now - 1000);
+        FakeEntry oldest = new FakeEntry(now - 2000);
+        interstitialAdView.getAdQueue().add(newer);
+        interstitialAdView.getAdQueue().add(oldest);
+        interstitialAdView.getAdQueue().add(older);
+
+        assertEquals(oldest, interstitialAdView.getAdQueue().poll());
+        assertEquals(older, interstitialAdView.getAdQueue().poll());
+        assertEquals(newer, interstitialAdView.getAdQueue().poll());
+    }
+
+    @Test
+    public void testStaleAdsEvicted() {
+        long now = SystemClock.elapsedRealtime();
+        FakeEntry stale = new FakeEntry(now - InterstitialAdView.MAX_AGE - 1);
+        FakeEntry fresh = new FakeEntry(now);
+        interstitialAdView.getAdQueue().add(stale);
+        interstitialAdView.getAdQueue().add(fresh);
+
+        assertTrue(interstitialAdView.isReady());
+        assertEquals(1, interstitialAdView.getAdQueue().size());
+        assertTrue(stale.destroyed);
+        assertFalse(fresh.destroyed);
+    }
+
+    @Test
+    public void testEvictionTimer() {
+        FakeEntry expiring = new FakeEntry(SystemClock.elapsedRealtime() - InterstitialAdView.MAX_AGE + 50);
+        interstitialAdView.getAdQueue().add(expiring);
+        // schedules the timer for the head of the queue
+        assertTrue(interstitialAdView.isReady());
+
+        SystemClock.sleep(100);
+        Robolectric.getUiThreadScheduler().advanceBy(100);
+
+        // evicted by the timer, without a call to isReady() or show()
+        assertTrue(expiring.destroyed);
+        assertEquals(0, interstitialAdView.getAdQueue().size());
+    }
+
+    @Test
+    public void testPoolFillsInBackground() {
+        Robolectric.addPendingHttpResponse(200, TestResponses.banner());
+        Robolectric.addPendingHttpResponse(200, TestResponses.banner());
+
+        interstitialAdView.setPoolSize(2);
+        assertEquals(2, interstitialAdView.getPoolSize());
+
+        runPoolRequest();
+        assertEquals(1, interstitialAdView.getAdQueue().size());
+        runPoolRequest();
+        assertEquals(2, interstitialAdView.getAdQueue().size());
+        assertTrue(interstitialAdView.isReady());
+    }
+
+    @Test
+    public void testPoolSizeCapped() {
+        interstitialAdView.setPoolSize(Settings.MAX_INTERSTITIAL_POOL_SIZE + 10);
+        assertEquals(Settings.MAX_INTERSTITIAL_POOL_SIZE, interstitialAdView.getPoolSize());
+        interstitialAdView.setPoolSize(-1);
+        assertEquals(0, interstitialAdView.getPoolSize());
+    }
+
+    class FakeEntry implements InterstitialAdQueueEntry {
+        private final long time;
+        boolean destroyed = false;
+
+        FakeEntry(long time) {
+            this.time = time;
+        }
+
+        @Override
+        public long getTime() {
+            return time;
+        }
+
+        @Override
+        public boolean isMediated() {
+            return false;
+        }
+
+        @Override
+        public MediatedAdViewController getMediatedAdViewController() {
+            return null;
+        }
+
+        @Override
+        public View getView() {
+            return null;
+        }
+
+        @Override
+        public boolean holds(Displayable d) {
+            return false;
+        }
+
+        @Override
+        public void destroy() {
+            destroyed = true;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ *    Copyright 2015 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk;
+
+import android.content.Context;
+import android.webkit.WebView;
+
+import com.appnexus.opensdk.shadows.ShadowAsyncTaskNoExecutor;
+import com.appnexus.opensdk.shadows.ShadowWebSettings;
+import com.appnexus.opensdk.shadows.ShadowWebView;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+
+import static junit.framework.Assert.assertEquals;
+
+@Config(shadows = {ShadowAsyncTaskNoExecutor.class,
+        ShadowWebView.class, ShadowWebSettings.class},
+        emulateSdk = 18)
+@RunWith(RobolectricTestRunner.class)
+public class MRAIDBridgeTest extends BaseRoboTest {
+    private RecordingWebView webView;
+    private MRAIDBridge bridge;
+
+    @Override
+    public void setup() {
+        super.setup();
+        webView = new RecordingWebView(activity);
+        bridge = new MRAIDBridge(webView);
+    }
+
+    @Override
+    public void tearDown() {
+        bridge.cancel();
+        super.tearDown();
+    }
+
+    @Test
+    public void testBatchedIntoOneCall() {
+        bridge.setProperty("placementType", "setPlacementType('inline')");
+        bridge.setProperty("screenSize", "setScreenSize(320, 480)");
+        bridge.fireEvent("readyEvent()");
+        assertEquals(0, webView.scripts.size());
+
+        Robolectric.runUiThreadTasks();
+
+        assertEquals(1, webView.scripts.size());
+        assertEquals("javascript:window.mraid.util.setPlacementType('inline');"
+                + "window.mraid.util.setScreenSize(320, 480);"
+                + "window.mraid.util.readyEvent();", webView.scripts.get(0));
+        assertEquals(1, bridge.getCallCount());
+        assertEquals(3, bridge.getStatementCount());
+    }
+
+    @Test
+    public void testUnchangedPropertyNotResent() {
+        bridge.setProperty("currentPosition", "setCurrentPosition(0, 0, 320, 50)");
+        bridge.flush();
+        bridge.setProperty("currentPosition", "setCurrentPosition(0, 0, 320, 50)");
+        Robolectric.runUiThreadTasks();
+
+        assertEquals(1, webView.scripts.size());
+        assertEquals(1, bridge.getCallCount());
+    }
+
+    @Test
+    public void testLatestValueSent() {
+        bridge.setProperty("isViewable", "setIsViewable(true)");
+        bridge.fireEvent("sizeChangeEvent(320, 50)");
+        bridge.setProperty("isViewable", "setIsViewable(false)");
+        Robolectric.runUiThreadTasks();
+
+        assertEquals("javascript:window.mraid.util.sizeChangeEvent(320, 50);"
+                + "window.mraid.util.setIsViewable(false);", webView.scripts.get(0));
+    }
+
+    @Test
+    public void testRevertedValueDropped() {
+        bridge.setProperty("isViewable", "setIsViewable(false)");
+        bridge.flush();
+        bridge.setProperty("isViewable", "setIsViewable(true)");
+        bridge.setProperty("isViewable", "setIsViewable(false)");
+        Robolectric.runUiThreadTasks();
+
+        assertEquals(1, webView.scripts.size());
+    }
+
+    @Test
+    public void testEventsAlwaysSent() {
+        bridge.fireEvent("stateChangeEvent('default')");
+        bridge.flush();
+        bridge.fireEvent("stateChangeEvent('default')");
+        bridge.flush();
+
+        assertEquals(2, webView.scripts.size());
+    }
+
+    @Test
+    public void testCancelDropsQueued() {
+        bridge.setProperty("maxSize", "setMaxSize(320, 480)");
+        bridge.cancel();
+        Robolectric.runUiThreadTasks();
+
+        assertEquals(0, webView.scripts.size());
+    }
+
+    @Test
+    public void testReadySequenceCallCount() {
+        // what webViewFinishedLoading sends for a banner, one loadUrl each before batching
+        bridge.fireEvent("pageFinished()");
+        bridge.setProperty("placementType", "setPlacementType('inline')");
+        bridge.setProperty("supports.sms", "setSupports('sms', true)");
+        bridge.setProperty("supports.tel", "setSupports('tel', true)");
+        bridge.setProperty("supports.calendar", "setSupports('calendar', true)");
+        bridge.setProperty("supports.storePicture", "setSupports('storePicture', true)");
+        bridge.setProperty("supports.inlineVideo", "setSupports('inlineVideo', true)");
+        bridge.setProperty("screenSize", "setScreenSize(320, 480)");
+        bridge.setProperty("maxSize", "setMaxSize(320, 455)");
+        bridge.setProperty("defaultPosition", "setDefaultPosition(0, 0, 320, 50)");
+        bridge.setProperty("currentPosition", "setCurrentPosition(0, 0, 320, 50)");
+        bridge.fireEvent("sizeChangeEvent(320, 50)");
+        bridge.fireEvent("stateChangeEvent('default')");
+        bridge.fireEvent("readyEvent()");
+        bridge.setProperty("isViewable", "setIsViewable(true)");
+        Robolectric.runUiThreadTasks();
+
+        // position checks while the ad stays put send nothing
+        for (int i = 0; i < 10; i++) {
+            bridge.setProperty("currentPosition", "setCurrentPosition(0, 0, 320, 50)");
+            bridge.setProperty("isViewable", "setIsViewable(true)");
+            Robolectric.runUiThreadTasks();
+        }
+
+        assertEquals(1, bridge.getCallCount());
+        assertEquals(15, bridge.getStatementCount());
+    }
+
+    static class RecordingWebView extends WebView {
+        final ArrayList<String> scripts = new ArrayList<String>();
+
+        RecordingWebView(Context context) {
+            super(context);
+        }
+
+        @Override
+        public void loadUrl(String url) {
+            scripts.add(url);
+        }
+    }
+}
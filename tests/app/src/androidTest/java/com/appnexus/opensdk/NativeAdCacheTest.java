@@ -0,0 +1,129 @@
+/*
+ *    Copyright 2015 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk;
+
+import com.appnexus.opensdk.shadows.ShadowAsyncTaskNoExecutor;
+import com.appnexus.opensdk.shadows.ShadowWebSettings;
+import com.appnexus.opensdk.shadows.ShadowWebView;
+import com.appnexus.opensdk.utils.Settings;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+@Config(shadows = {ShadowAsyncTaskNoExecutor.class,
+        ShadowWebView.class, ShadowWebSettings.class},
+        emulateSdk = 18)
+@RunWith(RobolectricTestRunner.class)
+public class NativeAdCacheTest extends BaseNativeTest {
+    private NativeAdCache cache;
+
+    @Override
+    public void tearDown() {
+        if (cache != null) {
+            cache.destroy();
+        }
+        super.tearDown();
+    }
+
+    // runs the request the cache has made until the ad is added
+    private void runCacheRequest() {
+        Robolectric.runUiThreadTasks();
+        waitForTasks();
+        Robolectric.runBackgroundTasks();
+        Robolectric.runUiThreadTasks();
+    }
+
+    @Test
+    public void testFillToDepth() {
+        Robolectric.addPendingHttpResponse(200, TestResponses.anNative());
+        Robolectric.addPendingHttpResponse(200, TestResponses.anNative());
+        cache = new NativeAdCache(adRequest, 2);
+        cache.start();
+
+        runCacheRequest();
+        assertEquals(1, cache.size());
+        runCacheRequest();
+        assertEquals(2, cache.size());
+        assertTrue(cache.getLastFillLatency() >= 0);
+        assertTrue(cache.getAverageFillLatency() >= 0);
+
+        // full, so no more requests are made
+        Robolectric.runUiThreadTasks();
+        assertTrue(!adRequest.isLoading);
+    }
+
+    @Test
+    public void testHitAndMiss() {
+        Robolectric.addPendingHttpResponse(200, TestResponses.anNative());
+        cache = new NativeAdCache(adRequest, 1);
+
+        assertNull(cache.poll());
+        assertEquals(1, cache.getMissCount());
+
+        cache.start();
+        runCacheRequest();
+
+        response = cache.poll();
+        assertNotNull(response);
+        assertEquals("test title", response.getTitle());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(0, cache.size());
+        // a replacement is requested right away
+        assertTrue(adRequest.isLoading);
+    }
+
+    @Test
+    public void testFailureRetriedLater() {
+        Robolectric.addPendingHttpResponse(200, TestResponses.blank());
+        cache = new NativeAdCache(adRequest, 1);
+        cache.start();
+        runCacheRequest();
+
+        assertEquals(0, cache.size());
+        assertTrue(!adRequest.isLoading);
+        assertEquals(-1, cache.getLastFillLatency());
+    }
+
+    @Test
+    public void testRefillRetriedWhenRequestCannotStart() {
+        adRequest.setPlacementID("");
+        cache = new NativeAdCache(adRequest, 1);
+        cache.start();
+        assertTrue(!adRequest.isLoading);
+
+        adRequest.setPlacementID("0");
+        Robolectric.addPendingHttpResponse(200, TestResponses.anNative());
+        Robolectric.getUiThreadScheduler().advanceBy(Settings.NATIVE_AD_CACHE_RETRY_DELAY);
+        assertTrue(adRequest.isLoading);
+    }
+
+    @Test
+    public void testDepthCapped() {
+        cache = new NativeAdCache(adRequest, Settings.MAX_NATIVE_AD_CACHE_DEPTH + 1);
+        assertEquals(Settings.MAX_NATIVE_AD_CACHE_DEPTH, cache.getDepth());
+        cache.setDepth(0);
+        assertEquals(1, cache.getDepth());
+    }
+}
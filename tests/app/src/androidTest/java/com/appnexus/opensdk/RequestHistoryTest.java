@@ -0,0 +1,131 @@
+/*
+ *    Copyright 2015 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk;
+
+import com.appnexus.opensdk.utils.Clog;
+import com.appnexus.opensdk.utils.RequestHistory;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.List;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+@Config(emulateSdk = 18)
+@RunWith(RobolectricTestRunner.class)
+public class RequestHistoryTest {
+    private static final String URL = "http://mediation.adnxs.com/mob?id=";
+
+    @After
+    public void tearDown() {
+        RequestHistory.disable();
+    }
+
+    @Test
+    public void testDisabledByDefault() {
+        assertFalse(RequestHistory.isEnabled());
+        assertNull(RequestHistory.recordRequest(URL + 1));
+        RequestHistory.recordResponse(null, "body");
+
+        assertTrue(RequestHistory.getEntries().isEmpty());
+        assertEquals("", Clog.getLastRequest());
+        assertEquals("", Clog.getLastResponse());
+    }
+
+    @Test
+    public void testKeepsLastEntries() {
+        RequestHistory.enable(3, 1024 * 1024);
+        for (int i = 0; i < 5; i++) {
+            RequestHistory.Entry entry = RequestHistory.recordRequest(URL + i);
+            RequestHistory.recordResponse(entry, "response " + i);
+        }
+
+        List<RequestHistory.Entry> entries = RequestHistory.getEntries();
+        assertEquals(3, entries.size());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(URL + (i + 2), entries.get(i).getRequest());
+            assertEquals("response " + (i + 2), entries.get(i).getResponse());
+        }
+        assertEquals(URL + 4, Clog.getLastRequest());
+        assertEquals("response 4", Clog.getLastResponse());
+    }
+
+    @Test
+    public void testClearLastResponse() {
+        RequestHistory.enable(2, 1024);
+        RequestHistory.Entry entry = RequestHistory.recordRequest(URL + 1);
+        RequestHistory.recordResponse(entry, "response");
+
+        Clog.clearLastResponse();
+
+        assertNull(entry.getResponse());
+        assertEquals(URL + 1, Clog.getLastRequest());
+        assertEquals("", Clog.getLastResponse());
+    }
+
+    @Test
+    public void testStringResponseRecordedOnItsEntry() {
+        RequestHistory.enable(3, 1024);
+        RequestHistory.Entry banner = RequestHistory.recordRequest(URL + 1);
+        RequestHistory.Entry blank = RequestHistory.recordRequest(URL + 2);
+        // a request made at the same time, recorded last
+        RequestHistory.Entry other = RequestHistory.recordRequest(URL + 3);
+        RequestHistory.recordResponse(other, "other");
+
+        new ServerResponse("{\"status\":\"ok\",\"ads\":[]}", null, MediaType.BANNER, banner);
+        new ServerResponse("", null, MediaType.BANNER, blank);
+
+        assertEquals("{\"status\":\"ok\",\"ads\":[]}", banner.getResponse());
+        assertEquals("", blank.getResponse());
+        assertEquals("other", other.getResponse());
+    }
+
+    @Test
+    public void testTruncatedToCap() {
+        // two entries of 100 chars each
+        RequestHistory.enable(2, 400);
+        StringBuilder body = new StringBuilder();
+        while (body.length() < 1000) {
+            body.append("<div>creative</div>");
+        }
+
+        RequestHistory.Entry entry = RequestHistory.recordRequest(URL + 1);
+        RequestHistory.recordResponse(entry, body.toString());
+
+        assertFalse(entry.isRequestTruncated());
+        assertTrue(entry.isResponseTruncated());
+        assertEquals(100, entry.getRequest().length() + entry.getResponse().length());
+        assertTrue(body.toString().startsWith(entry.getResponse()));
+    }
+
+    @Test
+    public void testDisableReleasesEntries() {
+        RequestHistory.enable(2, 1024);
+        RequestHistory.recordRequest(URL + 1);
+        RequestHistory.disable();
+
+        assertTrue(RequestHistory.getEntries().isEmpty());
+        assertNull(RequestHistory.recordRequest(URL + 2));
+    }
+}
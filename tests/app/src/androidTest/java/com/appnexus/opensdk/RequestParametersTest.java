@@ -0,0 +1,120 @@
+/*
+ *    Copyright 2015 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk;
+
+import com.appnexus.opensdk.utils.Settings;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+
+@Config(emulateSdk = 18)
+@RunWith(RobolectricTestRunner.class)
+public class RequestParametersTest extends BaseRoboTest {
+    private static final int ITERATIONS = 2000;
+    private static final int ROUNDS = 5;
+
+    private RequestParameters requestParameters;
+
+    @Override
+    public void setup() {
+        super.setup();
+        requestParameters = new RequestParameters(activity);
+        requestParameters.setPlacementID("0");
+        requestParameters.setMediaType(MediaType.BANNER);
+        requestParameters.setAdWidth(320);
+        requestParameters.setAdHeight(50);
+        Settings.getSettings().ua = "Mozilla/5.0 (Linux; Android 4.3; Nexus 7 Build/JSS15Q) AppleWebKit/537.36"
+                + " (KHTML, like Gecko) Chrome/29.0.1547.72 Safari/537.36";
+        Settings.getSettings().app_id = "com.appnexus.opensdk.test";
+        RequestParameters.StaticSegment.invalidate();
+    }
+
+    @Override
+    public void tearDown() {
+        super.tearDown();
+        Settings.getSettings().ua = null;
+        Settings.getSettings().aaid = null;
+        RequestParameters.StaticSegment.invalidate();
+    }
+
+    @Test
+    public void testStaticSegmentIsReused() {
+        String first = RequestParameters.StaticSegment.get(Settings.getSettings());
+        String second = RequestParameters.StaticSegment.get(Settings.getSettings());
+        assertSame(first, second);
+        assertTrue(requestParameters.getRequestUrl().contains(first));
+    }
+
+    @Test
+    public void testStaticSegmentRebuiltWhenInputChanges() {
+        String before = RequestParameters.StaticSegment.get(Settings.getSettings());
+        assertFalse(before.contains("&aaid="));
+
+        Settings.getSettings().aaid = "38400000-8cf0-11bd-b23e-10b96e40000d";
+        String after = RequestParameters.StaticSegment.get(Settings.getSettings());
+        assertTrue(after.contains("&aaid=38400000-8cf0-11bd-b23e-10b96e40000d"));
+        assertTrue(requestParameters.getRequestUrl().contains("&aaid="));
+    }
+
+    @Test
+    public void testUrlBuildKeepsStaticSegment() {
+        String segment = RequestParameters.StaticSegment.get(Settings.getSettings());
+        for (int i = 0; i < ITERATIONS; i++) {
+            requestParameters.getRequestUrl();
+        }
+        // no url build rebuilt or re-encoded the static parameters
+        assertSame(segment, RequestParameters.StaticSegment.get(Settings.getSettings()));
+    }
+
+    @Test
+    public void testCachedSegmentFasterThanRebuild() {
+        Settings settings = Settings.getSettings();
+        // warm up both paths
+        for (int i = 0; i < ITERATIONS; i++) {
+            RequestParameters.StaticSegment.invalidate();
+            RequestParameters.StaticSegment.get(settings);
+        }
+
+        // best of a few rounds, so that a pause in one round does not decide the result
+        long rebuilt = Long.MAX_VALUE;
+        long cached = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                RequestParameters.StaticSegment.invalidate();
+                RequestParameters.StaticSegment.get(settings);
+            }
+            rebuilt = Math.min(rebuilt, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                RequestParameters.StaticSegment.get(settings);
+            }
+            cached = Math.min(cached, System.nanoTime() - start);
+        }
+
+        // the cached segment is only compared against the settings,
+        // rebuilding encodes every parameter again
+        assertTrue(cached * 2 < rebuilt);
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ *    Copyright 2015 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk;
+
+import com.appnexus.opensdk.shadows.ShadowAsyncTaskNoExecutor;
+import com.appnexus.opensdk.shadows.ShadowWebSettings;
+import com.appnexus.opensdk.shadows.ShadowWebView;
+import com.appnexus.opensdk.utils.MetricHistogram;
+import com.appnexus.opensdk.utils.SDKMetrics;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+@Config(shadows = {ShadowAsyncTaskNoExecutor.class,
+        ShadowWebView.class, ShadowWebSettings.class},
+        emulateSdk = 18)
+@RunWith(RobolectricTestRunner.class)
+public class SDKMetricsTest extends BaseViewAdTest {
+    private static final int UPDATES = 100000;
+    private static final int ROUNDS = 5;
+
+    @Override
+    public void setup() {
+        super.setup();
+        SDKMetrics.reset();
+    }
+
+    private void assertWithinBucket(long expected, long actual) {
+        assertTrue("expected about " + expected + " but was " + actual,
+                actual >= expected && actual <= expected * 1.125 + 1);
+    }
+
+    @Test
+    public void testHistogramPercentiles() {
+        for (int i = 1; i <= 1000; i++) {
+            SDKMetrics.RENDER_LATENCY.record(i);
+        }
+        SDKMetrics.RENDER_LATENCY.record(-1);
+
+        MetricHistogram.Snapshot snapshot = SDKMetrics.snapshot().getHistograms().get("render_latency_ms");
+        assertEquals(1000, snapshot.getCount());
+        assertEquals(1000, snapshot.getMax());
+        assertEquals(500.5, snapshot.getMean(), 0.001);
+        assertWithinBucket(500, snapshot.getPercentile(50));
+        assertWithinBucket(900, snapshot.getPercentile(90));
+        assertWithinBucket(990, snapshot.getPercentile(99));
+        assertEquals(1000, snapshot.getPercentile(100));
+        assertEquals(1, snapshot.getPercentile(0));
+    }
+
+    @Test
+    public void testConcurrentCounter() throws Exception {
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < UPDATES; i++) {
+                        SDKMetrics.TRACKERS_QUEUED.increment();
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(threads.length * UPDATES, SDKMetrics.TRACKERS_QUEUED.get());
+        assertEquals(threads.length * UPDATES, SDKMetrics.snapshot().getCounter("trackers_queued"));
+    }
+
+    @Test
+    public void testUpdatesAreCheap() {
+        // warm up
+        for (int i = 0; i < UPDATES; i++) {
+            SDKMetrics.AD_REQUESTS.increment();
+            SDKMetrics.AD_REQUEST_LATENCY.record(i);
+        }
+
+        // best of a few rounds, so that a pause in one round does not decide the result
+        long time = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < UPDATES; i++) {
+                SDKMetrics.AD_REQUESTS.increment();
+                SDKMetrics.AD_REQUEST_LATENCY.record(i);
+            }
+            time = Math.min(time, System.nanoTime() - start);
+        }
+
+        // a few atomic adds per update, well under a microsecond
+        assertTrue("update took " + time / UPDATES + " ns", time / UPDATES < 1000);
+        assertEquals((ROUNDS + 1) * UPDATES, SDKMetrics.AD_REQUESTS.get());
+    }
+
+    @Test
+    public void testRequestMetrics() {
+        requestManager = new AdViewRequestManager(bannerAdView);
+        Robolectric.addPendingHttpResponse(200, TestResponses.blank());
+        requestManager.execute();
+        while (Robolectric.getBackgroundScheduler().areAnyRunnable()) {
+            Robolectric.getBackgroundScheduler().runOneTask();
+        }
+        Robolectric.runUiThreadTasks();
+
+        SDKMetrics.Snapshot snapshot = SDKMetrics.snapshot();
+        assertEquals(1, snapshot.getCounter("ad_requests"));
+        assertEquals(1, snapshot.getCounter("ad_results.UNABLE_TO_FILL"));
+        assertEquals(0, snapshot.getCounter("ad_results.SUCCESS"));
+        assertEquals(1, snapshot.getHistograms().get("ad_request_latency_ms").getCount());
+        assertEquals(1, snapshot.getHistograms().get("ad_response_latency_ms").getCount());
+    }
+
+    @Test
+    public void testLiveWebViews() {
+        long live = SDKMetrics.LIVE_AD_WEBVIEWS.get();
+        AdWebView webView = new AdWebView(bannerAdView);
+        assertEquals(live + 1, SDKMetrics.LIVE_AD_WEBVIEWS.get());
+
+        // gauges report current state, not counts since the reset
+        SDKMetrics.reset();
+        assertEquals(live + 1, SDKMetrics.snapshot().getGauge("live_ad_webviews"));
+
+        webView.destroy();
+        webView.destroy();
+        assertEquals(live, SDKMetrics.LIVE_AD_WEBVIEWS.get());
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ *    Copyright 2015 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk;
+
+import android.content.res.Resources;
+import android.webkit.WebResourceResponse;
+
+import com.appnexus.opensdk.utils.Settings;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+
+@Config(emulateSdk = 18)
+@RunWith(RobolectricTestRunner.class)
+public class SDKScriptCacheTest extends BaseRoboTest {
+    private static final String IMAGE_CREATIVE = "<a href=\"http://www.appnexus.com\"><img src=\"http://www.appnexus.com/banner.png\"/></a>";
+
+    @Test
+    public void testSourceReadOnce() {
+        Resources res = activity.getResources();
+        String source = SDKScriptCache.getSource(res, SDKScriptCache.MRAID);
+        assertNotNull(source);
+        assertTrue(source.contains("window.mraid"));
+        assertSame(source, SDKScriptCache.getSource(res, SDKScriptCache.MRAID));
+    }
+
+    @Test
+    public void testScriptTagsReferenceStableUrls() {
+        String tags = SDKScriptCache.getScriptTags(activity.getResources(), SDKScriptCache.ALL);
+        String sdkjs = "<script src=\"" + SDKScriptCache.getScriptUrl(SDKScriptCache.SDKJS) + "\"></script>";
+        String anjam = "<script src=\"" + SDKScriptCache.getScriptUrl(SDKScriptCache.ANJAM) + "\"></script>";
+        String mraid = "<script src=\"" + SDKScriptCache.getScriptUrl(SDKScriptCache.MRAID) + "\"></script>";
+        assertEquals(sdkjs + anjam + mraid, tags);
+        assertEquals(sdkjs + mraid, SDKScriptCache.getScriptTags(activity.getResources(),
+                SDKScriptCache.SDKJS | SDKScriptCache.MRAID));
+
+        String url = SDKScriptCache.getScriptUrl(SDKScriptCache.MRAID);
+        assertTrue(url.startsWith(Settings.BASE_URL));
+        assertTrue(url.contains(Settings.getSettings().sdkVersion));
+
+        assertEquals(SDKScriptCache.MRAID, SDKScriptCache.scriptForUrl(url));
+        assertEquals(0, SDKScriptCache.scriptForUrl(Settings.BASE_URL + "mob"));
+        assertEquals(0, SDKScriptCache.scriptForUrl(null));
+    }
+
+    @Test
+    public void testInterceptedResponse() throws Exception {
+        String url = SDKScriptCache.getScriptUrl(SDKScriptCache.ANJAM);
+        WebResourceResponse response = SDKScriptCache.getResponse(activity.getResources(), url);
+        assertNotNull(response);
+        assertEquals("text/javascript", response.getMimeType());
+        assertEquals("UTF-8", response.getEncoding());
+
+        byte[] expected = SDKScriptCache.getSource(activity.getResources(), SDKScriptCache.ANJAM).getBytes("UTF-8");
+        assertEquals(expected.length, response.getData().available());
+
+        assertNull(SDKScriptCache.getResponse(activity.getResources(), "http://www.appnexus.com/"));
+    }
+
+    @Test
+    public void testPlanPlainBanner() {
+        assertEquals(SDKScriptCache.SDKJS, SDKScriptCache.planScripts(IMAGE_CREATIVE, false));
+    }
+
+    @Test
+    public void testPlanMRAID() {
+        // flagged by the server
+        assertEquals(SDKScriptCache.SDKJS | SDKScriptCache.MRAID,
+                SDKScriptCache.planScripts(IMAGE_CREATIVE, true));
+        // calls mraid.enable() without the server flag
+        assertEquals(SDKScriptCache.SDKJS | SDKScriptCache.MRAID,
+                SDKScriptCache.planScripts("<script>mraid.enable();</script>" + IMAGE_CREATIVE, false));
+    }
+
+    @Test
+    public void testPlanANJAM() {
+        assertEquals(SDKScriptCache.SDKJS | SDKScriptCache.ANJAM,
+                SDKScriptCache.planScripts("<script>anjam.MayDeepLink('fb://', callback);</script>", false));
+    }
+
+    @Test
+    public void testPlanExternalContent() {
+        // frames and scripts the creative loads may be ANJAM frames relaying MRAID calls
+        assertEquals(SDKScriptCache.SDKJS | SDKScriptCache.MRAID,
+                SDKScriptCache.planScripts("<IFRAME src=\"http://www.appnexus.com/\"></IFRAME>", false));
+        assertEquals(SDKScriptCache.SDKJS | SDKScriptCache.MRAID,
+                SDKScriptCache.planScripts("<script type=\"text/javascript\" src=\"http://www.appnexus.com/ad.js\"></script>", false));
+        assertEquals(SDKScriptCache.SDKJS,
+                SDKScriptCache.planScripts("<script>document.write('hello');</script>", false));
+        assertEquals(SDKScriptCache.ALL, SDKScriptCache.planScripts(null, false));
+    }
+
+    @Test
+    public void testScriptTagsSmallerThanInlinedScripts() {
+        Resources res = activity.getResources();
+        String creative = "<html><head></head><body>" + IMAGE_CREATIVE + "</body></html>";
+        String inlined = "<script>" + SDKScriptCache.getSource(res, SDKScriptCache.SDKJS)
+                + SDKScriptCache.getSource(res, SDKScriptCache.ANJAM)
+                + SDKScriptCache.getSource(res, SDKScriptCache.MRAID) + "</script>";
+        String tags = SDKScriptCache.getScriptTags(res, SDKScriptCache.planScripts(IMAGE_CREATIVE, false));
+
+        assertTrue(assemble(creative, tags).length() < assemble(creative, inlined).length());
+        // a plain banner only gets sdkjs
+        assertTrue(SDKScriptCache.getSource(res, SDKScriptCache.SDKJS).length()
+                < inlined.length() - "<script></script>".length());
+    }
+
+    // the way creatives were assembled before the scripts were cached
+    private static String assemble(String html, String scripts) {
+        return html.replace("<head>", "<head>" + scripts);
+    }
+}
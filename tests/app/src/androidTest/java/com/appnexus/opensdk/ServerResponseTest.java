@@ -0,0 +1,150 @@
+/*
+ *    Copyright 2015 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk;
+
+import com.appnexus.opensdk.utils.RequestHistory;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+@Config(emulateSdk = 18)
+@RunWith(RobolectricTestRunner.class)
+public class ServerResponseTest extends BaseRoboTest {
+
+    private ServerResponse stream(String body, MediaType mediaType) throws IOException {
+        return new ServerResponse(new ByteArrayInputStream(body.getBytes("UTF-8")), "UTF-8", null, mediaType, null);
+    }
+
+    @Test
+    public void testRecordedInHistory() throws IOException {
+        RequestHistory.enable(2, 1024 * 1024);
+        RequestHistory.Entry entry = RequestHistory.recordRequest("http://mediation.adnxs.com/mob?id=1");
+        String body = TestResponses.banner();
+
+        ServerResponse streamed = new ServerResponse(new ByteArrayInputStream(body.getBytes("UTF-8")),
+                "UTF-8", null, MediaType.BANNER, entry);
+        RequestHistory.disable();
+
+        assertTrue(streamed.containsAds());
+        assertEquals(body, entry.getResponse());
+    }
+
+    @Test
+    public void testBanner() throws IOException {
+        ServerResponse streamed = stream(TestResponses.banner(), MediaType.BANNER);
+        ServerResponse buffered = new ServerResponse(TestResponses.banner(), null, MediaType.BANNER);
+
+        assertTrue(streamed.containsAds());
+        assertEquals(buffered.getContent(), streamed.getContent());
+        assertEquals(320, streamed.getWidth());
+        assertEquals(50, streamed.getHeight());
+        assertNull(streamed.getMediatedAds());
+    }
+
+    @Test
+    public void testMraidBanner() throws IOException {
+        ServerResponse streamed = stream(TestResponses.mraidBanner("test"), MediaType.BANNER);
+
+        assertTrue(streamed.containsAds());
+        assertEquals(true, streamed.getExtras().get(ServerResponse.EXTRAS_KEY_MRAID));
+    }
+
+    @Test
+    public void testBlank() throws IOException {
+        ServerResponse streamed = stream(TestResponses.blank(), MediaType.BANNER);
+        assertFalse(streamed.containsAds());
+
+        streamed = stream(TestResponses.blankBanner(), MediaType.BANNER);
+        assertFalse(streamed.containsAds());
+    }
+
+    @Test
+    public void testErrorStatus() throws IOException {
+        String body = "{\"ads\":[{\"type\":\"banner\",\"width\":320,\"height\":50,\"content\":\"content\"}],"
+                + "\"status\":\"error\",\"errorMessage\":\"invalid placement\"}";
+        assertFalse(stream(body, MediaType.BANNER).containsAds());
+    }
+
+    @Test
+    public void testMalformed() throws IOException {
+        assertFalse(stream("{\"status\":\"ok\",\"ads\":[{\"content\":", MediaType.BANNER).containsAds());
+        assertFalse(stream("not json", MediaType.BANNER).containsAds());
+    }
+
+    @Test
+    public void testMediatedWaterfall() throws IOException {
+        String[] classNames = {"FakeClass", "DummyClass", "SuccessfulBanner"};
+        String[] resultCBs = {TestResponses.RESULTCB + "0", TestResponses.RESULTCB + "1", TestResponses.RESULTCB + "2"};
+        String body = TestResponses.waterfall(classNames, resultCBs);
+
+        ServerResponse streamed = stream(body, MediaType.BANNER);
+        ServerResponse buffered = new ServerResponse(body, null, MediaType.BANNER);
+
+        assertTrue(streamed.containsAds());
+        assertEquals(buffered.getMediatedAds().size(), streamed.getMediatedAds().size());
+        for (int i = 0; i < streamed.getMediatedAds().size(); i++) {
+            MediatedAd expected = buffered.getMediatedAds().get(i);
+            MediatedAd actual = streamed.getMediatedAds().get(i);
+            assertEquals(expected.getClassName(), actual.getClassName());
+            assertEquals(expected.getResultCB(), actual.getResultCB());
+            assertEquals(expected.getWidth(), actual.getWidth());
+            assertEquals(expected.getHeight(), actual.getHeight());
+        }
+    }
+
+    @Test
+    public void testMediatedKeyOrder() throws IOException {
+        // result_cb before the handlers, mediated before ads, non-android handlers ignored
+        String body = "{\"mediated\":[{\"result_cb\":\"http://result.com/\",\"handler\":["
+                + "{\"type\":\"ios\",\"class\":\"IosClass\"},"
+                + "{\"type\":\"Android\",\"class\":\"AndroidClass\",\"width\":\"320\",\"height\":\"50\",\"id\":\"123\"}]}],"
+                + "\"ads\":[],\"status\":\"ok\"}";
+
+        ServerResponse streamed = stream(body, MediaType.BANNER);
+
+        assertTrue(streamed.containsAds());
+        assertEquals(1, streamed.getMediatedAds().size());
+        MediatedAd ad = streamed.getMediatedAds().getFirst();
+        assertEquals("AndroidClass", ad.getClassName());
+        assertEquals("http://result.com/", ad.getResultCB());
+        assertEquals("123", ad.getId());
+        assertEquals(320, ad.getWidth());
+        assertEquals(50, ad.getHeight());
+    }
+
+    @Test
+    public void testNative() throws IOException {
+        ServerResponse streamed = stream(TestResponses.anNative(), MediaType.NATIVE);
+
+        assertTrue(streamed.containsAds());
+        NativeAdResponse nativeAdResponse = streamed.getNativeAdResponse();
+        assertNotNull(nativeAdResponse);
+        assertEquals("test title", nativeAdResponse.getTitle());
+        assertEquals("http://path_to_main.com", nativeAdResponse.getImageUrl());
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ *    Copyright 2015 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk;
+
+import com.appnexus.opensdk.util.LocalHttpServer;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+@Config(emulateSdk = 18)
+@RunWith(RobolectricTestRunner.class)
+public class TrackerJournalTest extends BaseRoboTest {
+    private static final int TRACKER_COUNT = 500;
+
+    private File file;
+
+    @Override
+    public void setup() {
+        super.setup();
+        file = new File(activity.getFilesDir(), "tracker_journal_test");
+        file.delete();
+    }
+
+    @Override
+    public void tearDown() {
+        super.tearDown();
+        file.delete();
+    }
+
+    @Test
+    public void testPendingUrlsSurviveReopen() {
+        TrackerJournal journal = new TrackerJournal(file);
+        journal.add("http://example.com/imp?id=1");
+        journal.add("http://example.com/imp?id=2");
+        journal.add("http://example.com/click?id=3");
+        journal.remove("http://example.com/imp?id=2");
+        journal.close();
+
+        LinkedHashSet<String> pending = new TrackerJournal(file).load();
+        ArrayList<String> expected = new ArrayList<String>();
+        expected.add("http://example.com/imp?id=1");
+        expected.add("http://example.com/click?id=3");
+        assertEquals(expected, new ArrayList<String>(pending));
+    }
+
+    @Test
+    public void testTornRecordIsSkipped() throws Exception {
+        TrackerJournal journal = new TrackerJournal(file);
+        journal.add("http://example.com/imp?id=1");
+        journal.close();
+
+        // simulate a crash in the middle of writing a record
+        FileOutputStream out = new FileOutputStream(file, true);
+        out.write("+1234abcd http://example.com/imp?i".getBytes("UTF-8"));
+        out.close();
+
+        LinkedHashSet<String> pending = new TrackerJournal(file).load();
+        assertEquals(1, pending.size());
+        assertTrue(pending.contains("http://example.com/imp?id=1"));
+    }
+
+    @Test
+    public void testCompactKeepsOnlyPendingUrls() {
+        TrackerJournal journal = new TrackerJournal(file);
+        for (int i = 0; i < TRACKER_COUNT; i++) {
+            journal.add("http://example.com/imp?id=" + i);
+            if (i > 0) {
+                journal.remove("http://example.com/imp?id=" + i);
+            }
+        }
+        LinkedHashSet<String> pending = new LinkedHashSet<String>();
+        pending.add("http://example.com/imp?id=0");
+        journal.compact(pending);
+        assertEquals(1, journal.getRecordCount());
+        journal.close();
+
+        assertEquals(pending, new TrackerJournal(file).load());
+    }
+
+    @Test
+    public void testDeliversEveryTrackerOnceToLocalTrackerServer() throws Exception {
+        Robolectric.getFakeHttpLayer().interceptHttpRequests(false);
+        LocalHttpServer server = new LocalHttpServer("");
+        try {
+            SharedNetworkManager nm = SharedNetworkManager.getInstance(activity);
+            waitForPendingCount(nm, 0);
+
+            for (int i = 0; i < TRACKER_COUNT; i++) {
+                nm.addURL(server.getUrl("/it?id=" + i), activity);
+                // duplicates are dropped
+                nm.addURL(server.getUrl("/it?id=" + i), activity);
+            }
+            assertEquals(TRACKER_COUNT, nm.getPendingCount());
+
+            // skip the initial backoff, as a connectivity change would
+            nm.retryNow();
+            waitForPendingCount(nm, 0);
+
+            // each tracker is sent exactly once over the pooled connections
+            assertEquals(TRACKER_COUNT, server.getRequestCount());
+            assertTrue(server.getConnectionCount() < TRACKER_COUNT);
+        } finally {
+            server.shutdown();
+            Robolectric.getFakeHttpLayer().interceptHttpRequests(true);
+        }
+    }
+
+    private void waitForPendingCount(SharedNetworkManager nm, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 60000;
+        while (nm.getPendingCount() != count && System.currentTimeMillis() < deadline) {
+            Robolectric.runUiThreadTasks();
+            nm.deliverPending();
+            Thread.sleep(10);
+        }
+        assertEquals(count, nm.getPendingCount());
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ *    Copyright 2015 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk;
+
+import android.view.View;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+@Config(emulateSdk = 18)
+@RunWith(RobolectricTestRunner.class)
+public class VisibilityEngineTest extends BaseRoboTest {
+
+    class CountingListener implements VisibilityDetector.VisibilityListener {
+        int calls = 0;
+
+        @Override
+        public void onVisibilityChanged(boolean visible) {
+            calls++;
+        }
+    }
+
+    @Test
+    public void testOnlyDetectorsWithListenersAreRegistered() {
+        VisibilityEngine engine = VisibilityEngine.getInstance();
+        int before = engine.getDetectorCount();
+
+        VisibilityDetector detector = VisibilityDetector.create(new View(activity));
+        assertEquals(before, engine.getDetectorCount());
+
+        CountingListener listener = new CountingListener();
+        detector.addVisibilityListener(listener);
+        assertEquals(before + 1, engine.getDetectorCount());
+
+        assertTrue(detector.removeVisibilityListener(listener));
+        assertFalse(detector.hasListeners());
+        assertEquals(before, engine.getDetectorCount());
+
+        detector.destroy();
+    }
+
+    @Test
+    public void testCheckDropsDetectorsWithoutListeners() {
+        VisibilityEngine engine = VisibilityEngine.getInstance();
+        int before = engine.getDetectorCount();
+
+        VisibilityDetector detector = VisibilityDetector.create(new View(activity));
+        engine.register(detector);
+        assertEquals(before + 1, engine.getDetectorCount());
+
+        Robolectric.runUiThreadTasksIncludingDelayedTasks();
+        assertEquals(before, engine.getDetectorCount());
+
+        detector.destroy();
+    }
+
+    @Test
+    public void testChecksAreBatched() {
+        VisibilityDetector first = VisibilityDetector.create(new View(activity));
+        VisibilityDetector second = VisibilityDetector.create(new View(activity));
+        CountingListener firstListener = new CountingListener();
+        CountingListener secondListener = new CountingListener();
+        first.addVisibilityListener(firstListener);
+        second.addVisibilityListener(secondListener);
+
+        // several triggers before the batch runs result in one check
+        VisibilityEngine engine = VisibilityEngine.getInstance();
+        engine.onScrollChanged();
+        engine.onGlobalLayout();
+        Robolectric.runUiThreadTasks();
+
+        assertEquals(1, firstListener.calls);
+        assertEquals(1, secondListener.calls);
+
+        first.destroy();
+        second.destroy();
+    }
+}
@@ -16,6 +16,7 @@
 
 package com.appnexus.opensdk.shadows;
 
+import android.content.Context;
 import android.webkit.WebSettings;
 
 import org.robolectric.annotation.Implementation;
@@ -23,6 +24,12 @@ import org.robolectric.annotation.Implements;
 
 @Implements(value = WebSettings.class, callThroughByDefault = true)
 public class ShadowWebSettings {
+    public static final String DEFAULT_USER_AGENT = "Mozilla/5.0 (Linux; Android 4.3; Robolectric)";
+
+    @Implementation
+    public static String getDefaultUserAgent(Context context) {
+        return DEFAULT_USER_AGENT;
+    }
 
     @Implementation
     public synchronized void setJavaScriptCanOpenWindowsAutomatically(boolean flag) {
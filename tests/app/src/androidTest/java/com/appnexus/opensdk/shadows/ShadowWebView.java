@@ -20,12 +20,29 @@ import android.webkit.TestWebSettings;
 import android.webkit.WebSettings;
 import android.webkit.WebView;
 
+import org.robolectric.annotation.Implementation;
 import org.robolectric.annotation.Implements;
 
 @Implements(value = WebView.class, callThroughByDefault = true)
 public class ShadowWebView extends org.robolectric.shadows.ShadowWebView {
+    private boolean paused = false;
+
     @Override
     public WebSettings getSettings() {
         return new TestWebSettings();
     }
+
+    @Implementation
+    public void onPause() {
+        paused = true;
+    }
+
+    @Implementation
+    public void onResume() {
+        paused = false;
+    }
+
+    public boolean isPaused() {
+        return paused;
+    }
 }
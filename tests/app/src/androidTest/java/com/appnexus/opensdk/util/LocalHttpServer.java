@@ -0,0 +1,115 @@
+/*
+ *    Copyright 2015 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Minimal HTTP/1.1 keep-alive server bound to localhost. Every request is
+ * answered with the same 200 response; the number of accepted TCP
+ * connections and served requests is recorded for assertions.
+ */
+public class LocalHttpServer {
+    private final ServerSocket serverSocket;
+    private final byte[] body;
+    private final AtomicInteger connections = new AtomicInteger();
+    private final AtomicInteger requests = new AtomicInteger();
+    private volatile boolean running = true;
+
+    public LocalHttpServer(String body) throws IOException {
+        this.body = body.getBytes("UTF-8");
+        this.serverSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        Thread acceptor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (running) {
+                    try {
+                        final Socket socket = serverSocket.accept();
+                        connections.incrementAndGet();
+                        Thread worker = new Thread(new Runnable() {
+                            @Override
+                            public void run() {
+                                serve(socket);
+                            }
+                        });
+                        worker.setDaemon(true);
+                        worker.start();
+                    } catch (IOException e) {
+                        return;
+                    }
+                }
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    private void serve(Socket socket) {
+        try {
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+            OutputStream out = socket.getOutputStream();
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.length() > 0) {
+                    continue;
+                }
+                // end of request headers
+                requests.incrementAndGet();
+                String head = "HTTP/1.1 200 OK\r\n"
+                        + "Content-Type: text/plain\r\n"
+                        + "Content-Length: " + body.length + "\r\n"
+                        + "Connection: keep-alive\r\n\r\n";
+                out.write(head.getBytes("UTF-8"));
+                out.write(body);
+                out.flush();
+            }
+        } catch (IOException ignored) {
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    public String getUrl(String path) {
+        return "http://127.0.0.1:" + serverSocket.getLocalPort() + path;
+    }
+
+    public int getConnectionCount() {
+        return connections.get();
+    }
+
+    public int getRequestCount() {
+        return requests.get();
+    }
+
+    public void shutdown() {
+        running = false;
+        try {
+            serverSocket.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
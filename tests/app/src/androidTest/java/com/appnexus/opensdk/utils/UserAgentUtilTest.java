@@ -0,0 +1,92 @@
+/*
+ *    Copyright 2015 APPNEXUS INC
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.appnexus.opensdk.utils;
+
+import android.content.pm.PackageInfo;
+import android.os.Build;
+import android.preference.PreferenceManager;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+@Config(emulateSdk = 18)
+@RunWith(RobolectricTestRunner.class)
+public class UserAgentUtilTest {
+    private static final String GOOGLE_WEBVIEW = "com.google.android.webview";
+    private static final String CHROME = "com.android.chrome";
+
+    @Before
+    public void setup() {
+        Settings.getSettings().ua = null;
+    }
+
+    @After
+    public void tearDown() {
+        Robolectric.packageManager.removePackage(GOOGLE_WEBVIEW);
+        Robolectric.packageManager.removePackage(CHROME);
+        Settings.getSettings().ua = null;
+    }
+
+    private void installPackage(String packageName, int versionCode) {
+        PackageInfo info = new PackageInfo();
+        info.packageName = packageName;
+        info.versionCode = versionCode;
+        Robolectric.packageManager.addPackage(info);
+    }
+
+    @Test
+    public void testKeyIncludesBuildFingerprint() {
+        assertTrue(UserAgentUtil.getCacheKey(Robolectric.application).startsWith(String.valueOf(Build.FINGERPRINT)));
+    }
+
+    @Test
+    public void testKeyChangesWhenProviderIsUpdated() {
+        installPackage(GOOGLE_WEBVIEW, 1);
+        String before = UserAgentUtil.getCacheKey(Robolectric.application);
+        installPackage(GOOGLE_WEBVIEW, 2);
+        assertFalse(before.equals(UserAgentUtil.getCacheKey(Robolectric.application)));
+    }
+
+    @Test
+    public void testKeyChangesWhenAnotherProviderIsInstalled() {
+        installPackage(GOOGLE_WEBVIEW, 1);
+        String before = UserAgentUtil.getCacheKey(Robolectric.application);
+        // chrome may become the active provider, the key must not ignore it
+        installPackage(CHROME, 1);
+        assertFalse(before.equals(UserAgentUtil.getCacheKey(Robolectric.application)));
+    }
+
+    @Test
+    public void testStoredUserAgentIsUsed() {
+        PreferenceManager.getDefaultSharedPreferences(Robolectric.application).edit()
+                .putString("opensdk_ua", "stored user agent")
+                .putString("opensdk_ua_key", UserAgentUtil.getCacheKey(Robolectric.application))
+                .commit();
+
+        UserAgentUtil.retrieveAndSetUserAgent(Robolectric.application);
+        assertEquals("stored user agent", Settings.getSettings().ua);
+    }
+}